@@ -0,0 +1,105 @@
+package de.flexiprovider.common.mode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.BlockCipher;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.keys.SecretKeySpec;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests {@link CBC} with the AES-128 test vector of NIST SP 800-38A (F.2.1)
+ * and checks that the parallel decryption of
+ * {@link ParallelModeParameterSpec} agrees with the serial decryption, also
+ * if input and output are the same array.
+ */
+public class CBCTest extends TestCase {
+
+    private static final String KEY = "2b7e151628aed2a6abf7158809cf4f3c";
+
+    private static final String IV = "000102030405060708090a0b0c0d0e0f";
+
+    private static final String PT = "6bc1bee22e409f96e93d7e117393172a"
+	    + "ae2d8a571e03ac9c9eb76fac45af8e51"
+	    + "30c81c46a35ce411e5fbc1191a0a52ef"
+	    + "f69f2445df4f9b17ad2b417be66c3710";
+
+    private static final String CT = "7649abac8119b246cee98e9b12e9197d"
+	    + "5086cb9b507219ee95db113a917678b2"
+	    + "73bed6b8e3c1743b7116e69e22229516"
+	    + "3ff1caa1681fac09120eca307586e1a7";
+
+    private BlockCipher cipher;
+
+    private SecretKey key;
+
+    protected void setUp() throws Exception {
+	new FlexiCoreProvider();
+	cipher = Registry.getBlockCipher("Rijndael/CBC/NoPadding");
+	key = (SecretKey) Registry.getSecretKeyFactory("Rijndael")
+		.generateSecret(
+			new SecretKeySpec(ByteUtils.fromHexString(KEY),
+				"Rijndael"));
+    }
+
+    public void testVector() throws Exception {
+	byte[] iv = ByteUtils.fromHexString(IV);
+	byte[] pt = ByteUtils.fromHexString(PT);
+	byte[] ct = ByteUtils.fromHexString(CT);
+
+	cipher.initEncrypt(key, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+	assertEquals(CT, ByteUtils.toHexString(cipher.doFinal(pt)));
+	cipher.initDecrypt(key, new ModeParameterSpec(iv), null);
+	assertTrue(Arrays.equals(pt, cipher.doFinal(ct)));
+    }
+
+    public void testParallelAgainstSerial() throws Exception {
+	byte[] iv = ByteUtils.fromHexString(IV);
+	Random rand = new Random(713);
+	// several chunks per segment
+	byte[] pt = new byte[64 * 16 * 9 + 16 * 3];
+	rand.nextBytes(pt);
+
+	cipher.initEncrypt(key, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+	byte[] ct = cipher.doFinal(pt);
+
+	// serial decryption block by block
+	cipher.initDecrypt(key, new ModeParameterSpec(iv), null);
+	ByteArrayOutputStream serial = new ByteArrayOutputStream();
+	for (int off = 0; off < ct.length; off += 16) {
+	    byte[] out = cipher.update(ct, off, 16);
+	    serial.write(out, 0, out.length);
+	}
+	byte[] last = cipher.doFinal();
+	serial.write(last, 0, last.length);
+	assertTrue(Arrays.equals(pt, serial.toByteArray()));
+
+	for (int threads = 2; threads <= 4; threads++) {
+	    ParallelModeParameterSpec params = new ParallelModeParameterSpec(
+		    iv, threads, 0);
+	    cipher.initDecrypt(key, params, null);
+	    assertTrue(Arrays.equals(pt, cipher.doFinal(ct)));
+
+	    // the chaining block continues correctly after a parallel call
+	    cipher.initDecrypt(key, params, null);
+	    byte[] first = cipher.update(ct, 0, 64 * 16 * 5);
+	    byte[] second = cipher.doFinal(ct, 64 * 16 * 5, ct.length - 64
+		    * 16 * 5);
+	    assertTrue(Arrays.equals(pt, ByteUtils.concatenate(first, second)));
+
+	    // in-place decryption
+	    byte[] buf = ByteUtils.clone(ct);
+	    cipher.initDecrypt(key, params, null);
+	    cipher.doFinal(buf, 0, buf.length, buf, 0);
+	    assertTrue(Arrays.equals(pt, buf));
+	}
+    }
+
+}
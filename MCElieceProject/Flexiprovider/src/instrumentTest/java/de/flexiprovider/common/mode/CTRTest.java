@@ -0,0 +1,104 @@
+package de.flexiprovider.common.mode;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.BlockCipher;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.keys.SecretKeySpec;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests {@link CTR} with the AES-128 test vector of NIST SP 800-38A (F.5.1)
+ * and checks that the parallel processing of {@link ParallelModeParameterSpec}
+ * agrees with the serial processing and with the processing of single bytes,
+ * also if a counter carry crosses the segments.
+ */
+public class CTRTest extends TestCase {
+
+    private static final String KEY = "2b7e151628aed2a6abf7158809cf4f3c";
+
+    private static final String IV = "f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff";
+
+    private static final String PT = "6bc1bee22e409f96e93d7e117393172a"
+	    + "ae2d8a571e03ac9c9eb76fac45af8e51"
+	    + "30c81c46a35ce411e5fbc1191a0a52ef"
+	    + "f69f2445df4f9b17ad2b417be66c3710";
+
+    private static final String CT = "874d6191b620e3261bef6864990db6ce"
+	    + "9806f66b7970fdff8617187bb9fffdff"
+	    + "5ae4df3edbd5d35e5b4f09020db03eab"
+	    + "1e031dda2fbe03d1792170a0f3009cee";
+
+    // a counter whose low bytes overflow within the parallel test input
+    private static final String CARRY_IV = "0001020304050607ffffffffffffff00";
+
+    private BlockCipher cipher;
+
+    private SecretKey key;
+
+    protected void setUp() throws Exception {
+	new FlexiCoreProvider();
+	cipher = Registry.getBlockCipher("Rijndael/CTR/NoPadding");
+	key = (SecretKey) Registry.getSecretKeyFactory("Rijndael")
+		.generateSecret(
+			new SecretKeySpec(ByteUtils.fromHexString(KEY),
+				"Rijndael"));
+    }
+
+    public void testVector() throws Exception {
+	byte[] iv = ByteUtils.fromHexString(IV);
+	byte[] pt = ByteUtils.fromHexString(PT);
+	byte[] ct = ByteUtils.fromHexString(CT);
+
+	cipher.initEncrypt(key, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+	assertEquals(CT, ByteUtils.toHexString(cipher.doFinal(pt)));
+	cipher.initDecrypt(key, new ModeParameterSpec(iv), null);
+	assertTrue(Arrays.equals(pt, cipher.doFinal(ct)));
+    }
+
+    public void testParallelAgainstSerial() throws Exception {
+	byte[] iv = ByteUtils.fromHexString(CARRY_IV);
+	Random rand = new Random(38);
+	// several chunks per segment
+	byte[] pt = new byte[64 * 16 * 9 + 16 * 3];
+	rand.nextBytes(pt);
+
+	cipher.initEncrypt(key, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+	byte[] expected = new byte[pt.length];
+	for (int i = 0; i < pt.length; i++) {
+	    byte[] out = cipher.update(pt, i, 1);
+	    System.arraycopy(out, 0, expected, i + 1 - out.length,
+		    out.length);
+	}
+	assertEquals(0, cipher.doFinal().length);
+
+	cipher.initEncrypt(key, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+	assertTrue(Arrays.equals(expected, cipher.doFinal(pt)));
+
+	for (int threads = 2; threads <= 4; threads++) {
+	    ParallelModeParameterSpec params = new ParallelModeParameterSpec(
+		    iv, threads, 0);
+	    cipher.initEncrypt(key, params, null, Registry.getSecureRandom());
+	    assertTrue(Arrays.equals(expected, cipher.doFinal(pt)));
+
+	    // the counter continues correctly after a parallel call
+	    cipher.initEncrypt(key, params, null, Registry.getSecureRandom());
+	    byte[] first = cipher.update(pt, 0, 64 * 16 * 5);
+	    byte[] second = cipher.doFinal(pt, 64 * 16 * 5, pt.length - 64
+		    * 16 * 5);
+	    assertTrue(Arrays.equals(expected, ByteUtils
+		    .concatenate(first, second)));
+
+	    cipher.initDecrypt(key, params, null);
+	    assertTrue(Arrays.equals(pt, cipher.doFinal(expected)));
+	}
+    }
+
+}
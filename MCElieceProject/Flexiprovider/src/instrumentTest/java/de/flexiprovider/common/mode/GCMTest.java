@@ -0,0 +1,141 @@
+package de.flexiprovider.common.mode;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.BlockCipher;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.keys.SecretKeySpec;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.api.parameters.AlgorithmParameters;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests that {@link GCM} refuses to reuse an initialization vector for
+ * encryption and that its parameters carry the tag length and the additional
+ * authenticated data.
+ */
+public class GCMTest extends TestCase {
+
+    private static final byte[] MESSAGE = "hello world".getBytes();
+
+    private BlockCipher cipher;
+
+    private SecretKey key1, key2;
+
+    private final byte[] iv1 = new byte[12];
+
+    private final byte[] iv2 = new byte[12];
+
+    protected void setUp() throws Exception {
+	new FlexiCoreProvider();
+	cipher = Registry.getBlockCipher("Rijndael/GCM/NoPadding");
+	key1 = key((byte) 1);
+	key2 = key((byte) 2);
+	iv2[11] = 1;
+    }
+
+    public void testEncryptReinitWithSameKeyAndIV() throws Exception {
+	initEncrypt(key1, iv1);
+	cipher.doFinal(MESSAGE);
+	try {
+	    initEncrypt(key1, iv1);
+	    fail("IV reused for encryption");
+	} catch (InvalidAlgorithmParameterException expected) {
+	    // expected
+	}
+
+	// a decryption in between does not make the IV fresh again
+	initDecrypt(key1, iv1);
+	try {
+	    initEncrypt(key1, iv1);
+	    fail("IV reused for encryption");
+	} catch (InvalidAlgorithmParameterException expected) {
+	    // expected
+	}
+    }
+
+    public void testEncryptReinitWithNewKeyOrIV() throws Exception {
+	initEncrypt(key1, iv1);
+	byte[] ct1 = cipher.doFinal(MESSAGE);
+	initEncrypt(key1, iv2);
+	byte[] ct2 = cipher.doFinal(MESSAGE);
+	initEncrypt(key2, iv2);
+	cipher.doFinal(MESSAGE);
+	assertFalse(Arrays.equals(ct1, ct2));
+
+	initDecrypt(key1, iv1);
+	assertTrue(Arrays.equals(MESSAGE, cipher.doFinal(ct1)));
+	initDecrypt(key1, iv1);
+	assertTrue(Arrays.equals(MESSAGE, cipher.doFinal(ct1)));
+    }
+
+    public void testGetParameters() throws Exception {
+	byte[] aad = "header".getBytes();
+	cipher.initEncrypt(key1, new GCMParameterSpec(iv1, 104, aad), null,
+		Registry.getSecureRandom());
+	byte[] ct = cipher.doFinal(MESSAGE);
+	assertEquals(MESSAGE.length + 13, ct.length);
+
+	AlgorithmParameterSpec params = cipher.getParameters();
+	assertTrue(params instanceof GCMParameterSpec);
+	GCMParameterSpec gcmParams = (GCMParameterSpec) params;
+	assertTrue(Arrays.equals(iv1, gcmParams.getIV()));
+	assertEquals(104, gcmParams.getTagLength());
+	assertTrue(Arrays.equals(aad, gcmParams.getAAD()));
+
+	// the returned parameters decrypt the ciphertext
+	cipher.initDecrypt(key1, gcmParams, null);
+	assertTrue(Arrays.equals(MESSAGE, cipher.doFinal(ct)));
+
+	// a plain IV selects the default tag length
+	initEncrypt(key1, iv2);
+	gcmParams = (GCMParameterSpec) cipher.getParameters();
+	assertEquals(GCMParameterSpec.DEFAULT_TAG_LENGTH, gcmParams
+		.getTagLength());
+	assertEquals(0, gcmParams.getAAD().length);
+    }
+
+    public void testParametersEncoding() throws Exception {
+	int[] tagLengths = { 96, 104, 128 };
+	for (int i = 0; i < tagLengths.length; i++) {
+	    AlgorithmParameters params = Registry.getAlgParams("GCM");
+	    params.init(new GCMParameterSpec(iv2, tagLengths[i]));
+	    byte[] encoded = params.getEncoded();
+
+	    AlgorithmParameters decoded = Registry.getAlgParams("GCM");
+	    decoded.init(encoded);
+	    GCMParameterSpec gcmParams = (GCMParameterSpec) decoded
+		    .getParameterSpec(GCMParameterSpec.class);
+	    assertTrue(Arrays.equals(iv2, gcmParams.getIV()));
+	    assertEquals(tagLengths[i], gcmParams.getTagLength());
+	    assertTrue(Arrays.equals(encoded, decoded.getEncoded()));
+	}
+
+	// the default tag length of 12 bytes is not encoded (RFC 5084)
+	AlgorithmParameters params = Registry.getAlgParams("GCM");
+	params.init(new GCMParameterSpec(new byte[12], 96));
+	assertEquals("300e040c000000000000000000000000", ByteUtils
+		.toHexString(params.getEncoded()));
+    }
+
+    private void initEncrypt(SecretKey key, byte[] iv) throws Exception {
+	cipher.initEncrypt(key, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+    }
+
+    private void initDecrypt(SecretKey key, byte[] iv) throws Exception {
+	cipher.initDecrypt(key, new ModeParameterSpec(iv), null);
+    }
+
+    private static SecretKey key(byte value) throws Exception {
+	byte[] keyBytes = new byte[16];
+	Arrays.fill(keyBytes, value);
+	return (SecretKey) Registry.getSecretKeyFactory("Rijndael")
+		.generateSecret(new SecretKeySpec(keyBytes, "Rijndael"));
+    }
+
+}
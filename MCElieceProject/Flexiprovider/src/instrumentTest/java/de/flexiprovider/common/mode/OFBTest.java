@@ -0,0 +1,95 @@
+package de.flexiprovider.common.mode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.BlockCipher;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.keys.SecretKeySpec;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests {@link OFB} with the AES-128 test vector of NIST SP 800-38A (F.4.1)
+ * and checks that the bulk block path agrees with the processing of single
+ * bytes.
+ */
+public class OFBTest extends TestCase {
+
+    private static final String KEY = "2b7e151628aed2a6abf7158809cf4f3c";
+
+    private static final String IV = "000102030405060708090a0b0c0d0e0f";
+
+    private static final String PT = "6bc1bee22e409f96e93d7e117393172a"
+	    + "ae2d8a571e03ac9c9eb76fac45af8e51"
+	    + "30c81c46a35ce411e5fbc1191a0a52ef"
+	    + "f69f2445df4f9b17ad2b417be66c3710";
+
+    private static final String CT = "3b3fd92eb72dad20333449f8e83cfb4a"
+	    + "7789508d16918f03f53c52dac54ed825"
+	    + "9740051e9c5fecf64344f7a82260edcc"
+	    + "304c6528f659c77866a510d9c1d6ae5e";
+
+    private BlockCipher cipher;
+
+    private SecretKey key;
+
+    protected void setUp() throws Exception {
+	new FlexiCoreProvider();
+	cipher = Registry.getBlockCipher("Rijndael/OFB/NoPadding");
+	key = (SecretKey) Registry.getSecretKeyFactory("Rijndael")
+		.generateSecret(
+			new SecretKeySpec(ByteUtils.fromHexString(KEY),
+				"Rijndael"));
+    }
+
+    public void testVector() throws Exception {
+	byte[] pt = ByteUtils.fromHexString(PT);
+	byte[] ct = ByteUtils.fromHexString(CT);
+
+	cipher.initEncrypt(key, params(), null, Registry.getSecureRandom());
+	assertEquals(CT, ByteUtils.toHexString(cipher.doFinal(pt)));
+	cipher.initDecrypt(key, params(), null);
+	assertTrue(Arrays.equals(pt, cipher.doFinal(ct)));
+    }
+
+    public void testBulkAgainstSingleBytes() throws Exception {
+	Random rand = new Random(4711);
+	// spans several chunks of the bulk path
+	byte[] pt = new byte[64 * 16 * 3 + 16 * 5];
+	rand.nextBytes(pt);
+
+	cipher.initEncrypt(key, params(), null, Registry.getSecureRandom());
+	byte[] expected = new byte[pt.length];
+	for (int i = 0; i < pt.length; i++) {
+	    byte[] out = cipher.update(pt, i, 1);
+	    System.arraycopy(out, 0, expected, i + 1 - out.length,
+		    out.length);
+	}
+	assertEquals(0, cipher.doFinal().length);
+
+	cipher.initEncrypt(key, params(), null, Registry.getSecureRandom());
+	assertTrue(Arrays.equals(expected, cipher.doFinal(pt)));
+
+	// random chunks, including incomplete blocks
+	cipher.initDecrypt(key, params(), null);
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	for (int off = 0; off < pt.length;) {
+	    int len = Math.min(rand.nextInt(3000), pt.length - off);
+	    byte[] part = cipher.update(expected, off, len);
+	    out.write(part, 0, part.length);
+	    off += len;
+	}
+	byte[] last = cipher.doFinal();
+	out.write(last, 0, last.length);
+	assertTrue(Arrays.equals(pt, out.toByteArray()));
+    }
+
+    private static ModeParameterSpec params() {
+	return new ModeParameterSpec(ByteUtils.fromHexString(IV));
+    }
+
+}
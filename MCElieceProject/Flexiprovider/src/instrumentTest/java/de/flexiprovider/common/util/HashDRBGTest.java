@@ -0,0 +1,136 @@
+package de.flexiprovider.common.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Known-answer tests of {@link HashDRBG} with a fixed entropy source:
+ * instantiation with and without a personalization string, a buffered and a
+ * direct generate request, a reseed with additional input via
+ * {@link HashDRBG#setSeed(byte[])}, and a generate request after the reseed.
+ * The expected outputs have been computed with an independent implementation
+ * of Hash_DRBG (NIST SP 800-90A, SHA-256) from the same entropy input, nonce,
+ * personalization string, and additional input.
+ */
+public class HashDRBGTest extends TestCase {
+
+    private static final String ENTROPY = "000102030405060708090a0b0c0d0e0f"
+	    + "101112131415161718191a1b1c1d1e1f";
+
+    private static final String NONCE = "20212223242526272829202122232425";
+
+    private static final String ENTROPY_RESEED = "8081828384858687"
+	    + "88898a8b8c8d8e8f909192939495969798999a9b9c9d9e9f";
+
+    private static final String PERSONALIZATION = "4041424344454647"
+	    + "48494a4b4c4d4e4f";
+
+    private static final String ADDITIONAL_INPUT = "a0a1a2a3a4a5a6a7"
+	    + "a8a9aaabacadaeafb0b1b2b3b4b5b6b7b8b9babbbcbdbebf";
+
+    // the first 128 bytes after instantiation (served from the buffer)
+    private static final String OUT_NO_PERS = "910ac52ef6190d6c"
+	    + "acd776b135e9676c506700d4eeec3b200157fa7f51271ff3"
+	    + "52f6fb1af7cafaaec32b3cf149cce1e01c0fe708ee7b81f5"
+	    + "3e0af67d18910fa5de26459ed26f9416640570f828937e2e"
+	    + "1d8878e25dc5819bde4cbcf6e21367ebde095ad668e35d30"
+	    + "6607fad7f5af215b747253fb21c38ae1e9fca420a8092818";
+
+    // the first 64 bytes of the following request of 1000 bytes (generated
+    // directly)
+    private static final String DIRECT_NO_PERS = "4cccdcfcb594925c"
+	    + "1a39f37b5a65683641b48ea74c1f314eb54c9a09902a5c56"
+	    + "aa8c76688203a8749929a7142b765045248d33e277522c40"
+	    + "dc5e93b1ba2441c1";
+
+    // the first 128 bytes after the reseed
+    private static final String RESEEDED_NO_PERS = "fc204453ea3ba517"
+	    + "fbc2ccdf05239d27a54d29e592b6e8610508879b516893d8"
+	    + "53fea613ab8911b05434d16bdcfe9793860e1de3a035626e"
+	    + "71ca0bbe7ca88733ecd53cb6d614d9add4235845132bf26e"
+	    + "50939f7d38a6b43eb980838615bc4c9c608c3cc9123751e1"
+	    + "31bc92d629b13638a3f3f4b1a8e13a0cf6d96a4da7d51db5";
+
+    // the same outputs with the personalization string
+    private static final String OUT_PERS = "0c897314046c96d5747acdcfe6d8a0c7"
+	    + "bafbdd3ac499711611baeea8636c8ac867d3d26a021a825c"
+	    + "12dc290c5fa95c131ef9f92e89231e992781cb88d3ca411b"
+	    + "602a760938e1f56c1aa414eb915c66c7d72a3d11ac9219c3"
+	    + "3252ae48190b8657c6ce654c2f2084ff0701fde8482f660e"
+	    + "79cfac9e4c0543d4ad09947eddb2a87e";
+
+    private static final String DIRECT_PERS = "6ac781b1c44dc853"
+	    + "85c623bd4a589c0bfa3557b056ee3778bb2a8eafafaa2157"
+	    + "e1a3555e448c8f5aa6871c3e683778e3c59343879f0f6644"
+	    + "32ddbbfc4c717951";
+
+    private static final String RESEEDED_PERS = "8be2a74e953ee763"
+	    + "0b8fc2afcc336c774174814b0888c237aa977f06f2354147"
+	    + "4c5421ba7fb81c87f2f36554f098a2c2201ec3d4fda2ae10"
+	    + "74c610096bf6579b1683c0857c88494dc26a3ad7d8fd6e1c"
+	    + "fb5de6147f1144413ae2e13d8e6d3db9408684a07572807a"
+	    + "6842224eb7e7765eb2ee74b372f474140b94c0ec9073a8b0";
+
+    public void testKnownAnswer() {
+	checkKnownAnswer(null, OUT_NO_PERS, DIRECT_NO_PERS, RESEEDED_NO_PERS);
+    }
+
+    public void testKnownAnswerWithPersonalization() {
+	checkKnownAnswer(ByteUtils.fromHexString(PERSONALIZATION), OUT_PERS,
+		DIRECT_PERS, RESEEDED_PERS);
+    }
+
+    public void testBufferedRequests() {
+	// small requests are cut from the same generate request
+	HashDRBG drbg = new HashDRBG(new FixedEntropy(), null);
+	byte[] out = new byte[128];
+	for (int off = 0; off < out.length; off += 32) {
+	    byte[] part = new byte[32];
+	    drbg.nextBytes(part);
+	    System.arraycopy(part, 0, out, off, 32);
+	}
+	assertEquals(OUT_NO_PERS, ByteUtils.toHexString(out));
+    }
+
+    private static void checkKnownAnswer(byte[] personalization,
+	    String expected, String expectedDirect, String expectedReseeded) {
+	FixedEntropy entropy = new FixedEntropy();
+	HashDRBG drbg = new HashDRBG(entropy, personalization);
+	assertEquals(48, entropy.pos);
+
+	byte[] out = new byte[128];
+	drbg.nextBytes(out);
+	assertEquals(expected, ByteUtils.toHexString(out));
+
+	byte[] direct = new byte[1000];
+	drbg.nextBytes(direct);
+	assertEquals(expectedDirect, ByteUtils.toHexString(ByteUtils.subArray(
+		direct, 0, 64)));
+
+	drbg.setSeed(ByteUtils.fromHexString(ADDITIONAL_INPUT));
+	assertEquals(80, entropy.pos);
+	drbg.nextBytes(out);
+	assertEquals(expectedReseeded, ByteUtils.toHexString(out));
+    }
+
+    /**
+     * Entropy source returning the entropy input and the nonce for the
+     * instantiation, followed by the entropy input for the reseed.
+     */
+    private static class FixedEntropy extends java.security.SecureRandom {
+
+	private final byte[] data = ByteUtils.fromHexString(ENTROPY + NONCE
+		+ ENTROPY_RESEED);
+
+	int pos;
+
+	public void nextBytes(byte[] bytes) {
+	    if (pos + bytes.length > data.length) {
+		fail("entropy exhausted");
+	    }
+	    System.arraycopy(data, pos, bytes, 0, bytes.length);
+	    pos += bytes.length;
+	}
+
+    }
+
+}
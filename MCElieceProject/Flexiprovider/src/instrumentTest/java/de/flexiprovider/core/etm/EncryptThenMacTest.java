@@ -0,0 +1,126 @@
+package de.flexiprovider.core.etm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.BlockCipher;
+import de.flexiprovider.api.Cipher;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.keys.SecretKeySpec;
+import de.flexiprovider.common.mode.ModeParameterSpec;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests the CTR variants of {@link EncryptThenMac} with plaintexts whose
+ * length is not a multiple of the block size.
+ */
+public class EncryptThenMacTest extends TestCase {
+
+    // plaintext lengths (including incomplete last blocks)
+    private static final int[] LENGTHS = { 0, 1, 15, 16, 17, 100, 4095,
+	    4096, 4097 };
+
+    private final Random rand = new Random(4711);
+
+    protected void setUp() {
+	new FlexiCoreProvider();
+    }
+
+    public void testAES_CTR_HmacSHA256() throws Exception {
+	check(new EncryptThenMac.AES_CTR_HmacSHA256(), 32);
+	check(new EncryptThenMac.AES_CTR_HmacSHA256(), 64);
+    }
+
+    public void testAES_CTR_HmacSHA512() throws Exception {
+	check(new EncryptThenMac.AES_CTR_HmacSHA512(), 32);
+	check(new EncryptThenMac.AES_CTR_HmacSHA512(), 64);
+    }
+
+    public void testAES_CTR_CmacAES128() throws Exception {
+	check(new EncryptThenMac.AES_CTR_CmacAES128(), 32);
+    }
+
+    private void check(Cipher etm, int keyLen) throws Exception {
+	for (int i = 0; i < LENGTHS.length; i++) {
+	    int len = LENGTHS[i];
+	    byte[] keyBytes = new byte[keyLen];
+	    rand.nextBytes(keyBytes);
+	    byte[] iv = new byte[16];
+	    rand.nextBytes(iv);
+	    byte[] pt = new byte[len];
+	    rand.nextBytes(pt);
+	    SecretKey key = (SecretKey) Registry.getSecretKeyFactory("Hmac")
+		    .generateSecret(new SecretKeySpec(keyBytes, "Hmac"));
+	    String name = etm.getName() + ", length " + len;
+
+	    etm.initEncrypt(key, new ModeParameterSpec(iv), Registry
+		    .getSecureRandom());
+	    byte[] ct = etm.doFinal(pt, 0, len);
+	    int tagLen = ct.length - len;
+	    assertTrue(name, tagLen >= 16);
+
+	    // the ciphertext is the plaintext XORed with the AES-CTR key stream
+	    assertTrue(name, Arrays.equals(ctrEncrypt(keyBytes, iv, pt),
+		    copy(ct, 0, len)));
+
+	    // incremental encryption gives the same result
+	    assertTrue(name, Arrays.equals(ct, inParts(etm, pt)));
+
+	    etm.initDecrypt(key, new ModeParameterSpec(iv));
+	    assertTrue(name, Arrays.equals(pt, etm.doFinal(ct, 0, ct.length)));
+	    assertTrue(name, Arrays.equals(pt, inParts(etm, ct)));
+
+	    // a modified ciphertext is rejected
+	    if (len > 0) {
+		ct[len - 1] ^= 1;
+		try {
+		    etm.doFinal(ct, 0, ct.length);
+		    fail(name + ": modified ciphertext accepted");
+		} catch (BadPaddingException expected) {
+		    // expected
+		}
+	    }
+	}
+    }
+
+    /**
+     * Encrypt with AES/CTR/NoPadding, completing the last block with zeros.
+     */
+    private static byte[] ctrEncrypt(byte[] keyBytes, byte[] iv, byte[] pt)
+	    throws Exception {
+	int half = keyBytes.length >> 1;
+	SecretKey encKey = (SecretKey) Registry.getSecretKeyFactory("AES")
+		.generateSecret(new SecretKeySpec(keyBytes, half, half, "AES"));
+	BlockCipher aes = Registry.getBlockCipher("AES/CTR/NoPadding");
+	aes.initEncrypt(encKey, new ModeParameterSpec(iv), null, Registry
+		.getSecureRandom());
+	byte[] padded = new byte[(pt.length + 15) & ~15];
+	System.arraycopy(pt, 0, padded, 0, pt.length);
+	return copy(aes.doFinal(padded, 0, padded.length), 0, pt.length);
+    }
+
+    /**
+     * Process the input with several update calls of different lengths.
+     */
+    private byte[] inParts(Cipher c, byte[] input) throws Exception {
+	byte[] result = new byte[c.getOutputSize(input.length)];
+	int off = 0, outLen = 0;
+	while (off < input.length) {
+	    int n = Math.min(input.length - off, 1 + rand.nextInt(40));
+	    outLen += c.update(input, off, n, result, outLen);
+	    off += n;
+	}
+	outLen += c.doFinal(null, 0, 0, result, outLen);
+	return copy(result, 0, outLen);
+    }
+
+    private static byte[] copy(byte[] a, int off, int len) {
+	byte[] result = new byte[len];
+	System.arraycopy(a, off, result, 0, len);
+	return result;
+    }
+
+}
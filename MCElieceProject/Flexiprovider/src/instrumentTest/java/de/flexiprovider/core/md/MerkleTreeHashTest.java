@@ -0,0 +1,152 @@
+package de.flexiprovider.core.md;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.MessageDigest;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests {@link MerkleTreeHash} against a tree computed from byte arrays and
+ * checks that {@link MerkleTreeHash#rehash(MerkleTree,
+ * java.nio.channels.FileChannel, long, long)} after in-place changes, growth,
+ * and truncation agrees with hashing the whole file.
+ */
+public class MerkleTreeHashTest extends TestCase {
+
+    private static final String[] ALGORITHMS = { "SHA256", "RIPEMD160",
+	    "Tiger" };
+
+    private static final int LEAF_SIZE = 1000;
+
+    private Random rand;
+
+    private File file;
+
+    private RandomAccessFile raf;
+
+    protected void setUp() throws Exception {
+	new FlexiCoreProvider();
+	rand = new Random(1619);
+	file = File.createTempFile("merkle", ".bin");
+	raf = new RandomAccessFile(file, "rw");
+    }
+
+    protected void tearDown() throws Exception {
+	raf.close();
+	file.delete();
+    }
+
+    public void testRoot() throws Exception {
+	// empty file, a single leaf, an odd number of leaves, several levels
+	int[] lengths = { 0, 1, LEAF_SIZE, 5 * LEAF_SIZE + 500,
+		16 * LEAF_SIZE, 37 * LEAF_SIZE + 1 };
+	for (int a = 0; a < ALGORITHMS.length; a++) {
+	    for (int i = 0; i < lengths.length; i++) {
+		byte[] data = new byte[lengths[i]];
+		rand.nextBytes(data);
+		write(data);
+
+		MerkleTreeHash th = new MerkleTreeHash(ALGORITHMS[a],
+			LEAF_SIZE);
+		th.setNumThreads(3);
+		MerkleTree tree = th.hash(file);
+		assertEquals(data.length, tree.getLength());
+		assertTrue(Arrays.equals(root(ALGORITHMS[a], data), tree
+			.getRoot()));
+	    }
+	}
+    }
+
+    public void testRehash() throws Exception {
+	for (int a = 0; a < ALGORITHMS.length; a++) {
+	    MerkleTreeHash th = new MerkleTreeHash(ALGORITHMS[a], LEAF_SIZE);
+	    th.setNumThreads(2);
+	    byte[] data = new byte[20 * LEAF_SIZE + 300];
+	    rand.nextBytes(data);
+	    write(data);
+	    MerkleTree tree = th.hash(raf.getChannel());
+
+	    // in-place change across a leaf boundary
+	    int off = 7 * LEAF_SIZE - 10;
+	    for (int i = off; i < off + 30; i++) {
+		data[i] ^= 0x5a;
+	    }
+	    write(data);
+	    th.rehash(tree, raf.getChannel(), off, 30);
+	    assertSameTree(th.hash(raf.getChannel()), tree);
+	    assertTrue(Arrays.equals(root(ALGORITHMS[a], data), tree
+		    .getRoot()));
+
+	    // growth
+	    byte[] grown = new byte[data.length + 3 * LEAF_SIZE];
+	    rand.nextBytes(grown);
+	    System.arraycopy(data, 0, grown, 0, data.length);
+	    write(grown);
+	    th.rehash(tree, raf.getChannel(), data.length, grown.length
+		    - data.length);
+	    assertSameTree(th.hash(raf.getChannel()), tree);
+
+	    // truncation
+	    byte[] truncated = new byte[4 * LEAF_SIZE + 1];
+	    System.arraycopy(grown, 0, truncated, 0, truncated.length);
+	    write(truncated);
+	    th.rehash(tree, raf.getChannel(), truncated.length, 0);
+	    assertSameTree(th.hash(raf.getChannel()), tree);
+	    assertTrue(Arrays.equals(root(ALGORITHMS[a], truncated), tree
+		    .getRoot()));
+	}
+    }
+
+    private void write(byte[] data) throws Exception {
+	raf.setLength(data.length);
+	raf.seek(0);
+	raf.write(data);
+    }
+
+    private static void assertSameTree(MerkleTree expected, MerkleTree tree) {
+	assertEquals(expected.getLength(), tree.getLength());
+	assertEquals(expected.getNumLeaves(), tree.getNumLeaves());
+	for (int i = 0; i < expected.getNumLeaves(); i++) {
+	    assertTrue(Arrays.equals(expected.getLeafHash(i), tree
+		    .getLeafHash(i)));
+	}
+	assertTrue(Arrays.equals(expected.getRoot(), tree.getRoot()));
+    }
+
+    /**
+     * Compute the root of the given data with byte arrays only.
+     */
+    private static byte[] root(String algName, byte[] data) throws Exception {
+	MessageDigest md = Registry.getMessageDigest(algName);
+	int n = data.length == 0 ? 1 : (data.length + LEAF_SIZE - 1)
+		/ LEAF_SIZE;
+	byte[][] level = new byte[n][];
+	for (int i = 0; i < n; i++) {
+	    int off = i * LEAF_SIZE;
+	    md.update((byte) 0x00);
+	    md.update(data, off, Math.min(LEAF_SIZE, data.length - off));
+	    level[i] = md.digest();
+	}
+	while (level.length > 1) {
+	    byte[][] up = new byte[(level.length + 1) / 2][];
+	    for (int i = 0; i < up.length; i++) {
+		if (2 * i + 1 == level.length) {
+		    up[i] = level[2 * i];
+		} else {
+		    md.update((byte) 0x01);
+		    md.update(level[2 * i]);
+		    md.update(level[2 * i + 1]);
+		    up[i] = md.digest();
+		}
+	    }
+	    level = up;
+	}
+	return level[0];
+    }
+
+}
@@ -0,0 +1,237 @@
+package de.flexiprovider.core.rijndael;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.core.FlexiCoreProvider;
+
+/**
+ * Tests {@link RijndaelXTS} with the XTS-AES test vectors of IEEE Std
+ * 1619-2007 (Annex B), including the data units of 17 to 20 bytes which are
+ * processed with ciphertext stealing, and checks that runs of sectors agree
+ * with the encryption of single sectors.
+ */
+public class RijndaelXTSTest extends TestCase {
+
+    // the data of vectors 4 and 10: the bytes 00 to ff, twice
+    private static final String SECTOR_512;
+
+    static {
+	byte[] data = new byte[512];
+	for (int i = 0; i < data.length; i++) {
+	    data[i] = (byte) i;
+	}
+	SECTOR_512 = ByteUtils.toHexString(data);
+    }
+
+    // the key of vectors 15 to 18
+    private static final String KEY_STEALING = "fffefdfcfbfaf9f8"
+	    + "f7f6f5f4f3f2f1f0bfbebdbcbbbab9b8b7b6b5b4b3b2b1b0";
+
+    /**
+     * The vectors: key, data unit sequence number, plaintext, ciphertext.
+     * Vector 1 is omitted since its data key and tweak key are equal, which is
+     * rejected by the engine.
+     */
+    private static final Object[][] VECTORS = {
+	    // vector 2
+	    {
+		    "11111111111111111111111111111111"
+			    + "22222222222222222222222222222222",
+		    new Long(0x3333333333L),
+		    "44444444444444444444444444444444"
+			    + "44444444444444444444444444444444",
+		    "c454185e6a16936e39334038acef838b"
+			    + "fb186fff7480adc4289382ecd6d394f0" },
+	    // vector 3
+	    {
+		    "fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0"
+			    + "22222222222222222222222222222222",
+		    new Long(0x3333333333L),
+		    "44444444444444444444444444444444"
+			    + "44444444444444444444444444444444",
+		    "af85336b597afc1a900b2eb21ec949d2"
+			    + "92df4c047e0b21532186a5971a227a89" },
+	    // vector 4
+	    {
+		    "27182818284590452353602874713526"
+			    + "31415926535897932384626433832795",
+		    new Long(0),
+		    SECTOR_512,
+		    "27a7479befa1d476489f308cd4cfa6e2"
+			    + "a96e4bbe3208ff25287dd3819616e89c"
+			    + "c78cf7f5e543445f8333d8fa7f560000"
+			    + "05279fa5d8b5e4ad40e736ddb4d35412"
+			    + "328063fd2aab53e5ea1e0a9f332500a5"
+			    + "df9487d07a5c92cc512c8866c7e860ce"
+			    + "93fdf166a24912b422976146ae20ce84"
+			    + "6bb7dc9ba94a767aaef20c0d61ad0265"
+			    + "5ea92dc4c4e41a8952c651d33174be51"
+			    + "a10c421110e6d81588ede82103a252d8"
+			    + "a750e8768defffed9122810aaeb99f91"
+			    + "72af82b604dc4b8e51bcb08235a6f434"
+			    + "1332e4ca60482a4ba1a03b3e65008fc5"
+			    + "da76b70bf1690db4eae29c5f1badd03c"
+			    + "5ccf2a55d705ddcd86d449511ceb7ec3"
+			    + "0bf12b1fa35b913f9f747a8afd1b130e"
+			    + "94bff94effd01a91735ca1726acd0b19"
+			    + "7c4e5b03393697e126826fb6bbde8ecc"
+			    + "1e08298516e2c9ed03ff3c1b7860f6de"
+			    + "76d4cecd94c8119855ef5297ca67e9f3"
+			    + "e7ff72b1e99785ca0a7e7720c5b36dc6"
+			    + "d72cac9574c8cbbc2f801e23e56fd344"
+			    + "b07f22154beba0f08ce8891e643ed995"
+			    + "c94d9a69c9f1b5f499027a78572aeebd"
+			    + "74d20cc39881c213ee770b1010e4bea7"
+			    + "18846977ae119f7a023ab58cca0ad752"
+			    + "afe656bb3c17256a9f6e9bf19fdd5a38"
+			    + "fc82bbe872c5539edb609ef4f79c203e"
+			    + "bb140f2e583cb2ad15b4aa5b655016a8"
+			    + "449277dbd477ef2c8d6c017db738b18d"
+			    + "eb4a427d1923ce3ff262735779a418f2"
+			    + "0a282df920147beabe421ee5319d0568" },
+	    // vector 10 (XTS-AES-256)
+	    {
+		    "27182818284590452353602874713526"
+			    + "62497757247093699959574966967627"
+			    + "31415926535897932384626433832795"
+			    + "02884197169399375105820974944592",
+		    new Long(0xff),
+		    SECTOR_512,
+		    "1c3b3a102f770386e4836c99e370cf9b"
+			    + "ea00803f5e482357a4ae12d414a3e63b"
+			    + "5d31e276f8fe4a8d66b317f9ac683f44"
+			    + "680a86ac35adfc3345befecb4bb188fd"
+			    + "5776926c49a3095eb108fd1098baec70"
+			    + "aaa66999a72a82f27d848b21d4a741b0"
+			    + "c5cd4d5fff9dac89aeba122961d03a75"
+			    + "7123e9870f8acf1000020887891429ca"
+			    + "2a3e7a7d7df7b10355165c8b9a6d0a7d"
+			    + "e8b062c4500dc4cd120c0f7418dae3d0"
+			    + "b5781c34803fa75421c790dfe1de1834"
+			    + "f280d7667b327f6c8cd7557e12ac3a0f"
+			    + "93ec05c52e0493ef31a12d3d9260f79a"
+			    + "289d6a379bc70c50841473d1a8cc81ec"
+			    + "583e9645e07b8d9670655ba5bbcfecc6"
+			    + "dc3966380ad8fecb17b6ba02469a020a"
+			    + "84e18e8f84252070c13e9f1f289be54f"
+			    + "bc481457778f616015e1327a02b140f1"
+			    + "505eb309326d68378f8374595c849d84"
+			    + "f4c333ec4423885143cb47bd71c5edae"
+			    + "9be69a2ffeceb1bec9de244fbe15992b"
+			    + "11b77c040f12bd8f6a975a44a0f90c29"
+			    + "a9abc3d4d893927284c58754cce29452"
+			    + "9f8614dcd2aba991925fedc4ae74ffac"
+			    + "6e333b93eb4aff0479da9a410e4450e0"
+			    + "dd7ae4c6e2910900575da401fc07059f"
+			    + "645e8b7e9bfdef33943054ff84011493"
+			    + "c27b3429eaedb4ed5376441a77ed4385"
+			    + "1ad77f16f541dfd269d50d6a5f14fb0a"
+			    + "ab1cbb4c1550be97f7ab4066193c4caa"
+			    + "773dad38014bd2092fa755c824bb5e54"
+			    + "c4f36ffda9fcea70b9c6e693e148c151" },
+	    // vectors 15 to 18: ciphertext stealing (the standard lists the
+	    // sequence number as 9a78563412, least significant byte first)
+	    { KEY_STEALING, new Long(0x123456789aL),
+		    "000102030405060708090a0b0c0d0e0f10",
+		    "6c1625db4671522d3d7599601de7ca09ed" },
+	    { KEY_STEALING, new Long(0x123456789aL),
+		    "000102030405060708090a0b0c0d0e0f1011",
+		    "d069444b7a7e0cab09e24447d24deb1fedbf" },
+	    { KEY_STEALING, new Long(0x123456789aL),
+		    "000102030405060708090a0b0c0d0e0f101112",
+		    "e5df1351c0544ba1350b3363cd8ef4beedbf9d" },
+	    { KEY_STEALING, new Long(0x123456789aL),
+		    "000102030405060708090a0b0c0d0e0f10111213",
+		    "9d84c813f719aa2c7be3f66171c7c5c2edbf9dac" } };
+
+    protected void setUp() {
+	new FlexiCoreProvider();
+    }
+
+    public void testVectors() throws Exception {
+	for (int i = 0; i < VECTORS.length; i++) {
+	    byte[] key = ByteUtils.fromHexString((String) VECTORS[i][0]);
+	    long sector = ((Long) VECTORS[i][1]).longValue();
+	    byte[] pt = ByteUtils.fromHexString((String) VECTORS[i][2]);
+	    byte[] ct = ByteUtils.fromHexString((String) VECTORS[i][3]);
+
+	    for (int impl = 0; impl < 2; impl++) {
+		RijndaelXTS xts = new RijndaelXTS(key(key, 0), key(key, 1), 1,
+			0, impl == 1);
+
+		byte[] out = new byte[pt.length];
+		xts.encryptSector(sector, pt, 0, pt.length, out, 0);
+		assertTrue("vector " + i, Arrays.equals(ct, out));
+		xts.decryptSector(sector, ct, 0, ct.length, out, 0);
+		assertTrue("vector " + i, Arrays.equals(pt, out));
+
+		// in place, at an offset
+		byte[] buf = new byte[pt.length + 5];
+		System.arraycopy(pt, 0, buf, 5, pt.length);
+		xts.encryptSector(sector, buf, 5, pt.length, buf, 5);
+		assertTrue("vector " + i, Arrays.equals(ct, ByteUtils.subArray(
+			buf, 5, buf.length)));
+		xts.decryptSector(sector, buf, 5, pt.length, buf, 5);
+		assertTrue("vector " + i, Arrays.equals(pt, ByteUtils.subArray(
+			buf, 5, buf.length)));
+	    }
+
+	    // the constructor taking the whole XTS key
+	    byte[] out = new byte[pt.length];
+	    new RijndaelXTS(key)
+		    .encryptSector(sector, pt, 0, pt.length, out, 0);
+	    assertTrue("vector " + i, Arrays.equals(ct, out));
+	}
+    }
+
+    public void testEqualKeys() throws Exception {
+	// vector 1 of the standard uses the all-zero key for both halves
+	try {
+	    new RijndaelXTS(new byte[32]);
+	    fail("equal data key and tweak key accepted");
+	} catch (InvalidKeyException expected) {
+	    // expected
+	}
+    }
+
+    public void testSectorRuns() throws Exception {
+	byte[] key = ByteUtils.fromHexString(KEY_STEALING);
+	Random rand = new Random(1619);
+	int sectorSize = 528;
+	// the last sector is incomplete and uses ciphertext stealing
+	byte[] pt = new byte[sectorSize * 40 + 19];
+	rand.nextBytes(pt);
+
+	RijndaelXTS single = new RijndaelXTS(key(key, 0), key(key, 1), 1, 0);
+	byte[] expected = new byte[pt.length];
+	for (int off = 0; off < pt.length; off += sectorSize) {
+	    int len = Math.min(sectorSize, pt.length - off);
+	    single.encryptSector(1000 + off / sectorSize, pt, off, len,
+		    expected, off);
+	}
+
+	for (int threads = 1; threads <= 4; threads++) {
+	    RijndaelXTS xts = new RijndaelXTS(key(key, 0), key(key, 1),
+		    threads, 0);
+	    byte[] out = new byte[pt.length];
+	    xts.encryptSectors(1000, sectorSize, pt, 0, pt.length, out, 0);
+	    assertTrue(Arrays.equals(expected, out));
+
+	    // in place
+	    xts.decryptSectors(1000, sectorSize, out, 0, out.length, out, 0);
+	    assertTrue(Arrays.equals(pt, out));
+	}
+    }
+
+    private static SecretKey key(byte[] xtsKey, int half) {
+	int len = xtsKey.length >> 1;
+	return new RijndaelKey(ByteUtils.subArray(xtsKey, half * len, (half + 1)
+		* len));
+    }
+
+}
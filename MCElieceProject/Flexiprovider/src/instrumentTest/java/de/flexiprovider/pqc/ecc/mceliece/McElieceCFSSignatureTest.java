@@ -0,0 +1,83 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.keys.KeyPair;
+import de.flexiprovider.api.keys.PrivateKey;
+import de.flexiprovider.api.keys.PublicKey;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.common.util.DefaultPRNG;
+import de.flexiprovider.core.FlexiCoreProvider;
+import de.flexiprovider.pqc.ecc.ECCKeyGenParameterSpec;
+
+/**
+ * Tests {@link McElieceCFSSignature}: signatures created with one or several
+ * threads verify, and changing the message, the counter, or an error position
+ * of the signature makes the verification fail.
+ */
+public class McElieceCFSSignatureTest extends TestCase {
+
+    private static final byte[] MESSAGE = "CFS signature test".getBytes();
+
+    private PrivateKey privKey;
+
+    private PublicKey pubKey;
+
+    protected void setUp() throws Exception {
+	new FlexiCoreProvider();
+	// small parameters, so that a decodable syndrome is found quickly
+	McElieceCCA2KeyPairGenerator kpg = new McElieceCCA2KeyPairGenerator();
+	kpg.initialize(new ECCKeyGenParameterSpec(10, 3), new DefaultPRNG());
+	KeyPair keyPair = kpg.genKeyPair();
+	privKey = keyPair.getPrivate();
+	pubKey = keyPair.getPublic();
+    }
+
+    public void testSignVerify() throws Exception {
+	for (int threads = 1; threads <= 3; threads++) {
+	    McElieceCFSSignature sig = new McElieceCFSSignature();
+	    sig.setParameters(new McElieceCFSParameterSpec("SHA256", threads));
+	    sig.initSign(privKey);
+	    byte[] signature = sig.sign(MESSAGE);
+
+	    sig.initVerify(pubKey);
+	    assertTrue(sig.verify(MESSAGE, signature));
+	    // the signature can be verified again
+	    assertTrue(sig.verify(MESSAGE, signature));
+	}
+    }
+
+    public void testTamperedMessage() throws Exception {
+	McElieceCFSSignature sig = new McElieceCFSSignature();
+	sig.initSign(privKey);
+	byte[] signature = sig.sign(MESSAGE);
+
+	byte[] message = ByteUtils.clone(MESSAGE);
+	message[0] ^= 1;
+	sig.initVerify(pubKey);
+	assertFalse(sig.verify(message, signature));
+    }
+
+    public void testTamperedSignature() throws Exception {
+	McElieceCFSSignature sig = new McElieceCFSSignature();
+	sig.initSign(privKey);
+	byte[] signature = sig.sign(MESSAGE);
+	sig.initVerify(pubKey);
+
+	// every single bit flip (counter or error position) is detected
+	for (int i = 0; i < signature.length * 8; i++) {
+	    byte[] tampered = ByteUtils.clone(signature);
+	    tampered[i >> 3] ^= 1 << (i & 7);
+	    assertFalse(sig.verify(MESSAGE, tampered));
+	}
+
+	// truncated and extended signatures
+	byte[] truncated = ByteUtils.subArray(signature, 0,
+		signature.length - 1);
+	assertFalse(sig.verify(MESSAGE, truncated));
+	assertFalse(sig.verify(MESSAGE, ByteUtils.concatenate(signature,
+		new byte[1])));
+
+	assertTrue(sig.verify(MESSAGE, signature));
+    }
+
+}
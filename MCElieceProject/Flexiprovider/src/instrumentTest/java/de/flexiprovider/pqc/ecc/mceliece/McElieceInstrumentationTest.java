@@ -0,0 +1,131 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.keys.KeyPair;
+import de.flexiprovider.common.util.DefaultPRNG;
+import de.flexiprovider.core.FlexiCoreProvider;
+import de.flexiprovider.pqc.ecc.ECCKeyGenParameterSpec;
+
+/**
+ * Tests that the instrumented McEliece operations report each phase exactly
+ * once and in the expected order.
+ */
+public class McElieceInstrumentationTest extends TestCase {
+
+    private static final byte[] MESSAGE = "hello world".getBytes();
+
+    private Recorder recorder;
+
+    protected void setUp() {
+	new FlexiCoreProvider();
+	recorder = new Recorder();
+    }
+
+    protected void tearDown() {
+	McElieceInstrumentation.setListener(null);
+    }
+
+    public void testPKCS() throws Exception {
+	McElieceKeyPairGenerator kpg = new McElieceKeyPairGenerator();
+	kpg.initialize(new ECCKeyGenParameterSpec(), new DefaultPRNG());
+	KeyPair keyPair = kpg.genKeyPair();
+	McEliecePKCS cipher = new McEliecePKCS();
+
+	McElieceInstrumentation.setListener(recorder);
+	cipher.initEncrypt(keyPair.getPublic(), new DefaultPRNG());
+	byte[] ct = cipher.doFinal(MESSAGE);
+	assertPhases(McElieceInstrumentation.OP_ENCRYPT, new int[] {
+		McElieceInstrumentation.PHASE_ENCODE,
+		McElieceInstrumentation.PHASE_ERROR_VECTOR,
+		McElieceInstrumentation.PHASE_MULTIPLY,
+		McElieceInstrumentation.PHASE_OUTPUT });
+
+	recorder.clear();
+	cipher.initDecrypt(keyPair.getPrivate());
+	assertTrue(Arrays.equals(MESSAGE, cipher.doFinal(ct)));
+	assertPhases(McElieceInstrumentation.OP_DECRYPT, new int[] {
+		McElieceInstrumentation.PHASE_ENCODE,
+		McElieceInstrumentation.PHASE_PERMUTATION,
+		McElieceInstrumentation.PHASE_SYNDROME,
+		McElieceInstrumentation.PHASE_DECODE,
+		McElieceInstrumentation.PHASE_ROOT_FINDING,
+		McElieceInstrumentation.PHASE_UNSCRAMBLE,
+		McElieceInstrumentation.PHASE_OUTPUT });
+    }
+
+    public void testKobaraImai() throws Exception {
+	McElieceCCA2KeyPairGenerator kpg = new McElieceCCA2KeyPairGenerator();
+	kpg.initialize(new ECCKeyGenParameterSpec(), new DefaultPRNG());
+	KeyPair keyPair = kpg.genKeyPair();
+	McElieceKobaraImaiCipher cipher = new McElieceKobaraImaiCipher();
+
+	McElieceInstrumentation.setListener(recorder);
+	cipher.initEncrypt(keyPair.getPublic(), new DefaultPRNG());
+	byte[] ct = cipher.doFinal(MESSAGE);
+	assertPhases(McElieceInstrumentation.OP_ENCRYPT, new int[] {
+		McElieceInstrumentation.PHASE_ENCODE,
+		McElieceInstrumentation.PHASE_PRNG,
+		McElieceInstrumentation.PHASE_HASH,
+		McElieceInstrumentation.PHASE_ERROR_VECTOR,
+		McElieceInstrumentation.PHASE_MULTIPLY,
+		McElieceInstrumentation.PHASE_OUTPUT });
+
+	recorder.clear();
+	cipher.initDecrypt(keyPair.getPrivate());
+	assertTrue(Arrays.equals(MESSAGE, cipher.doFinal(ct)));
+	assertPhases(McElieceInstrumentation.OP_DECRYPT, new int[] {
+		McElieceInstrumentation.PHASE_ENCODE,
+		McElieceInstrumentation.PHASE_PERMUTATION,
+		McElieceInstrumentation.PHASE_SYNDROME,
+		McElieceInstrumentation.PHASE_DECODE,
+		McElieceInstrumentation.PHASE_ROOT_FINDING,
+		McElieceInstrumentation.PHASE_UNSCRAMBLE,
+		McElieceInstrumentation.PHASE_OUTPUT,
+		McElieceInstrumentation.PHASE_HASH,
+		McElieceInstrumentation.PHASE_PRNG });
+    }
+
+    private void assertPhases(int operation, int[] expected) {
+	StringBuffer exp = new StringBuffer();
+	for (int i = 0; i < expected.length; i++) {
+	    exp.append(McElieceInstrumentation.getOperationName(operation))
+		    .append('/').append(
+			    McElieceInstrumentation.getPhaseName(expected[i]))
+		    .append(' ');
+	}
+	assertEquals(exp.toString(), recorder.toString());
+    }
+
+    /**
+     * A listener recording the reported operations and phases.
+     */
+    private static class Recorder implements McEliecePhaseListener {
+
+	private final Vector events = new Vector();
+
+	public synchronized void phaseCompleted(int operation, int phase,
+		long nanos) {
+	    assertTrue(nanos >= 0);
+	    events.addElement(McElieceInstrumentation
+		    .getOperationName(operation)
+		    + "/" + McElieceInstrumentation.getPhaseName(phase));
+	}
+
+	synchronized void clear() {
+	    events.removeAllElements();
+	}
+
+	public synchronized String toString() {
+	    StringBuffer result = new StringBuffer();
+	    for (int i = 0; i < events.size(); i++) {
+		result.append(events.elementAt(i)).append(' ');
+	    }
+	    return result.toString();
+	}
+
+    }
+
+}
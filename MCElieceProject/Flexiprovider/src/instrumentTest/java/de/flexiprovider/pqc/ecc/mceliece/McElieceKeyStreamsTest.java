@@ -0,0 +1,98 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.flexiprovider.api.exceptions.InvalidKeySpecException;
+import de.flexiprovider.api.keys.PublicKey;
+import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
+import de.flexiprovider.common.util.LittleEndianConversions;
+
+/**
+ * Tests reading public keys with {@link McElieceKeyStreams}, in particular
+ * the rejection of encoded matrices whose header does not match their length
+ * and of oversized AlgorithmIdentifier lengths.
+ */
+public class McElieceKeyStreamsTest extends TestCase {
+
+    private byte[] encoded;
+
+    // the offset of the encoded generator matrix in encoded
+    private int matrixOff;
+
+    protected void setUp() throws Exception {
+	Random rand = new Random(17);
+	int[][] rows = new int[20][2];
+	for (int i = 0; i < rows.length; i++) {
+	    rows[i][0] = rand.nextInt();
+	    rows[i][1] = rand.nextInt();
+	}
+	GF2Matrix g = new GF2Matrix(44, rows);
+	PublicKey key = new McEliecePublicKey(64, 4, g);
+
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	McElieceKeyStreams.writePublicKey(key, out);
+	encoded = out.toByteArray();
+	matrixOff = encoded.length - g.getEncodedLength();
+	assertTrue(Arrays.equals(g.getEncoded(), copy(encoded, matrixOff,
+		encoded.length)));
+    }
+
+    public void testReadPublicKey() throws Exception {
+	PublicKey key = McElieceKeyStreams
+		.readPublicKey(new ByteArrayInputStream(encoded));
+	assertTrue(Arrays.equals(encoded, key.getEncoded()));
+    }
+
+    public void testHugeHeader() throws Exception {
+	// a header demanding a matrix of 2^31-1 by 2^31-1 bits
+	LittleEndianConversions.I2OSP(Integer.MAX_VALUE, encoded, matrixOff);
+	LittleEndianConversions.I2OSP(Integer.MAX_VALUE, encoded,
+		matrixOff + 4);
+	assertRejected();
+    }
+
+    public void testInconsistentHeader() throws Exception {
+	// one more row than contained in the encoding
+	int numRows = LittleEndianConversions.OS2IP(encoded, matrixOff);
+	LittleEndianConversions.I2OSP(numRows + 1, encoded, matrixOff);
+	assertRejected();
+    }
+
+    public void testNegativeHeader() throws Exception {
+	LittleEndianConversions.I2OSP(-1, encoded, matrixOff);
+	assertRejected();
+    }
+
+    public void testHugeAlgorithmIdentifier() throws Exception {
+	// SEQUENCE { SEQUENCE of length 2^31-1 ... } without any contents
+	byte[] header = { 0x30, (byte) 0x84, 0x7f, (byte) 0xff, (byte) 0xff,
+		(byte) 0xff, 0x30, (byte) 0x84, 0x7f, (byte) 0xff,
+		(byte) 0xff, (byte) 0xf0 };
+	try {
+	    McElieceKeyStreams.readPublicKey(new ByteArrayInputStream(header));
+	    fail("huge AlgorithmIdentifier length accepted");
+	} catch (InvalidKeySpecException expected) {
+	    // expected
+	}
+    }
+
+    private void assertRejected() throws Exception {
+	try {
+	    McElieceKeyStreams.readPublicKey(new ByteArrayInputStream(encoded));
+	    fail("malicious matrix header accepted");
+	} catch (InvalidKeySpecException expected) {
+	    // expected
+	}
+    }
+
+    private static byte[] copy(byte[] a, int from, int to) {
+	byte[] result = new byte[to - from];
+	System.arraycopy(a, from, result, 0, result.length);
+	return result;
+    }
+
+}
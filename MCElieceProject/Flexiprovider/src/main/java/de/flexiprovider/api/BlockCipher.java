@@ -61,10 +61,17 @@ public abstract class BlockCipher extends Cipher {
     private AlgorithmParameterSpec paramSpec;
 
     /**
-     * This buffer holds the outsize left by an update operation
+     * This buffer holds the outsize left by an update operation. It is
+     * allocated once per initialization and has the size of a mode block
+     * (plus the tag length for authenticated modes).
      */
     private byte[] buffer = null;
 
+    /**
+     * The number of bytes held in the buffer
+     */
+    private int bufLen;
+
     /**
      * the block size of the mode
      */
@@ -121,7 +128,7 @@ public abstract class BlockCipher extends Cipher {
 	initModeAndPadding();
 	opMode = opmode;
 
-	buffer = new byte[0];
+	bufLen = 0;
 	ModeParameterSpec modeParams;
 	AlgorithmParameterSpec cipherParams;
 
@@ -172,6 +179,7 @@ public abstract class BlockCipher extends Cipher {
 	}
 	modeBlockSize = mode.blockSize;
 	paddingScheme.setBlockSize(modeBlockSize);
+	buffer = new byte[modeBlockSize + mode.getTagLength()];
 
 	initialized = true;
     }
@@ -272,7 +280,14 @@ public abstract class BlockCipher extends Cipher {
 	if (!initialized) {
 	    return -1;
 	}
-	final int newInLen = inLen + (buffer == null ? 0 : buffer.length);
+	final int newInLen = inLen + bufLen;
+	int tagLen = mode.getTagLength();
+	if (tagLen > 0) {
+	    if (opMode == DECRYPT_MODE) {
+		return Math.max(newInLen - tagLen, 0);
+	    }
+	    return newInLen + tagLen;
+	}
 	return newInLen + paddingScheme.padLength(newInLen);
     }
 
@@ -285,12 +300,36 @@ public abstract class BlockCipher extends Cipher {
      * (provided that the underlying cipher implementation uses a default set of
      * parameters or creates new parameters if it needs parameters but was not
      * initialized with any).
+     * <p>
+     * If the mode has parameters which cannot be described by the IV alone
+     * (see {@link Mode#getModeParameters()}), e.g., the tag length of GCM, the
+     * mode parameters are returned instead of the cipher parameters.
      * 
      * @return the parameters used with this cipher, or null if this cipher does
      *         not use any parameters.
      */
     public final AlgorithmParameterSpec getParameters() {
-	return initialized ? paramSpec : null;
+	if (!initialized) {
+	    return null;
+	}
+	ModeParameterSpec modeParams = mode.getModeParameters();
+	return modeParams != null ? modeParams : paramSpec;
+    }
+
+    /**
+     * Return the name of the parameters returned by {@link #getParameters()}.
+     * This is the name of the mode if the mode parameters are returned (the
+     * name of the mode class, see {@link Mode}), and the name of the cipher
+     * otherwise.
+     * 
+     * @return the name of the parameters
+     */
+    protected final String getParametersName() {
+	if (initialized && mode.getModeParameters() != null) {
+	    String modeName = mode.getClass().getName();
+	    return modeName.substring(modeName.lastIndexOf('.') + 1);
+	}
+	return getName();
     }
 
     /**
@@ -452,7 +491,7 @@ public abstract class BlockCipher extends Cipher {
 	initModeAndPadding();
 	opMode = ENCRYPT_MODE;
 
-	buffer = new byte[0];
+	bufLen = 0;
 	paramSpec = cipherParams;
 
 	if (!(key instanceof SecretKey)) {
@@ -462,6 +501,7 @@ public abstract class BlockCipher extends Cipher {
 	mode.initEncrypt((SecretKey) key, modeParams, cipherParams);
 	modeBlockSize = mode.blockSize;
 	paddingScheme.setBlockSize(modeBlockSize);
+	buffer = new byte[modeBlockSize + mode.getTagLength()];
 
 	initialized = true;
     }
@@ -581,7 +621,7 @@ public abstract class BlockCipher extends Cipher {
 	initModeAndPadding();
 	opMode = DECRYPT_MODE;
 
-	buffer = new byte[0];
+	bufLen = 0;
 	paramSpec = cipherParams;
 
 	if (!(key instanceof SecretKey)) {
@@ -591,6 +631,7 @@ public abstract class BlockCipher extends Cipher {
 	mode.initDecrypt((SecretKey) key, modeParams, cipherParams);
 	modeBlockSize = mode.blockSize;
 	paddingScheme.setBlockSize(modeBlockSize);
+	buffer = new byte[modeBlockSize + mode.getTagLength()];
 
 	initialized = true;
     }
@@ -615,50 +656,8 @@ public abstract class BlockCipher extends Cipher {
 	    return new byte[0];
 	}
 
-	// concatenate buffer and input (only if buffer is not empty)
-	int bufLen = buffer.length;
-	int newInLen, newInOff;
-	byte[] newInput;
-	if (bufLen == 0) {
-	    newInOff = inOff;
-	    newInLen = inLen;
-	    newInput = input;
-	} else {
-	    newInLen = bufLen + inLen;
-	    newInOff = 0;
-	    newInput = new byte[newInLen];
-	    System.arraycopy(buffer, 0, newInput, 0, bufLen);
-	    System.arraycopy(input, inOff, newInput, bufLen, inLen);
-	}
-
-	// compute number of blocks to process and remaining bytes
-	int numBlocks = newInLen / modeBlockSize;
-	int numBytes = numBlocks * modeBlockSize;
-	int remaining = newInLen - numBytes;
-	if (opMode == DECRYPT_MODE && remaining == 0) {
-	    remaining = modeBlockSize;
-	    numBlocks--;
-	    numBytes -= modeBlockSize;
-	}
-
-	byte[] output = new byte[numBytes];
-	int outOff = 0;
-
-	// process whole blocks
-	for (int block = 0; block < numBlocks; block++) {
-	    if (opMode == ENCRYPT_MODE) {
-		mode.nextChunkEncrypt(newInput, newInOff, output, outOff);
-	    } else if (opMode == DECRYPT_MODE) {
-		mode.nextChunkDecrypt(newInput, newInOff, output, outOff);
-	    }
-	    newInOff += modeBlockSize;
-	    outOff += modeBlockSize;
-	}
-
-	// copy unprocessed bytes to buffer
-	buffer = new byte[remaining];
-	System.arraycopy(newInput, newInOff, buffer, 0, remaining);
-
+	byte[] output = new byte[getUpdateOutputSize(inLen)];
+	processUpdate(input, inOff, inLen, output, 0);
 	return output;
     }
 
@@ -688,22 +687,126 @@ public abstract class BlockCipher extends Cipher {
 	    return 0;
 	}
 
-	// compute number of bytes to process
-	int newInLen = buffer.length + inLen;
+	if (output.length - outOff < getUpdateOutputSize(inLen)) {
+	    throw new ShortBufferException("output");
+	}
+
+	return processUpdate(input, inOff, inLen, output, outOff);
+    }
+
+    /**
+     * Compute the number of bytes output by an update operation with the
+     * given input length. During decryption, the last block is always kept in
+     * the buffer since it might contain padding. For authenticated modes, the
+     * bytes which might belong to the tag are kept instead.
+     * 
+     * @param inLen
+     *                the input length
+     * @return the output length
+     */
+    private int getUpdateOutputSize(int inLen) {
+	int newInLen = bufLen + inLen;
+	int tagLen = mode.getTagLength();
+	if (tagLen > 0 && opMode == DECRYPT_MODE) {
+	    int avail = newInLen - tagLen;
+	    return avail <= 0 ? 0 : avail - avail % modeBlockSize;
+	}
 	int remaining = newInLen % modeBlockSize;
 	if (opMode == DECRYPT_MODE && remaining == 0) {
 	    remaining = modeBlockSize;
 	}
-	int numBytes = newInLen - remaining;
+	return newInLen - remaining;
+    }
 
-	if (output.length - outOff < numBytes) {
-	    throw new ShortBufferException("output");
+    /**
+     * Process the buffered bytes and the given input. First, the buffered
+     * block is completed and processed. Then, all whole blocks are passed
+     * directly from the input to the mode in one call. The remaining bytes
+     * are stored in the buffer. The output buffer has to be large enough (see
+     * {@link #getUpdateOutputSize(int)}).
+     * 
+     * @param input
+     *                the input buffer
+     * @param inOff
+     *                the offset where the input starts
+     * @param inLen
+     *                the input length
+     * @param output
+     *                the output buffer
+     * @param outOff
+     *                the offset where the result is stored
+     * @return the length of the output
+     */
+    private int processUpdate(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) {
+
+	int numBytes = getUpdateOutputSize(inLen);
+
+	// the modes process blocks in place, but input and output must not
+	// overlap at different offsets
+	if (input == output && numBytes > 0 && (bufLen > 0 || inOff != outOff)) {
+	    byte[] copy = new byte[inLen];
+	    System.arraycopy(input, inOff, copy, 0, inLen);
+	    input = copy;
+	    inOff = 0;
 	}
 
-	byte[] update = update(input, inOff, inLen);
-	System.arraycopy(update, 0, output, outOff, update.length);
+	int numBlocks = numBytes / modeBlockSize;
+
+	// complete and process the buffered blocks (the buffer may hold more
+	// than one block during decryption with an authenticated mode)
+	while (bufLen > 0 && numBlocks > 0) {
+	    if (bufLen < modeBlockSize) {
+		int fill = modeBlockSize - bufLen;
+		System.arraycopy(input, inOff, buffer, bufLen, fill);
+		bufLen = modeBlockSize;
+		inOff += fill;
+		inLen -= fill;
+	    }
+	    processBlocks(buffer, 0, output, outOff, 1);
+	    bufLen -= modeBlockSize;
+	    System.arraycopy(buffer, modeBlockSize, buffer, 0, bufLen);
+	    outOff += modeBlockSize;
+	    numBlocks--;
+	}
+
+	// process whole blocks
+	if (numBlocks > 0) {
+	    processBlocks(input, inOff, output, outOff, numBlocks);
+	    int len = numBlocks * modeBlockSize;
+	    inOff += len;
+	    inLen -= len;
+	}
+
+	// copy unprocessed bytes to buffer
+	System.arraycopy(input, inOff, buffer, bufLen, inLen);
+	bufLen += inLen;
 
-	return update.length;
+	return numBytes;
+    }
+
+    /**
+     * Pass whole blocks to the mode (depending on how this cipher was
+     * initialized).
+     * 
+     * @param input
+     *                the input buffer
+     * @param inOff
+     *                the offset where the input starts
+     * @param output
+     *                the output buffer
+     * @param outOff
+     *                the offset where the result is stored
+     * @param numBlocks
+     *                the number of mode blocks
+     */
+    private void processBlocks(byte[] input, int inOff, byte[] output,
+	    int outOff, int numBlocks) {
+	if (opMode == ENCRYPT_MODE) {
+	    mode.processBlocksEncrypt(input, inOff, output, outOff, numBlocks);
+	} else if (opMode == DECRYPT_MODE) {
+	    mode.processBlocksDecrypt(input, inOff, output, outOff, numBlocks);
+	}
     }
 
     /**
@@ -729,46 +832,98 @@ public abstract class BlockCipher extends Cipher {
 
 	byte[] output = new byte[0];
 
-	if (input == null && buffer == null) {
+	if (!initialized) {
 	    return output;
 	}
 
 	byte[] update = update(input, inOff, inLen);
 	int updLen = update.length;
-	int bufLen = buffer.length;
+
+	int tagLen = mode.getTagLength();
+	if (tagLen > 0) {
+	    return doFinalAuthenticated(update, tagLen);
+	}
 
 	if (opMode == ENCRYPT_MODE) {
 	    int padLen = paddingScheme.padLength(bufLen);
-	    if (padLen == 0) {
-		// FIXME: also need this for CFB!
-		if (!this.mode.getClass().equals(OFB.class))
-		    return update;
+	    // FIXME: also need this for CFB!
+	    if (padLen == 0
+		    && (bufLen == 0 || !this.mode.getClass().equals(OFB.class))) {
+		output = update;
+	    } else {
+		output = new byte[updLen + bufLen + padLen];
+		System.arraycopy(update, 0, output, 0, updLen);
+		System.arraycopy(buffer, 0, output, updLen, bufLen);
+		paddingScheme.pad(output, updLen, bufLen);
+		mode.nextChunkEncrypt(output, updLen, output, updLen);
 	    }
-	    output = new byte[updLen + bufLen + padLen];
-	    System.arraycopy(update, 0, output, 0, updLen);
-	    System.arraycopy(buffer, 0, output, updLen, bufLen);
-	    paddingScheme.pad(output, updLen, bufLen);
-	    mode.nextChunkEncrypt(output, updLen, output, updLen);
 	} else if (opMode == DECRYPT_MODE) {
-	   // if (bufLen != modeBlockSize) {
-	   // FIXME: also need this for CFB!
-	    if (bufLen != modeBlockSize && !this.mode.getClass().equals(OFB.class)) {
+	    // FIXME: also need this for CFB!
+	    if (bufLen != modeBlockSize
+		    && !this.mode.getClass().equals(OFB.class)) {
 		throw new IllegalBlockSizeException(
 			"ciphertext length is not a multiple of block size");
 	    }
-	    mode.nextChunkDecrypt(buffer, 0, buffer, 0);
-	    int padOffset = paddingScheme.unpad(buffer, 0, modeBlockSize);
-	    output = new byte[updLen + padOffset];
-	    System.arraycopy(update, 0, output, 0, updLen);
-	    System.arraycopy(buffer, 0, output, updLen, padOffset);
+	    if (bufLen == 0) {
+		// only possible for OFB
+		output = update;
+	    } else {
+		// the last block (the OFB mode and the unpadding rely on its
+		// exact length)
+		byte[] last = new byte[bufLen];
+		System.arraycopy(buffer, 0, last, 0, bufLen);
+		mode.nextChunkDecrypt(last, 0, last, 0);
+		int padOffset = paddingScheme.unpad(last, 0, modeBlockSize);
+		output = new byte[updLen + padOffset];
+		System.arraycopy(update, 0, output, 0, updLen);
+		System.arraycopy(last, 0, output, updLen, padOffset);
+	    }
 	}
 
-	buffer = null;
+	// prepare the cipher for the next operation with the same key
+	bufLen = 0;
 	mode.reset();
 
 	return output;
     }
 
+    /**
+     * Finish an operation with an authenticated mode. The buffered data is
+     * passed to the mode, which appends (encryption) or verifies and removes
+     * (decryption) the authentication tag. No padding is applied.
+     * 
+     * @param update
+     *                the output of the last update operation
+     * @param tagLen
+     *                the tag length
+     * @return the output of the operation
+     * @throws de.flexiprovider.api.exceptions.BadPaddingException
+     *                 if the ciphertext is too short or the tag is invalid.
+     */
+    private byte[] doFinalAuthenticated(byte[] update, int tagLen)
+	    throws BadPaddingException {
+	int updLen = update.length;
+	byte[] output;
+	try {
+	    if (opMode == ENCRYPT_MODE) {
+		output = new byte[updLen + bufLen + tagLen];
+		System.arraycopy(update, 0, output, 0, updLen);
+		mode.finishEncrypt(buffer, 0, bufLen, output, updLen);
+	    } else {
+		if (bufLen < tagLen) {
+		    throw new BadPaddingException("ciphertext is too short");
+		}
+		output = new byte[updLen + bufLen - tagLen];
+		System.arraycopy(update, 0, output, 0, updLen);
+		mode.finishDecrypt(buffer, 0, bufLen, output, updLen);
+	    }
+	} finally {
+	    bufLen = 0;
+	    mode.reset();
+	}
+	return output;
+    }
+
     /**
      * Finish a multiple-part encryption or decryption operation (depending on
      * how this cipher was initialized).
@@ -885,6 +1040,62 @@ public abstract class BlockCipher extends Cipher {
     protected abstract void singleBlockDecrypt(byte[] input, int inOff,
 	    byte[] output, int outOff);
 
+    /**
+     * Encrypt consecutive blocks of data. The default implementation calls
+     * {@link #singleBlockEncrypt(byte[], int, byte[], int)} for each block.
+     * Block ciphers may override this method to process several blocks with
+     * the key schedule held in local variables. Input and output may be the
+     * same array at the same offset.
+     * 
+     * @param input
+     *                array of bytes which contains the plaintext blocks
+     * @param inOff
+     *                index in array in, where the plaintext starts
+     * @param output
+     *                array of bytes which will contain the ciphertext blocks
+     * @param outOff
+     *                index in array out, where the ciphertext will start
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected void processBlocksEncrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	int blockSize = getCipherBlockSize();
+	for (int i = 0; i < numBlocks; i++) {
+	    singleBlockEncrypt(input, inOff, output, outOff);
+	    inOff += blockSize;
+	    outOff += blockSize;
+	}
+    }
+
+    /**
+     * Decrypt consecutive blocks of data. The default implementation calls
+     * {@link #singleBlockDecrypt(byte[], int, byte[], int)} for each block.
+     * Block ciphers may override this method to process several blocks with
+     * the key schedule held in local variables. Input and output may be the
+     * same array at the same offset.
+     * 
+     * @param input
+     *                array of bytes which contains the ciphertext blocks
+     * @param inOff
+     *                index in array in, where the ciphertext starts
+     * @param output
+     *                array of bytes which will contain the plaintext blocks
+     * @param outOff
+     *                index in array out, where the plaintext will start
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	int blockSize = getCipherBlockSize();
+	for (int i = 0; i < numBlocks; i++) {
+	    singleBlockDecrypt(input, inOff, output, outOff);
+	    inOff += blockSize;
+	    outOff += blockSize;
+	}
+    }
+
     /**
      * Check if mode and padding are set. If not, instantiate the default ones.
      */
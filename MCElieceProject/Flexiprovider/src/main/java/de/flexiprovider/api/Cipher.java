@@ -1,5 +1,6 @@
 package de.flexiprovider.api;
 
+import java.nio.ByteBuffer;
 import java.security.spec.InvalidParameterSpecException;
 
 import de.flexiprovider.api.exceptions.BadPaddingException;
@@ -14,10 +15,22 @@ import de.flexiprovider.api.exceptions.ShortBufferException;
 import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
 import de.flexiprovider.api.parameters.AlgorithmParameters;
+import de.flexiprovider.common.util.ByteBufferInput;
 import de.flexiprovider.common.util.JavaSecureRandomWrapper;
 
 public abstract class Cipher extends javax.crypto.CipherSpi {
 
+    // the empty input of a final operation without remaining input
+    private static final byte[] EMPTY = new byte[0];
+
+    // the helper for input buffers (allocated on demand, see
+    // update(ByteBuffer, ByteBuffer))
+    private ByteBufferInput bufferInput;
+
+    // the staging array for output buffers without an accessible array
+    // (allocated on demand and enlarged if necessary)
+    private byte[] outStaging;
+
     /**
      * Constant specifying encrypt mode.
      */
@@ -331,7 +344,7 @@ public abstract class Cipher extends javax.crypto.CipherSpi {
 	    }
 	}
 
-	String algName = getName();
+	String algName = getParametersName();
 	AlgorithmParameters params;
 	try {
 	    params = Registry.getAlgParams(algName);
@@ -432,6 +445,50 @@ public abstract class Cipher extends javax.crypto.CipherSpi {
 	return update(input, inOff, inLen, output, outOff);
     }
 
+    /**
+     * Perform the next step of a multi-step en-/decryption operation. The data
+     * to be processed are the remaining bytes of the input buffer. The result
+     * is stored in the output buffer.
+     * 
+     * @param input
+     *                the input buffer
+     * @param output
+     *                the output buffer
+     * @return the number of bytes stored in the output buffer
+     * @throws javax.crypto.ShortBufferException
+     *                 if the output buffer is too short to hold the output.
+     */
+    protected final int engineUpdate(ByteBuffer input, ByteBuffer output)
+	    throws javax.crypto.ShortBufferException {
+	return update(input, output);
+    }
+
+    /**
+     * Perform the last step of a multi-step en-/decryption operation or a
+     * single-step en-/decryption operation. The data to be processed are the
+     * remaining bytes of the input buffer and any remaining buffered data. The
+     * result is stored in the output buffer.
+     * 
+     * @param input
+     *                the input buffer
+     * @param output
+     *                the output buffer
+     * @return the number of bytes stored in the output buffer
+     * @throws javax.crypto.ShortBufferException
+     *                 if the output buffer is too short to hold the output.
+     * @throws javax.crypto.IllegalBlockSizeException
+     *                 if the ciphertext length is not a multiple of the
+     *                 blocklength.
+     * @throws javax.crypto.BadPaddingException
+     *                 if unpadding is not possible.
+     */
+    protected final int engineDoFinal(ByteBuffer input, ByteBuffer output)
+	    throws javax.crypto.ShortBufferException,
+	    javax.crypto.IllegalBlockSizeException,
+	    javax.crypto.BadPaddingException {
+	return doFinal(input, output);
+    }
+
     // ****************************************************
     // FlexiAPI methods
     // ****************************************************
@@ -513,6 +570,18 @@ public abstract class Cipher extends javax.crypto.CipherSpi {
      */
     public abstract String getName();
 
+    /**
+     * Return the name of the parameters returned by {@link #getParameters()},
+     * which is used to find the parameters class for
+     * {@link #engineGetParameters()}. The default implementation returns the
+     * name of the cipher.
+     * 
+     * @return the name of the parameters
+     */
+    protected String getParametersName() {
+	return getName();
+    }
+
     /**
      * @return the block size (in bytes), or 0 if the underlying algorithm is
      *         not a block cipher
@@ -726,4 +795,134 @@ public abstract class Cipher extends javax.crypto.CipherSpi {
 	    byte[] output, int outOff) throws ShortBufferException,
 	    IllegalBlockSizeException, BadPaddingException;
 
+    /**
+     * Continue a multiple-part encryption or decryption operation (depending on
+     * how this cipher was initialized), processing the remaining bytes of the
+     * input buffer. Upon return, the position of the input buffer is equal to
+     * its limit, and the position of the output buffer is advanced by the
+     * number of stored bytes.
+     * <p>
+     * If both buffers are backed by accessible arrays, the data is processed
+     * directly from the input array into the output array. Otherwise (e.g.,
+     * for direct buffers), the data is copied and processed in portions via
+     * staging arrays which are allocated once per instance (see
+     * {@link ByteBufferInput}).
+     * 
+     * @param input
+     *                the input buffer
+     * @param output
+     *                the output buffer
+     * @return the number of bytes stored in the output buffer
+     * @throws de.flexiprovider.api.exceptions.ShortBufferException
+     *                 if the output buffer is too small to hold the result.
+     */
+    public int update(ByteBuffer input, ByteBuffer output)
+	    throws ShortBufferException {
+	try {
+	    return process(input, output, false);
+	} catch (IllegalBlockSizeException ibse) {
+	    // only thrown by doFinal()
+	    throw new RuntimeException("internal error");
+	} catch (BadPaddingException bpe) {
+	    // only thrown by doFinal()
+	    throw new RuntimeException("internal error");
+	}
+    }
+
+    /**
+     * Finish a multiple-part encryption or decryption operation (depending on
+     * how this cipher was initialized), processing the remaining bytes of the
+     * input buffer. The buffer positions are advanced as described for
+     * {@link #update(ByteBuffer, ByteBuffer)}.
+     * 
+     * @param input
+     *                the input buffer
+     * @param output
+     *                the output buffer
+     * @return the number of bytes stored in the output buffer
+     * @throws de.flexiprovider.api.exceptions.ShortBufferException
+     *                 if the output buffer is too small to hold the result.
+     * @throws de.flexiprovider.api.exceptions.IllegalBlockSizeException
+     *                 if this cipher is a block cipher and the total input
+     *                 length is not a multiple of the block size (for
+     *                 encryption when no padding is used or for decryption).
+     * @throws de.flexiprovider.api.exceptions.BadPaddingException
+     *                 if this cipher is a block cipher and unpadding fails.
+     */
+    public int doFinal(ByteBuffer input, ByteBuffer output)
+	    throws ShortBufferException, IllegalBlockSizeException,
+	    BadPaddingException {
+	return process(input, output, true);
+    }
+
+    /**
+     * Process the remaining bytes of the input buffer, either directly on the
+     * backing arrays or in portions via temporary arrays.
+     */
+    private int process(ByteBuffer input, ByteBuffer output, boolean last)
+	    throws ShortBufferException, IllegalBlockSizeException,
+	    BadPaddingException {
+	if (output.remaining() < getOutputSize(input.remaining())) {
+	    throw new ShortBufferException("output buffer too short");
+	}
+
+	if (bufferInput == null) {
+	    bufferInput = new ByteBufferInput();
+	}
+	ByteBufferInput in = bufferInput;
+	if (output.hasArray()) {
+	    in.start(input);
+	} else {
+	    // bound the size of the output staging array
+	    in.start(input, ByteBufferInput.CHUNK_SIZE);
+	}
+	int total = 0;
+	boolean finished = false;
+	while (in.next()) {
+	    finished = last && in.isLast();
+	    total += process(in.array(), in.offset(), in.length(), output,
+		    finished);
+	}
+	if (last && !finished) {
+	    total += process(EMPTY, 0, 0, output, true);
+	}
+	return total;
+    }
+
+    /**
+     * Process a portion of the input, storing the result in the output buffer
+     * and advancing its position.
+     */
+    private int process(byte[] input, int inOff, int inLen, ByteBuffer output,
+	    boolean last) throws ShortBufferException,
+	    IllegalBlockSizeException, BadPaddingException {
+	byte[] out;
+	int outOff;
+	if (output.hasArray()) {
+	    out = output.array();
+	    outOff = output.arrayOffset() + output.position();
+	} else {
+	    int outSize = getOutputSize(inLen);
+	    if (outStaging == null || outStaging.length < outSize) {
+		outStaging = new byte[outSize];
+	    }
+	    out = outStaging;
+	    outOff = 0;
+	}
+
+	int outLen;
+	if (last) {
+	    outLen = doFinal(input, inOff, inLen, out, outOff);
+	} else {
+	    outLen = update(input, inOff, inLen, out, outOff);
+	}
+
+	if (output.hasArray()) {
+	    output.position(output.position() + outLen);
+	} else {
+	    output.put(out, 0, outLen);
+	}
+	return outLen;
+    }
+
 }
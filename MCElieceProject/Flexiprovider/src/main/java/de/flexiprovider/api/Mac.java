@@ -1,10 +1,13 @@
 package de.flexiprovider.api;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
 import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.exceptions.ShortBufferException;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.ByteBufferInput;
 
 /**
  * This class implements a "message authentication code" (MAC), a method to
@@ -30,6 +33,9 @@ import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
  */
 public abstract class Mac extends javax.crypto.MacSpi {
 
+    // the helper for buffers (allocated on demand, see update(ByteBuffer))
+    private ByteBufferInput bufferInput;
+
     // ****************************************************
     // JCA adapter methods
     // ****************************************************
@@ -60,6 +66,10 @@ public abstract class Mac extends javax.crypto.MacSpi {
 	update(input, offset, len);
     }
 
+    protected final void engineUpdate(ByteBuffer input) {
+	update(input);
+    }
+
     protected final byte[] engineDoFinal() {
 	return doFinal();
     }
@@ -145,6 +155,30 @@ public abstract class Mac extends javax.crypto.MacSpi {
      */
     public abstract void update(byte[] input, int offset, int length);
 
+    /**
+     * Update the computation with the remaining bytes of the given buffer.
+     * Upon return, the position of the buffer is equal to its limit.
+     * <p>
+     * If the buffer is backed by an accessible array, the MAC is computed
+     * directly over this array. Otherwise (e.g., for direct buffers), the
+     * bytes are copied and passed to {@link #update(byte[], int, int)} in
+     * portions via a staging array which is allocated once per instance (see
+     * {@link ByteBufferInput}).
+     * 
+     * @param input
+     *                The next bytes.
+     */
+    public void update(ByteBuffer input) {
+	if (bufferInput == null) {
+	    bufferInput = new ByteBufferInput();
+	}
+	ByteBufferInput in = bufferInput;
+	in.start(input);
+	while (in.next()) {
+	    update(in.array(), in.offset(), in.length());
+	}
+    }
+
     /**
      * Finishes the computation of a MAC and returns the digest.
      * 
@@ -1,9 +1,36 @@
 package de.flexiprovider.api;
 
-import de.flexiprovider.api.exceptions.DigestException;
+import java.nio.ByteBuffer;
 
+import de.flexiprovider.api.exceptions.DigestException;
+import de.flexiprovider.common.util.ByteBufferInput;
+
+/**
+ * This class is the base class of all message digests. Digest instances keep
+ * their intermediate state in unsynchronized fields and must not be used by
+ * several threads concurrently. For the rare case of a digest shared between
+ * threads, wrap it in a {@link de.flexiprovider.core.md.SynchronizedDigest}.
+ */
 public abstract class MessageDigest extends java.security.MessageDigestSpi {
 
+    // the helper for buffers (allocated on demand, see update(ByteBuffer))
+    private ByteBufferInput bufferInput;
+
+    /**
+     * Return a copy of this digest. Subclasses implementing {@link Cloneable}
+     * have to copy their mutable state. The helper for buffers is not shared
+     * with the copy.
+     * 
+     * @return the copy
+     * @throws CloneNotSupportedException
+     *                 if the digest does not implement {@link Cloneable}.
+     */
+    public Object clone() throws CloneNotSupportedException {
+	MessageDigest clone = (MessageDigest) super.clone();
+	clone.bufferInput = null;
+	return clone;
+    }
+
     // ****************************************************
     // JCA adapter methods
     // ****************************************************
@@ -20,6 +47,10 @@ public abstract class MessageDigest extends java.security.MessageDigestSpi {
 	update(input, offset, len);
     }
 
+    protected final void engineUpdate(ByteBuffer input) {
+	update(input);
+    }
+
     protected final byte[] engineDigest() {
 	return digest();
     }
@@ -72,6 +103,30 @@ public abstract class MessageDigest extends java.security.MessageDigestSpi {
      */
     public abstract void update(byte[] input, int offset, int len);
 
+    /**
+     * Update the digest using the remaining bytes of the given buffer. Upon
+     * return, the position of the buffer is equal to its limit.
+     * <p>
+     * If the buffer is backed by an accessible array, the digest is computed
+     * directly over this array. Otherwise (e.g., for direct buffers), the
+     * bytes are copied and passed to {@link #update(byte[], int, int)} in
+     * portions via a staging array which is allocated once per instance (see
+     * {@link ByteBufferInput}).
+     * 
+     * @param input
+     *                the buffer to use for the update
+     */
+    public void update(ByteBuffer input) {
+	if (bufferInput == null) {
+	    bufferInput = new ByteBufferInput();
+	}
+	ByteBufferInput in = bufferInput;
+	in.start(input);
+	while (in.next()) {
+	    update(in.array(), in.offset(), in.length());
+	}
+    }
+
     /**
      * Complete the hash computation by performing final operations such as
      * padding. Once {@link #digest()} has been called, the engine should be
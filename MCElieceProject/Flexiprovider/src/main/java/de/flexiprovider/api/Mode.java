@@ -9,6 +9,10 @@
 
 package de.flexiprovider.api;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import de.flexiprovider.api.exceptions.BadPaddingException;
 import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
 import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.keys.SecretKey;
@@ -136,12 +140,139 @@ public abstract class Mode {
     protected abstract void nextChunkDecrypt(final byte[] input,
 	    final int inOff, byte[] output, final int outOff);
 
+    /**
+     * Encrypt consecutive data blocks. The default implementation calls
+     * {@link #nextChunkEncrypt(byte[], int, byte[], int)} for each block. Modes
+     * whose blocks can be processed independently should override this method
+     * and pass all blocks to the cipher engine at once. Input and output may be
+     * the same array at the same offset.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks (of the mode block size)
+     */
+    protected void processBlocksEncrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	for (int i = 0; i < numBlocks; i++) {
+	    nextChunkEncrypt(input, inOff, output, outOff);
+	    inOff += blockSize;
+	    outOff += blockSize;
+	}
+    }
+
+    /**
+     * Decrypt consecutive data blocks. The default implementation calls
+     * {@link #nextChunkDecrypt(byte[], int, byte[], int)} for each block. Modes
+     * whose blocks can be processed independently should override this method
+     * and pass all blocks to the cipher engine at once. Input and output may be
+     * the same array at the same offset.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks (of the mode block size)
+     */
+    protected void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	for (int i = 0; i < numBlocks; i++) {
+	    nextChunkDecrypt(input, inOff, output, outOff);
+	    inOff += blockSize;
+	    outOff += blockSize;
+	}
+    }
+
     /**
      * reset() is called after doFinal() in order to prepare the mode for the
      * next operation.
      */
     protected abstract void reset();
 
+    /**
+     * Return the length of the authentication tag appended to the ciphertext
+     * by authenticated modes. For these modes, the final data is processed by
+     * {@link #finishEncrypt(byte[], int, int, byte[], int)} and
+     * {@link #finishDecrypt(byte[], int, int, byte[], int)} instead of being
+     * padded, and the tag is held back from the update operations during
+     * decryption. The default implementation returns <tt>0</tt>
+     * (unauthenticated mode).
+     * 
+     * @return the tag length in bytes
+     */
+    protected int getTagLength() {
+	return 0;
+    }
+
+    /**
+     * Return the parameters of this mode if they cannot be described by the IV
+     * alone, e.g., the tag length of an authenticated mode. The parameters are
+     * returned by {@link BlockCipher#getParameters()} and encoded by the
+     * parameters class registered under the name of the mode. The default
+     * implementation returns <tt>null</tt>.
+     * 
+     * @return the mode parameters, or <tt>null</tt> if the IV describes the
+     *         mode completely
+     */
+    protected ModeParameterSpec getModeParameters() {
+	return null;
+    }
+
+    /**
+     * Encrypt the final (possibly incomplete) data block and append the
+     * authentication tag. Only called for authenticated modes.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param inLen
+     *                the length of the final data (less than the block size)
+     * @param output
+     *                output data buffer (<tt>inLen</tt> plus tag length
+     *                bytes)
+     * @param outOff
+     *                output data offset
+     */
+    protected void finishEncrypt(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) {
+	throw new RuntimeException("not an authenticated mode");
+    }
+
+    /**
+     * Verify the authentication tag and decrypt the final (possibly
+     * incomplete) data block. Only called for authenticated modes.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param inLen
+     *                the length of the final data including the tag
+     * @param output
+     *                output data buffer (<tt>inLen</tt> minus tag length
+     *                bytes)
+     * @param outOff
+     *                output data offset
+     * @throws BadPaddingException
+     *                 if the authentication tag is invalid.
+     */
+    protected void finishDecrypt(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) throws BadPaddingException {
+	throw new RuntimeException("not an authenticated mode");
+    }
+
     /*---------------------------------------------------
      * Adapter classes to BlockCipher
      ---------------------------------------------------*/
@@ -233,4 +364,173 @@ public abstract class Mode {
 	blockCipher.singleBlockDecrypt(input, inOff, output, outOff);
     }
 
+    /**
+     * Encrypt consecutive blocks with the cipher engine.
+     * 
+     * @param input
+     *                array of bytes which contains the plaintext to be
+     *                encrypted
+     * @param inOff
+     *                index in array in, where the plaintext starts
+     * @param output
+     *                array of bytes which will contain the ciphertext
+     * @param outOff
+     *                index in array out, where the ciphertext will start
+     * @param numBlocks
+     *                the number of cipher blocks
+     */
+    protected final void multiBlockEncrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	blockCipher.processBlocksEncrypt(input, inOff, output, outOff,
+		numBlocks);
+    }
+
+    /**
+     * Decrypt consecutive blocks with the cipher engine.
+     * 
+     * @param input
+     *                array of bytes which contains the ciphertext to be
+     *                decrypted
+     * @param inOff
+     *                index in array in, where the ciphertext starts
+     * @param output
+     *                array of bytes which will contain the plaintext
+     * @param outOff
+     *                index in array out, where the plaintext will start
+     * @param numBlocks
+     *                the number of cipher blocks
+     */
+    protected final void multiBlockDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	blockCipher.processBlocksDecrypt(input, inOff, output, outOff,
+		numBlocks);
+    }
+
+    /**
+     * Create a new instance of the underlying block cipher and initialize it
+     * for encryption. Modes which spread their work over several threads use
+     * such instances, since block ciphers are not thread-safe.
+     * 
+     * @param key
+     *                the secret key the mode has been initialized with
+     * @param cipherParams
+     *                the parameters the mode has been initialized with
+     * @return the new block cipher (with its own key schedule)
+     * @throws de.flexiprovider.api.exceptions.InvalidKeyException
+     *                 if the key is inappropriate for the cipher.
+     * @throws de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for the cipher.
+     */
+    protected final BlockCipher createCipherEncrypt(SecretKey key,
+	    AlgorithmParameterSpec cipherParams) throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	BlockCipher cipher = newCipherInstance();
+	cipher.initCipherEncrypt(key, cipherParams);
+	return cipher;
+    }
+
+    /**
+     * Encrypt consecutive blocks with a block cipher created via
+     * {@link #createCipherEncrypt(SecretKey, AlgorithmParameterSpec)}.
+     * 
+     * @param cipher
+     *                the block cipher
+     * @param input
+     *                array of bytes which contains the plaintext to be
+     *                encrypted
+     * @param inOff
+     *                index in array in, where the plaintext starts
+     * @param output
+     *                array of bytes which will contain the ciphertext
+     * @param outOff
+     *                index in array out, where the ciphertext will start
+     * @param numBlocks
+     *                the number of cipher blocks
+     */
+    protected static final void multiBlockEncrypt(BlockCipher cipher,
+	    byte[] input, int inOff, byte[] output, int outOff, int numBlocks) {
+	cipher.processBlocksEncrypt(input, inOff, output, outOff, numBlocks);
+    }
+
+    /**
+     * Create a new instance of the underlying block cipher and initialize it
+     * for decryption (see
+     * {@link #createCipherEncrypt(SecretKey, AlgorithmParameterSpec)}).
+     * 
+     * @param key
+     *                the secret key the mode has been initialized with
+     * @param cipherParams
+     *                the parameters the mode has been initialized with
+     * @return the new block cipher (with its own key schedule)
+     * @throws de.flexiprovider.api.exceptions.InvalidKeyException
+     *                 if the key is inappropriate for the cipher.
+     * @throws de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for the cipher.
+     */
+    protected final BlockCipher createCipherDecrypt(SecretKey key,
+	    AlgorithmParameterSpec cipherParams) throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	BlockCipher cipher = newCipherInstance();
+	cipher.initCipherDecrypt(key, cipherParams);
+	return cipher;
+    }
+
+    /**
+     * Decrypt consecutive blocks with a block cipher created via
+     * {@link #createCipherDecrypt(SecretKey, AlgorithmParameterSpec)}.
+     * 
+     * @param cipher
+     *                the block cipher
+     * @param input
+     *                array of bytes which contains the ciphertext to be
+     *                decrypted
+     * @param inOff
+     *                index in array in, where the ciphertext starts
+     * @param output
+     *                array of bytes which will contain the plaintext
+     * @param outOff
+     *                index in array out, where the plaintext will start
+     * @param numBlocks
+     *                the number of cipher blocks
+     */
+    protected static final void multiBlockDecrypt(BlockCipher cipher,
+	    byte[] input, int inOff, byte[] output, int outOff, int numBlocks) {
+	cipher.processBlocksDecrypt(input, inOff, output, outOff, numBlocks);
+    }
+
+    /**
+     * Create a new, uninitialized instance of the underlying block cipher via
+     * its no-argument constructor. Exceptions thrown by the constructor are
+     * rethrown unchanged if they are unchecked; all other failures are
+     * reported as a {@link RuntimeException}.
+     * 
+     * @return the new block cipher
+     */
+    private BlockCipher newCipherInstance() {
+	Class cipherClass = blockCipher.getClass();
+	try {
+	    Constructor constructor = cipherClass.getDeclaredConstructor();
+	    return (BlockCipher) constructor.newInstance();
+	} catch (InvocationTargetException ite) {
+	    Throwable cause = ite.getCause();
+	    if (cause instanceof RuntimeException) {
+		throw (RuntimeException) cause;
+	    }
+	    if (cause instanceof Error) {
+		throw (Error) cause;
+	    }
+	    throw new RuntimeException("cannot instantiate "
+		    + cipherClass.getName() + ": " + cause);
+	} catch (NoSuchMethodException nsme) {
+	    throw new RuntimeException("cannot instantiate "
+		    + cipherClass.getName() + ": no default constructor");
+	} catch (InstantiationException ie) {
+	    throw new RuntimeException("cannot instantiate "
+		    + cipherClass.getName() + ": abstract class");
+	} catch (IllegalAccessException iae) {
+	    throw new RuntimeException("cannot instantiate "
+		    + cipherClass.getName() + ": constructor not accessible");
+	}
+    }
+
 }
@@ -21,6 +21,9 @@ import de.flexiprovider.common.mode.CFB;
 import de.flexiprovider.common.mode.CFBParameterSpec;
 import de.flexiprovider.common.mode.CTR;
 import de.flexiprovider.common.mode.ECB;
+import de.flexiprovider.common.mode.GCM;
+import de.flexiprovider.common.mode.GCMParameterSpec;
+import de.flexiprovider.common.mode.GCMParameters;
 import de.flexiprovider.common.mode.ModeParamGenParameterSpec;
 import de.flexiprovider.common.mode.ModeParameterGenerator;
 import de.flexiprovider.common.mode.ModeParameterSpec;
@@ -30,7 +33,7 @@ import de.flexiprovider.common.mode.OFBParameterSpec;
 import de.flexiprovider.common.padding.NoPadding;
 import de.flexiprovider.common.padding.OneAndZeroesPadding;
 import de.flexiprovider.common.padding.PKCS5Padding;
-import de.flexiprovider.common.util.DefaultPRNG;
+import de.flexiprovider.common.util.ThreadLocalDRBG;
 
 /**
  * This class is responsible for the registration and instantiation of all
@@ -187,6 +190,8 @@ public abstract class Registry {
 	static {
 		add(ALG_PARAM_SPEC, CFBParameterSpec.class, "CFB");
 		add(ALG_PARAM_SPEC, OFBParameterSpec.class, "OFB");
+		add(ALG_PARAM_SPEC, GCMParameterSpec.class, "GCM");
+		add(ALG_PARAMS, GCMParameters.class, "GCM");
 		add(ALG_PARAM_SPEC, ModeParameterSpec.class, new String[] { "Mode",
 				"IV" });
 		add(ALG_PARAMS, ModeParameters.class, new String[] { "Mode", "IV" });
@@ -200,6 +205,7 @@ public abstract class Registry {
 		add(MODE, OFB.class, "OFB");
 		add(MODE, CFB.class, "CFB");
 		add(MODE, CTR.class, "CTR");
+		add(MODE, GCM.class, "GCM");
 
 		add(PADDING_SCHEME, NoPadding.class, "NoPadding");
 		add(PADDING_SCHEME, OneAndZeroesPadding.class, "OneAndZeroesPadding");
@@ -502,12 +508,14 @@ public abstract class Registry {
 	}
 
 	/**
+	 * Return the default secure random. This is a shared Hash_DRBG front end
+	 * with one generator per thread (see {@link ThreadLocalDRBG}), so the
+	 * returned object is cheap to obtain and safe to use from any thread.
+	 * 
 	 * @return the default secure random
-	 * @throws RuntimeException
-	 *             if the default secure random cannot be instantiated.
 	 */
 	public static final SecureRandom getSecureRandom() {
-		return new DefaultPRNG();
+		return ThreadLocalDRBG.getInstance();
 	}
 
 	/**
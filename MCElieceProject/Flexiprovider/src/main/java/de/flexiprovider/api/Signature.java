@@ -8,12 +8,15 @@
  */
 package de.flexiprovider.api;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
 import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.exceptions.SignatureException;
 import de.flexiprovider.api.keys.PrivateKey;
 import de.flexiprovider.api.keys.PublicKey;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.ByteBufferInput;
 import de.flexiprovider.common.util.JavaSecureRandomWrapper;
 
 /**
@@ -30,6 +33,9 @@ import de.flexiprovider.common.util.JavaSecureRandomWrapper;
  */
 public abstract class Signature extends java.security.SignatureSpi {
 
+    // the helper for buffers (allocated on demand, see update(ByteBuffer))
+    private ByteBufferInput bufferInput;
+
     // ****************************************************
     // JCA adapter methods
     // ****************************************************
@@ -96,6 +102,14 @@ public abstract class Signature extends java.security.SignatureSpi {
 	update(b, off, len);
     }
 
+    protected final void engineUpdate(ByteBuffer input) {
+	try {
+	    update(input);
+	} catch (SignatureException se) {
+	    throw new java.security.ProviderException(se.getMessage());
+	}
+    }
+
     protected final byte[] engineSign() throws java.security.SignatureException {
 	return sign();
     }
@@ -206,6 +220,33 @@ public abstract class Signature extends java.security.SignatureSpi {
     public abstract void update(byte[] input, int inOff, int inLen)
 	    throws SignatureException;
 
+    /**
+     * Update the data to be signed or verified using the remaining bytes of
+     * the given buffer. Upon return, the position of the buffer is equal to
+     * its limit.
+     * <p>
+     * If the buffer is backed by an accessible array, the data is processed
+     * directly from this array. Otherwise (e.g., for direct buffers), the
+     * bytes are copied and passed to {@link #update(byte[], int, int)} in
+     * portions via a staging array which is allocated once per instance (see
+     * {@link ByteBufferInput}).
+     * 
+     * @param input
+     *                the data buffer
+     * @throws de.flexiprovider.api.exceptions.SignatureException
+     *                 if the engine is not initialized properly
+     */
+    public void update(ByteBuffer input) throws SignatureException {
+	if (bufferInput == null) {
+	    bufferInput = new ByteBufferInput();
+	}
+	ByteBufferInput in = bufferInput;
+	in.start(input);
+	while (in.next()) {
+	    update(in.array(), in.offset(), in.length());
+	}
+    }
+
     /**
      * Return the signature of all the data updated so far.
      * 
@@ -0,0 +1,157 @@
+package de.flexiprovider.common.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.flexiprovider.api.Cipher;
+
+/**
+ * This class is an input stream which passes the data read from an
+ * underlying input stream through a FlexiProvider {@link Cipher}. The cipher
+ * must be initialized before the stream is created; its
+ * <tt>doFinal()</tt> method is called when the end of the underlying stream
+ * is reached.
+ * <p>
+ * In contrast to <tt>javax.crypto.CipherInputStream</tt>, the stream reads
+ * chunks of a caller-chosen size into buffers which are allocated once, and
+ * passes them to {@link Cipher#update(byte[], int, int, byte[], int)}, so no
+ * arrays are allocated while data is streamed. In pipelined mode, the next
+ * chunk is read by a background thread while the current chunk is
+ * transformed.
+ * <p>
+ * Exceptions thrown by the cipher (e.g., because of a wrong padding) are
+ * reported as {@link IOException}s.
+ */
+public class CipherInputStream extends FilterInputStream {
+
+    /**
+     * The default size of the input chunks
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // the reader passing the input through the cipher
+    private final CipherReader reader;
+
+    // whether the stream has been closed
+    private boolean closed;
+
+    /**
+     * Constructor. Use chunks of {@link #DEFAULT_BUFFER_SIZE} bytes and no
+     * background thread.
+     * 
+     * @param in
+     *                the underlying input stream
+     * @param cipher
+     *                the initialized cipher
+     */
+    public CipherInputStream(InputStream in, Cipher cipher) {
+	this(in, cipher, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *                the underlying input stream
+     * @param cipher
+     *                the initialized cipher
+     * @param bufferSize
+     *                the size of the input chunks
+     * @param pipelined
+     *                whether the next chunk is read by a background thread
+     *                while the current chunk is transformed
+     * @throws IllegalArgumentException
+     *                 if <tt>bufferSize &lt; 1</tt>.
+     */
+    public CipherInputStream(InputStream in, Cipher cipher, int bufferSize,
+	    boolean pipelined) {
+	super(in);
+	if (bufferSize < 1) {
+	    throw new IllegalArgumentException("invalid buffer size");
+	}
+	reader = new CipherReader(cipher, new ReadAhead(in, bufferSize,
+		pipelined), bufferSize);
+    }
+
+    public int read() throws IOException {
+	checkOpen();
+	if (!reader.fill()) {
+	    return -1;
+	}
+	return reader.output[reader.outPos++] & 0xff;
+    }
+
+    public int read(byte[] b) throws IOException {
+	return read(b, 0, b.length);
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+	checkOpen();
+	if (len == 0) {
+	    return 0;
+	}
+	if (!reader.fill()) {
+	    return -1;
+	}
+	int n = Math.min(len, reader.available());
+	System.arraycopy(reader.output, reader.outPos, b, off, n);
+	reader.outPos += n;
+	return n;
+    }
+
+    public long skip(long n) throws IOException {
+	checkOpen();
+	long skipped = 0;
+	while (skipped < n && reader.fill()) {
+	    int k = (int) Math.min(n - skipped, reader.available());
+	    reader.outPos += k;
+	    skipped += k;
+	}
+	return skipped;
+    }
+
+    /**
+     * @return the number of bytes which can be read without blocking (the
+     *         number of transformed bytes not yet read)
+     */
+    public int available() throws IOException {
+	checkOpen();
+	return reader.available();
+    }
+
+    /**
+     * Close this stream and the underlying input stream. The cipher is not
+     * finished if the end of the input has not been reached.
+     */
+    public void close() throws IOException {
+	if (closed) {
+	    return;
+	}
+	closed = true;
+	reader.close();
+	in.close();
+    }
+
+    /**
+     * @return <tt>false</tt> (mark and reset are not supported)
+     */
+    public boolean markSupported() {
+	return false;
+    }
+
+    public synchronized void mark(int readlimit) {
+	// not supported
+    }
+
+    public synchronized void reset() throws IOException {
+	throw new IOException("mark/reset not supported");
+    }
+
+    private void checkOpen() throws IOException {
+	if (closed) {
+	    throw new IOException("stream closed");
+	}
+    }
+
+}
@@ -0,0 +1,151 @@
+package de.flexiprovider.common.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.flexiprovider.api.Cipher;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.exceptions.IllegalBlockSizeException;
+import de.flexiprovider.api.exceptions.ShortBufferException;
+
+/**
+ * This class is an output stream which passes the written data through a
+ * FlexiProvider {@link Cipher} before writing it to an underlying output
+ * stream. The cipher must be initialized before the stream is created; its
+ * <tt>doFinal()</tt> method is called when the stream is closed.
+ * <p>
+ * In contrast to <tt>javax.crypto.CipherOutputStream</tt>, the data is
+ * transformed in chunks of a caller-chosen size via
+ * {@link Cipher#update(byte[], int, int, byte[], int)} into an output buffer
+ * which is allocated once, so no arrays are allocated while data is
+ * streamed. Exceptions thrown by the cipher are reported as
+ * {@link IOException}s.
+ */
+public class CipherOutputStream extends FilterOutputStream {
+
+    // the cipher
+    private final Cipher cipher;
+
+    // the maximal number of bytes passed to the cipher at once
+    private final int bufferSize;
+
+    // the output buffer
+    private byte[] output;
+
+    // buffer for write(int)
+    private final byte[] single = new byte[1];
+
+    // whether the stream has been closed
+    private boolean closed;
+
+    /**
+     * Constructor. Use chunks of {@link CipherInputStream#DEFAULT_BUFFER_SIZE}
+     * bytes.
+     * 
+     * @param out
+     *                the underlying output stream
+     * @param cipher
+     *                the initialized cipher
+     */
+    public CipherOutputStream(OutputStream out, Cipher cipher) {
+	this(out, cipher, CipherInputStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param out
+     *                the underlying output stream
+     * @param cipher
+     *                the initialized cipher
+     * @param bufferSize
+     *                the maximal number of bytes passed to the cipher at once
+     * @throws IllegalArgumentException
+     *                 if <tt>bufferSize &lt; 1</tt>.
+     */
+    public CipherOutputStream(OutputStream out, Cipher cipher, int bufferSize) {
+	super(out);
+	if (bufferSize < 1) {
+	    throw new IllegalArgumentException("invalid buffer size");
+	}
+	this.cipher = cipher;
+	this.bufferSize = bufferSize;
+	output = new byte[Math.max(cipher.getOutputSize(bufferSize),
+		bufferSize)];
+    }
+
+    public void write(int b) throws IOException {
+	single[0] = (byte) b;
+	write(single, 0, 1);
+    }
+
+    public void write(byte[] b) throws IOException {
+	write(b, 0, b.length);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+	if (closed) {
+	    throw new IOException("stream closed");
+	}
+	while (len > 0) {
+	    int n = Math.min(len, bufferSize);
+	    ensureCapacity(cipher.getOutputSize(n));
+	    int outLen;
+	    try {
+		outLen = cipher.update(b, off, n, output, 0);
+	    } catch (ShortBufferException sbe) {
+		throw new IOException("ShortBufferException: "
+			+ sbe.getMessage());
+	    }
+	    if (outLen > 0) {
+		out.write(output, 0, outLen);
+	    }
+	    off += n;
+	    len -= n;
+	}
+    }
+
+    /**
+     * Flush the underlying output stream. Bytes buffered by the cipher (e.g.,
+     * an incomplete block) are not written until the stream is closed.
+     */
+    public void flush() throws IOException {
+	out.flush();
+    }
+
+    /**
+     * Finish the cipher, write the remaining output and close the underlying
+     * output stream.
+     */
+    public void close() throws IOException {
+	if (closed) {
+	    return;
+	}
+	closed = true;
+	try {
+	    ensureCapacity(cipher.getOutputSize(0));
+	    int outLen = cipher.doFinal(single, 0, 0, output, 0);
+	    if (outLen > 0) {
+		out.write(output, 0, outLen);
+	    }
+	    out.flush();
+	} catch (ShortBufferException sbe) {
+	    throw new IOException("ShortBufferException: " + sbe.getMessage());
+	} catch (IllegalBlockSizeException ibse) {
+	    throw new IOException("IllegalBlockSizeException: "
+		    + ibse.getMessage());
+	} catch (BadPaddingException bpe) {
+	    throw new IOException("BadPaddingException: " + bpe.getMessage());
+	} finally {
+	    out.close();
+	}
+    }
+
+    private void ensureCapacity(int size) {
+	if (output.length < size) {
+	    output = new byte[size];
+	}
+    }
+
+}
@@ -0,0 +1,124 @@
+package de.flexiprovider.common.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import de.flexiprovider.api.Cipher;
+
+/**
+ * This class is a readable channel which passes the data read from an
+ * underlying (blocking) channel through a FlexiProvider {@link Cipher}. The
+ * cipher must be initialized before the channel is created; its
+ * <tt>doFinal()</tt> method is called when the end of the underlying channel
+ * is reached.
+ * <p>
+ * As {@link CipherInputStream}, the channel reads chunks of a caller-chosen
+ * size into buffers which are allocated once and optionally reads the next
+ * chunk in a background thread while the current chunk is transformed.
+ * Exceptions thrown by the cipher are reported as {@link IOException}s.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+public class CipherReadableChannel implements ReadableByteChannel {
+
+    // the underlying channel
+    private final ReadableByteChannel channel;
+
+    // the reader passing the input through the cipher
+    private final CipherReader reader;
+
+    // whether the channel is open
+    private boolean open = true;
+
+    /**
+     * Constructor. Use chunks of {@link CipherInputStream#DEFAULT_BUFFER_SIZE}
+     * bytes and no background thread.
+     * 
+     * @param channel
+     *                the underlying channel
+     * @param cipher
+     *                the initialized cipher
+     * @throws IllegalArgumentException
+     *                 if the channel is in non-blocking mode.
+     */
+    public CipherReadableChannel(ReadableByteChannel channel, Cipher cipher) {
+	this(channel, cipher, CipherInputStream.DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *                the underlying channel
+     * @param cipher
+     *                the initialized cipher
+     * @param bufferSize
+     *                the size of the input chunks
+     * @param pipelined
+     *                whether the next chunk is read by a background thread
+     *                while the current chunk is transformed
+     * @throws IllegalArgumentException
+     *                 if <tt>bufferSize &lt; 1</tt> or the channel is in
+     *                 non-blocking mode.
+     */
+    public CipherReadableChannel(ReadableByteChannel channel, Cipher cipher,
+	    int bufferSize, boolean pipelined) {
+	if (bufferSize < 1) {
+	    throw new IllegalArgumentException("invalid buffer size");
+	}
+	this.channel = channel;
+	reader = new CipherReader(cipher, new ReadAhead(channel, bufferSize,
+		pipelined), bufferSize);
+    }
+
+    /**
+     * Read transformed bytes into the given buffer.
+     * 
+     * @param dst
+     *                the buffer to read into
+     * @return the number of bytes read, or <tt>-1</tt> if the end of the
+     *         output has been reached
+     * @throws IOException
+     *                 if reading fails or the cipher rejects the input.
+     */
+    public int read(ByteBuffer dst) throws IOException {
+	if (!open) {
+	    throw new ClosedChannelException();
+	}
+	int total = 0;
+	while (dst.hasRemaining()) {
+	    if (total > 0 && reader.available() == 0) {
+		// do not block if some bytes have been transferred
+		break;
+	    }
+	    if (!reader.fill()) {
+		return total == 0 ? -1 : total;
+	    }
+	    int n = Math.min(dst.remaining(), reader.available());
+	    dst.put(reader.output, reader.outPos, n);
+	    reader.outPos += n;
+	    total += n;
+	}
+	return total;
+    }
+
+    public boolean isOpen() {
+	return open;
+    }
+
+    /**
+     * Close this channel and the underlying channel. The cipher is not
+     * finished if the end of the input has not been reached.
+     */
+    public void close() throws IOException {
+	if (!open) {
+	    return;
+	}
+	open = false;
+	reader.close();
+	channel.close();
+    }
+
+}
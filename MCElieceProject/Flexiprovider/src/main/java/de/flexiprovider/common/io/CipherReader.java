@@ -0,0 +1,116 @@
+package de.flexiprovider.common.io;
+
+import java.io.IOException;
+
+import de.flexiprovider.api.Cipher;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.exceptions.IllegalBlockSizeException;
+import de.flexiprovider.api.exceptions.ShortBufferException;
+
+/**
+ * This class passes the chunks delivered by a {@link ReadAhead} through a
+ * cipher. It is the common part of {@link CipherInputStream} and
+ * {@link CipherReadableChannel}. The output buffer is allocated once and only
+ * grows if the cipher needs more space than the input chunk plus the
+ * buffered and padding bytes.
+ */
+final class CipherReader {
+
+    private final Cipher cipher;
+
+    private final ReadAhead source;
+
+    /**
+     * The output buffer
+     */
+    byte[] output;
+
+    /**
+     * The position of the next unread byte in the output buffer
+     */
+    int outPos;
+
+    /**
+     * The number of bytes in the output buffer
+     */
+    int outLen;
+
+    // whether doFinal() has been called
+    private boolean done;
+
+    /**
+     * Constructor.
+     * 
+     * @param cipher
+     *                the initialized cipher
+     * @param source
+     *                the source of the input chunks
+     * @param bufferSize
+     *                the size of the input chunks
+     */
+    CipherReader(Cipher cipher, ReadAhead source, int bufferSize) {
+	this.cipher = cipher;
+	this.source = source;
+	int size = cipher.getOutputSize(bufferSize);
+	output = new byte[Math.max(size, bufferSize)];
+    }
+
+    /**
+     * Make sure that the output buffer holds at least one unread byte.
+     * 
+     * @return <tt>false</tt> if the end of the output has been reached
+     * @throws IOException
+     *                 if reading fails or the cipher rejects the input.
+     */
+    boolean fill() throws IOException {
+	while (outPos == outLen) {
+	    if (done) {
+		return false;
+	    }
+	    int n = source.next();
+	    outPos = 0;
+	    outLen = 0;
+	    try {
+		if (n < 0) {
+		    done = true;
+		    ensureCapacity(cipher.getOutputSize(0));
+		    outLen = cipher.doFinal(source.buffer(), 0, 0, output, 0);
+		} else {
+		    ensureCapacity(cipher.getOutputSize(n));
+		    outLen = cipher.update(source.buffer(), 0, n, output, 0);
+		}
+	    } catch (ShortBufferException sbe) {
+		throw new IOException("ShortBufferException: "
+			+ sbe.getMessage());
+	    } catch (IllegalBlockSizeException ibse) {
+		throw new IOException("IllegalBlockSizeException: "
+			+ ibse.getMessage());
+	    } catch (BadPaddingException bpe) {
+		throw new IOException("BadPaddingException: "
+			+ bpe.getMessage());
+	    }
+	}
+	return true;
+    }
+
+    private void ensureCapacity(int size) {
+	if (output.length < size) {
+	    output = new byte[size];
+	}
+    }
+
+    /**
+     * @return the number of unread bytes in the output buffer
+     */
+    int available() {
+	return outLen - outPos;
+    }
+
+    /**
+     * Stop reading ahead.
+     */
+    void close() {
+	source.close();
+    }
+
+}
@@ -0,0 +1,175 @@
+package de.flexiprovider.common.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+import de.flexiprovider.api.Cipher;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.exceptions.IllegalBlockSizeException;
+import de.flexiprovider.api.exceptions.ShortBufferException;
+
+/**
+ * This class is a writable channel which passes the written data through a
+ * FlexiProvider {@link Cipher} before writing it to an underlying (blocking)
+ * channel. The cipher must be initialized before the channel is created; its
+ * <tt>doFinal()</tt> method is called when the channel is closed.
+ * <p>
+ * Heap buffers are passed to the cipher directly; the contents of other
+ * buffers are copied in chunks of a caller-chosen size into an input buffer.
+ * The input and output buffers are allocated once. Exceptions thrown by the
+ * cipher are reported as {@link IOException}s.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+public class CipherWritableChannel implements WritableByteChannel {
+
+    // the underlying channel
+    private final WritableByteChannel channel;
+
+    // the cipher
+    private final Cipher cipher;
+
+    // the maximal number of bytes passed to the cipher at once
+    private final int bufferSize;
+
+    // the input buffer for buffers without accessible array (allocated on
+    // demand)
+    private byte[] input;
+
+    // the output buffer and a buffer view of it
+    private byte[] output;
+
+    private ByteBuffer outBuffer;
+
+    // whether the channel is open
+    private boolean open = true;
+
+    /**
+     * Constructor. Use chunks of {@link CipherInputStream#DEFAULT_BUFFER_SIZE}
+     * bytes.
+     * 
+     * @param channel
+     *                the underlying channel
+     * @param cipher
+     *                the initialized cipher
+     */
+    public CipherWritableChannel(WritableByteChannel channel, Cipher cipher) {
+	this(channel, cipher, CipherInputStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *                the underlying channel
+     * @param cipher
+     *                the initialized cipher
+     * @param bufferSize
+     *                the maximal number of bytes passed to the cipher at once
+     * @throws IllegalArgumentException
+     *                 if <tt>bufferSize &lt; 1</tt>.
+     */
+    public CipherWritableChannel(WritableByteChannel channel, Cipher cipher,
+	    int bufferSize) {
+	if (bufferSize < 1) {
+	    throw new IllegalArgumentException("invalid buffer size");
+	}
+	this.channel = channel;
+	this.cipher = cipher;
+	this.bufferSize = bufferSize;
+	allocateOutput(Math.max(cipher.getOutputSize(bufferSize), bufferSize));
+    }
+
+    /**
+     * Transform the remaining bytes of the given buffer and write the result
+     * to the underlying channel.
+     * 
+     * @param src
+     *                the buffer holding the data
+     * @return the number of bytes consumed from <tt>src</tt> (all remaining
+     *         bytes)
+     * @throws IOException
+     *                 if writing fails.
+     */
+    public int write(ByteBuffer src) throws IOException {
+	if (!open) {
+	    throw new ClosedChannelException();
+	}
+	int total = src.remaining();
+	while (src.hasRemaining()) {
+	    int n = Math.min(src.remaining(), bufferSize);
+	    byte[] in;
+	    int inOff;
+	    if (src.hasArray()) {
+		in = src.array();
+		inOff = src.arrayOffset() + src.position();
+		src.position(src.position() + n);
+	    } else {
+		if (input == null) {
+		    input = new byte[bufferSize];
+		}
+		src.get(input, 0, n);
+		in = input;
+		inOff = 0;
+	    }
+	    int size = cipher.getOutputSize(n);
+	    if (output.length < size) {
+		allocateOutput(size);
+	    }
+	    try {
+		flushOutput(cipher.update(in, inOff, n, output, 0));
+	    } catch (ShortBufferException sbe) {
+		throw new IOException("ShortBufferException: "
+			+ sbe.getMessage());
+	    }
+	}
+	return total;
+    }
+
+    public boolean isOpen() {
+	return open;
+    }
+
+    /**
+     * Finish the cipher, write the remaining output and close the underlying
+     * channel.
+     */
+    public void close() throws IOException {
+	if (!open) {
+	    return;
+	}
+	open = false;
+	try {
+	    int size = cipher.getOutputSize(0);
+	    if (output.length < size) {
+		allocateOutput(size);
+	    }
+	    flushOutput(cipher.doFinal(output, 0, 0, output, 0));
+	} catch (ShortBufferException sbe) {
+	    throw new IOException("ShortBufferException: " + sbe.getMessage());
+	} catch (IllegalBlockSizeException ibse) {
+	    throw new IOException("IllegalBlockSizeException: "
+		    + ibse.getMessage());
+	} catch (BadPaddingException bpe) {
+	    throw new IOException("BadPaddingException: " + bpe.getMessage());
+	} finally {
+	    channel.close();
+	}
+    }
+
+    private void allocateOutput(int size) {
+	output = new byte[size];
+	outBuffer = ByteBuffer.wrap(output);
+    }
+
+    private void flushOutput(int len) throws IOException {
+	outBuffer.clear();
+	outBuffer.limit(len);
+	while (outBuffer.hasRemaining()) {
+	    channel.write(outBuffer);
+	}
+    }
+
+}
@@ -0,0 +1,90 @@
+package de.flexiprovider.common.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+import de.flexiprovider.api.MessageDigest;
+
+/**
+ * This class is a writable channel which updates a FlexiProvider {@link
+ * MessageDigest} with all bytes written to it. The bytes are passed on to an
+ * underlying channel; if the underlying channel is <tt>null</tt>, they are only
+ * digested. The message digest is updated via {@link
+ * MessageDigest#update(ByteBuffer)}, so heap buffers are processed without
+ * copying.
+ */
+public class DigestChannel implements WritableByteChannel {
+
+    // the underlying channel (may be null)
+    private final WritableByteChannel channel;
+
+    // the message digest
+    private final MessageDigest md;
+
+    // whether the channel is open
+    private boolean open = true;
+
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *                the underlying channel (may be <tt>null</tt>)
+     * @param md
+     *                the message digest to update
+     */
+    public DigestChannel(WritableByteChannel channel, MessageDigest md) {
+	this.channel = channel;
+	this.md = md;
+    }
+
+    /**
+     * @return the message digest updated by this channel
+     */
+    public MessageDigest getMessageDigest() {
+	return md;
+    }
+
+    /**
+     * Update the message digest with the remaining bytes of the given
+     * buffer and write them to the underlying channel. Only the bytes
+     * accepted by the underlying channel are digested.
+     * 
+     * @param src
+     *                the buffer holding the data
+     * @return the number of bytes consumed from <tt>src</tt>
+     * @throws IOException
+     *                 if writing fails.
+     */
+    public int write(ByteBuffer src) throws IOException {
+	if (!open) {
+	    throw new ClosedChannelException();
+	}
+	if (channel == null) {
+	    int n = src.remaining();
+	    md.update(src);
+	    return n;
+	}
+	ByteBuffer view = src.duplicate();
+	int n = channel.write(src);
+	view.limit(view.position() + n);
+	md.update(view);
+	return n;
+    }
+
+    public boolean isOpen() {
+	return open;
+    }
+
+    public void close() throws IOException {
+	if (!open) {
+	    return;
+	}
+	open = false;
+	if (channel != null) {
+	    channel.close();
+	}
+    }
+
+}
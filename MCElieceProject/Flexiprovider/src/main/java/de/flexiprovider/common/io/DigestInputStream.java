@@ -0,0 +1,62 @@
+package de.flexiprovider.common.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.flexiprovider.api.MessageDigest;
+
+/**
+ * This class is an input stream which updates a FlexiProvider {@link
+ * MessageDigest} with all bytes read from an underlying input stream. The
+ * digest is obtained from the message digest after the data has been read.
+ */
+public class DigestInputStream extends FilterInputStream {
+
+    // the message digest
+    private final MessageDigest md;
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *                the underlying input stream
+     * @param md
+     *                the message digest to update
+     */
+    public DigestInputStream(InputStream in, MessageDigest md) {
+	super(in);
+	this.md = md;
+    }
+
+    /**
+     * @return the message digest updated by this stream
+     */
+    public MessageDigest getMessageDigest() {
+	return md;
+    }
+
+    public int read() throws IOException {
+	int b = in.read();
+	if (b >= 0) {
+	    md.update((byte) b);
+	}
+	return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+	int n = in.read(b, off, len);
+	if (n > 0) {
+	    md.update(b, off, n);
+	}
+	return n;
+    }
+
+    /**
+     * @return <tt>false</tt> (mark and reset are not supported)
+     */
+    public boolean markSupported() {
+	return false;
+    }
+
+}
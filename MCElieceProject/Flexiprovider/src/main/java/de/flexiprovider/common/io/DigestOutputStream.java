@@ -0,0 +1,66 @@
+package de.flexiprovider.common.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.flexiprovider.api.MessageDigest;
+
+/**
+ * This class is an output stream which updates a FlexiProvider {@link
+ * MessageDigest} with all bytes written to it. The bytes are passed on to an
+ * underlying output stream; if the underlying stream is <tt>null</tt>, they are
+ * only digested.
+ */
+public class DigestOutputStream extends FilterOutputStream {
+
+    // the message digest
+    private final MessageDigest md;
+
+    /**
+     * Constructor.
+     * 
+     * @param out
+     *                the underlying output stream (may be <tt>null</tt>)
+     * @param md
+     *                the message digest to update
+     */
+    public DigestOutputStream(OutputStream out, MessageDigest md) {
+	super(out);
+	this.md = md;
+    }
+
+    /**
+     * @return the message digest updated by this stream
+     */
+    public MessageDigest getMessageDigest() {
+	return md;
+    }
+
+    public void write(int b) throws IOException {
+	md.update((byte) b);
+	if (out != null) {
+	    out.write(b);
+	}
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+	md.update(b, off, len);
+	if (out != null) {
+	    out.write(b, off, len);
+	}
+    }
+
+    public void flush() throws IOException {
+	if (out != null) {
+	    out.flush();
+	}
+    }
+
+    public void close() throws IOException {
+	if (out != null) {
+	    out.close();
+	}
+    }
+
+}
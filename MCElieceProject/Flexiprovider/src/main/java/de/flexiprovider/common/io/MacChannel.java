@@ -0,0 +1,90 @@
+package de.flexiprovider.common.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+import de.flexiprovider.api.Mac;
+
+/**
+ * This class is a writable channel which updates a FlexiProvider {@link Mac}
+ * with all bytes written to it. The bytes are passed on to an underlying
+ * channel; if the underlying channel is <tt>null</tt>, they are only
+ * authenticated. The MAC is updated via {@link Mac#update(ByteBuffer)}, so heap
+ * buffers are processed without copying. The MAC must be initialized before the
+ * channel is created.
+ */
+public class MacChannel implements WritableByteChannel {
+
+    // the underlying channel (may be null)
+    private final WritableByteChannel channel;
+
+    // the MAC
+    private final Mac mac;
+
+    // whether the channel is open
+    private boolean open = true;
+
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *                the underlying channel (may be <tt>null</tt>)
+     * @param mac
+     *                the MAC to update
+     */
+    public MacChannel(WritableByteChannel channel, Mac mac) {
+	this.channel = channel;
+	this.mac = mac;
+    }
+
+    /**
+     * @return the MAC updated by this channel
+     */
+    public Mac getMac() {
+	return mac;
+    }
+
+    /**
+     * Update the MAC with the remaining bytes of the given buffer and
+     * write them to the underlying channel. Only the bytes accepted by the
+     * underlying channel are authenticated.
+     * 
+     * @param src
+     *                the buffer holding the data
+     * @return the number of bytes consumed from <tt>src</tt>
+     * @throws IOException
+     *                 if writing fails.
+     */
+    public int write(ByteBuffer src) throws IOException {
+	if (!open) {
+	    throw new ClosedChannelException();
+	}
+	if (channel == null) {
+	    int n = src.remaining();
+	    mac.update(src);
+	    return n;
+	}
+	ByteBuffer view = src.duplicate();
+	int n = channel.write(src);
+	view.limit(view.position() + n);
+	mac.update(view);
+	return n;
+    }
+
+    public boolean isOpen() {
+	return open;
+    }
+
+    public void close() throws IOException {
+	if (!open) {
+	    return;
+	}
+	open = false;
+	if (channel != null) {
+	    channel.close();
+	}
+    }
+
+}
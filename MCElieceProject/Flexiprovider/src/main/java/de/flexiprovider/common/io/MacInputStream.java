@@ -0,0 +1,63 @@
+package de.flexiprovider.common.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.flexiprovider.api.Mac;
+
+/**
+ * This class is an input stream which updates a FlexiProvider {@link Mac} with
+ * all bytes read from an underlying input stream. The MAC must be initialized
+ * before the stream is created; the result is obtained from the MAC after the
+ * data has been read.
+ */
+public class MacInputStream extends FilterInputStream {
+
+    // the MAC
+    private final Mac mac;
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *                the underlying input stream
+     * @param mac
+     *                the MAC to update
+     */
+    public MacInputStream(InputStream in, Mac mac) {
+	super(in);
+	this.mac = mac;
+    }
+
+    /**
+     * @return the MAC updated by this stream
+     */
+    public Mac getMac() {
+	return mac;
+    }
+
+    public int read() throws IOException {
+	int b = in.read();
+	if (b >= 0) {
+	    mac.update((byte) b);
+	}
+	return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+	int n = in.read(b, off, len);
+	if (n > 0) {
+	    mac.update(b, off, n);
+	}
+	return n;
+    }
+
+    /**
+     * @return <tt>false</tt> (mark and reset are not supported)
+     */
+    public boolean markSupported() {
+	return false;
+    }
+
+}
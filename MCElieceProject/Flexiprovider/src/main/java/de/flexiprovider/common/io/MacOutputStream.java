@@ -0,0 +1,66 @@
+package de.flexiprovider.common.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.flexiprovider.api.Mac;
+
+/**
+ * This class is an output stream which updates a FlexiProvider {@link Mac} with
+ * all bytes written to it. The bytes are passed on to an underlying output
+ * stream; if the underlying stream is <tt>null</tt>, they are only
+ * authenticated. The MAC must be initialized before the stream is created.
+ */
+public class MacOutputStream extends FilterOutputStream {
+
+    // the MAC
+    private final Mac mac;
+
+    /**
+     * Constructor.
+     * 
+     * @param out
+     *                the underlying output stream (may be <tt>null</tt>)
+     * @param mac
+     *                the MAC to update
+     */
+    public MacOutputStream(OutputStream out, Mac mac) {
+	super(out);
+	this.mac = mac;
+    }
+
+    /**
+     * @return the MAC updated by this stream
+     */
+    public Mac getMac() {
+	return mac;
+    }
+
+    public void write(int b) throws IOException {
+	mac.update((byte) b);
+	if (out != null) {
+	    out.write(b);
+	}
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+	mac.update(b, off, len);
+	if (out != null) {
+	    out.write(b, off, len);
+	}
+    }
+
+    public void flush() throws IOException {
+	if (out != null) {
+	    out.flush();
+	}
+    }
+
+    public void close() throws IOException {
+	if (out != null) {
+	    out.close();
+	}
+    }
+
+}
@@ -0,0 +1,229 @@
+package de.flexiprovider.common.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * This class reads from an input stream or a readable channel into two
+ * alternating buffers. In pipelined mode, a background thread fills one
+ * buffer while the consumer processes the other one, so that reading the
+ * next chunk overlaps the transformation of the current chunk. Otherwise, the
+ * consumer thread reads the chunks itself.
+ * <p>
+ * The consumer calls {@link #next()} to obtain the number of bytes in the
+ * current buffer ({@link #buffer()}), processes these bytes and calls
+ * {@link #next()} again. The previous buffer is handed back to the reader by
+ * the second call.
+ * <p>
+ * If the consumer is interrupted while waiting for the background thread,
+ * {@link #next()} throws an {@link InterruptedIOException} and restores the
+ * interrupt status. If the background thread is interrupted, it stops reading
+ * and the consumer gets an {@link InterruptedIOException} once the chunks
+ * read before have been consumed.
+ */
+final class ReadAhead implements Runnable {
+
+    // the source (exactly one of them is not null)
+    private final InputStream in;
+
+    private final ReadableByteChannel channel;
+
+    // the two buffers and the number of bytes they hold (-1: end of input)
+    private final byte[][] buffers;
+
+    private final int[] lengths = new int[2];
+
+    // whether the buffers hold data which has not been consumed yet
+    private final boolean[] full = new boolean[2];
+
+    // the buffer currently held by the consumer (-1: none)
+    private int current = -1;
+
+    // the background thread (null if not pipelined)
+    private Thread thread;
+
+    // the exception thrown by the background thread
+    private IOException error;
+
+    // whether the background thread has stopped before the end of the input
+    private boolean stopped;
+
+    // whether the reader has been closed
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *                the input stream to read from
+     * @param bufferSize
+     *                the size of each buffer
+     * @param pipelined
+     *                whether to read ahead in a background thread
+     */
+    ReadAhead(InputStream in, int bufferSize, boolean pipelined) {
+	this.in = in;
+	channel = null;
+	buffers = new byte[2][bufferSize];
+	start(pipelined);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *                the (blocking) channel to read from
+     * @param bufferSize
+     *                the size of each buffer
+     * @param pipelined
+     *                whether to read ahead in a background thread
+     * @throws IllegalArgumentException
+     *                 if the channel is in non-blocking mode.
+     */
+    ReadAhead(ReadableByteChannel channel, int bufferSize, boolean pipelined) {
+	if (channel instanceof SelectableChannel
+		&& !((SelectableChannel) channel).isBlocking()) {
+	    throw new IllegalArgumentException(
+		    "non-blocking channels are not supported");
+	}
+	in = null;
+	this.channel = channel;
+	buffers = new byte[2][bufferSize];
+	start(pipelined);
+    }
+
+    private void start(boolean pipelined) {
+	if (pipelined) {
+	    thread = new Thread(this, "ReadAhead");
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+    }
+
+    /**
+     * @return the buffer returned by the last call to {@link #next()}
+     */
+    byte[] buffer() {
+	return buffers[current];
+    }
+
+    /**
+     * Release the current buffer and return the next chunk of input.
+     * 
+     * @return the number of bytes in {@link #buffer()}, or <tt>-1</tt> at
+     *         the end of the input
+     * @throws IOException
+     *                 if reading fails.
+     */
+    int next() throws IOException {
+	if (thread == null) {
+	    current = current == 0 ? 1 : 0;
+	    return read(buffers[current]);
+	}
+	synchronized (this) {
+	    if (current >= 0) {
+		full[current] = false;
+		notifyAll();
+	    }
+	    current = current == 0 ? 1 : 0;
+	    while (!full[current] && !closed && !stopped) {
+		try {
+		    wait();
+		} catch (InterruptedException ie) {
+		    Thread.currentThread().interrupt();
+		    throw new InterruptedIOException("interrupted");
+		}
+	    }
+	    if (closed) {
+		throw new IOException("stream closed");
+	    }
+	    if (!full[current]) {
+		// the background thread has stopped
+		throw error;
+	    }
+	    if (lengths[current] < 0 && error != null) {
+		throw error;
+	    }
+	    return lengths[current];
+	}
+    }
+
+    /**
+     * Stop the background thread. The source is not closed.
+     */
+    void close() {
+	synchronized (this) {
+	    closed = true;
+	    notifyAll();
+	}
+    }
+
+    /**
+     * Fill the buffers alternately until the end of the input is reached.
+     */
+    public void run() {
+	int i = 0;
+	while (true) {
+	    synchronized (this) {
+		while (full[i] && !closed) {
+		    try {
+			wait();
+		    } catch (InterruptedException ie) {
+			error = new InterruptedIOException(
+				"read-ahead thread interrupted");
+			stopped = true;
+			notifyAll();
+			return;
+		    }
+		}
+		if (closed) {
+		    return;
+		}
+	    }
+	    int n;
+	    IOException ioe = null;
+	    try {
+		n = read(buffers[i]);
+	    } catch (IOException e) {
+		ioe = e;
+		n = -1;
+	    }
+	    synchronized (this) {
+		lengths[i] = n;
+		error = ioe;
+		full[i] = true;
+		notifyAll();
+	    }
+	    if (n < 0) {
+		return;
+	    }
+	    i ^= 1;
+	}
+    }
+
+    /**
+     * Read at least one byte into the given buffer (unless the end of the
+     * input has been reached). Channels may return no bytes if they have been
+     * switched to non-blocking mode after construction; in this case, the
+     * thread yields before trying again.
+     */
+    private int read(byte[] buf) throws IOException {
+	int n;
+	if (in != null) {
+	    do {
+		n = in.read(buf, 0, buf.length);
+	    } while (n == 0);
+	} else {
+	    ByteBuffer bb = ByteBuffer.wrap(buf);
+	    while ((n = channel.read(bb)) == 0) {
+		Thread.yield();
+	    }
+	}
+	return n;
+    }
+
+}
@@ -249,47 +249,91 @@ public final class GoppaCode {
     public static GF2Vector syndromeDecode(GF2Vector syndVec, GF2mField field,
 	    PolynomialGF2mSmallM gp, PolynomialGF2mSmallM[] sqRootMatrix) {
 
+	// if the syndrome vector is zero, the error vector is also zero
+	if (syndVec.isZero()) {
+	    return new GF2Vector(1 << field.getDegree());
+	}
+
+	PolynomialGF2mSmallM elp = computeErrorLocatorPolynomial(syndVec,
+		field, gp, sqRootMatrix);
+	return findErrorPositions(elp, field);
+    }
+
+    /**
+     * Compute the error locator polynomial of a non-zero syndrome <tt>s</tt>
+     * over <tt>GF(2<sup>m</sup>)</tt> using Patterson's algorithm. This is
+     * the first step of {@link #syndromeDecode(GF2Vector, GF2mField,
+     * PolynomialGF2mSmallM, PolynomialGF2mSmallM[])}.
+     * 
+     * @param syndVec
+     *                the (non-zero) syndrome
+     * @param field
+     *                the finite field
+     * @param gp
+     *                the irreducible Goppa polynomial
+     * @param sqRootMatrix
+     *                the matrix for computing square roots in
+     *                <tt>(GF(2<sup>m</sup>))<sup>t</sup></tt>
+     * @return the normalized error locator polynomial
+     */
+    public static PolynomialGF2mSmallM computeErrorLocatorPolynomial(
+	    GF2Vector syndVec, GF2mField field, PolynomialGF2mSmallM gp,
+	    PolynomialGF2mSmallM[] sqRootMatrix) {
+
+	// convert syndrome vector to polynomial over GF(2^m)
+	PolynomialGF2mSmallM syndrome = new PolynomialGF2mSmallM(syndVec
+		.toExtensionFieldVector(field));
+
+	// compute T = syndrome^-1 mod gp
+	PolynomialGF2mSmallM t = syndrome.modInverse(gp);
+
+	// compute tau = sqRoot(T + X) mod gp
+	PolynomialGF2mSmallM tau = t.addMonomial(1);
+	tau = tau.modSquareRootMatrix(sqRootMatrix);
+
+	// compute polynomials a and b satisfying a + b*tau = 0 mod gp
+	PolynomialGF2mSmallM[] ab = tau.modPolynomialToFracton(gp);
+
+	// compute the polynomial a^2 + X*b^2
+	PolynomialGF2mSmallM a2 = ab[0].multiply(ab[0]);
+	PolynomialGF2mSmallM b2 = ab[1].multiply(ab[1]);
+	PolynomialGF2mSmallM xb2 = b2.multWithMonomial(1);
+	PolynomialGF2mSmallM a2plusXb2 = a2.add(xb2);
+
+	// normalize a^2 + X*b^2 to obtain the error locator polynomial
+	int headCoeff = a2plusXb2.getHeadCoefficient();
+	int invHeadCoeff = field.inverse(headCoeff);
+	return a2plusXb2.multWithElement(invHeadCoeff);
+    }
+
+    /**
+     * Find the roots of an error locator polynomial by evaluating it at all
+     * elements of <tt>GF(2<sup>m</sup>)</tt>. This is the second step of
+     * {@link #syndromeDecode(GF2Vector, GF2mField, PolynomialGF2mSmallM,
+     * PolynomialGF2mSmallM[])}.
+     * 
+     * @param elp
+     *                the error locator polynomial
+     * @param field
+     *                the finite field
+     * @return the error vector having a set bit at every root of <tt>elp</tt>
+     */
+    public static GF2Vector findErrorPositions(PolynomialGF2mSmallM elp,
+	    GF2mField field) {
+
 	int n = 1 << field.getDegree();
 
 	// the error vector
 	GF2Vector errors = new GF2Vector(n);
 
-	// if the syndrome vector is zero, the error vector is also zero
-	if (!syndVec.isZero()) {
-	    // convert syndrome vector to polynomial over GF(2^m)
-	    PolynomialGF2mSmallM syndrome = new PolynomialGF2mSmallM(syndVec
-		    .toExtensionFieldVector(field));
-
-	    // compute T = syndrome^-1 mod gp
-	    PolynomialGF2mSmallM t = syndrome.modInverse(gp);
-
-	    // compute tau = sqRoot(T + X) mod gp
-	    PolynomialGF2mSmallM tau = t.addMonomial(1);
-	    tau = tau.modSquareRootMatrix(sqRootMatrix);
-
-	    // compute polynomials a and b satisfying a + b*tau = 0 mod gp
-	    PolynomialGF2mSmallM[] ab = tau.modPolynomialToFracton(gp);
-
-	    // compute the polynomial a^2 + X*b^2
-	    PolynomialGF2mSmallM a2 = ab[0].multiply(ab[0]);
-	    PolynomialGF2mSmallM b2 = ab[1].multiply(ab[1]);
-	    PolynomialGF2mSmallM xb2 = b2.multWithMonomial(1);
-	    PolynomialGF2mSmallM a2plusXb2 = a2.add(xb2);
-
-	    // normalize a^2 + X*b^2 to obtain the error locator polynomial
-	    int headCoeff = a2plusXb2.getHeadCoefficient();
-	    int invHeadCoeff = field.inverse(headCoeff);
-	    PolynomialGF2mSmallM elp = a2plusXb2.multWithElement(invHeadCoeff);
-
-	    // for all elements i of GF(2^m)
-	    for (int i = 0; i < n; i++) {
-		// evaluate the error locator polynomial at i
-		int z = elp.evaluateAt(i);
-		// if polynomial evaluates to zero
-		if (z == 0) {
-		    // set the i-th coefficient of the error vector
-		    errors.setBit(i);
-		}
+	// for all elements i of GF(2^m)
+	for (int i = 0; i < n; i++) {
+	    // evaluate the error locator polynomial at i
+	    int z = elp.evaluateAt(i);
+	    // if polynomial evaluates to zero
+	    if (z == 0) {
+		// set the i-th coefficient of the error vector
+		errors.setBit(i);
 	    }
 	}
 
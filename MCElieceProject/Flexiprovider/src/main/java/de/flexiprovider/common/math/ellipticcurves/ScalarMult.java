@@ -1344,6 +1344,66 @@ public final class ScalarMult {
 	return odd;
     }
 
+    /**
+     * Fixed-base comb precomputation (Lim-Lee). A scalar of at most <tt>t</tt>
+     * bits is viewed as <tt>w</tt> rows of <tt>a = ceil(t/w)</tt> bits, and
+     * each row is split into <tt>v</tt> blocks of <tt>b = ceil(a/v)</tt>
+     * bits. For each block <tt>j</tt> and each <tt>w</tt>-bit column
+     * <tt>u = (u<sub>w-1</sub>...u<sub>0</sub>)</tt> the point
+     * <tt>2<sup>jb</sup> * sum u<sub>i</sub>2<sup>ia</sup>*p</tt> is stored
+     * in affine coordinates. The tables depend only on <tt>p</tt> and can be
+     * shared by all scalar multiplications with {@link #eval_comb}.
+     * 
+     * @param p
+     *                base point
+     * @param t
+     *                maximal bit length of the scalars
+     * @param w
+     *                number of rows (the tables have 2<sup>w</sup> entries)
+     * @param v
+     *                number of blocks per row
+     * @return point matrix <tt>G[j][u]</tt> as described above
+     *         (<tt>G[j][0]</tt> is not used and <tt>null</tt>)
+     */
+    public static Point[][] pre_comb(Point p, int t, int w, int v) {
+	int a = (t + w - 1) / w;
+	int b = (a + v - 1) / v;
+	Point[][] G = new Point[v][1 << w];
+
+	// the points 2^(ia)*p
+	Point[] rows = new Point[w];
+	Point R = p.getAffin();
+	for (int i = 0; i < w; i++) {
+	    rows[i] = R;
+	    for (int k = 0; k < a; k++) {
+		R = R.multiplyBy2();
+	    }
+	    R = R.getAffin();
+	}
+
+	for (int j = 0; j < v; j++) {
+	    for (int u = 1; u < 1 << w; u++) {
+		// split off the highest row of the column
+		int i = 31 - Integer.numberOfLeadingZeros(u);
+		int rest = u ^ (1 << i);
+		G[j][u] = (rest == 0) ? rows[i] : G[j][rest].add(rows[i])
+			.getAffin();
+	    }
+	    if (j < v - 1) {
+		// proceed to the next block: multiply by 2^b
+		for (int i = 0; i < w; i++) {
+		    R = rows[i];
+		    for (int k = 0; k < b; k++) {
+			R = R.multiplyBy2();
+		    }
+		    rows[i] = R.getAffin();
+		}
+	    }
+	}
+
+	return G;
+    }
+
     /**
      * LimLee splitting. This method divides the scalar into <tt>n</tt> pieces
      * of length <tt>l</tt>. if needed, some zeros will be padded on
@@ -2765,6 +2825,50 @@ public final class ScalarMult {
 	return r.getAffin();
     }
 
+    /**
+     * Fixed-base comb evaluation (Lim-Lee). This method returns <tt>m*p</tt>
+     * using the tables computed by {@link #pre_comb} for <tt>p</tt>. It needs
+     * <tt>b</tt> doublings and at most <tt>vb</tt> (mixed) additions.
+     * 
+     * @param m
+     *                the scalar, <tt>0 &lt;= m &lt; 2<sup>t</sup></tt>
+     * @param t
+     *                maximal bit length of the scalars (as used for the
+     *                precomputation)
+     * @param G
+     *                the tables computed by {@link #pre_comb}
+     * @return <tt>m*p</tt>
+     */
+    public static Point eval_comb(FlexiBigInt m, int t, Point[][] G) {
+	int v = G.length;
+	int w = 31 - Integer.numberOfLeadingZeros(G[0].length);
+	int a = (t + w - 1) / w;
+	int b = (a + v - 1) / v;
+
+	Point r = createZeroPoint(G[0][1], G[0][1], G[0][1].getE());
+	for (int k = b - 1; k >= 0; k--) {
+	    r.multiplyThisBy2();
+	    for (int j = v - 1; j >= 0; j--) {
+		int col = j * b + k;
+		if (col >= a) {
+		    continue;
+		}
+		// collect the bits of column col of all rows
+		int u = 0;
+		for (int i = w - 1; i >= 0; i--) {
+		    u <<= 1;
+		    if (m.testBit(i * a + col)) {
+			u |= 1;
+		    }
+		}
+		if (u != 0) {
+		    r.addToThis(G[j][u]);
+		}
+	    }
+	}
+	return r.getAffin();
+    }
+
     /**
      * <i>Shamir (= simultExpo) evaluation</i> for simultaneous multiplications
      * without recoding. This method returns <tt>e1*P + e2*Q</tt>.
@@ -187,7 +187,11 @@ public class GFPElement implements GFElement {
 		    "Elements are of different fields.");
 	}
 
-	mValue = mValue.add(((GFPElement) addend).mValue).mod(mP);
+	// both values are reduced, so one subtraction suffices
+	mValue = mValue.add(((GFPElement) addend).mValue);
+	if (mValue.compareTo(mP) >= 0) {
+	    mValue = mValue.subtract(mP);
+	}
     }
 
     /**
@@ -220,7 +224,16 @@ public class GFPElement implements GFElement {
 	if (!(minuend instanceof GFPElement)) {
 	    throw new DifferentFieldsException();
 	}
-	mValue = mValue.subtract(((GFPElement) minuend).mValue).mod(mP);
+	GFPElement other = (GFPElement) minuend;
+	if (!mP.equals(other.mP)) {
+	    mValue = mValue.subtract(other.mValue).mod(mP);
+	    return;
+	}
+	// both values are reduced, so one addition suffices
+	mValue = mValue.subtract(other.mValue);
+	if (mValue.signum() < 0) {
+	    mValue = mValue.add(mP);
+	}
     }
 
     /**
@@ -1,5 +1,10 @@
 package de.flexiprovider.common.math.linearalgebra;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import de.flexiprovider.api.Registry;
 import de.flexiprovider.api.SecureRandom;
 import de.flexiprovider.common.util.IntUtils;
@@ -68,6 +73,66 @@ public class GF2Matrix extends Matrix {
 	}
     }
 
+    /**
+     * Create the matrix from encoded form (see {@link #getEncoded()}) read
+     * from the given stream. The rows are read one at a time, so the encoded
+     * matrix is never held in memory as a whole. The dimensions read from the
+     * stream are checked against the expected encoded length before any
+     * memory is allocated, so that a corrupt or malicious header cannot
+     * request an arbitrarily large matrix. Exactly <tt>encLength</tt> bytes
+     * are consumed from the stream.
+     * 
+     * @param in
+     *                the stream containing the encoded matrix
+     * @param encLength
+     *                the expected length of the encoded matrix (see
+     *                {@link #getEncodedLength()})
+     * @throws IOException
+     *                 if the stream cannot be read or ends prematurely.
+     * @throws ArithmeticException
+     *                 if the stream does not contain an encoded matrix of
+     *                 the expected length.
+     */
+    public GF2Matrix(InputStream in, int encLength) throws IOException {
+	byte[] header = new byte[8];
+	readFully(in, header);
+	numRows = LittleEndianConversions.OS2IP(header, 0);
+	numColumns = LittleEndianConversions.OS2IP(header, 4);
+
+	if ((numRows <= 0) || (numColumns <= 0)) {
+	    throw new ArithmeticException(
+		    "stream does not contain an encoded matrix over GF(2)");
+	}
+	// both factors are less than 2^31, so the product cannot overflow
+	long expected = (long) ((numColumns + 7L) >>> 3) * numRows + 8;
+	if (expected != encLength) {
+	    throw new ArithmeticException(
+		    "encoded matrix does not have the expected length");
+	}
+
+	length = (numColumns + 31) >>> 5;
+	// the rows are allocated when they are read
+	matrix = new int[numRows][];
+
+	// number of "full" integer
+	int q = numColumns >> 5;
+	// number of bits in non-full integer
+	int r = numColumns & 0x1f;
+
+	byte[] row = new byte[(numColumns + 7) >>> 3];
+	for (int i = 0; i < numRows; i++) {
+	    readFully(in, row);
+	    matrix[i] = new int[length];
+	    int count = 0;
+	    for (int j = 0; j < q; j++, count += 4) {
+		matrix[i][j] = LittleEndianConversions.OS2IP(row, count);
+	    }
+	    for (int j = 0; j < r; j += 8) {
+		matrix[i][q] ^= (row[count++] & 0xff) << j;
+	    }
+	}
+    }
+
     /**
      * Create the matrix with the contents of the given array. The matrix is not
      * copied. Unused coefficients are masked out.
@@ -443,6 +508,58 @@ public class GF2Matrix extends Matrix {
 	}
 	return enc;
     }
+    /**
+     * @return the length of the encoded matrix (see {@link #getEncoded()}) in
+     *         bytes
+     */
+    public int getEncodedLength() {
+	return ((numColumns + 7) >>> 3) * numRows + 8;
+    }
+
+    /**
+     * Write the encoded matrix (see {@link #getEncoded()}) to the given
+     * stream. The rows are encoded one at a time into a single row buffer, so
+     * the encoded matrix is never held in memory as a whole.
+     * 
+     * @param out
+     *                the output stream
+     * @throws IOException
+     *                 if the stream cannot be written.
+     */
+    public void writeEncoded(OutputStream out) throws IOException {
+	byte[] header = new byte[8];
+	LittleEndianConversions.I2OSP(numRows, header, 0);
+	LittleEndianConversions.I2OSP(numColumns, header, 4);
+	out.write(header);
+
+	// number of "full" integer
+	int q = numColumns >>> 5;
+	// number of bits in non-full integer
+	int r = numColumns & 0x1f;
+
+	byte[] row = new byte[(numColumns + 7) >>> 3];
+	for (int i = 0; i < numRows; i++) {
+	    int count = 0;
+	    for (int j = 0; j < q; j++, count += 4) {
+		LittleEndianConversions.I2OSP(matrix[i][j], row, count);
+	    }
+	    for (int j = 0; j < r; j += 8) {
+		row[count++] = (byte) ((matrix[i][q] >>> j) & 0xff);
+	    }
+	    out.write(row);
+	}
+    }
+
+    private static void readFully(InputStream in, byte[] buf)
+	    throws IOException {
+	for (int off = 0; off < buf.length;) {
+	    int read = in.read(buf, off, buf.length - off);
+	    if (read < 0) {
+		throw new EOFException("encoded matrix is truncated");
+	    }
+	    off += read;
+	}
+    }
     
     
     /**
@@ -9,15 +9,24 @@
 
 package de.flexiprovider.common.mode;
 
+import de.flexiprovider.api.BlockCipher;
 import de.flexiprovider.api.Mode;
 import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
 import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.ParallelTask;
 
 /**
  * Cipher Block Chaining (CBC) mode for symmetric block ciphers. For further
  * information, see "Handbook of Applied Cryptography", Note 7.13.
+ * <p>
+ * Decryption does not depend on previous plaintext blocks. Therefore, large
+ * inputs can be split into segments during decryption, which are processed by
+ * several threads with their own instances of the block cipher. Parallel
+ * decryption is opt-in: it is only used if the mode is initialized with a
+ * {@link ParallelModeParameterSpec}, which sets the number of threads and the
+ * minimal input length. Encryption is always serial.
  * 
  * @author Ralf-P. Weinmann
  */
@@ -33,6 +42,30 @@ public class CBC extends Mode {
      */
     private byte[] chainingBlock;
 
+    /**
+     * The number of blocks decrypted by the cipher engine at once
+     */
+    private static final int CHUNK_BLOCKS = 64;
+
+    /**
+     * Buffer for the decrypted blocks of a chunk
+     */
+    private byte[] chunk;
+
+    // the key and parameters (needed for the block ciphers of the workers)
+    private SecretKey key;
+
+    private AlgorithmParameterSpec cipherParams;
+
+    // the number of threads used for decrypting large inputs
+    private int numThreads;
+
+    // the minimal input length (in bytes) for parallel decryption
+    private int threshold;
+
+    // the block ciphers of the workers (created on first use)
+    private BlockCipher[] engines;
+
     /**
      * Initialize the Mode object for encryption.
      * 
@@ -54,7 +87,7 @@ public class CBC extends Mode {
 	    throws InvalidKeyException, InvalidAlgorithmParameterException {
 
 	initCipherEncrypt(key, cipherParams);
-	initCommon(modeParams);
+	initCommon(key, modeParams, cipherParams);
     }
 
     /**
@@ -78,13 +111,14 @@ public class CBC extends Mode {
 	    throws InvalidKeyException, InvalidAlgorithmParameterException {
 
 	initCipherDecrypt(key, cipherParams);
-	initCommon(modeParams);
+	initCommon(key, modeParams, cipherParams);
     }
 
     /**
      * CBC common initialization.
      */
-    private void initCommon(ModeParameterSpec modeParams) {
+    private void initCommon(SecretKey key, ModeParameterSpec modeParams,
+	    AlgorithmParameterSpec cipherParams) {
 	blockSize = getCipherBlockSize();
 
 	iv = new byte[blockSize];
@@ -104,8 +138,23 @@ public class CBC extends Mode {
 	    }
 	}
 
+	if (modeParams instanceof ParallelModeParameterSpec) {
+	    ParallelModeParameterSpec params =
+		    (ParallelModeParameterSpec) modeParams;
+	    numThreads = params.getNumThreads();
+	    threshold = params.getThreshold();
+	} else {
+	    // serial decryption
+	    numThreads = 1;
+	    threshold = 0;
+	}
+	this.key = key;
+	this.cipherParams = cipherParams;
+	engines = null;
+
 	buf = new byte[blockSize];
 	chainingBlock = new byte[blockSize];
+	chunk = null;
 	reset();
     }
 
@@ -151,10 +200,195 @@ public class CBC extends Mode {
 
 	singleBlockDecrypt(input, inOff, buf, 0);
 	for (int i = blockSize - 1; i >= 0; i--) {
+	    byte c = input[inOff + i];
 	    output[outOff + i] = (byte) (chainingBlock[i] ^ buf[i]);
+	    chainingBlock[i] = c;
+	}
+    }
+
+    /**
+     * Decrypt consecutive data blocks. The blocks of a chunk are decrypted by
+     * the cipher engine at once, since the decryption of a block does not
+     * depend on the previous plaintext. Large inputs are processed by several
+     * threads.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+
+	if (chunk == null) {
+	    chunk = new byte[CHUNK_BLOCKS * blockSize];
+	}
+
+	int numSegments = Math.min(numThreads, numBlocks / CHUNK_BLOCKS);
+	if (numSegments > 1 && (long) numBlocks * blockSize >= threshold) {
+	    processSegments(input, inOff, output, outOff, numBlocks,
+		    numSegments);
+	} else {
+	    decryptChunks(null, chainingBlock, buf, chunk, input, inOff,
+		    output, outOff, numBlocks);
+	}
+    }
+
+    /**
+     * Split the input into segments of consecutive blocks. The first segment
+     * is processed by the calling thread, the others by worker threads. The
+     * ciphertext blocks preceding the segments and the last ciphertext block
+     * are saved beforehand, since input and output may be the same.
+     */
+    private void processSegments(byte[] input, int inOff, byte[] output,
+	    int outOff, int numBlocks, int numSegments) {
+
+	if (engines == null) {
+	    createEngines();
+	}
+
+	// save the last ciphertext block for chaining
+	byte[] last = new byte[blockSize];
+	System.arraycopy(input, inOff + (numBlocks - 1) * blockSize, last, 0,
+		blockSize);
+
+	// save the ciphertext blocks preceding the segments 1, 2, ...
+	byte[][] chains = new byte[numSegments][];
+	chains[0] = chainingBlock;
+	for (int i = 1; i < numSegments; i++) {
+	    int off = ParallelTask.start(numBlocks, numSegments, i) * blockSize;
+	    chains[i] = new byte[blockSize];
+	    System.arraycopy(input, inOff + off - blockSize, chains[i], 0,
+		    blockSize);
+	}
+
+	new Segments(chains, input, inOff, output, outOff, numBlocks)
+		.run(numSegments);
+
+	System.arraycopy(last, 0, chainingBlock, 0, blockSize);
+    }
+
+    /**
+     * Create one block cipher for each worker.
+     */
+    private void createEngines() {
+	engines = new BlockCipher[numThreads - 1];
+	for (int i = 0; i < engines.length; i++) {
+	    try {
+		engines[i] = createCipherDecrypt(key, cipherParams);
+	    } catch (InvalidKeyException ike) {
+		// the key has already been accepted by the block cipher
+		throw new RuntimeException("internal error");
+	    } catch (InvalidAlgorithmParameterException iape) {
+		// the parameters have already been accepted
+		throw new RuntimeException("internal error");
+	    }
+	}
+    }
+
+    /**
+     * Decrypt consecutive data blocks chunk by chunk. Each decrypted block is
+     * XORed with the preceding ciphertext block. This is done backwards, so
+     * that the input and output may be the same array at the same offset.
+     * 
+     * @param engine
+     *                the block cipher to use (<tt>null</tt> for the block
+     *                cipher of this mode)
+     * @param chain
+     *                the ciphertext block preceding the input (replaced by
+     *                the last ciphertext block of the input)
+     * @param save
+     *                buffer for one block
+     * @param buffer
+     *                buffer for the decrypted blocks of a chunk
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    private void decryptChunks(BlockCipher engine, byte[] chain, byte[] save,
+	    byte[] buffer, byte[] input, int inOff, byte[] output, int outOff,
+	    int numBlocks) {
+
+	while (numBlocks > 0) {
+	    int n = Math.min(numBlocks, CHUNK_BLOCKS);
+	    int len = n * blockSize;
+
+	    if (engine == null) {
+		multiBlockDecrypt(input, inOff, buffer, 0, n);
+	    } else {
+		multiBlockDecrypt(engine, input, inOff, buffer, 0, n);
+	    }
+
+	    // remember the last ciphertext block for chaining
+	    System.arraycopy(input, inOff + len - blockSize, save, 0,
+		    blockSize);
+
+	    for (int i = len - 1; i >= blockSize; i--) {
+		output[outOff + i] = (byte) (buffer[i] ^ input[inOff + i
+			- blockSize]);
+	    }
+	    for (int i = blockSize - 1; i >= 0; i--) {
+		output[outOff + i] = (byte) (buffer[i] ^ chain[i]);
+	    }
+	    System.arraycopy(save, 0, chain, 0, blockSize);
+
+	    inOff += len;
+	    outOff += len;
+	    numBlocks -= n;
+	}
+    }
+
+    /**
+     * The parallel decryption of the segments of the input. Segment <tt>0</tt>
+     * is decrypted with the block cipher and buffers of this mode, segment
+     * <tt>i &gt; 0</tt> with the block cipher <tt>engines[i - 1]</tt>.
+     */
+    private class Segments extends ParallelTask {
+
+	private byte[][] chains;
+
+	private byte[] input, output;
+
+	private int inOff, outOff, numBlocks;
+
+	Segments(byte[][] chains, byte[] input, int inOff, byte[] output,
+		int outOff, int numBlocks) {
+	    this.chains = chains;
+	    this.input = input;
+	    this.inOff = inOff;
+	    this.output = output;
+	    this.outOff = outOff;
+	    this.numBlocks = numBlocks;
+	}
+
+	protected void runPart(int part) {
+	    int numSegments = chains.length;
+	    int first = start(numBlocks, numSegments, part);
+	    int n = start(numBlocks, numSegments, part + 1) - first;
+	    int off = first * blockSize;
+	    if (part == 0) {
+		decryptChunks(null, chains[0], buf, chunk, input, inOff,
+			output, outOff, n);
+	    } else {
+		decryptChunks(engines[part - 1], chains[part],
+			new byte[blockSize], new byte[CHUNK_BLOCKS * blockSize],
+			input, inOff + off, output, outOff + off, n);
+	    }
 	}
 
-	System.arraycopy(input, inOff, chainingBlock, 0, blockSize);
     }
 
     /**
@@ -40,6 +40,16 @@ public class CFB extends Mode {
      */
     private byte[] feedbackBlock;
 
+    /**
+     * The number of blocks encrypted by the cipher engine at once
+     */
+    private static final int CHUNK_BLOCKS = 64;
+
+    /**
+     * Buffer for the key stream of a chunk
+     */
+    private byte[] chunk;
+
     /**
      * Initialize the Mode object for encryption.
      * 
@@ -94,6 +104,7 @@ public class CFB extends Mode {
 
 	buf = new byte[cipherBlockSize];
 	feedbackBlock = new byte[cipherBlockSize];
+	chunk = null;
 	reset();
     }
 
@@ -154,9 +165,72 @@ public class CFB extends Mode {
      */
     protected final void nextChunkDecrypt(byte[] input, int inOff,
 	    byte[] output, int outOff) {
-	nextChunk(input, inOff, output, outOff);
-	// fill feedback block with ciphertext
+	// encrypt feedback block
+	singleBlockEncrypt(feedbackBlock, 0, buf, 0);
+
+	// shift feedback block
+	System.arraycopy(feedbackBlock, 0, feedbackBlock, blockSize,
+		feedbackBlock.length - blockSize);
+
+	// fill feedback block with ciphertext (before the output is written,
+	// since input and output may be the same)
 	System.arraycopy(input, inOff, feedbackBlock, 0, blockSize);
+
+	// compute plaintext block
+	for (int i = 0; i < blockSize; i++) {
+	    output[outOff + i] = (byte) (buf[i] ^ feedbackBlock[i]);
+	}
+    }
+
+    /**
+     * Decrypt consecutive data blocks. If the mode block size equals the
+     * cipher block size, the key stream blocks are the encryptions of the
+     * preceding ciphertext blocks, which are all known in advance. In this
+     * case, the key stream of a chunk is computed by the cipher engine at once.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+
+	if (blockSize != feedbackBlock.length) {
+	    super.processBlocksDecrypt(input, inOff, output, outOff, numBlocks);
+	    return;
+	}
+
+	if (chunk == null) {
+	    chunk = new byte[CHUNK_BLOCKS * blockSize];
+	}
+
+	while (numBlocks > 0) {
+	    int n = Math.min(numBlocks, CHUNK_BLOCKS);
+	    int len = n * blockSize;
+
+	    // collect the feedback blocks
+	    System.arraycopy(feedbackBlock, 0, chunk, 0, blockSize);
+	    System.arraycopy(input, inOff, chunk, blockSize, len - blockSize);
+	    System.arraycopy(input, inOff + len - blockSize, feedbackBlock, 0,
+		    blockSize);
+
+	    // compute the key stream and the plaintext blocks
+	    multiBlockEncrypt(chunk, 0, chunk, 0, n);
+	    for (int i = 0; i < len; i++) {
+		output[outOff + i] = (byte) (chunk[i] ^ input[inOff + i]);
+	    }
+
+	    inOff += len;
+	    outOff += len;
+	    numBlocks -= n;
+	}
     }
 
     private void nextChunk(byte[] input, int inOff, byte[] output, int outOff) {
@@ -8,11 +8,13 @@
  */
 package de.flexiprovider.common.mode;
 
+import de.flexiprovider.api.BlockCipher;
 import de.flexiprovider.api.Mode;
 import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
 import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.ParallelTask;
 
 /**
  * Counter (CTR) mode for symmetric block ciphers.
@@ -21,6 +23,16 @@ import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
  * Rogaway, D. Wagner: Comments to NIST concerning AES Modes of Operations:
  * CTR-Mode Encryption
  * http://csrc.nist.gov/CryptoToolkit/modes/proposedmodes/ctr/ctr-spec.pdf
+ * <p>
+ * Since the key stream blocks are independent, large inputs can be split into
+ * segments which are processed by several threads. Each segment starts with
+ * the counter value of its first block, and each thread uses its own instance
+ * of the block cipher, so the output is identical to the one of the serial
+ * computation. Parallel processing is opt-in: it is only used if the mode is
+ * initialized with a {@link ParallelModeParameterSpec}, which sets the number
+ * of threads and the minimal input length. With plain
+ * {@link ModeParameterSpec mode parameters}, all input is processed by the
+ * calling thread.
  * 
  * @author Ralf-P. Weinmann
  * @author Martin D_ring
@@ -33,6 +45,32 @@ public class CTR extends Mode {
 	// the feedback block
 	private byte[] feedbackBlock;
 
+	/**
+	 * The number of blocks encrypted by the cipher engine at once
+	 */
+	private static final int CHUNK_BLOCKS = 64;
+
+	/**
+	 * Buffer for the counter blocks and the key stream of a chunk
+	 */
+	private byte[] chunk;
+
+	// the key and parameters (needed for the block ciphers of the workers)
+	private SecretKey key;
+
+	private AlgorithmParameterSpec cipherParams;
+
+	// the number of threads used for large inputs
+	private int numThreads;
+
+	// the minimal input length (in bytes) for parallel processing
+	private int threshold;
+
+	// the block ciphers and buffers of the workers (created on first use)
+	private BlockCipher[] engines;
+
+	private byte[][] chunks;
+
 	/**
 	 * Initialize the Mode object for encryption.
 	 * 
@@ -54,7 +92,7 @@ public class CTR extends Mode {
 			throws InvalidKeyException, InvalidAlgorithmParameterException {
 
 		initCipherEncrypt(key, cipherParams);
-		initCommon(modeParams);
+		initCommon(key, modeParams, cipherParams);
 	}
 
 	/**
@@ -78,13 +116,14 @@ public class CTR extends Mode {
 			throws InvalidKeyException, InvalidAlgorithmParameterException {
 
 		initCipherDecrypt(key, cipherParams);
-		initCommon(modeParams);
+		initCommon(key, modeParams, cipherParams);
 	}
 
 	/**
 	 * CTR common initialization.
 	 */
-	private void initCommon(ModeParameterSpec modeParams) {
+	private void initCommon(SecretKey key, ModeParameterSpec modeParams,
+			AlgorithmParameterSpec cipherParams) {
 		blockSize = getCipherBlockSize();
 
 		iv = new byte[blockSize];
@@ -104,8 +143,24 @@ public class CTR extends Mode {
 			}
 		}
 
+		if (modeParams instanceof ParallelModeParameterSpec) {
+			ParallelModeParameterSpec params =
+					(ParallelModeParameterSpec) modeParams;
+			numThreads = params.getNumThreads();
+			threshold = params.getThreshold();
+		} else {
+			// serial processing
+			numThreads = 1;
+			threshold = 0;
+		}
+		this.key = key;
+		this.cipherParams = cipherParams;
+		engines = null;
+		chunks = null;
+
 		feedbackBlock = new byte[blockSize];
 		counter = new byte[blockSize];
+		chunk = null;
 		reset();
 	}
 
@@ -155,6 +210,225 @@ public class CTR extends Mode {
 		nextChunkEncrypt(input, inOff, output, outOff);
 	}
 
+	/**
+	 * Encrypt consecutive data blocks. The counter blocks of a chunk are
+	 * written to a buffer and encrypted by the cipher engine at once. Large
+	 * inputs are processed by several threads.
+	 * 
+	 * @param input
+	 *            input data buffer
+	 * @param inOff
+	 *            input data offset
+	 * @param output
+	 *            output data buffer
+	 * @param outOff
+	 *            output data offset
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	protected final void processBlocksEncrypt(byte[] input, int inOff,
+			byte[] output, int outOff, int numBlocks) {
+
+		int numSegments = Math.min(numThreads, numBlocks / CHUNK_BLOCKS);
+		if (numSegments > 1 && (long) numBlocks * blockSize >= threshold) {
+			processSegments(input, inOff, output, outOff, numBlocks,
+					numSegments);
+			return;
+		}
+
+		if (chunk == null) {
+			chunk = new byte[CHUNK_BLOCKS * blockSize];
+		}
+		keyStreamXor(null, counter, chunk, input, inOff, output, outOff,
+				numBlocks);
+	}
+
+	/**
+	 * Decrypt consecutive data blocks (same as encryption).
+	 * 
+	 * @param input
+	 *            input data buffer
+	 * @param inOff
+	 *            input data offset
+	 * @param output
+	 *            output data buffer
+	 * @param outOff
+	 *            output data offset
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	protected final void processBlocksDecrypt(byte[] input, int inOff,
+			byte[] output, int outOff, int numBlocks) {
+		processBlocksEncrypt(input, inOff, output, outOff, numBlocks);
+	}
+
+	/**
+	 * Split the input into segments of consecutive blocks. The first segment
+	 * is processed by the calling thread, the others by worker threads
+	 * starting with the corresponding counter values. Afterwards, the counter
+	 * is advanced by the total number of blocks.
+	 */
+	private void processSegments(byte[] input, int inOff, byte[] output,
+			int outOff, int numBlocks, int numSegments) {
+
+		if (engines == null) {
+			createEngines();
+		}
+
+		// compute the initial counter values of the segments
+		byte[][] ctrs = new byte[numSegments][];
+		ctrs[0] = counter;
+		for (int i = 1; i < numSegments; i++) {
+			ctrs[i] = new byte[blockSize];
+			System.arraycopy(counter, 0, ctrs[i], 0, blockSize);
+			addToCounter(ctrs[i], ParallelTask.start(numBlocks, numSegments,
+					i));
+		}
+
+		if (chunk == null) {
+			chunk = new byte[CHUNK_BLOCKS * blockSize];
+		}
+		new Segments(ctrs, input, inOff, output, outOff, numBlocks)
+				.run(numSegments);
+
+		int segBlocks = ParallelTask.start(numBlocks, numSegments, 1);
+		addToCounter(counter, numBlocks - segBlocks);
+	}
+
+	/**
+	 * Create one block cipher and buffer for each worker.
+	 */
+	private void createEngines() {
+		engines = new BlockCipher[numThreads - 1];
+		chunks = new byte[numThreads - 1][];
+		for (int i = 0; i < engines.length; i++) {
+			try {
+				engines[i] = createCipherEncrypt(key, cipherParams);
+			} catch (InvalidKeyException ike) {
+				// the key has already been accepted by the block cipher
+				throw new RuntimeException("internal error");
+			} catch (InvalidAlgorithmParameterException iape) {
+				// the parameters have already been accepted
+				throw new RuntimeException("internal error");
+			}
+			chunks[i] = new byte[CHUNK_BLOCKS * blockSize];
+		}
+	}
+
+	/**
+	 * Compute the key stream for the given counter value and XOR it with the
+	 * input. The counter is advanced by the number of blocks.
+	 * 
+	 * @param engine
+	 *            the block cipher to use (<tt>null</tt> for the block cipher
+	 *            of this mode)
+	 * @param ctr
+	 *            the counter value
+	 * @param buf
+	 *            buffer for the counter blocks of a chunk
+	 * @param input
+	 *            input data buffer
+	 * @param inOff
+	 *            input data offset
+	 * @param output
+	 *            output data buffer
+	 * @param outOff
+	 *            output data offset
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	private void keyStreamXor(BlockCipher engine, byte[] ctr, byte[] buf,
+			byte[] input, int inOff, byte[] output, int outOff, int numBlocks) {
+
+		while (numBlocks > 0) {
+			int n = Math.min(numBlocks, CHUNK_BLOCKS);
+			int len = n * blockSize;
+
+			// write the counter blocks
+			for (int off = 0; off < len; off += blockSize) {
+				System.arraycopy(ctr, 0, buf, off, blockSize);
+				// increase counter value
+				for (int i = blockSize - 1; i >= 0; i--) {
+					if (++ctr[i] != 0) {
+						break;
+					}
+				}
+			}
+
+			// compute the key stream and XOR it with the input
+			if (engine == null) {
+				multiBlockEncrypt(buf, 0, buf, 0, n);
+			} else {
+				multiBlockEncrypt(engine, buf, 0, buf, 0, n);
+			}
+			for (int i = 0; i < len; i++) {
+				output[outOff + i] = (byte) (buf[i] ^ input[inOff + i]);
+			}
+
+			inOff += len;
+			outOff += len;
+			numBlocks -= n;
+		}
+	}
+
+	/**
+	 * Add a non-negative value to a counter (big-endian, modulo
+	 * <tt>2<sup>8*blockSize</sup></tt>).
+	 */
+	private static void addToCounter(byte[] ctr, long value) {
+		int carry = 0;
+		for (int i = ctr.length - 1; i >= 0; i--) {
+			if (value == 0 && carry == 0) {
+				break;
+			}
+			int x = (ctr[i] & 0xff) + (int) (value & 0xff) + carry;
+			ctr[i] = (byte) x;
+			carry = x >>> 8;
+			value >>>= 8;
+		}
+	}
+
+	/**
+	 * The parallel key stream computation for the segments of the input.
+	 * Segment <tt>0</tt> is processed with the block cipher, counter and
+	 * buffer of this mode, segment <tt>i &gt; 0</tt> with the block cipher
+	 * <tt>engines[i - 1]</tt> and a copy of the counter advanced to the start
+	 * of the segment.
+	 */
+	private class Segments extends ParallelTask {
+
+		private byte[][] ctrs;
+
+		private byte[] input, output;
+
+		private int inOff, outOff, numBlocks;
+
+		Segments(byte[][] ctrs, byte[] input, int inOff, byte[] output,
+				int outOff, int numBlocks) {
+			this.ctrs = ctrs;
+			this.input = input;
+			this.inOff = inOff;
+			this.output = output;
+			this.outOff = outOff;
+			this.numBlocks = numBlocks;
+		}
+
+		protected void runPart(int part) {
+			int numSegments = ctrs.length;
+			int first = start(numBlocks, numSegments, part);
+			int n = start(numBlocks, numSegments, part + 1) - first;
+			int off = first * blockSize;
+			if (part == 0) {
+				keyStreamXor(null, ctrs[0], chunk, input, inOff, output,
+						outOff, n);
+			} else {
+				keyStreamXor(engines[part - 1], ctrs[part], chunks[part - 1],
+						input, inOff + off, output, outOff + off, n);
+			}
+		}
+
+	}
+
 	/**
 	 * Reset counter value to initialization vector.
 	 */
@@ -112,6 +112,46 @@ public class ECB extends Mode {
 	singleBlockDecrypt(input, inOff, output, outOff);
     }
 
+    /**
+     * Encrypt consecutive data blocks. The blocks are independent, so they are
+     * passed to the cipher engine at once.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksEncrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	multiBlockEncrypt(input, inOff, output, outOff, numBlocks);
+    }
+
+    /**
+     * Decrypt consecutive data blocks. The blocks are independent, so they are
+     * passed to the cipher engine at once.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	multiBlockDecrypt(input, inOff, output, outOff, numBlocks);
+    }
+
     /**
      * ECB does not perform any operations on reset.
      */
@@ -0,0 +1,545 @@
+package de.flexiprovider.common.mode;
+
+import de.flexiprovider.api.Mode;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.ByteUtils;
+
+/**
+ * Galois/Counter Mode (GCM) for symmetric block ciphers with a block size of
+ * 128 bits. GCM combines the counter mode with the universal hash function
+ * GHASH over <tt>GF(2<sup>128</sup>)</tt> and provides authenticated
+ * encryption. The authentication tag is appended to the ciphertext; during
+ * decryption, it is verified by <tt>doFinal()</tt>, which throws a
+ * {@link BadPaddingException} if the tag is invalid. The plaintext returned
+ * by <tt>update()</tt> during decryption must not be used before
+ * <tt>doFinal()</tt> has verified the tag. The mode ignores the padding
+ * scheme.
+ * <p>
+ * The initialization vector, the tag length, and the additional authenticated
+ * data are specified via {@link GCMParameterSpec}. A plain
+ * {@link ModeParameterSpec} selects a tag length of 128 bits and no additional
+ * data. An initialization vector must not be used twice with the same key, so
+ * encrypting a second message requires a new initialization, and initializing
+ * for encryption with the key and the IV of the previous initialization for
+ * encryption is rejected.
+ * <p>
+ * The multiplication by the hash key <tt>H</tt> uses the 4-bit tables of
+ * Shoup (the 16 multiples of <tt>H</tt> and a reduction table), which are
+ * computed once per key. The counter blocks of a chunk are encrypted at once,
+ * and the encryption and the hash are computed in a single pass over the data
+ * without allocating memory per block.
+ * <p>
+ * For further information, see NIST Special Publication 800-38D:
+ * Recommendation for Block Cipher Modes of Operation: Galois/Counter Mode
+ * (GCM) and GMAC.
+ */
+public class GCM extends Mode {
+
+    /**
+     * The number of blocks encrypted by the cipher engine at once
+     */
+    private static final int CHUNK_BLOCKS = 64;
+
+    /**
+     * The reduction table for the 4-bit multiplication
+     */
+    private static final long[] REM_4BIT = { 0x0000L << 48, 0x1C20L << 48,
+	    0x3840L << 48, 0x2460L << 48, 0x7080L << 48, 0x6CA0L << 48,
+	    0x48C0L << 48, 0x54E0L << 48, 0xE100L << 48, 0xFD20L << 48,
+	    0xD940L << 48, 0xC560L << 48, 0x9180L << 48, 0x8DA0L << 48,
+	    0xA9C0L << 48, 0xB5E0L << 48 };
+
+    // the multiples of the hash key H (high and low 64 bits)
+    private long[] hHi, hLo;
+
+    // the GHASH state (high and low 64 bits)
+    private long xHi, xLo;
+
+    // the pre-counter block J0 and the current counter block
+    private byte[] j0, counter;
+
+    // buffer for the counter blocks and the key stream of a chunk
+    private byte[] chunk;
+
+    // the tag length in bytes
+    private int tagLength;
+
+    // the additional authenticated data
+    private byte[] aad;
+
+    // the number of processed data bytes
+    private long dataLength;
+
+    // whether the mode has been initialized for encryption
+    private boolean forEncryption;
+
+    // whether a message has been encrypted with the current IV
+    private boolean ivUsed;
+
+    // the encoded key and the IV of the last initialization for encryption
+    private byte[] lastEncKey, lastEncIV;
+
+    /**
+     * Initialize the Mode object for encryption.
+     * 
+     * @param key
+     *                the key used for encryption
+     * @param modeParams
+     *                additional mode parameters
+     * @param cipherParams
+     *                additional algorithm parameters
+     * @throws de.flexiprovider.api.exceptions.InvalidKeyException
+     *                 if the key is inappropriate for initializing the
+     *                 underlying block cipher.
+     * @throws de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for initializing the
+     *                 underlying block cipher or the mode, or if the key and
+     *                 the IV are those of the last initialization for
+     *                 encryption.
+     */
+    protected final void initEncrypt(SecretKey key,
+	    ModeParameterSpec modeParams, AlgorithmParameterSpec cipherParams)
+	    throws InvalidKeyException, InvalidAlgorithmParameterException {
+	byte[] encKey = key.getEncoded();
+	byte[] encIV = modeParams == null ? null : modeParams.getIV();
+	if (encKey != null && encIV != null
+		&& ByteUtils.equals(encKey, lastEncKey)
+		&& ByteUtils.equals(encIV, lastEncIV)) {
+	    throw new InvalidAlgorithmParameterException(
+		    "cannot reuse IV for GCM encryption");
+	}
+	forEncryption = true;
+	initCommon(key, modeParams, cipherParams);
+	lastEncKey = encKey;
+	lastEncIV = iv;
+    }
+
+    /**
+     * Initialize the Mode object for decryption.
+     * 
+     * @param key
+     *                the key used for decryption
+     * @param modeParams
+     *                additional mode parameters
+     * @param cipherParams
+     *                additional algorithm parameters
+     * @throws de.flexiprovider.api.exceptions.InvalidKeyException
+     *                 if the key is inappropriate for initializing the
+     *                 underlying block cipher.
+     * @throws de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for initializing the
+     *                 underlying block cipher or the mode.
+     */
+    protected final void initDecrypt(SecretKey key,
+	    ModeParameterSpec modeParams, AlgorithmParameterSpec cipherParams)
+	    throws InvalidKeyException, InvalidAlgorithmParameterException {
+	forEncryption = false;
+	initCommon(key, modeParams, cipherParams);
+    }
+
+    /**
+     * GCM common initialization. The block cipher is used in forward
+     * direction for both encryption and decryption.
+     */
+    private void initCommon(SecretKey key, ModeParameterSpec modeParams,
+	    AlgorithmParameterSpec cipherParams) throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+
+	initCipherEncrypt(key, cipherParams);
+	blockSize = getCipherBlockSize();
+	if (blockSize != 16) {
+	    throw new InvalidAlgorithmParameterException(
+		    "GCM requires a block size of 128 bits");
+	}
+
+	if (modeParams == null || modeParams.getIV() == null
+		|| modeParams.getIV().length == 0) {
+	    throw new InvalidAlgorithmParameterException("GCM requires an IV");
+	}
+	iv = modeParams.getIV();
+
+	if (modeParams instanceof GCMParameterSpec) {
+	    GCMParameterSpec gcmParams = (GCMParameterSpec) modeParams;
+	    int tagBits = gcmParams.getTagLength();
+	    if (tagBits < 96 || tagBits > 128 || (tagBits & 7) != 0) {
+		throw new InvalidAlgorithmParameterException(
+			"invalid tag length");
+	    }
+	    tagLength = tagBits >> 3;
+	    aad = gcmParams.getAAD();
+	} else {
+	    tagLength = GCMParameterSpec.DEFAULT_TAG_LENGTH >> 3;
+	    aad = new byte[0];
+	}
+
+	// compute the hash key H = E(0) and the multiplication table
+	byte[] h = new byte[16];
+	singleBlockEncrypt(h, 0, h, 0);
+	initTable(h);
+
+	// compute the pre-counter block J0
+	j0 = new byte[16];
+	if (iv.length == 12) {
+	    System.arraycopy(iv, 0, j0, 0, 12);
+	    j0[15] = 1;
+	} else {
+	    xHi = 0;
+	    xLo = 0;
+	    ghash(iv, 0, iv.length);
+	    xLo ^= (long) iv.length << 3;
+	    multiplyH();
+	    BigEndianConversions.I2OSP(xHi, j0, 0);
+	    BigEndianConversions.I2OSP(xLo, j0, 8);
+	}
+
+	counter = new byte[16];
+	chunk = null;
+	reset();
+	ivUsed = false;
+    }
+
+    /**
+     * @return the tag length in bytes
+     */
+    protected final int getTagLength() {
+	return tagLength;
+    }
+
+    /**
+     * @return the IV, the tag length, and the additional authenticated data
+     *         as {@link GCMParameterSpec}
+     */
+    protected final ModeParameterSpec getModeParameters() {
+	return new GCMParameterSpec(iv, tagLength << 3, aad);
+    }
+
+    /**
+     * Encrypt the next data block.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     */
+    protected final void nextChunkEncrypt(final byte[] input, final int inOff,
+	    byte[] output, final int outOff) {
+	processBlocksEncrypt(input, inOff, output, outOff, 1);
+    }
+
+    /**
+     * Decrypt the next data block.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     */
+    protected final void nextChunkDecrypt(final byte[] input, final int inOff,
+	    byte[] output, final int outOff) {
+	processBlocksDecrypt(input, inOff, output, outOff, 1);
+    }
+
+    /**
+     * Encrypt consecutive data blocks and feed the ciphertext into the hash.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksEncrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	checkIV();
+	while (numBlocks > 0) {
+	    int n = Math.min(numBlocks, CHUNK_BLOCKS);
+	    int len = n << 4;
+	    keyStream(n);
+	    for (int i = 0; i < len; i++) {
+		output[outOff + i] = (byte) (chunk[i] ^ input[inOff + i]);
+	    }
+	    ghash(output, outOff, len);
+	    inOff += len;
+	    outOff += len;
+	    numBlocks -= n;
+	}
+    }
+
+    /**
+     * Feed consecutive data blocks into the hash and decrypt them. Input and
+     * output may be the same array at the same offset.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	while (numBlocks > 0) {
+	    int n = Math.min(numBlocks, CHUNK_BLOCKS);
+	    int len = n << 4;
+	    ghash(input, inOff, len);
+	    keyStream(n);
+	    for (int i = 0; i < len; i++) {
+		output[outOff + i] = (byte) (chunk[i] ^ input[inOff + i]);
+	    }
+	    inOff += len;
+	    outOff += len;
+	    numBlocks -= n;
+	}
+    }
+
+    /**
+     * Encrypt the final (incomplete) data block and append the tag.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param inLen
+     *                the length of the final data (less than 16)
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     */
+    protected final void finishEncrypt(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) {
+	checkIV();
+	if (inLen > 0) {
+	    keyStream(1);
+	    for (int i = 0; i < inLen; i++) {
+		output[outOff + i] = (byte) (chunk[i] ^ input[inOff + i]);
+	    }
+	    ghash(output, outOff, inLen);
+	}
+	computeTag(output, outOff + inLen);
+	ivUsed = true;
+    }
+
+    /**
+     * Verify the tag and decrypt the final (incomplete) data block.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param inLen
+     *                the length of the final data including the tag
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @throws BadPaddingException
+     *                 if the tag is invalid.
+     */
+    protected final void finishDecrypt(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) throws BadPaddingException {
+	int dataLen = inLen - tagLength;
+	if (dataLen > 0) {
+	    ghash(input, inOff, dataLen);
+	}
+
+	// compare the tags in constant time
+	byte[] tag = new byte[tagLength];
+	computeTag(tag, 0);
+	int diff = 0;
+	for (int i = 0; i < tagLength; i++) {
+	    diff |= tag[i] ^ input[inOff + dataLen + i];
+	}
+	if (diff != 0) {
+	    throw new BadPaddingException("invalid authentication tag");
+	}
+
+	if (dataLen > 0) {
+	    keyStream(1);
+	    for (int i = 0; i < dataLen; i++) {
+		output[outOff + i] = (byte) (chunk[i] ^ input[inOff + i]);
+	    }
+	}
+    }
+
+    /**
+     * Reset the counter and the hash to the start of a message and hash the
+     * additional authenticated data.
+     */
+    protected final void reset() {
+	System.arraycopy(j0, 0, counter, 0, 16);
+	xHi = 0;
+	xLo = 0;
+	dataLength = 0;
+	ghash(aad, 0, aad.length);
+	dataLength = 0;
+    }
+
+    /**
+     * Refuse to encrypt a second message with the same IV.
+     */
+    private void checkIV() {
+	if (forEncryption && ivUsed) {
+	    throw new IllegalStateException(
+		    "GCM requires a new IV for each encryption");
+	}
+    }
+
+    /**
+     * Encrypt the next <tt>n</tt> counter blocks into the chunk buffer. Only
+     * the last 32 bits of the counter are incremented.
+     * 
+     * @param n
+     *                the number of blocks (at most {@link #CHUNK_BLOCKS})
+     */
+    private void keyStream(int n) {
+	if (chunk == null) {
+	    chunk = new byte[CHUNK_BLOCKS << 4];
+	}
+	for (int off = 0; off < n << 4; off += 16) {
+	    for (int i = 15; i >= 12; i--) {
+		if (++counter[i] != 0) {
+		    break;
+		}
+	    }
+	    System.arraycopy(counter, 0, chunk, off, 16);
+	}
+	multiBlockEncrypt(chunk, 0, chunk, 0, n);
+    }
+
+    /**
+     * Compute the authentication tag from the lengths block and the
+     * encryption of J0.
+     * 
+     * @param out
+     *                the array to hold the tag
+     * @param outOff
+     *                the offset where the tag will start
+     */
+    private void computeTag(byte[] out, int outOff) {
+	xHi ^= (long) aad.length << 3;
+	xLo ^= dataLength << 3;
+	multiplyH();
+
+	byte[] s = new byte[16];
+	BigEndianConversions.I2OSP(xHi, s, 0);
+	BigEndianConversions.I2OSP(xLo, s, 8);
+	byte[] e = new byte[16];
+	singleBlockEncrypt(j0, 0, e, 0);
+	for (int i = 0; i < tagLength; i++) {
+	    out[outOff + i] = (byte) (s[i] ^ e[i]);
+	}
+    }
+
+    /**
+     * Feed data into the hash. An incomplete last block is padded with zeros.
+     * 
+     * @param in
+     *                the data
+     * @param off
+     *                the offset where the data starts
+     * @param len
+     *                the length of the data
+     */
+    private void ghash(byte[] in, int off, int len) {
+	dataLength += len;
+	int end = off + len;
+	for (; off + 16 <= end; off += 16) {
+	    xHi ^= BigEndianConversions.OS2LIP(in, off);
+	    xLo ^= BigEndianConversions.OS2LIP(in, off + 8);
+	    multiplyH();
+	}
+	if (off < end) {
+	    byte[] last = new byte[16];
+	    System.arraycopy(in, off, last, 0, end - off);
+	    xHi ^= BigEndianConversions.OS2LIP(last, 0);
+	    xLo ^= BigEndianConversions.OS2LIP(last, 8);
+	    multiplyH();
+	}
+    }
+
+    /**
+     * Compute the table of the 16 multiples of the hash key <tt>H</tt> by
+     * 4-bit values.
+     * 
+     * @param h
+     *                the hash key
+     */
+    private void initTable(byte[] h) {
+	hHi = new long[16];
+	hLo = new long[16];
+	long vHi = BigEndianConversions.OS2LIP(h, 0);
+	long vLo = BigEndianConversions.OS2LIP(h, 8);
+	for (int i = 8; i > 0; i >>= 1) {
+	    hHi[i] = vHi;
+	    hLo[i] = vLo;
+	    // multiply by x (shift right in GCM bit order)
+	    long t = 0xE100000000000000L & -(vLo & 1);
+	    vLo = (vHi << 63) | (vLo >>> 1);
+	    vHi = (vHi >>> 1) ^ t;
+	}
+	for (int i = 2; i < 16; i <<= 1) {
+	    for (int j = 1; j < i; j++) {
+		hHi[i + j] = hHi[i] ^ hHi[j];
+		hLo[i + j] = hLo[i] ^ hLo[j];
+	    }
+	}
+    }
+
+    /**
+     * Multiply the hash state by <tt>H</tt> using the 4-bit tables (nibbles
+     * from the last to the first byte).
+     */
+    private void multiplyH() {
+	long zHi, zLo;
+	int b = (int) xLo & 0xff;
+	int nhi = b >>> 4;
+	zHi = hHi[b & 0xf];
+	zLo = hLo[b & 0xf];
+	for (int cnt = 15;;) {
+	    int rem = (int) zLo & 0xf;
+	    zLo = (zHi << 60) | (zLo >>> 4);
+	    zHi = (zHi >>> 4) ^ REM_4BIT[rem];
+	    zHi ^= hHi[nhi];
+	    zLo ^= hLo[nhi];
+
+	    if (--cnt < 0) {
+		break;
+	    }
+
+	    b = (int) (cnt < 8 ? xHi >>> ((7 - cnt) << 3)
+		    : xLo >>> ((15 - cnt) << 3)) & 0xff;
+	    nhi = b >>> 4;
+	    rem = (int) zLo & 0xf;
+	    zLo = (zHi << 60) | (zLo >>> 4);
+	    zHi = (zHi >>> 4) ^ REM_4BIT[rem];
+	    zHi ^= hHi[b & 0xf];
+	    zLo ^= hLo[b & 0xf];
+	}
+	xHi = zHi;
+	xLo = zLo;
+    }
+
+}
@@ -0,0 +1,71 @@
+package de.flexiprovider.common.mode;
+
+import de.flexiprovider.common.util.ByteUtils;
+
+/**
+ * This class is the parameter specification of the Galois/Counter Mode. It
+ * specifies the initialization vector, the length of the authentication tag
+ * (in bits), and the additional authenticated data.
+ * 
+ * @see GCM
+ */
+public class GCMParameterSpec extends ModeParameterSpec {
+
+    /**
+     * The default tag length (128 bits)
+     */
+    public static final int DEFAULT_TAG_LENGTH = 128;
+
+    // the tag length in bits
+    private int tagLength;
+
+    // the additional authenticated data
+    private byte[] aad;
+
+    /**
+     * Constructor. Set the passed initialization vector and tag length. No
+     * additional data is authenticated.
+     * 
+     * @param iv
+     *                the initialization vector
+     * @param tagLength
+     *                the tag length in bits (<tt>96</tt>, <tt>104</tt>,
+     *                <tt>112</tt>, <tt>120</tt>, or <tt>128</tt>)
+     */
+    public GCMParameterSpec(byte[] iv, int tagLength) {
+	this(iv, tagLength, null);
+    }
+
+    /**
+     * Constructor. Set the passed initialization vector, tag length, and
+     * additional authenticated data.
+     * 
+     * @param iv
+     *                the initialization vector
+     * @param tagLength
+     *                the tag length in bits (<tt>96</tt>, <tt>104</tt>,
+     *                <tt>112</tt>, <tt>120</tt>, or <tt>128</tt>)
+     * @param aad
+     *                the additional authenticated data (may be <tt>null</tt>)
+     */
+    public GCMParameterSpec(byte[] iv, int tagLength, byte[] aad) {
+	super(iv);
+	this.tagLength = tagLength;
+	this.aad = aad == null ? new byte[0] : ByteUtils.clone(aad);
+    }
+
+    /**
+     * @return the tag length in bits
+     */
+    public final int getTagLength() {
+	return tagLength;
+    }
+
+    /**
+     * @return a copy of the additional authenticated data
+     */
+    public final byte[] getAAD() {
+	return ByteUtils.clone(aad);
+    }
+
+}
@@ -0,0 +1,191 @@
+package de.flexiprovider.common.mode;
+
+import java.io.IOException;
+
+import codec.asn1.ASN1Exception;
+import codec.asn1.ASN1Integer;
+import codec.asn1.ASN1OctetString;
+import codec.asn1.ASN1Sequence;
+import de.flexiprovider.api.exceptions.InvalidParameterSpecException;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.api.parameters.AlgorithmParameters;
+import de.flexiprovider.common.util.ASN1Tools;
+import de.flexiprovider.common.util.ByteUtils;
+
+/**
+ * This class is used as an opaque representation of the parameters of the
+ * Galois/Counter Mode (see {@link GCMParameterSpec}). ASN.1/DER encoding and
+ * decoding are supported. Following RFC 5084, the parameters are encoded as
+ * 
+ * <pre>
+ * GCMParameters ::= SEQUENCE {
+ *   aes-nonce   OCTET STRING,
+ *   aes-ICVlen  INTEGER DEFAULT 12
+ * }
+ * </pre>
+ * 
+ * where <tt>aes-ICVlen</tt> is the tag length in bytes. The additional
+ * authenticated data is kept by the parameters object, but is not part of the
+ * encoding.
+ * 
+ * @see GCM
+ */
+public class GCMParameters extends AlgorithmParameters {
+
+    // the default tag length of the encoding (in bytes)
+    private static final int DEFAULT_ICV_LENGTH = 12;
+
+    // the initialization vector
+    private byte[] iv;
+
+    // the tag length in bits
+    private int tagLength;
+
+    // the additional authenticated data
+    private byte[] aad;
+
+    /**
+     * Initialize this parameters object using the given parameter
+     * specification. If the parameter specification is a plain
+     * {@link ModeParameterSpec}, the tag length is set to 128 bits and no
+     * additional data is authenticated.
+     * 
+     * @param paramSpec
+     *                the parameter specification
+     * @throws de.flexiprovider.api.exceptions.InvalidParameterSpecException
+     *                 if the parameter specification is <tt>null</tt> or of
+     *                 an unsupported type.
+     */
+    public void init(AlgorithmParameterSpec paramSpec)
+	    throws InvalidParameterSpecException {
+	if (paramSpec == null || !(paramSpec instanceof ModeParameterSpec)) {
+	    throw new InvalidParameterSpecException("unsupported type");
+	}
+
+	iv = ((ModeParameterSpec) paramSpec).getIV();
+	if (paramSpec instanceof GCMParameterSpec) {
+	    GCMParameterSpec gcmParams = (GCMParameterSpec) paramSpec;
+	    tagLength = gcmParams.getTagLength();
+	    aad = gcmParams.getAAD();
+	} else {
+	    tagLength = GCMParameterSpec.DEFAULT_TAG_LENGTH;
+	    aad = new byte[0];
+	}
+    }
+
+    /**
+     * Import the specified parameters and decode them according to the primary
+     * decoding format (ASN.1). The decoded parameters do not contain
+     * additional authenticated data.
+     * 
+     * @param encParams
+     *                the encoded parameters
+     * @throws java.io.IOException
+     *                 on decoding errors
+     */
+    public void init(byte[] encParams) throws IOException {
+	// build the parameters structure
+	ASN1Sequence params = new ASN1Sequence(2);
+	params.add(new ASN1OctetString());
+	ASN1Integer icvLen = new ASN1Integer();
+	icvLen.setOptional(true);
+	params.add(icvLen);
+
+	// decode parameters
+	try {
+	    ASN1Tools.derDecode(encParams, params);
+	} catch (ASN1Exception e) {
+	    throw new IOException("bad encoding");
+	}
+
+	iv = ((ASN1OctetString) params.get(0)).getByteArray();
+	if (icvLen.isOptional()) {
+	    tagLength = DEFAULT_ICV_LENGTH << 3;
+	} else {
+	    tagLength = ASN1Tools.getFlexiBigInt(icvLen).intValue() << 3;
+	}
+	aad = new byte[0];
+    }
+
+    /**
+     * Import the specified parameters and decode them according to the
+     * specified decoding format. Currently, only the primary decoding format
+     * (ASN.1) is supported.
+     * 
+     * @param encParams
+     *                the encoded parameters
+     * @param format
+     *                the name of the decoding format
+     * @throws java.io.IOException
+     *                 if format is not equal to "ASN.1" or on decoding errors.
+     */
+    public void init(byte[] encParams, String format) throws IOException {
+	if (!format.equals("ASN.1")) {
+	    throw new IOException("unsupported format");
+	}
+	init(encParams);
+    }
+
+    /**
+     * Return the parameters encoded in the primary encoding format (ASN.1).
+     * The tag length is omitted if it is the default length of 12 bytes.
+     * 
+     * @return the encoded parameters
+     */
+    public byte[] getEncoded() {
+	ASN1Sequence params = new ASN1Sequence(2);
+	params.add(new ASN1OctetString(iv));
+	if (tagLength != DEFAULT_ICV_LENGTH << 3) {
+	    params.add(new ASN1Integer(tagLength >> 3));
+	}
+	return ASN1Tools.derEncode(params);
+    }
+
+    /**
+     * Return the parameters encoded in the specified encoding format.
+     * Currently, only the primary encoding format (ASN.1) is supported.
+     * 
+     * @param format
+     *                the name of the encoding format
+     * @return the encoded parameters
+     * @throws java.io.IOException
+     *                 if format is not equal to "ASN.1".
+     */
+    public byte[] getEncoded(String format) throws IOException {
+	if (!format.equals("ASN.1")) {
+	    throw new IOException("unsupported format");
+	}
+	return getEncoded();
+    }
+
+    /**
+     * Return a transparent specification of this parameters object.
+     * <tt>paramSpec</tt> identifies the specification class in which the
+     * parameters should be returned. Currently, only {@link GCMParameterSpec}
+     * (or one of its super classes) is supported.
+     * 
+     * @param paramSpec
+     *                the the specification class in which the parameters should
+     *                be returned
+     * @return the parameter specification
+     * @throws de.flexiprovider.api.exceptions.InvalidParameterSpecException
+     *                 if the requested parameter specification is
+     *                 inappropriate for this parameters object.
+     */
+    public AlgorithmParameterSpec getParameterSpec(Class paramSpec)
+	    throws InvalidParameterSpecException {
+	if (!(paramSpec.isAssignableFrom(GCMParameterSpec.class))) {
+	    throw new InvalidParameterSpecException("unsupported type");
+	}
+	return new GCMParameterSpec(iv, tagLength, aad);
+    }
+
+    /**
+     * @return a formatted string describing the parameters
+     */
+    public String toString() {
+	return "GCMParameters (IV " + ByteUtils.toHexString(iv)
+		+ ") (tag length " + tagLength + ")";
+    }
+
+}
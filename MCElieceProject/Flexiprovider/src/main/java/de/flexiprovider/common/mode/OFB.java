@@ -31,7 +31,17 @@ import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
  */
 public class OFB extends Mode {
 
-    // the output buffer
+    /**
+     * The number of key stream blocks XORed with the data at once
+     */
+    private static final int CHUNK_BLOCKS = 64;
+
+    /**
+     * Buffer for the key stream of a chunk
+     */
+    private byte[] chunk;
+
+    // the output buffer (holds the next key stream block)
     private byte[] buf;
 
     // the feedback block
@@ -91,6 +101,7 @@ public class OFB extends Mode {
 
 	feedbackBlock = new byte[cipherBlockSize];
 	buf = new byte[cipherBlockSize];
+	chunk = null;
 	reset();
     }
 
@@ -161,6 +172,75 @@ public class OFB extends Mode {
 	nextChunkEncrypt(input, inOff, output, outOff);
     }
 
+    /**
+     * Encrypt consecutive data blocks. If the mode block size equals the
+     * cipher block size, the key stream of a chunk is computed first (each
+     * block is the encryption of the preceding one, so the cipher calls stay
+     * serial) and then XORed with the data in a single loop.
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksEncrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+
+	if (blockSize != buf.length) {
+	    super.processBlocksEncrypt(input, inOff, output, outOff, numBlocks);
+	    return;
+	}
+
+	if (chunk == null) {
+	    chunk = new byte[CHUNK_BLOCKS * blockSize];
+	}
+
+	while (numBlocks > 0) {
+	    int n = Math.min(numBlocks, CHUNK_BLOCKS);
+	    int len = n * blockSize;
+
+	    // compute the key stream and the next key stream block
+	    System.arraycopy(buf, 0, chunk, 0, blockSize);
+	    for (int off = blockSize; off < len; off += blockSize) {
+		singleBlockEncrypt(chunk, off - blockSize, chunk, off);
+	    }
+	    singleBlockEncrypt(chunk, len - blockSize, buf, 0);
+
+	    for (int i = 0; i < len; i++) {
+		output[outOff + i] = (byte) (chunk[i] ^ input[inOff + i]);
+	    }
+
+	    inOff += len;
+	    outOff += len;
+	    numBlocks -= n;
+	}
+    }
+
+    /**
+     * Decrypt consecutive data blocks (same as encryption).
+     * 
+     * @param input
+     *                input data buffer
+     * @param inOff
+     *                input data offset
+     * @param output
+     *                output data buffer
+     * @param outOff
+     *                output data offset
+     * @param numBlocks
+     *                the number of blocks
+     */
+    protected final void processBlocksDecrypt(byte[] input, int inOff,
+	    byte[] output, int outOff, int numBlocks) {
+	processBlocksEncrypt(input, inOff, output, outOff, numBlocks);
+    }
+
     /**
      * Reset feedback block to encrypted initialization vector.
      */
@@ -0,0 +1,87 @@
+package de.flexiprovider.common.mode;
+
+/**
+ * This class is the parameter specification of the modes which can spread
+ * large inputs over several threads (the CTR mode and the decryption in CBC
+ * mode). Besides the initialization vector, it specifies the number of
+ * threads and the minimal number of bytes an update or doFinal call has to
+ * process before the work is split between the threads. Smaller inputs are
+ * always processed by the calling thread. The output does not depend on the
+ * number of threads.
+ * <p>
+ * Parallel processing is opt-in: if these modes are initialized with a plain
+ * {@link ModeParameterSpec}, they do not start any threads. Each parallel
+ * call starts <tt>numThreads - 1</tt> short-lived worker threads, so the
+ * threshold should be large enough to amortize the thread creation.
+ * 
+ * @see CTR
+ * @see CBC
+ */
+public class ParallelModeParameterSpec extends ModeParameterSpec {
+
+    /**
+     * The default threshold (256 KiB)
+     */
+    public static final int DEFAULT_THRESHOLD = 1 << 18;
+
+    // the number of threads
+    private int numThreads;
+
+    // the minimal input length for parallel processing
+    private int threshold;
+
+    /**
+     * Constructor. Set the passed initialization vector. The number of threads
+     * is set to the number of available processors, the threshold to
+     * {@link #DEFAULT_THRESHOLD}.
+     * 
+     * @param iv
+     *                the initialization vector
+     */
+    public ParallelModeParameterSpec(byte[] iv) {
+	this(iv, Runtime.getRuntime().availableProcessors(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor. Set the passed initialization vector, number of threads,
+     * and threshold.
+     * 
+     * @param iv
+     *                the initialization vector
+     * @param numThreads
+     *                the number of threads (<tt>1</tt> disables parallel
+     *                processing)
+     * @param threshold
+     *                the minimal input length (in bytes) for parallel
+     *                processing
+     * @throws IllegalArgumentException
+     *                 if <tt>numThreads &lt; 1</tt> or
+     *                 <tt>threshold &lt; 0</tt>.
+     */
+    public ParallelModeParameterSpec(byte[] iv, int numThreads, int threshold) {
+	super(iv);
+	if (numThreads < 1) {
+	    throw new IllegalArgumentException("invalid number of threads");
+	}
+	if (threshold < 0) {
+	    throw new IllegalArgumentException("invalid threshold");
+	}
+	this.numThreads = numThreads;
+	this.threshold = threshold;
+    }
+
+    /**
+     * @return the number of threads
+     */
+    public final int getNumThreads() {
+	return numThreads;
+    }
+
+    /**
+     * @return the minimal input length (in bytes) for parallel processing
+     */
+    public final int getThreshold() {
+	return threshold;
+    }
+
+}
@@ -0,0 +1,142 @@
+package de.flexiprovider.common.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class presents the remaining bytes of a {@link ByteBuffer} as a
+ * sequence of byte array portions, so that engines working on byte arrays can
+ * process buffers. It is used by the <tt>ByteBuffer</tt> methods of the
+ * engine classes in <tt>de.flexiprovider.api</tt>, which keep one instance
+ * each and reuse it for every call.
+ * <p>
+ * If the buffer is backed by an accessible array, the portions are taken
+ * directly from this array. Otherwise (e.g., for direct or read-only buffers),
+ * the bytes are copied in portions of at most {@link #CHUNK_SIZE} bytes into
+ * a staging array, which is allocated on first use and kept for later calls.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * in.start(buffer);
+ * while (in.next()) {
+ *     update(in.array(), in.offset(), in.length());
+ * }
+ * </pre>
+ * 
+ * Each call to {@link #next()} advances the position of the buffer by the
+ * length of the new portion. Instances are not thread-safe.
+ */
+public final class ByteBufferInput {
+
+    /**
+     * The size of the staging array used for buffers without an accessible
+     * backing array
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    // the buffer (null if all portions have been returned)
+    private ByteBuffer buffer;
+
+    // the maximum portion size
+    private int chunkSize;
+
+    // the staging array (allocated on demand)
+    private byte[] staging;
+
+    // the current portion
+    private byte[] array;
+
+    private int offset;
+
+    private int length;
+
+    /**
+     * Start returning the remaining bytes of the given buffer. If the buffer
+     * is backed by an accessible array, the remaining bytes are returned as a
+     * single portion.
+     *
+     * @param buffer
+     *                the buffer
+     */
+    public void start(ByteBuffer buffer) {
+	start(buffer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Start returning the remaining bytes of the given buffer in portions of
+     * at most <tt>chunkSize</tt> bytes.
+     *
+     * @param buffer
+     *                the buffer
+     * @param chunkSize
+     *                the maximum length of a portion (must be positive)
+     */
+    public void start(ByteBuffer buffer, int chunkSize) {
+	this.buffer = buffer;
+	if (!buffer.hasArray() && chunkSize > CHUNK_SIZE) {
+	    chunkSize = CHUNK_SIZE;
+	}
+	this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Move to the next portion and advance the position of the buffer
+     * accordingly.
+     *
+     * @return <tt>false</tt> if the buffer has no remaining bytes,
+     *         <tt>true</tt> otherwise
+     */
+    public boolean next() {
+	int len = buffer == null ? 0 : Math.min(buffer.remaining(), chunkSize);
+	if (len == 0) {
+	    // do not keep the buffer reachable
+	    buffer = null;
+	    array = null;
+	    return false;
+	}
+	if (buffer.hasArray()) {
+	    int pos = buffer.position();
+	    array = buffer.array();
+	    offset = buffer.arrayOffset() + pos;
+	    buffer.position(pos + len);
+	} else {
+	    if (staging == null) {
+		staging = new byte[CHUNK_SIZE];
+	    }
+	    buffer.get(staging, 0, len);
+	    array = staging;
+	    offset = 0;
+	}
+	length = len;
+	return true;
+    }
+
+    /**
+     * @return <tt>true</tt> if the current portion is the last one
+     */
+    public boolean isLast() {
+	return !buffer.hasRemaining();
+    }
+
+    /**
+     * @return the array holding the current portion
+     */
+    public byte[] array() {
+	return array;
+    }
+
+    /**
+     * @return the offset of the current portion in {@link #array()}
+     */
+    public int offset() {
+	return offset;
+    }
+
+    /**
+     * @return the length of the current portion
+     */
+    public int length() {
+	return length;
+    }
+
+}
@@ -0,0 +1,250 @@
+package de.flexiprovider.common.util;
+
+import de.flexiprovider.api.MessageDigest;
+import de.flexiprovider.api.SecureRandom;
+import de.flexiprovider.core.md.SHA256;
+
+/**
+ * This class implements the Hash_DRBG deterministic random bit generator as
+ * specified in NIST SP 800-90A with SHA-256 (security strength 256 bits,
+ * seed length 440 bits). The generator is instantiated and reseeded with
+ * entropy obtained from a {@link java.security.SecureRandom}; it is reseeded
+ * automatically after {@link #RESEED_INTERVAL} requests.
+ * <p>
+ * Requests of up to {@link #BUFFER_SIZE}/8 bytes are served from an output
+ * buffer of {@link #BUFFER_SIZE} bytes which is filled with a single generate
+ * request, so that small requests (e.g. {@link #nextInt()}) cost a copy
+ * instead of three hash computations. Larger requests are generated directly.
+ * <p>
+ * Instances are not thread-safe. {@link ThreadLocalDRBG} provides one
+ * instance per thread.
+ */
+public class HashDRBG extends SecureRandom {
+
+    /**
+     * The number of generate requests after which the generator is reseeded
+     */
+    public static final int RESEED_INTERVAL = 1 << 20;
+
+    /**
+     * The size of the output buffer in bytes
+     */
+    public static final int BUFFER_SIZE = 4096;
+
+    // the seed length of Hash_DRBG with SHA-256 in bytes (440 bits)
+    private static final int SEED_LEN = 55;
+
+    // the output length of SHA-256 in bytes
+    private static final int OUT_LEN = 32;
+
+    // the maximal number of bytes per request (2^19 bits)
+    private static final int MAX_REQUEST = 1 << 16;
+
+    // the source of entropy
+    private final java.security.SecureRandom entropySource;
+
+    private final MessageDigest md = new SHA256();
+
+    // the working state
+    private final byte[] v = new byte[SEED_LEN];
+
+    private final byte[] c = new byte[SEED_LEN];
+
+    private int reseedCounter;
+
+    // the output buffer, the unused bytes start at bufPos
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int bufPos = BUFFER_SIZE;
+
+    /**
+     * Construct and instantiate a new generator seeded by a new
+     * {@link java.security.SecureRandom}.
+     */
+    public HashDRBG() {
+	this(new java.security.SecureRandom(), null);
+    }
+
+    /**
+     * Construct and instantiate a new generator.
+     * 
+     * @param entropySource
+     *                the source of entropy for instantiation and reseeding
+     * @param personalization
+     *                the personalization string (may be <tt>null</tt>)
+     */
+    public HashDRBG(java.security.SecureRandom entropySource,
+	    byte[] personalization) {
+	this.entropySource = entropySource;
+	byte[] entropy = new byte[OUT_LEN];
+	entropySource.nextBytes(entropy);
+	byte[] nonce = new byte[OUT_LEN / 2];
+	entropySource.nextBytes(nonce);
+	if (personalization == null) {
+	    personalization = new byte[0];
+	}
+	byte[] seed = hashDf(
+		ByteUtils.concatenate(ByteUtils.concatenate(entropy, nonce),
+			personalization), SEED_LEN);
+	initState(seed);
+    }
+
+    /**
+     * Return seed bytes obtained from the entropy source.
+     * 
+     * @param numBytes
+     *                the number of seed bytes
+     * @return the seed bytes
+     */
+    public byte[] generateSeed(int numBytes) {
+	return entropySource.generateSeed(numBytes);
+    }
+
+    /**
+     * Reseed the generator with fresh entropy and the given seed as additional
+     * input. The seed supplements the state, it never replaces it. Buffered
+     * output is discarded.
+     * 
+     * @param seed
+     *                the additional input
+     */
+    public void setSeed(byte[] seed) {
+	reseed(seed);
+	bufPos = BUFFER_SIZE;
+    }
+
+    /**
+     * Fill the given array with random bytes.
+     * 
+     * @param bytes
+     *                the array
+     */
+    public void nextBytes(byte[] bytes) {
+	int len = bytes.length;
+	if (len > BUFFER_SIZE >>> 3) {
+	    generate(bytes, 0, len);
+	    return;
+	}
+	if (BUFFER_SIZE - bufPos < len) {
+	    generate(buffer, 0, BUFFER_SIZE);
+	    bufPos = 0;
+	}
+	System.arraycopy(buffer, bufPos, bytes, 0, len);
+	// wipe the used output
+	for (int i = bufPos + len - 1; i >= bufPos; i--) {
+	    buffer[i] = 0;
+	}
+	bufPos += len;
+    }
+
+    /**
+     * Generate <tt>len</tt> bytes (Hash_DRBG generate process without
+     * additional input, split into requests of at most 2<sup>16</sup>
+     * bytes).
+     */
+    private void generate(byte[] out, int off, int len) {
+	while (len > 0) {
+	    if (reseedCounter > RESEED_INTERVAL) {
+		reseed(null);
+	    }
+	    int n = Math.min(len, MAX_REQUEST);
+	    hashgen(out, off, n);
+
+	    // V = (V + H + C + reseed_counter) mod 2^seedlen
+	    md.update((byte) 0x03);
+	    md.update(v);
+	    byte[] h = md.digest();
+	    addTo(v, h);
+	    addTo(v, c);
+	    addTo(v, BigEndianConversions.I2OSP(reseedCounter));
+	    reseedCounter++;
+
+	    off += n;
+	    len -= n;
+	}
+    }
+
+    /**
+     * The Hashgen function: hash V, V+1, V+2, ... and output the leftmost
+     * <tt>len</tt> bytes.
+     */
+    private void hashgen(byte[] out, int off, int len) {
+	byte[] data = ByteUtils.clone(v);
+	byte[] one = { 1 };
+	while (len > 0) {
+	    md.update(data);
+	    byte[] w = md.digest();
+	    int n = Math.min(len, OUT_LEN);
+	    System.arraycopy(w, 0, out, off, n);
+	    off += n;
+	    len -= n;
+	    addTo(data, one);
+	}
+    }
+
+    /**
+     * Reseed with fresh entropy and the given additional input.
+     */
+    private void reseed(byte[] additionalInput) {
+	byte[] entropy = new byte[OUT_LEN];
+	entropySource.nextBytes(entropy);
+	if (additionalInput == null) {
+	    additionalInput = new byte[0];
+	}
+	byte[] material = new byte[1 + SEED_LEN + entropy.length
+		+ additionalInput.length];
+	material[0] = 0x01;
+	System.arraycopy(v, 0, material, 1, SEED_LEN);
+	System.arraycopy(entropy, 0, material, 1 + SEED_LEN, entropy.length);
+	System.arraycopy(additionalInput, 0, material, 1 + SEED_LEN
+		+ entropy.length, additionalInput.length);
+	initState(hashDf(material, SEED_LEN));
+    }
+
+    /**
+     * Set V to the given seed and derive C (common part of instantiation and
+     * reseeding).
+     */
+    private void initState(byte[] seed) {
+	System.arraycopy(seed, 0, v, 0, SEED_LEN);
+	byte[] input = new byte[1 + SEED_LEN];
+	System.arraycopy(v, 0, input, 1, SEED_LEN);
+	System.arraycopy(hashDf(input, SEED_LEN), 0, c, 0, SEED_LEN);
+	reseedCounter = 1;
+    }
+
+    /**
+     * The Hash_df derivation function.
+     */
+    private byte[] hashDf(byte[] input, int len) {
+	byte[] result = new byte[len];
+	byte[] bits = BigEndianConversions.I2OSP(len << 3);
+	for (int counter = 1, off = 0; off < len; counter++) {
+	    md.update((byte) counter);
+	    md.update(bits);
+	    md.update(input);
+	    byte[] h = md.digest();
+	    int n = Math.min(len - off, OUT_LEN);
+	    System.arraycopy(h, 0, result, off, n);
+	    off += n;
+	}
+	return result;
+    }
+
+    /**
+     * Add the big endian number <tt>b</tt> to the big endian number
+     * <tt>a</tt> modulo 2<sup>8 * a.length</sup>.
+     */
+    private static void addTo(byte[] a, byte[] b) {
+	int carry = 0;
+	for (int i = a.length - 1, j = b.length - 1; i >= 0; i--, j--) {
+	    int sum = (a[i] & 0xff) + carry + (j >= 0 ? b[j] & 0xff : 0);
+	    a[i] = (byte) sum;
+	    carry = sum >>> 8;
+	    if (j < 0 && carry == 0) {
+		break;
+	    }
+	}
+    }
+
+}
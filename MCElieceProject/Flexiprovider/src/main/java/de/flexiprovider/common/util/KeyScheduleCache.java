@@ -0,0 +1,241 @@
+package de.flexiprovider.common.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class provides an opt-in, process-wide cache for the expanded keys
+ * (key schedules) of block ciphers. Applications which re-initialize ciphers
+ * with a small set of long-lived keys (e.g., one initialization per record of
+ * a secure channel) can enable the cache via {@link #setCapacity(int)}. A
+ * cipher then copies a cached key schedule into its own arrays instead of
+ * recomputing the key expansion.
+ * <p>
+ * The cache is disabled by default (capacity <tt>0</tt>). The entries are
+ * keyed by the algorithm (including all parameters the key schedule depends
+ * on) and the key bytes, and the least recently used entry is evicted when the
+ * capacity is exceeded. The cache holds private copies of the key bytes and
+ * the key schedules; these copies are overwritten with zeros when the entry is
+ * evicted or the cache is cleared. The cache is thread-safe.
+ * <p>
+ * Key schedules are passed as arrays of <tt>int[]</tt> and <tt>byte[]</tt>
+ * arrays. A cipher uses the cache as follows:
+ * 
+ * <pre>
+ * Object[] schedule = { K, Ki };
+ * if (!KeyScheduleCache.restore(name, keyBytes, schedule)) {
+ *     keyExpansion(keyBytes);
+ *     KeyScheduleCache.store(name, keyBytes, schedule);
+ * }
+ * </pre>
+ */
+public final class KeyScheduleCache {
+
+    // the maximal number of entries (0 = disabled)
+    private static volatile int capacity = 0;
+
+    // the cached key schedules in access order (key: Entry, value: Object[])
+    private static final LinkedHashMap cache = new LinkedHashMap(16, 0.75f,
+	    true);
+
+    /**
+     * Default constructor (private).
+     */
+    private KeyScheduleCache() {
+	// empty
+    }
+
+    /**
+     * Set the maximal number of cached key schedules. A capacity of
+     * <tt>0</tt> disables the cache. If the new capacity is smaller than the
+     * number of cached entries, the least recently used entries are evicted.
+     * 
+     * @param newCapacity
+     *                the capacity
+     * @throws IllegalArgumentException
+     *                 if <tt>newCapacity &lt; 0</tt>.
+     */
+    public static synchronized void setCapacity(int newCapacity) {
+	if (newCapacity < 0) {
+	    throw new IllegalArgumentException("invalid capacity");
+	}
+	capacity = newCapacity;
+	evict();
+    }
+
+    /**
+     * @return the maximal number of cached key schedules (<tt>0</tt> if the
+     *         cache is disabled)
+     */
+    public static int getCapacity() {
+	return capacity;
+    }
+
+    /**
+     * @return the number of cached key schedules
+     */
+    public static synchronized int size() {
+	return cache.size();
+    }
+
+    /**
+     * Remove and zeroize all cached key schedules.
+     */
+    public static synchronized void clear() {
+	for (Iterator it = cache.entrySet().iterator(); it.hasNext();) {
+	    Map.Entry e = (Map.Entry) it.next();
+	    zeroize((Entry) e.getKey(), (Object[]) e.getValue());
+	}
+	cache.clear();
+    }
+
+    /**
+     * Copy a cached key schedule into the given arrays.
+     * 
+     * @param algName
+     *                the name of the algorithm (including all parameters the
+     *                key schedule depends on)
+     * @param key
+     *                the key bytes
+     * @param schedule
+     *                the arrays (<tt>int[]</tt> or <tt>byte[]</tt>) to hold
+     *                the key schedule
+     * @return <tt>true</tt> if the key schedule was found in the cache,
+     *         <tt>false</tt> otherwise (the arrays are unchanged)
+     */
+    public static boolean restore(String algName, byte[] key,
+	    Object[] schedule) {
+	if (capacity == 0) {
+	    return false;
+	}
+	synchronized (KeyScheduleCache.class) {
+	    Object[] cached = (Object[]) cache.get(new Entry(algName, key));
+	    if (cached == null || cached.length != schedule.length) {
+		return false;
+	    }
+	    for (int i = 0; i < cached.length; i++) {
+		Object src = cached[i];
+		Object dst = schedule[i];
+		if (src instanceof int[] && dst instanceof int[]
+			&& ((int[]) src).length == ((int[]) dst).length) {
+		    continue;
+		}
+		if (src instanceof byte[] && dst instanceof byte[]
+			&& ((byte[]) src).length == ((byte[]) dst).length) {
+		    continue;
+		}
+		return false;
+	    }
+	    for (int i = 0; i < cached.length; i++) {
+		if (cached[i] instanceof int[]) {
+		    int[] src = (int[]) cached[i];
+		    System.arraycopy(src, 0, schedule[i], 0, src.length);
+		} else {
+		    byte[] src = (byte[]) cached[i];
+		    System.arraycopy(src, 0, schedule[i], 0, src.length);
+		}
+	    }
+	    return true;
+	}
+    }
+
+    /**
+     * Store a copy of a key schedule in the cache. Does nothing if the cache
+     * is disabled.
+     * 
+     * @param algName
+     *                the name of the algorithm (including all parameters the
+     *                key schedule depends on)
+     * @param key
+     *                the key bytes
+     * @param schedule
+     *                the arrays (<tt>int[]</tt> or <tt>byte[]</tt>) holding
+     *                the key schedule
+     */
+    public static void store(String algName, byte[] key, Object[] schedule) {
+	if (capacity == 0) {
+	    return;
+	}
+	Object[] copy = new Object[schedule.length];
+	for (int i = 0; i < schedule.length; i++) {
+	    if (schedule[i] instanceof int[]) {
+		copy[i] = IntUtils.clone((int[]) schedule[i]);
+	    } else if (schedule[i] instanceof byte[]) {
+		copy[i] = ByteUtils.clone((byte[]) schedule[i]);
+	    } else {
+		throw new IllegalArgumentException("unsupported key schedule");
+	    }
+	}
+	Entry entry = new Entry(algName, ByteUtils.clone(key));
+	synchronized (KeyScheduleCache.class) {
+	    Object[] old = (Object[]) cache.put(entry, copy);
+	    if (old != null) {
+		// the map keeps its original key object
+		zeroize(entry, old);
+	    }
+	    evict();
+	}
+    }
+
+    /**
+     * Remove and zeroize the least recently used entries until the number of
+     * entries does not exceed the capacity.
+     */
+    private static void evict() {
+	Iterator it = cache.entrySet().iterator();
+	while (cache.size() > capacity && it.hasNext()) {
+	    Map.Entry e = (Map.Entry) it.next();
+	    zeroize((Entry) e.getKey(), (Object[]) e.getValue());
+	    it.remove();
+	}
+    }
+
+    private static void zeroize(Entry entry, Object[] schedule) {
+	Arrays.fill(entry.key, (byte) 0);
+	for (int i = 0; i < schedule.length; i++) {
+	    if (schedule[i] instanceof int[]) {
+		Arrays.fill((int[]) schedule[i], 0);
+	    } else {
+		Arrays.fill((byte[]) schedule[i], (byte) 0);
+	    }
+	}
+    }
+
+    /**
+     * The cache key: algorithm name and key bytes.
+     */
+    private static final class Entry {
+
+	private final String algName;
+
+	private final byte[] key;
+
+	private final int hash;
+
+	Entry(String algName, byte[] key) {
+	    this.algName = algName;
+	    this.key = key;
+	    int h = algName.hashCode();
+	    for (int i = 0; i < key.length; i++) {
+		h = 31 * h + key[i];
+	    }
+	    hash = h;
+	}
+
+	public boolean equals(Object other) {
+	    if (!(other instanceof Entry)) {
+		return false;
+	    }
+	    Entry e = (Entry) other;
+	    return algName.equals(e.algName) && ByteUtils.equals(key, e.key);
+	}
+
+	public int hashCode() {
+	    return hash;
+	}
+
+    }
+
+}
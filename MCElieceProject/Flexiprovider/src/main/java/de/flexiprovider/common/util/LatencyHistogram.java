@@ -0,0 +1,241 @@
+package de.flexiprovider.common.util;
+
+/**
+ * A histogram of non-negative long values (typically latencies in
+ * nanoseconds) with logarithmic buckets and a fixed relative precision, in the
+ * spirit of an HDR histogram. Values below {@link #SUB_BUCKET_COUNT} are
+ * recorded exactly. Larger values are recorded in buckets whose width is at
+ * most <tt>1/64</tt> of their lower bound, so every reported value is within
+ * about 1.6% of the recorded one. Values larger than {@link #MAX_VALUE} are
+ * clamped.
+ * <p>
+ * The counts array is allocated once at construction; recording a value does
+ * not allocate. All methods are synchronized, so a single histogram can be
+ * fed from several threads.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits used for the linear sub-buckets
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /**
+     * Number of exactly recorded values (and of linear sub-buckets)
+     */
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    /**
+     * The largest value which can be recorded without clamping (about 18
+     * minutes if the values are nanoseconds)
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    // the bucket counts
+    private long[] counts;
+
+    // the number of recorded values
+    private long totalCount;
+
+    // the sum of all recorded values
+    private long sum;
+
+    // the smallest and largest recorded value
+    private long min, max;
+
+    /**
+     * Constructor.
+     */
+    public LatencyHistogram() {
+	counts = new long[indexFor(MAX_VALUE) + 1];
+	min = Long.MAX_VALUE;
+	max = 0;
+    }
+
+    /**
+     * Record a value. Negative values are recorded as <tt>0</tt>, values
+     * larger than {@link #MAX_VALUE} as {@link #MAX_VALUE}.
+     *
+     * @param value
+     *                the value to record
+     */
+    public synchronized void record(long value) {
+	if (value < 0) {
+	    value = 0;
+	} else if (value > MAX_VALUE) {
+	    value = MAX_VALUE;
+	}
+	counts[indexFor(value)]++;
+	totalCount++;
+	sum += value;
+	if (value < min) {
+	    min = value;
+	}
+	if (value > max) {
+	    max = value;
+	}
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public synchronized long getTotalCount() {
+	return totalCount;
+    }
+
+    /**
+     * @return the sum of all recorded values
+     */
+    public synchronized long getSum() {
+	return sum;
+    }
+
+    /**
+     * @return the smallest recorded value, or <tt>0</tt> if no value has been
+     *         recorded
+     */
+    public synchronized long getMin() {
+	return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public synchronized long getMax() {
+	return max;
+    }
+
+    /**
+     * @return the arithmetic mean of the recorded values, or <tt>0</tt> if no
+     *         value has been recorded
+     */
+    public synchronized double getMean() {
+	return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Return the value at the given percentile, i.e., the highest value which
+     * is equivalent (up to the precision of the histogram) to the smallest
+     * recorded value such that at least <tt>percentile</tt> percent of all
+     * recorded values are less than or equal to it.
+     *
+     * @param percentile
+     *                the percentile (between <tt>0</tt> and <tt>100</tt>)
+     * @return the value at the given percentile, or <tt>0</tt> if no value has
+     *         been recorded
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+	if (totalCount == 0) {
+	    return 0;
+	}
+	if (percentile > 100) {
+	    percentile = 100;
+	}
+	long countAtPercentile = (long) Math.ceil(percentile / 100.0
+		* totalCount);
+	if (countAtPercentile < 1) {
+	    countAtPercentile = 1;
+	}
+	long seen = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    seen += counts[i];
+	    if (seen >= countAtPercentile) {
+		return Math.min(highestEquivalentValue(i), max);
+	    }
+	}
+	return max;
+    }
+
+    /**
+     * Add all values recorded by another histogram to this histogram.
+     *
+     * @param other
+     *                the other histogram
+     */
+    public void add(LatencyHistogram other) {
+	long[] otherCounts;
+	long otherTotal, otherSum, otherMin, otherMax;
+	synchronized (other) {
+	    otherCounts = (long[]) other.counts.clone();
+	    otherTotal = other.totalCount;
+	    otherSum = other.sum;
+	    otherMin = other.min;
+	    otherMax = other.max;
+	}
+	synchronized (this) {
+	    for (int i = 0; i < counts.length; i++) {
+		counts[i] += otherCounts[i];
+	    }
+	    totalCount += otherTotal;
+	    sum += otherSum;
+	    if (otherMin < min) {
+		min = otherMin;
+	    }
+	    if (otherMax > max) {
+		max = otherMax;
+	    }
+	}
+    }
+
+    /**
+     * Remove all recorded values.
+     */
+    public synchronized void reset() {
+	for (int i = 0; i < counts.length; i++) {
+	    counts[i] = 0;
+	}
+	totalCount = 0;
+	sum = 0;
+	min = Long.MAX_VALUE;
+	max = 0;
+    }
+
+    /**
+     * @return a human readable summary of the recorded values
+     */
+    public synchronized String toString() {
+	return "count=" + totalCount + ", min=" + getMin() + ", mean="
+		+ (long) getMean() + ", p50=" + getValueAtPercentile(50)
+		+ ", p90=" + getValueAtPercentile(90) + ", p99="
+		+ getValueAtPercentile(99) + ", p99.9="
+		+ getValueAtPercentile(99.9) + ", max=" + max;
+    }
+
+    /**
+     * Compute the bucket index of a value.
+     *
+     * @param value
+     *                the (non-negative) value
+     * @return the bucket index
+     */
+    private static int indexFor(long value) {
+	if (value < SUB_BUCKET_COUNT) {
+	    return (int) value;
+	}
+	int log = 63 - Long.numberOfLeadingZeros(value);
+	int shift = log - SUB_BUCKET_BITS + 1;
+	int subBucket = (int) (value >>> shift);
+	return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + subBucket
+		- SUB_BUCKET_HALF;
+    }
+
+    /**
+     * Compute the largest value mapped to the given bucket index.
+     *
+     * @param index
+     *                the bucket index
+     * @return the largest value mapped to the bucket
+     */
+    private static long highestEquivalentValue(int index) {
+	if (index < SUB_BUCKET_COUNT) {
+	    return index;
+	}
+	int j = index - SUB_BUCKET_COUNT;
+	int shift = j / SUB_BUCKET_HALF + 1;
+	long subBucket = j % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+	return ((subBucket + 1) << shift) - 1;
+    }
+
+}
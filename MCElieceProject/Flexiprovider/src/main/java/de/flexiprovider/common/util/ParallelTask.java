@@ -0,0 +1,126 @@
+package de.flexiprovider.common.util;
+
+/**
+ * This class runs a task which is split into several parts in parallel. It is
+ * the common base of the multi-threaded engines (CBC decryption, CTR, XTS,
+ * PBKDF2, Merkle tree hashing) and not intended for applications.
+ * <p>
+ * {@link #run(int)} processes part <tt>0</tt> in the calling thread and the
+ * other parts in daemon worker threads. It returns when all parts are done:
+ * the callers need the complete output, so an interrupt of the calling thread
+ * while waiting for the workers is deferred and the interrupt status is
+ * restored afterwards. If parts throw exceptions, the exception of the part
+ * with the lowest index is rethrown once all workers have finished.
+ */
+public abstract class ParallelTask {
+
+    /**
+     * Process the given part of the task. Different parts are processed
+     * concurrently, so they have to work on disjoint data (or synchronize).
+     * 
+     * @param part
+     *                the index of the part (<tt>0</tt> for the calling
+     *                thread)
+     */
+    protected abstract void runPart(int part);
+
+    /**
+     * Process the parts <tt>0, ..., numParts - 1</tt> of the task, using
+     * <tt>numParts - 1</tt> worker threads.
+     * 
+     * @param numParts
+     *                the number of parts (at least <tt>1</tt>)
+     */
+    public final void run(int numParts) {
+	Worker[] workers = new Worker[numParts - 1];
+	for (int i = 0; i < workers.length; i++) {
+	    workers[i] = new Worker(i + 1);
+	    workers[i].start();
+	}
+
+	Throwable failure = null;
+	try {
+	    runPart(0);
+	} catch (RuntimeException re) {
+	    failure = re;
+	} catch (Error e) {
+	    failure = e;
+	}
+
+	// wait for the workers (interrupts are deferred)
+	boolean interrupted = false;
+	for (int i = 0; i < workers.length; i++) {
+	    while (true) {
+		try {
+		    workers[i].join();
+		    break;
+		} catch (InterruptedException ie) {
+		    interrupted = true;
+		}
+	    }
+	    if (failure == null) {
+		failure = workers[i].failure;
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+
+	if (failure instanceof Error) {
+	    throw (Error) failure;
+	}
+	if (failure != null) {
+	    throw (RuntimeException) failure;
+	}
+    }
+
+    /**
+     * Split <tt>total</tt> items into <tt>numParts</tt> contiguous ranges
+     * of equal size, the last range also taking the remaining items. Part
+     * <tt>i</tt> consists of the items from <tt>start(total, numParts, i)</tt>
+     * (inclusive) to <tt>start(total, numParts, i + 1)</tt> (exclusive).
+     * 
+     * @param total
+     *                the number of items
+     * @param numParts
+     *                the number of parts
+     * @param part
+     *                the index of the part (<tt>0, ..., numParts</tt>)
+     * @return the index of the first item of the part (<tt>total</tt> for
+     *         <tt>part = numParts</tt>)
+     */
+    public static int start(int total, int numParts, int part) {
+	if (part == numParts) {
+	    return total;
+	}
+	return total / numParts * part;
+    }
+
+    /**
+     * A worker thread processing one part.
+     */
+    private class Worker extends Thread {
+
+	private final int part;
+
+	// the exception thrown by the part (if any)
+	Throwable failure;
+
+	Worker(int part) {
+	    this.part = part;
+	    setDaemon(true);
+	}
+
+	public void run() {
+	    try {
+		runPart(part);
+	    } catch (RuntimeException re) {
+		failure = re;
+	    } catch (Error e) {
+		failure = e;
+	    }
+	}
+
+    }
+
+}
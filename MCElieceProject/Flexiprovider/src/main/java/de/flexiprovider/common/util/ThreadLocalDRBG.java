@@ -0,0 +1,77 @@
+package de.flexiprovider.common.util;
+
+import de.flexiprovider.api.SecureRandom;
+
+/**
+ * This class is the process-wide default source of randomness returned by
+ * {@link de.flexiprovider.api.Registry#getSecureRandom()}. It is a stateless
+ * front end which forwards every call to a {@link HashDRBG} instance owned by
+ * the calling thread. The per-thread generators are created (and seeded) on
+ * first use, so that neither construction nor seeding nor locking takes place
+ * on the paths drawing random numbers.
+ * <p>
+ * {@link #setSeed(byte[])} reseeds the generator of the calling thread only.
+ */
+public final class ThreadLocalDRBG extends SecureRandom {
+
+    // the single instance
+    private static final ThreadLocalDRBG INSTANCE = new ThreadLocalDRBG();
+
+    // the generators of the threads
+    private static final ThreadLocal generators = new ThreadLocal() {
+	protected Object initialValue() {
+	    // the thread id serves as personalization string
+	    return new HashDRBG(new java.security.SecureRandom(),
+		    BigEndianConversions.I2OSP(Thread.currentThread().getId()));
+	}
+    };
+
+    private ThreadLocalDRBG() {
+	// singleton
+    }
+
+    /**
+     * @return the instance
+     */
+    public static ThreadLocalDRBG getInstance() {
+	return INSTANCE;
+    }
+
+    private static HashDRBG current() {
+	return (HashDRBG) generators.get();
+    }
+
+    /**
+     * Return seed bytes obtained from the entropy source of the calling
+     * thread's generator.
+     * 
+     * @param numBytes
+     *                the number of seed bytes
+     * @return the seed bytes
+     */
+    public byte[] generateSeed(int numBytes) {
+	return current().generateSeed(numBytes);
+    }
+
+    /**
+     * Fill the given array with random bytes from the calling thread's
+     * generator.
+     * 
+     * @param bytes
+     *                the array
+     */
+    public void nextBytes(byte[] bytes) {
+	current().nextBytes(bytes);
+    }
+
+    /**
+     * Reseed the calling thread's generator with the given additional input.
+     * 
+     * @param seed
+     *                the additional input
+     */
+    public void setSeed(byte[] seed) {
+	current().setSeed(seed);
+    }
+
+}
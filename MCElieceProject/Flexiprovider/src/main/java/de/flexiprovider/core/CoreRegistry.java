@@ -27,6 +27,7 @@ import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamal;
 import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamalKeyFactory;
 import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamalKeyGenParameterSpec;
 import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamalKeyPairGenerator;
+import de.flexiprovider.core.etm.EncryptThenMac;
 import de.flexiprovider.core.idea.IDEA;
 import de.flexiprovider.core.idea.IDEA.IDEA_CBC;
 import de.flexiprovider.core.idea.IDEA.IDEA_CFB;
@@ -114,6 +115,7 @@ import de.flexiprovider.core.rc6.RC6;
 import de.flexiprovider.core.rc6.RC6KeyFactory;
 import de.flexiprovider.core.rc6.RC6KeyGenParameterSpec;
 import de.flexiprovider.core.rc6.RC6KeyGenerator;
+import de.flexiprovider.core.rijndael.BitslicedAES;
 import de.flexiprovider.core.rijndael.Rijndael;
 import de.flexiprovider.core.rijndael.Rijndael.AES;
 import de.flexiprovider.core.rijndael.Rijndael.AES.AES128_CBC;
@@ -229,6 +231,7 @@ public abstract class CoreRegistry extends Registry {
 			registerShacal2();
 			registerTwofish();
 			registerPBE();
+			registerEncryptThenMac();
 			registerKDF();
 			registerBBS();
 			registerSHA1PRNG();
@@ -662,6 +665,7 @@ public abstract class CoreRegistry extends Registry {
 		/* AES */
 
 		add(BLOCK_CIPHER, AES.class, new String[] { AES.ALG_NAME, AES.OID });
+		add(BLOCK_CIPHER, BitslicedAES.class, BitslicedAES.ALG_NAME);
 
 		add(BLOCK_CIPHER, AES128_ECB.class, new String[] { AES128_ECB.ALG_NAME,
 				AES128_ECB.OID });
@@ -927,6 +931,19 @@ public abstract class CoreRegistry extends Registry {
 		add(CIPHER, PBES2.class, new String[] { "PBES2", PBES2.OID });
 	}
 
+	private static void registerEncryptThenMac() {
+		add(CIPHER, EncryptThenMac.AES_CTR_HmacSHA256.class,
+				EncryptThenMac.AES_CTR_HmacSHA256.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CBC_HmacSHA256.class,
+				EncryptThenMac.AES_CBC_HmacSHA256.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CTR_HmacSHA512.class,
+				EncryptThenMac.AES_CTR_HmacSHA512.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CBC_HmacSHA512.class,
+				EncryptThenMac.AES_CBC_HmacSHA512.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CTR_CmacAES128.class,
+				EncryptThenMac.AES_CTR_CmacAES128.ALG_NAME);
+	}
+
 	private static void registerKDF() {
 		add(ALG_PARAM_SPEC, KDFParameterSpec.class, new String[] { "KDF1",
 				"KDF2", "X963" });
@@ -10,6 +10,7 @@
 package de.flexiprovider.core;
 
 import de.flexiprovider.api.FlexiProvider;
+import de.flexiprovider.common.mode.GCMParameters;
 import de.flexiprovider.common.mode.ModeParameterGenerator;
 import de.flexiprovider.common.mode.ModeParameters;
 import de.flexiprovider.core.camellia.Camellia;
@@ -29,6 +30,7 @@ import de.flexiprovider.core.elgamal.ElGamalKeyPairGenerator;
 import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamal;
 import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamalKeyFactory;
 import de.flexiprovider.core.elgamal.semanticallysecure.SSVElGamalKeyPairGenerator;
+import de.flexiprovider.core.etm.EncryptThenMac;
 import de.flexiprovider.core.idea.IDEA;
 import de.flexiprovider.core.idea.IDEAKeyFactory;
 import de.flexiprovider.core.idea.IDEAKeyGenerator;
@@ -90,6 +92,7 @@ import de.flexiprovider.core.rc5.RC5KeyGenerator;
 import de.flexiprovider.core.rc6.RC6;
 import de.flexiprovider.core.rc6.RC6KeyFactory;
 import de.flexiprovider.core.rc6.RC6KeyGenerator;
+import de.flexiprovider.core.rijndael.BitslicedAES;
 import de.flexiprovider.core.rijndael.Rijndael;
 import de.flexiprovider.core.rijndael.Rijndael.AES;
 import de.flexiprovider.core.rijndael.Rijndael.AES.AES128_CBC;
@@ -212,6 +215,7 @@ import de.flexiprovider.core.twofish.TwofishKeyGenerator;
  * <li><a href = serpent/Serpent.html>Cipher.Serpent</a></li>
  * <li><a href = twofish/Twofish.html>Cipher.Twofish</a></li>
  * <li><a href = rijndael/Rijndael.html>Cipher.Rijndael</a></li>
+ * <li><a href = rijndael/BitslicedAES.html>Cipher.BitslicedAES</a></li>
  * <li><a href = saferplus/SAFERPlus.html>Cipher.SAFER+</a></li>
  * <li><a href = saferplusplus/SAFERPlusPlus.html>Cipher.SAFER++</a></li>
  * <li><a href = pbe/PBEWithMD5AndDES_CBC.html>Cipher.PbeWithMD5AndDES_CBC</a></li>
@@ -224,6 +228,16 @@ import de.flexiprovider.core.twofish.TwofishKeyGenerator;
  * </ul>
  * </li>
  * 
+ * <li>Authenticated encryption (encrypt-then-MAC):
+ * <ul type = square>
+ * <li><a href = etm/EncryptThenMac.html>Cipher.AES/CTR/HmacSHA256</a></li>
+ * <li><a href = etm/EncryptThenMac.html>Cipher.AES/CBC/HmacSHA256</a></li>
+ * <li><a href = etm/EncryptThenMac.html>Cipher.AES/CTR/HmacSHA512</a></li>
+ * <li><a href = etm/EncryptThenMac.html>Cipher.AES/CBC/HmacSHA512</a></li>
+ * <li><a href = etm/EncryptThenMac.html>Cipher.AES/CTR/CmacAES128</a></li>
+ * </ul>
+ * </li>
+ * 
  * <li>Modes of operation for symmetric encryption:
  * <ul type = square>
  * <li><a href = mode/ECB.html>Mode.ECB</a></li>
@@ -367,11 +381,13 @@ public class FlexiCoreProvider extends FlexiProvider {
 		registerShacal2();
 		registerTwofish();
 		registerPBE();
+		registerEncryptThenMac();
 		registerBBS();
 	}
 
 	private void registerCommon() {
 		add(ALG_PARAMS, ModeParameters.class, new String[] { "Mode", "IV" });
+		add(ALG_PARAMS, GCMParameters.class, "GCM");
 		add(ALG_PARAM_GENERATOR, ModeParameterGenerator.class, new String[] {
 				"Mode", "IV" });
 	}
@@ -833,6 +849,7 @@ public class FlexiCoreProvider extends FlexiProvider {
 
 		add(CIPHER, AES.class, new String[] { AES.ALG_NAME, AES.OID });
 		addReverseOID(CIPHER, AES.ALG_NAME, AES.OID);
+		add(CIPHER, BitslicedAES.class, BitslicedAES.ALG_NAME);
 
 		add(CIPHER, AES128_ECB.class, new String[] { AES128_ECB.ALG_NAME,
 				AES128_ECB.OID });
@@ -1129,6 +1146,19 @@ public class FlexiCoreProvider extends FlexiProvider {
 		addReverseOID(CIPHER, "PBES2", PBES2.OID);
 	}
 
+	private void registerEncryptThenMac() {
+		add(CIPHER, EncryptThenMac.AES_CTR_HmacSHA256.class,
+				EncryptThenMac.AES_CTR_HmacSHA256.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CBC_HmacSHA256.class,
+				EncryptThenMac.AES_CBC_HmacSHA256.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CTR_HmacSHA512.class,
+				EncryptThenMac.AES_CTR_HmacSHA512.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CBC_HmacSHA512.class,
+				EncryptThenMac.AES_CBC_HmacSHA512.ALG_NAME);
+		add(CIPHER, EncryptThenMac.AES_CTR_CmacAES128.class,
+				EncryptThenMac.AES_CTR_CmacAES128.ALG_NAME);
+	}
+
 	private void registerBBS() {
 		add(SECURE_RANDOM, BBSRandom.class, new String[] { "BBS", "BBSRandom" });
 	}
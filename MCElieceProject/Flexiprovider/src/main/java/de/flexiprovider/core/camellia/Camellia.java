@@ -17,6 +17,7 @@ import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.keys.SecretKeySpec;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
 import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.KeyScheduleCache;
 
 /**
  * Camellia is 128 bit symmetric block cipher with a Feistel structure, jointly
@@ -454,7 +455,13 @@ public class Camellia extends BlockCipher {
 			throw new InvalidKeyException(
 					"key size does not match specified length");
 		}
-		keyExpansion(keyBytes);
+		Object[] schedule = { expandedKey };
+		if (KeyScheduleCache.restore(ALG_NAME, keyBytes, schedule)) {
+			n = keyBytes.length << 3;
+		} else {
+			keyExpansion(keyBytes);
+			KeyScheduleCache.store(ALG_NAME, keyBytes, schedule);
+		}
 	}
 
 	/**
@@ -16,6 +16,7 @@ import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.keys.SecretKeySpec;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
 import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.KeyScheduleCache;
 
 /**
  * This class implements the TripleDES (DESede) block cipher. The implementation
@@ -271,7 +272,12 @@ public class DESede extends BlockCipher {
 		if (!(key instanceof DESedeKey)) {
 			throw new InvalidKeyException("Not an instance of DESedeKey.");
 		}
-		keySchedule(key.getEncoded());
+		byte[] keyBytes = key.getEncoded();
+		Object[] schedule = { keys[0], keys[1], keys[2] };
+		if (!KeyScheduleCache.restore(ALG_NAME, keyBytes, schedule)) {
+			keySchedule(keyBytes);
+			KeyScheduleCache.store(ALG_NAME, keyBytes, schedule);
+		}
 	}
 
 	/**
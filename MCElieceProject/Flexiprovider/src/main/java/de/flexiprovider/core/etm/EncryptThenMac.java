@@ -0,0 +1,762 @@
+package de.flexiprovider.core.etm;
+
+import de.flexiprovider.api.BlockCipher;
+import de.flexiprovider.api.Cipher;
+import de.flexiprovider.api.Mac;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.SecureRandom;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.exceptions.IllegalBlockSizeException;
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.exceptions.InvalidKeySpecException;
+import de.flexiprovider.api.exceptions.NoSuchAlgorithmException;
+import de.flexiprovider.api.exceptions.NoSuchModeException;
+import de.flexiprovider.api.exceptions.NoSuchPaddingException;
+import de.flexiprovider.api.exceptions.ShortBufferException;
+import de.flexiprovider.api.keys.Key;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.keys.SecretKeyFactory;
+import de.flexiprovider.api.keys.SecretKeySpec;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.mode.ModeParameterSpec;
+
+/**
+ * This class combines a registered block cipher (with mode and padding) and a
+ * registered MAC to an authenticated cipher following the encrypt-then-MAC
+ * paradigm. The ciphertext is passed to the MAC in chunks of
+ * {@link #CHUNK_SIZE} bytes directly after it has been produced, i.e., while
+ * it is still in the cache, so the output is not traversed a second time. The
+ * MAC is computed over the IV (if any) and the ciphertext.
+ * <p>
+ * The key is the concatenation <tt>MAC_KEY || ENC_KEY</tt> of two keys of
+ * equal length (as in RFC 7518, Section 5.2.2.1). It can be any FlexiProvider
+ * secret key; only its encoding is used. The parameters are passed to the
+ * block cipher (a {@link ModeParameterSpec} holding the IV, for example). In
+ * CTR mode, the plaintext may have any length.
+ * <p>
+ * During encryption, the tag is appended to the ciphertext. During
+ * decryption, the last bytes of the input are held back as the tag, and
+ * <tt>doFinal()</tt> throws a {@link BadPaddingException} if the tag is
+ * invalid. <tt>doFinal()</tt> verifies the tag before it decrypts the
+ * remaining ciphertext; as with GCM, plaintext returned by <tt>update()</tt>
+ * must not be used before <tt>doFinal()</tt> has verified the tag.
+ * <p>
+ * The cipher and MAC can be chosen via the constructor
+ * {@link #EncryptThenMac(String, String)}; the inner classes provide the
+ * combinations registered with the FlexiCoreProvider.
+ */
+public class EncryptThenMac extends Cipher {
+
+    /**
+     * AES in CTR mode with HmacSHA256 (key size 32, 48, or 64 bytes).
+     */
+    public static class AES_CTR_HmacSHA256 extends EncryptThenMac {
+
+	/**
+	 * The algorithm name.
+	 */
+	public static final String ALG_NAME = "AES/CTR/HmacSHA256";
+
+	/**
+	 * Constructor.
+	 */
+	public AES_CTR_HmacSHA256() {
+	    super("AES/CTR/NoPadding", "HmacSHA256");
+	}
+    }
+
+    /**
+     * AES in CBC mode with PKCS #5 padding and HmacSHA256 (key size 32, 48,
+     * or 64 bytes).
+     */
+    public static class AES_CBC_HmacSHA256 extends EncryptThenMac {
+
+	/**
+	 * The algorithm name.
+	 */
+	public static final String ALG_NAME = "AES/CBC/HmacSHA256";
+
+	/**
+	 * Constructor.
+	 */
+	public AES_CBC_HmacSHA256() {
+	    super("AES/CBC/PKCS5Padding", "HmacSHA256");
+	}
+    }
+
+    /**
+     * AES in CTR mode with HmacSHA512 (key size 32, 48, or 64 bytes).
+     */
+    public static class AES_CTR_HmacSHA512 extends EncryptThenMac {
+
+	/**
+	 * The algorithm name.
+	 */
+	public static final String ALG_NAME = "AES/CTR/HmacSHA512";
+
+	/**
+	 * Constructor.
+	 */
+	public AES_CTR_HmacSHA512() {
+	    super("AES/CTR/NoPadding", "HmacSHA512");
+	}
+    }
+
+    /**
+     * AES in CBC mode with PKCS #5 padding and HmacSHA512 (key size 32, 48,
+     * or 64 bytes).
+     */
+    public static class AES_CBC_HmacSHA512 extends EncryptThenMac {
+
+	/**
+	 * The algorithm name.
+	 */
+	public static final String ALG_NAME = "AES/CBC/HmacSHA512";
+
+	/**
+	 * Constructor.
+	 */
+	public AES_CBC_HmacSHA512() {
+	    super("AES/CBC/PKCS5Padding", "HmacSHA512");
+	}
+    }
+
+    /**
+     * AES in CTR mode with CMAC based on AES-128 (key size 32 bytes).
+     */
+    public static class AES_CTR_CmacAES128 extends EncryptThenMac {
+
+	/**
+	 * The algorithm name.
+	 */
+	public static final String ALG_NAME = "AES/CTR/CmacAES128";
+
+	/**
+	 * Constructor.
+	 */
+	public AES_CTR_CmacAES128() {
+	    super("AES/CTR/NoPadding", "CmacAES128");
+	}
+    }
+
+    /**
+     * The number of bytes which are encrypted (or decrypted) before the
+     * result is passed to the MAC.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    // the transformation of the block cipher and the name of the MAC
+    private final String cipherName, macName;
+
+    // whether the block cipher is used in CTR mode (the last block may be
+    // incomplete)
+    private final boolean streamMode;
+
+    // the block cipher
+    private BlockCipher cipher;
+
+    // the MAC
+    private Mac mac;
+
+    // the MAC key (needed to restart the MAC after doFinal())
+    private SecretKey macKey;
+
+    // the key and parameters of the block cipher (needed to reset the block
+    // cipher if the tag is invalid)
+    private SecretKey encKey;
+
+    private AlgorithmParameterSpec params;
+
+    // the IV authenticated in front of the ciphertext (may be null)
+    private byte[] iv;
+
+    // the tag length in bytes
+    private int tagLen;
+
+    // the last input bytes held back as tag candidate during decryption
+    private byte[] tagBuf;
+
+    private int tagBufLen;
+
+    // the number of bytes passed to and returned by the block cipher
+    private long inTotal, outTotal;
+
+    /**
+     * Constructor.
+     * 
+     * @param cipherName
+     *                the transformation of the block cipher (of the form
+     *                'algorithm/mode/padding')
+     * @param macName
+     *                the name of the MAC
+     */
+    public EncryptThenMac(String cipherName, String macName) {
+	this.cipherName = cipherName;
+	this.macName = macName;
+	int first = cipherName.indexOf('/');
+	int last = cipherName.lastIndexOf('/');
+	streamMode = first >= 0 && last > first
+		&& cipherName.substring(first + 1, last).equalsIgnoreCase("CTR");
+    }
+
+    /**
+     * @return the name of this cipher (the algorithm and mode of the block
+     *         cipher and the name of the MAC, separated by slashes)
+     */
+    public String getName() {
+	int index = cipherName.lastIndexOf('/');
+	if (index < 0) {
+	    return cipherName + "/" + macName;
+	}
+	return cipherName.substring(0, index + 1) + macName;
+    }
+
+    /**
+     * Return the key size of the given key object in bits.
+     * 
+     * @param key
+     *                the key object
+     * @return the key size in bits
+     * @throws InvalidKeyException
+     *                 if the key is not a {@link SecretKey}.
+     */
+    public int getKeySize(Key key) throws InvalidKeyException {
+	if (!(key instanceof SecretKey)) {
+	    throw new InvalidKeyException("unsupported type");
+	}
+	return key.getEncoded().length << 3;
+    }
+
+    /**
+     * @return the block size of the block cipher
+     */
+    public int getBlockSize() {
+	return cipher != null ? cipher.getBlockSize() : -1;
+    }
+
+    /**
+     * @return the initialization vector of the block cipher in a new buffer,
+     *         or <tt>null</tt> if the block cipher does not use an IV or has
+     *         not yet been initialized
+     */
+    public byte[] getIV() {
+	return cipher != null ? cipher.getIV() : null;
+    }
+
+    /**
+     * @return the parameters of the block cipher
+     */
+    public AlgorithmParameterSpec getParameters() {
+	return cipher != null ? cipher.getParameters() : null;
+    }
+
+    /**
+     * Return the length in bytes that an output buffer would need to be in
+     * order to hold the result of the next update or doFinal operation, given
+     * the input length inLen (in bytes). During encryption, this includes the
+     * tag.
+     * 
+     * @param inLen
+     *                the input length (in bytes)
+     * @return the required output buffer size (in bytes)
+     */
+    public int getOutputSize(int inLen) {
+	if (cipher == null) {
+	    return -1;
+	}
+	if (opMode == ENCRYPT_MODE) {
+	    return cipher.getOutputSize(inLen) + tagLen;
+	}
+	return cipher.getOutputSize(Math.max(tagBufLen + inLen - tagLen, 0));
+    }
+
+    /**
+     * Initialize this cipher for encryption.
+     * 
+     * @param key
+     *                the key (<tt>MAC_KEY || ENC_KEY</tt>)
+     * @param params
+     *                the parameters of the block cipher
+     * @param random
+     *                the source of randomness
+     * @throws InvalidKeyException
+     *                 if the key is inappropriate for the block cipher or the
+     *                 MAC.
+     * @throws InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for the block
+     *                 cipher or the block cipher or MAC cannot be found.
+     */
+    public void initEncrypt(Key key, AlgorithmParameterSpec params,
+	    SecureRandom random) throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	opMode = ENCRYPT_MODE;
+	init(key, params);
+	if (params instanceof ModeParameterSpec) {
+	    cipher.initEncrypt(encKey, (ModeParameterSpec) params, null,
+		    random);
+	} else {
+	    cipher.initEncrypt(encKey, params, random);
+	}
+	iv = cipher.getIV();
+	restartMac();
+    }
+
+    /**
+     * Initialize this cipher for decryption.
+     * 
+     * @param key
+     *                the key (<tt>MAC_KEY || ENC_KEY</tt>)
+     * @param params
+     *                the parameters of the block cipher
+     * @throws InvalidKeyException
+     *                 if the key is inappropriate for the block cipher or the
+     *                 MAC.
+     * @throws InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for the block
+     *                 cipher or the block cipher or MAC cannot be found.
+     */
+    public void initDecrypt(Key key, AlgorithmParameterSpec params)
+	    throws InvalidKeyException, InvalidAlgorithmParameterException {
+	opMode = DECRYPT_MODE;
+	init(key, params);
+	initCipherDecrypt();
+	iv = cipher.getIV();
+	restartMac();
+    }
+
+    /**
+     * Convert a JCA {@link javax.crypto.spec.IvParameterSpec} into a
+     * {@link ModeParameterSpec} and initialize this cipher.
+     */
+    protected void engineInit(int opMode, java.security.Key key,
+	    java.security.spec.AlgorithmParameterSpec params,
+	    java.security.SecureRandom javaRand)
+	    throws java.security.InvalidKeyException,
+	    java.security.InvalidAlgorithmParameterException {
+	if (params instanceof javax.crypto.spec.IvParameterSpec
+		&& !(params instanceof ModeParameterSpec)) {
+	    params = new ModeParameterSpec(
+		    (javax.crypto.spec.IvParameterSpec) params);
+	}
+	super.engineInit(opMode, key, params, javaRand);
+    }
+
+    private void initCipherDecrypt() throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	if (params instanceof ModeParameterSpec) {
+	    cipher.initDecrypt(encKey, (ModeParameterSpec) params, null);
+	} else {
+	    cipher.initDecrypt(encKey, params);
+	}
+    }
+
+    /**
+     * Instantiate the block cipher and the MAC (if necessary) and split the
+     * key.
+     */
+    private void init(Key key, AlgorithmParameterSpec params)
+	    throws InvalidKeyException, InvalidAlgorithmParameterException {
+
+	if (!(key instanceof SecretKey)) {
+	    throw new InvalidKeyException("unsupported type");
+	}
+	byte[] keyBytes = key.getEncoded();
+	if (keyBytes == null || keyBytes.length == 0
+		|| (keyBytes.length & 1) != 0) {
+	    throw new InvalidKeyException("invalid key size");
+	}
+	int half = keyBytes.length >> 1;
+
+	try {
+	    if (cipher == null) {
+		cipher = Registry.getBlockCipher(cipherName);
+	    }
+	    if (mac == null) {
+		mac = Registry.getMAC(macName);
+	    }
+	} catch (NoSuchAlgorithmException nsae) {
+	    throw new InvalidAlgorithmParameterException(
+		    "NoSuchAlgorithmException: " + nsae.getMessage());
+	} catch (NoSuchPaddingException nspe) {
+	    throw new InvalidAlgorithmParameterException(
+		    "NoSuchPaddingException: " + nspe.getMessage());
+	}
+
+	String algName = cipher.getName();
+	encKey = generateKey(algName, keyBytes, half, half);
+	try {
+	    macKey = generateKey(macName, keyBytes, 0, half);
+	} catch (InvalidAlgorithmParameterException iape) {
+	    // MACs without key factory (CMAC) use keys of the block cipher
+	    macKey = generateKey(algName, keyBytes, 0, half);
+	}
+	this.params = params;
+	tagBufLen = 0;
+	inTotal = outTotal = 0;
+    }
+
+    private static SecretKey generateKey(String algName, byte[] keyBytes,
+	    int offset, int length) throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	SecretKeyFactory skf;
+	try {
+	    skf = Registry.getSecretKeyFactory(algName);
+	} catch (NoSuchAlgorithmException nsae) {
+	    throw new InvalidAlgorithmParameterException(
+		    "NoSuchAlgorithmException: " + nsae.getMessage());
+	}
+	try {
+	    return skf.generateSecret(new SecretKeySpec(keyBytes, offset,
+		    length, algName));
+	} catch (InvalidKeySpecException ikse) {
+	    throw new InvalidKeyException("InvalidKeySpecException: "
+		    + ikse.getMessage());
+	}
+    }
+
+    /**
+     * Restart the MAC and authenticate the IV.
+     */
+    private void restartMac() throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	// discard pending input (init() does not reset all MACs)
+	mac.reset();
+	mac.init(macKey, null);
+	if (iv != null) {
+	    mac.update(iv, 0, iv.length);
+	}
+	if (tagBuf == null || tagBuf.length != mac.getMacLength()) {
+	    tagLen = mac.getMacLength();
+	    tagBuf = new byte[tagLen];
+	}
+    }
+
+    /**
+     * Set the mode of this cipher. This method is not supported and always
+     * throws an exception (the mode is part of the transformation of the
+     * block cipher).
+     * 
+     * @param modeName
+     *                the name of the mode
+     * @throws NoSuchModeException
+     *                 always.
+     */
+    protected void setMode(String modeName) throws NoSuchModeException {
+	throw new NoSuchModeException("not supported");
+    }
+
+    /**
+     * Set the padding scheme of this cipher. This method is not supported and
+     * always throws an exception (the padding is part of the transformation
+     * of the block cipher).
+     * 
+     * @param paddingName
+     *                the name of the padding scheme
+     * @throws NoSuchPaddingException
+     *                 always.
+     */
+    protected void setPadding(String paddingName)
+	    throws NoSuchPaddingException {
+	throw new NoSuchPaddingException("not supported");
+    }
+
+    /**
+     * Continue a multiple-part encryption or decryption operation.
+     * 
+     * @param input
+     *                the input buffer
+     * @param inOff
+     *                the offset where the input starts
+     * @param inLen
+     *                the input length
+     * @return a new buffer with the result (maybe an empty byte array)
+     */
+    public byte[] update(byte[] input, int inOff, int inLen) {
+	if (cipher == null || input == null || inLen <= 0) {
+	    return new byte[0];
+	}
+	byte[] output = new byte[getOutputSize(inLen)];
+	int outLen;
+	try {
+	    outLen = update(input, inOff, inLen, output, 0);
+	} catch (ShortBufferException sbe) {
+	    throw new RuntimeException("internal error");
+	}
+	return trim(output, outLen);
+    }
+
+    /**
+     * Continue a multiple-part encryption or decryption operation. The
+     * ciphertext is authenticated in chunks of {@link #CHUNK_SIZE} bytes.
+     * During decryption, the last bytes of the input seen so far are held
+     * back as tag candidate.
+     * 
+     * @param input
+     *                the input buffer
+     * @param inOff
+     *                the offset where the input starts
+     * @param inLen
+     *                the input length
+     * @param output
+     *                the output buffer
+     * @param outOff
+     *                the offset where the result is stored
+     * @return the length of the output
+     * @throws ShortBufferException
+     *                 if the output buffer is too small to hold the result.
+     */
+    public int update(byte[] input, int inOff, int inLen, byte[] output,
+	    int outOff) throws ShortBufferException {
+	if (cipher == null || input == null || inLen <= 0) {
+	    return 0;
+	}
+	if (input == output) {
+	    // the output of one chunk must not overwrite the input of the next
+	    byte[] copy = new byte[inLen];
+	    System.arraycopy(input, inOff, copy, 0, inLen);
+	    input = copy;
+	    inOff = 0;
+	}
+	if (opMode == ENCRYPT_MODE) {
+	    return encrypt(input, inOff, inLen, output, outOff);
+	}
+
+	int total = tagBufLen + inLen;
+	if (total <= tagLen) {
+	    System.arraycopy(input, inOff, tagBuf, tagBufLen, inLen);
+	    tagBufLen = total;
+	    return 0;
+	}
+	int release = total - tagLen;
+	int outLen = 0;
+	// release the held back bytes first
+	int n = Math.min(release, tagBufLen);
+	if (n > 0) {
+	    outLen = decrypt(tagBuf, 0, n, output, outOff);
+	    tagBufLen -= n;
+	    System.arraycopy(tagBuf, n, tagBuf, 0, tagBufLen);
+	}
+	n = release - n;
+	outLen += decrypt(input, inOff, n, output, outOff + outLen);
+	System.arraycopy(input, inOff + n, tagBuf, tagBufLen, inLen - n);
+	tagBufLen += inLen - n;
+	return outLen;
+    }
+
+    /**
+     * Encrypt the input chunkwise and authenticate each chunk of ciphertext.
+     */
+    private int encrypt(byte[] input, int inOff, int inLen, byte[] output,
+	    int outOff) throws ShortBufferException {
+	inTotal += inLen;
+	int outLen = 0;
+	while (inLen > 0) {
+	    int n = Math.min(inLen, CHUNK_SIZE);
+	    int len = cipher.update(input, inOff, n, output, outOff + outLen);
+	    mac.update(output, outOff + outLen, len);
+	    outLen += len;
+	    inOff += n;
+	    inLen -= n;
+	}
+	outTotal += outLen;
+	return outLen;
+    }
+
+    /**
+     * Authenticate each chunk of ciphertext and decrypt it.
+     */
+    private int decrypt(byte[] input, int inOff, int inLen, byte[] output,
+	    int outOff) throws ShortBufferException {
+	inTotal += inLen;
+	int outLen = 0;
+	while (inLen > 0) {
+	    int n = Math.min(inLen, CHUNK_SIZE);
+	    mac.update(input, inOff, n);
+	    outLen += cipher.update(input, inOff, n, output, outOff + outLen);
+	    inOff += n;
+	    inLen -= n;
+	}
+	return outLen;
+    }
+
+    /**
+     * Finish a multiple-part encryption or decryption operation.
+     * 
+     * @param input
+     *                the input buffer
+     * @param inOff
+     *                the offset where the input starts
+     * @param inLen
+     *                the input length
+     * @return a new buffer with the result
+     * @throws IllegalBlockSizeException
+     *                 if the block cipher rejects the input length.
+     * @throws BadPaddingException
+     *                 if unpadding fails or the tag is invalid.
+     */
+    public byte[] doFinal(byte[] input, int inOff, int inLen)
+	    throws IllegalBlockSizeException, BadPaddingException {
+	if (cipher == null) {
+	    return new byte[0];
+	}
+	byte[] output = new byte[getOutputSize(inLen)];
+	int outLen;
+	try {
+	    outLen = doFinal(input, inOff, inLen, output, 0);
+	} catch (ShortBufferException sbe) {
+	    throw new RuntimeException("internal error");
+	}
+	return trim(output, outLen);
+    }
+
+    /**
+     * Finish a multiple-part encryption or decryption operation. After this
+     * call, the cipher can be used for a further operation with the same key
+     * and parameters.
+     * 
+     * @param input
+     *                the input buffer
+     * @param inOff
+     *                the offset where the input starts
+     * @param inLen
+     *                the input length
+     * @param output
+     *                the buffer for the result
+     * @param outOff
+     *                the offset where the result is stored
+     * @return the output length
+     * @throws ShortBufferException
+     *                 if the output buffer is too small to hold the result.
+     * @throws IllegalBlockSizeException
+     *                 if the block cipher rejects the input length.
+     * @throws BadPaddingException
+     *                 if unpadding fails or the tag is invalid.
+     */
+    public int doFinal(byte[] input, int inOff, int inLen, byte[] output,
+	    int outOff) throws ShortBufferException, IllegalBlockSizeException,
+	    BadPaddingException {
+	if (cipher == null) {
+	    return 0;
+	}
+	if (input == null) {
+	    inLen = 0;
+	}
+	if (output.length - outOff < getOutputSize(inLen)) {
+	    throw new ShortBufferException("output");
+	}
+	try {
+	    if (opMode == ENCRYPT_MODE) {
+		return finishEncrypt(input, inOff, inLen, output, outOff);
+	    }
+	    return finishDecrypt(input, inOff, inLen, output, outOff);
+	} finally {
+	    tagBufLen = 0;
+	    inTotal = outTotal = 0;
+	    try {
+		restartMac();
+	    } catch (InvalidKeyException ike) {
+		throw new RuntimeException("internal error");
+	    } catch (InvalidAlgorithmParameterException iape) {
+		throw new RuntimeException("internal error");
+	    }
+	}
+    }
+
+    private int finishEncrypt(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) throws ShortBufferException,
+	    IllegalBlockSizeException, BadPaddingException {
+	int outLen = update(input, inOff, inLen, output, outOff);
+	int len = finishCipher(output, outOff + outLen);
+	mac.update(output, outOff + outLen, len);
+	outLen += len;
+	outTotal += len;
+	// the block cipher silently drops incomplete blocks in other modes
+	if (outTotal < inTotal) {
+	    throw new IllegalBlockSizeException(
+		    "input length is not a multiple of block size");
+	}
+	byte[] tag = mac.doFinal();
+	System.arraycopy(tag, 0, output, outOff + outLen, tagLen);
+	return outLen + tagLen;
+    }
+
+    private int finishDecrypt(byte[] input, int inOff, int inLen,
+	    byte[] output, int outOff) throws ShortBufferException,
+	    IllegalBlockSizeException, BadPaddingException {
+
+	// split the remaining input into ciphertext and tag
+	int total = tagBufLen + inLen;
+	if (total < tagLen) {
+	    // no ciphertext has been passed to the block cipher yet
+	    throw new BadPaddingException("ciphertext is too short");
+	}
+	byte[] rest = new byte[total];
+	System.arraycopy(tagBuf, 0, rest, 0, tagBufLen);
+	if (inLen > 0) {
+	    System.arraycopy(input, inOff, rest, tagBufLen, inLen);
+	}
+	int dataLen = total - tagLen;
+
+	// verify the tag before decrypting the remaining ciphertext
+	mac.update(rest, 0, dataLen);
+	byte[] tag = mac.doFinal();
+	int diff = 0;
+	for (int i = 0; i < tagLen; i++) {
+	    diff |= tag[i] ^ rest[dataLen + i];
+	}
+	if (diff != 0) {
+	    // discard the state of the block cipher
+	    try {
+		initCipherDecrypt();
+	    } catch (InvalidKeyException ike) {
+		throw new RuntimeException("internal error");
+	    } catch (InvalidAlgorithmParameterException iape) {
+		throw new RuntimeException("internal error");
+	    }
+	    throw new BadPaddingException("invalid authentication tag");
+	}
+
+	if (inTotal + dataLen == 0) {
+	    // empty plaintext (the block cipher rejects empty ciphertexts in
+	    // stream modes)
+	    return 0;
+	}
+	if (!streamMode) {
+	    return cipher.doFinal(rest, 0, dataLen, output, outOff);
+	}
+	inTotal += dataLen;
+	int outLen = cipher.update(rest, 0, dataLen, output, outOff);
+	return outLen + finishCipher(output, outOff + outLen);
+    }
+
+    /**
+     * Finish the block cipher. In CTR mode, the block cipher drops an
+     * incomplete last block, so it is completed with zeros and only the
+     * bytes belonging to the input (the input XORed with the key stream) are
+     * returned.
+     */
+    private int finishCipher(byte[] output, int outOff)
+	    throws ShortBufferException, IllegalBlockSizeException,
+	    BadPaddingException {
+	if (!streamMode) {
+	    return cipher.doFinal(null, 0, 0, output, outOff);
+	}
+	int blockSize = cipher.getBlockSize();
+	int pad = (int) ((blockSize - inTotal % blockSize) % blockSize);
+	byte[] last = cipher.doFinal(new byte[pad], 0, pad);
+	int len = last.length - pad;
+	System.arraycopy(last, 0, output, outOff, len);
+	return len;
+    }
+
+    private static byte[] trim(byte[] output, int outLen) {
+	if (outLen == output.length) {
+	    return output;
+	}
+	byte[] result = new byte[outLen];
+	System.arraycopy(output, 0, result, 0, outLen);
+	return result;
+    }
+
+}
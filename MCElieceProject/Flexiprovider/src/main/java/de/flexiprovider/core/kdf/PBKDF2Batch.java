@@ -0,0 +1,223 @@
+package de.flexiprovider.core.kdf;
+
+import de.flexiprovider.common.util.ParallelTask;
+
+/**
+ * This class derives keys from many passwords with the same PBKDF2 settings,
+ * as needed for bulk re-hashing of stored credentials. The (password, salt)
+ * pairs of one batch are distributed among the calling thread and at most
+ * {@link #setNumThreads(int) numThreads - 1} worker threads. Each thread
+ * fetches the next unprocessed pair when it has finished the previous one, so
+ * that passwords of different lengths do not unbalance the threads. The
+ * derived keys are returned in the order of the input pairs.
+ * <p>
+ * Each derivation is performed by the {@link PBKDF2Engine} passed to the
+ * constructor on a single thread (the parallelism is across passwords).
+ * <p>
+ * The batch records the number of derived keys and the elapsed time of all
+ * batches, which can be queried via {@link #getKeysPerSecond()} and
+ * {@link #getIterationsPerSecond()} for capacity planning.
+ */
+public class PBKDF2Batch {
+
+    // the underlying engine
+    private final PBKDF2Engine engine;
+
+    // the maximal number of threads
+    private int numThreads;
+
+    // the number of keys derived so far
+    private long numKeys;
+
+    // the number of PRF iterations performed so far
+    private long numIterations;
+
+    // the elapsed time of all batches in nanoseconds
+    private long totalTime;
+
+    /**
+     * Constructor.
+     * 
+     * @param engine
+     *                the engine used for the derivations
+     */
+    public PBKDF2Batch(PBKDF2Engine engine) {
+	this.engine = engine;
+	numThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Set the maximal number of threads (including the calling thread) used
+     * for one batch. The default is the number of available processors.
+     * 
+     * @param numThreads
+     *                the number of threads
+     * @throws IllegalArgumentException
+     *                 if <tt>numThreads &lt; 1</tt>.
+     */
+    public void setNumThreads(int numThreads) {
+	if (numThreads < 1) {
+	    throw new IllegalArgumentException("invalid number of threads");
+	}
+	this.numThreads = numThreads;
+    }
+
+    /**
+     * Derive keys from the given passwords using the iteration count and key
+     * size of the given parameters. If <tt>salts</tt> is <tt>null</tt>, the
+     * salt of the parameters is used for all passwords.
+     * 
+     * @param passwords
+     *                the passwords
+     * @param salts
+     *                the salts (one per password), or <tt>null</tt>
+     * @param params
+     *                the PBKDF2 parameters
+     * @return the derived keys (in the order of the passwords)
+     * @throws IllegalArgumentException
+     *                 if the number of salts does not match the number of
+     *                 passwords, a password or salt is <tt>null</tt>, or the
+     *                 parameters are invalid.
+     */
+    public byte[][] deriveKeys(byte[][] passwords, byte[][] salts,
+	    PBKDF2ParameterSpec params) {
+	if (salts == null) {
+	    salts = new byte[passwords.length][];
+	    for (int i = 0; i < salts.length; i++) {
+		salts[i] = params.getSalt();
+	    }
+	}
+	return deriveKeys(passwords, salts, params.getIterationCount(), params
+		.getKeySize());
+    }
+
+    /**
+     * Derive keys from the given (password, salt) pairs.
+     * 
+     * @param passwords
+     *                the passwords
+     * @param salts
+     *                the salts (one per password)
+     * @param iterationCount
+     *                the iteration count
+     * @param keySize
+     *                the length of the derived keys in bytes
+     * @return the derived keys (in the order of the passwords)
+     * @throws IllegalArgumentException
+     *                 if the number of salts does not match the number of
+     *                 passwords, a password or salt is <tt>null</tt>,
+     *                 <tt>iterationCount &lt; 1</tt>, or
+     *                 <tt>keySize &lt; 0</tt>.
+     */
+    public byte[][] deriveKeys(byte[][] passwords, byte[][] salts,
+	    int iterationCount, int keySize) {
+	if (passwords.length != salts.length) {
+	    throw new IllegalArgumentException(
+		    "number of salts does not match number of passwords");
+	}
+	for (int i = 0; i < passwords.length; i++) {
+	    if (passwords[i] == null || salts[i] == null) {
+		throw new IllegalArgumentException("null password or salt");
+	    }
+	}
+	if (iterationCount < 1) {
+	    throw new IllegalArgumentException("invalid iteration count");
+	}
+	if (keySize < 0) {
+	    throw new IllegalArgumentException("invalid key size");
+	}
+
+	long start = System.nanoTime();
+
+	Job job = new Job(passwords, salts, iterationCount, keySize);
+	int threads = Math.max(Math.min(numThreads, passwords.length), 1);
+	job.run(threads);
+
+	long elapsed = System.nanoTime() - start;
+	int blocks = (keySize + engine.getMacLength() - 1)
+		/ engine.getMacLength();
+	synchronized (this) {
+	    numKeys += passwords.length;
+	    numIterations += (long) passwords.length * blocks * iterationCount;
+	    totalTime += elapsed;
+	}
+
+	return job.keys;
+    }
+
+    /**
+     * @return the number of keys derived so far
+     */
+    public synchronized long getNumKeys() {
+	return numKeys;
+    }
+
+    /**
+     * @return the elapsed time of all batches so far in nanoseconds
+     */
+    public synchronized long getTotalTime() {
+	return totalTime;
+    }
+
+    /**
+     * @return the average number of derived keys per second, or <tt>0</tt>
+     *         if no batch has been processed yet
+     */
+    public synchronized double getKeysPerSecond() {
+	return totalTime == 0 ? 0 : numKeys * 1e9 / totalTime;
+    }
+
+    /**
+     * @return the average number of PRF iterations per second (the iteration
+     *         count times the number of output blocks per key), or
+     *         <tt>0</tt> if no batch has been processed yet
+     */
+    public synchronized double getIterationsPerSecond() {
+	return totalTime == 0 ? 0 : numIterations * 1e9 / totalTime;
+    }
+
+    /**
+     * Reset the statistics.
+     */
+    public synchronized void resetStatistics() {
+	numKeys = 0;
+	numIterations = 0;
+	totalTime = 0;
+    }
+
+    /**
+     * The state of one batch, shared by all threads processing it. Each part
+     * takes the next unprocessed pair until none are left.
+     */
+    private class Job extends ParallelTask {
+
+	final byte[][] passwords, salts, keys;
+
+	final int iterationCount, keySize;
+
+	// the index of the next unprocessed pair
+	private int next;
+
+	Job(byte[][] passwords, byte[][] salts, int iterationCount,
+		int keySize) {
+	    this.passwords = passwords;
+	    this.salts = salts;
+	    this.iterationCount = iterationCount;
+	    this.keySize = keySize;
+	    keys = new byte[passwords.length][];
+	}
+
+	private synchronized int nextIndex() {
+	    return next < passwords.length ? next++ : -1;
+	}
+
+	protected void runPart(int part) {
+	    for (int i = nextIndex(); i >= 0; i = nextIndex()) {
+		keys[i] = engine.deriveKey(passwords[i], salts[i],
+			iterationCount, keySize, 1);
+	    }
+	}
+
+    }
+
+}
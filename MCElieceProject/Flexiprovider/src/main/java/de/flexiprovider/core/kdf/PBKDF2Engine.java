@@ -0,0 +1,498 @@
+package de.flexiprovider.core.kdf;
+
+import de.flexiprovider.api.MessageDigest;
+import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.ParallelTask;
+import de.flexiprovider.core.md.ExportableDigest;
+import de.flexiprovider.core.md.SHA224_256;
+import de.flexiprovider.core.md.SHA384_512;
+
+/**
+ * This class is a fast implementation of the PBKDF2 key derivation function
+ * as specified in <a
+ * href="http://www.rsa.com/rsalabs/node.asp?id=2127">PKCS #5 v2.0</a> with
+ * HMAC-SHA1, HMAC-SHA256, or HMAC-SHA512 as pseudorandom function.
+ * <p>
+ * The states of the hash function after absorbing the inner and outer padded
+ * password are computed once per password. Since all iterates
+ * <tt>U<sub>2</sub>, ..., U<sub>c</sub></tt> are hashed from these states
+ * and have the same length, each iteration consists of exactly two calls of
+ * the compression function (as provided by
+ * {@link de.flexiprovider.core.md.SHA1}, {@link SHA224_256}, and
+ * {@link SHA384_512}) on word arrays which are allocated once per output
+ * block. The iteration loop neither allocates memory nor converts between
+ * bytes and words.
+ * <p>
+ * If the derived key is longer than the hash output, the output blocks
+ * <tt>T<sub>i</sub></tt> are independent and are computed by up to one thread
+ * per available processor (if the iteration count is at least
+ * {@link #PARALLEL_THRESHOLD}).
+ * <p>
+ * The engine has no mutable state, so one instance can be used by several
+ * threads concurrently.
+ */
+public abstract class PBKDF2Engine {
+
+    /**
+     * PBKDF2 with HMAC-SHA1.
+     */
+    public static class SHA1 extends PBKDF2Engine {
+
+	/**
+	 * Constructor.
+	 */
+	public SHA1() {
+	    super(20, 64);
+	}
+
+	protected MessageDigest newDigest() {
+	    return new de.flexiprovider.core.md.SHA1();
+	}
+
+	protected Object precompute(byte[] key) {
+	    int[] states = new int[10];
+	    loadState(padKey(key, 64, (byte) 0x36), states, 0, 5);
+	    loadState(padKey(key, 64, (byte) 0x5c), states, 5, 5);
+	    return states;
+	}
+
+	protected void f(Object keyStates, byte[] salt, int index, int c,
+		byte[] out, int outOff) {
+	    int[] states = (int[]) keyStates;
+	    int[] w = new int[80];
+	    int[] s = new int[5];
+	    int[] u = new int[5];
+	    int[] t = new int[5];
+
+	    // U_1 = PRF(P, S || INT(i))
+	    byte[] m = padMessage(salt, index, 64);
+	    System.arraycopy(states, 0, s, 0, 5);
+	    for (int off = 0; off < m.length; off += 64) {
+		loadWords(m, off, w);
+		de.flexiprovider.core.md.SHA1.compress(s, w);
+	    }
+	    // padding of a single 20-byte message block
+	    w[5] = 0x80000000;
+	    for (int k = 6; k < 15; k++) {
+		w[k] = 0;
+	    }
+	    w[15] = (64 + 20) << 3;
+	    System.arraycopy(s, 0, w, 0, 5);
+	    System.arraycopy(states, 5, u, 0, 5);
+	    de.flexiprovider.core.md.SHA1.compress(u, w);
+	    System.arraycopy(u, 0, t, 0, 5);
+
+	    // U_2, ..., U_c
+	    for (int j = 1; j < c; j++) {
+		System.arraycopy(u, 0, w, 0, 5);
+		System.arraycopy(states, 0, s, 0, 5);
+		de.flexiprovider.core.md.SHA1.compress(s, w);
+		System.arraycopy(s, 0, w, 0, 5);
+		System.arraycopy(states, 5, u, 0, 5);
+		de.flexiprovider.core.md.SHA1.compress(u, w);
+		t[0] ^= u[0];
+		t[1] ^= u[1];
+		t[2] ^= u[2];
+		t[3] ^= u[3];
+		t[4] ^= u[4];
+	    }
+
+	    for (int k = 0; k < 5; k++) {
+		BigEndianConversions.I2OSP(t[k], out, outOff + (k << 2));
+	    }
+	}
+    }
+
+    /**
+     * PBKDF2 with HMAC-SHA256.
+     */
+    public static class SHA256 extends PBKDF2Engine {
+
+	/**
+	 * Constructor.
+	 */
+	public SHA256() {
+	    super(32, 64);
+	}
+
+	protected MessageDigest newDigest() {
+	    return new de.flexiprovider.core.md.SHA256();
+	}
+
+	protected Object precompute(byte[] key) {
+	    int[] states = new int[16];
+	    loadState(padKey(key, 64, (byte) 0x36), states, 0, 8);
+	    loadState(padKey(key, 64, (byte) 0x5c), states, 8, 8);
+	    return states;
+	}
+
+	protected void f(Object keyStates, byte[] salt, int index, int c,
+		byte[] out, int outOff) {
+	    int[] states = (int[]) keyStates;
+	    int[] w = new int[64];
+	    int[] s = new int[8];
+	    int[] u = new int[8];
+	    int[] t = new int[8];
+
+	    // U_1 = PRF(P, S || INT(i))
+	    byte[] m = padMessage(salt, index, 64);
+	    System.arraycopy(states, 0, s, 0, 8);
+	    for (int off = 0; off < m.length; off += 64) {
+		loadWords(m, off, w);
+		SHA224_256.compress(s, w);
+	    }
+	    // padding of a single 32-byte message block
+	    w[8] = 0x80000000;
+	    for (int k = 9; k < 15; k++) {
+		w[k] = 0;
+	    }
+	    w[15] = (64 + 32) << 3;
+	    System.arraycopy(s, 0, w, 0, 8);
+	    System.arraycopy(states, 8, u, 0, 8);
+	    SHA224_256.compress(u, w);
+	    System.arraycopy(u, 0, t, 0, 8);
+
+	    // U_2, ..., U_c
+	    for (int j = 1; j < c; j++) {
+		System.arraycopy(u, 0, w, 0, 8);
+		System.arraycopy(states, 0, s, 0, 8);
+		SHA224_256.compress(s, w);
+		System.arraycopy(s, 0, w, 0, 8);
+		System.arraycopy(states, 8, u, 0, 8);
+		SHA224_256.compress(u, w);
+		for (int k = 0; k < 8; k++) {
+		    t[k] ^= u[k];
+		}
+	    }
+
+	    for (int k = 0; k < 8; k++) {
+		BigEndianConversions.I2OSP(t[k], out, outOff + (k << 2));
+	    }
+	}
+    }
+
+    /**
+     * PBKDF2 with HMAC-SHA512.
+     */
+    public static class SHA512 extends PBKDF2Engine {
+
+	/**
+	 * Constructor.
+	 */
+	public SHA512() {
+	    super(64, 128);
+	}
+
+	protected MessageDigest newDigest() {
+	    return new de.flexiprovider.core.md.SHA512();
+	}
+
+	protected Object precompute(byte[] key) {
+	    long[] states = new long[16];
+	    loadState(padKey(key, 128, (byte) 0x36), states, 0, 8);
+	    loadState(padKey(key, 128, (byte) 0x5c), states, 8, 8);
+	    return states;
+	}
+
+	protected void f(Object keyStates, byte[] salt, int index, int c,
+		byte[] out, int outOff) {
+	    long[] states = (long[]) keyStates;
+	    long[] w = new long[80];
+	    long[] s = new long[8];
+	    long[] u = new long[8];
+	    long[] t = new long[8];
+
+	    // U_1 = PRF(P, S || INT(i))
+	    byte[] m = padMessage(salt, index, 128);
+	    System.arraycopy(states, 0, s, 0, 8);
+	    for (int off = 0; off < m.length; off += 128) {
+		loadWords(m, off, w);
+		SHA384_512.compress(s, w);
+	    }
+	    // padding of a single 64-byte message block
+	    w[8] = 0x8000000000000000L;
+	    for (int k = 9; k < 15; k++) {
+		w[k] = 0;
+	    }
+	    w[15] = (128 + 64) << 3;
+	    System.arraycopy(s, 0, w, 0, 8);
+	    System.arraycopy(states, 8, u, 0, 8);
+	    SHA384_512.compress(u, w);
+	    System.arraycopy(u, 0, t, 0, 8);
+
+	    // U_2, ..., U_c
+	    for (int j = 1; j < c; j++) {
+		System.arraycopy(u, 0, w, 0, 8);
+		System.arraycopy(states, 0, s, 0, 8);
+		SHA384_512.compress(s, w);
+		System.arraycopy(s, 0, w, 0, 8);
+		System.arraycopy(states, 8, u, 0, 8);
+		SHA384_512.compress(u, w);
+		for (int k = 0; k < 8; k++) {
+		    t[k] ^= u[k];
+		}
+	    }
+
+	    for (int k = 0; k < 8; k++) {
+		BigEndianConversions.I2OSP(t[k], out, outOff + (k << 3));
+	    }
+	}
+    }
+
+    /**
+     * The minimal iteration count for computing several output blocks in
+     * parallel
+     */
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    // the output length of the PRF in bytes
+    private final int hLen;
+
+    // the block length of the hash function in bytes
+    private final int blockLen;
+
+    // the maximal number of threads
+    private final int numThreads;
+
+    /**
+     * Constructor.
+     * 
+     * @param hLen
+     *                the output length of the PRF in bytes
+     * @param blockLen
+     *                the block length of the hash function in bytes
+     */
+    protected PBKDF2Engine(int hLen, int blockLen) {
+	this.hLen = hLen;
+	this.blockLen = blockLen;
+	numThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the output length of the PRF in bytes
+     */
+    public int getMacLength() {
+	return hLen;
+    }
+
+    /**
+     * Derive a key from the given password.
+     * 
+     * @param password
+     *                the password
+     * @param salt
+     *                the salt
+     * @param iterationCount
+     *                the iteration count
+     * @param keySize
+     *                the length of the derived key in bytes
+     * @return the derived key
+     * @throws IllegalArgumentException
+     *                 if <tt>iterationCount &lt; 1</tt> or
+     *                 <tt>keySize &lt; 0</tt>.
+     */
+    public byte[] deriveKey(byte[] password, byte[] salt, int iterationCount,
+	    int keySize) {
+	return deriveKey(password, salt, iterationCount, keySize, numThreads);
+    }
+
+    /**
+     * Derive a key from the given password using at most the given number of
+     * threads.
+     * 
+     * @see #deriveKey(byte[], byte[], int, int)
+     */
+    byte[] deriveKey(byte[] password, byte[] salt, int iterationCount,
+	    int keySize, int maxThreads) {
+	if (iterationCount < 1) {
+	    throw new IllegalArgumentException("invalid iteration count");
+	}
+	if (keySize < 0) {
+	    throw new IllegalArgumentException("invalid key size");
+	}
+
+	// HMAC keys longer than the block length are hashed
+	if (password.length > blockLen) {
+	    MessageDigest md = newDigest();
+	    md.update(password);
+	    password = md.digest();
+	}
+	Object keyStates = precompute(password);
+
+	// l = keySize / hLen rounded up
+	int l = (keySize + hLen - 1) / hLen;
+	byte[] tempKey = new byte[l * hLen];
+
+	int threads = Math.min(maxThreads, l);
+	if (threads > 1 && iterationCount >= PARALLEL_THRESHOLD) {
+	    computeBlocksParallel(keyStates, salt, iterationCount, tempKey, l,
+		    threads);
+	} else {
+	    computeBlocks(keyStates, salt, iterationCount, tempKey, 0, l, 1);
+	}
+
+	if (tempKey.length == keySize) {
+	    return tempKey;
+	}
+	byte[] result = new byte[keySize];
+	System.arraycopy(tempKey, 0, result, 0, keySize);
+	return result;
+    }
+
+    /**
+     * Compute the output blocks <tt>first, first + step, ...</tt> (counted
+     * from 0).
+     */
+    private void computeBlocks(Object keyStates, byte[] salt, int c,
+	    byte[] out, int first, int l, int step) {
+	for (int i = first; i < l; i += step) {
+	    f(keyStates, salt, i + 1, c, out, i * hLen);
+	}
+    }
+
+    /**
+     * Distribute the output blocks among the calling thread and
+     * <tt>threads - 1</tt> worker threads.
+     */
+    private void computeBlocksParallel(Object keyStates, byte[] salt, int c,
+	    byte[] out, int l, int threads) {
+	new Blocks(keyStates, salt, c, out, l, threads).run(threads);
+    }
+
+    /**
+     * The parallel computation of the output blocks. Part <tt>i</tt> computes
+     * the blocks <tt>i, i + step, ...</tt>.
+     */
+    private class Blocks extends ParallelTask {
+
+	private Object keyStates;
+
+	private byte[] salt, out;
+
+	private int c, l, step;
+
+	Blocks(Object keyStates, byte[] salt, int c, byte[] out, int l,
+		int step) {
+	    this.keyStates = keyStates;
+	    this.salt = salt;
+	    this.c = c;
+	    this.out = out;
+	    this.l = l;
+	    this.step = step;
+	}
+
+	protected void runPart(int part) {
+	    computeBlocks(keyStates, salt, c, out, part, l, step);
+	}
+
+    }
+
+    /**
+     * @return a new instance of the underlying hash function
+     */
+    protected abstract MessageDigest newDigest();
+
+    /**
+     * Compute the states of the hash function after absorbing the inner and
+     * the outer padded key.
+     * 
+     * @param key
+     *                the HMAC key (at most one block long)
+     * @return the states (opaque to this class)
+     */
+    protected abstract Object precompute(byte[] key);
+
+    /**
+     * Compute the output block
+     * <tt>T<sub>index</sub> = U<sub>1</sub> XOR ... XOR U<sub>c</sub></tt>.
+     * 
+     * @param keyStates
+     *                the states returned by {@link #precompute(byte[])}
+     * @param salt
+     *                the salt
+     * @param index
+     *                the block index (starting with 1)
+     * @param c
+     *                the iteration count
+     * @param out
+     *                the output buffer
+     * @param outOff
+     *                the offset where the block (of {@link #getMacLength()}
+     *                bytes) is stored
+     */
+    protected abstract void f(Object keyStates, byte[] salt, int index, int c,
+	    byte[] out, int outOff);
+
+    /**
+     * XOR the key (padded with zeros to the block length) with the given pad
+     * byte.
+     */
+    static byte[] padKey(byte[] key, int blockLen, byte pad) {
+	byte[] result = new byte[blockLen];
+	System.arraycopy(key, 0, result, 0, key.length);
+	for (int i = 0; i < blockLen; i++) {
+	    result[i] ^= pad;
+	}
+	return result;
+    }
+
+    /**
+     * Pad the message <tt>S || INT(index)</tt> which is hashed after the inner
+     * padded key block (MD-strengthening with a length field of
+     * <tt>blockLen / 8</tt> bytes).
+     */
+    static byte[] padMessage(byte[] salt, int index, int blockLen) {
+	int lenBytes = blockLen >> 3;
+	int mLen = salt.length + 4;
+	int padded = (mLen + 1 + lenBytes + blockLen - 1) / blockLen * blockLen;
+	byte[] m = new byte[padded];
+	System.arraycopy(salt, 0, m, 0, salt.length);
+	BigEndianConversions.I2OSP(index, m, salt.length);
+	m[mLen] = (byte) 0x80;
+	BigEndianConversions.I2OSP((long) (blockLen + mLen) << 3, m,
+		padded - 8);
+	return m;
+    }
+
+    /**
+     * Hash the given block with a fresh instance of the hash function and
+     * store the first <tt>n</tt> chaining variables of the resulting state
+     * (see {@link de.flexiprovider.core.md.DigestState}) in <tt>states</tt>,
+     * starting at <tt>off</tt>.
+     */
+    void loadState(byte[] block, int[] states, int off, int n) {
+	byte[] enc = absorb(block);
+	for (int k = 0; k < n; k++) {
+	    states[off + k] = BigEndianConversions.OS2IP(enc, k << 2);
+	}
+    }
+
+    /**
+     * @see #loadState(byte[], int[], int, int)
+     */
+    void loadState(byte[] block, long[] states, int off, int n) {
+	byte[] enc = absorb(block);
+	for (int k = 0; k < n; k++) {
+	    states[off + k] = BigEndianConversions.OS2LIP(enc, k << 3);
+	}
+    }
+
+    private byte[] absorb(byte[] block) {
+	MessageDigest md = newDigest();
+	md.update(block);
+	return ((ExportableDigest) md).exportState().getEncoded();
+    }
+
+    static void loadWords(byte[] block, int off, int[] w) {
+	for (int k = 0; k < 16; k++) {
+	    w[k] = BigEndianConversions.OS2IP(block, off + (k << 2));
+	}
+    }
+
+    static void loadWords(byte[] block, int off, long[] w) {
+	for (int k = 0; k < 16; k++) {
+	    w[k] = BigEndianConversions.OS2LIP(block, off + (k << 3));
+	}
+    }
+
+}
@@ -14,6 +14,8 @@ import de.flexiprovider.api.MessageDigest;
 import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.core.md.DigestState;
+import de.flexiprovider.core.md.ExportableDigest;
 
 /**
  * This class extends the MAC class for providing the functionality of the
@@ -25,6 +27,11 @@ import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
  * <p>
  * The FlexiProvider supports HMAC computation based on SHA1, MD5, and RIPEMD160
  * hash algorithms.
+ * <p>
+ * If the message digest implements {@link ExportableDigest}, the states after
+ * absorbing the inner and outer padded key blocks are computed once per key
+ * and imported for every MAC computation, which saves two compression
+ * function calls per MAC.
  */
 public class HMac extends Mac {
 
@@ -160,6 +167,10 @@ public class HMac extends Mac {
 
     private MessageDigest md;
 
+    // the digest states after absorbing ipadKey and opadKey (null if the
+    // digest does not support exporting its state)
+    private DigestState innerState, outerState;
+
     /**
      * Creates a new HMac for the specified hash algorithm.
      * 
@@ -205,6 +216,7 @@ public class HMac extends Mac {
 	}
 
 	byte[] keyBytes = ((HMacKey) key).getEncoded();
+	md.reset();
 	macKey = new byte[B];
 	// If the key is too short, it has to be filled up with zeroes. If it is
 	// too long, it has to be hashed.
@@ -224,8 +236,18 @@ public class HMac extends Mac {
 	    opadKey[i] = (byte) (macKey[i] ^ OPAD_BYTE);
 	}
 
-	// feed the message digest with (macKey XOR ipadKey)
-	md.update(ipadKey);
+	if (md instanceof ExportableDigest) {
+	    // precompute the states after absorbing opadKey and ipadKey
+	    ExportableDigest ed = (ExportableDigest) md;
+	    md.update(opadKey);
+	    outerState = ed.exportState();
+	    md.reset();
+	    md.update(ipadKey);
+	    innerState = ed.exportState();
+	} else {
+	    // feed the message digest with (macKey XOR ipadKey)
+	    md.update(ipadKey);
+	}
     }
 
     /**
@@ -255,24 +277,43 @@ public class HMac extends Mac {
 
     /**
      * Return the computed MAC value. After the MAC has been computed, the MAC
-     * object is reset and has to be initialized again for further MAC
-     * computations.
+     * object is reset and may be used for further MAC computations with the
+     * same key.
      * 
      * @return the computed MAC value
      */
     public byte[] doFinal() {
 	byte[] hash1 = md.digest();
-	md.update(opadKey);
+	if (outerState != null) {
+	    ((ExportableDigest) md).importState(outerState);
+	} else {
+	    md.update(opadKey);
+	}
 	md.update(hash1);
-	return md.digest();
+	byte[] result = md.digest();
+	restart();
+	return result;
     }
 
     /**
      * Resets this MAC object so that it may be used for further MAC
-     * comptations.
+     * comptations with the same key.
      */
     public void reset() {
 	md.reset();
+	restart();
+    }
+
+    /**
+     * Bring the (reset) message digest into the state after absorbing
+     * ipadKey.
+     */
+    private void restart() {
+	if (innerState != null) {
+	    ((ExportableDigest) md).importState(innerState);
+	} else if (ipadKey != null) {
+	    md.update(ipadKey);
+	}
     }
 
 }
@@ -414,7 +414,7 @@ public abstract class TwoTrackMac extends Mac {
 	/**
 	 * Process a block of 64 bytes
 	 */
-	private synchronized void processBlock() {
+	private void processBlock() {
 		int Al, Bl, Cl, Dl, El;
 		int Ar, Br, Cr, Dr, Er;
 		int[] C = new int[5];
@@ -15,6 +15,7 @@ import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.keys.SecretKeySpec;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.KeyScheduleCache;
 
 /**
  * MARSBlockCipher implements the MARS Cipher. For more information see:
@@ -207,7 +208,12 @@ public class MARS extends BlockCipher {
 		if (!(key instanceof MARSKey)) {
 			throw new InvalidKeyException("not a MARS Key");
 		}
-		keyExpansion(key.getEncoded());
+		byte[] keyBytes = key.getEncoded();
+		Object[] schedule = { K };
+		if (!KeyScheduleCache.restore(ALG_NAME, keyBytes, schedule)) {
+			keyExpansion(keyBytes);
+			KeyScheduleCache.store(ALG_NAME, keyBytes, schedule);
+		}
 	}
 
 	/**
@@ -0,0 +1,83 @@
+package de.flexiprovider.core.md;
+
+import de.flexiprovider.common.util.BigEndianConversions;
+
+/**
+ * This class is a batch helper which computes the SHA-512 hash values of many
+ * independent messages, one after another. The messages are read in place
+ * (only the final padded block is copied), and the chaining values and
+ * message schedule are reused for all messages, so that no digest object and
+ * no buffer is created per message. The blocks are hashed by the compression
+ * function of {@link SHA384_512}.
+ * <p>
+ * Unlike {@link MultiBufferSHA256}, this class does not interleave several
+ * messages: interleaving the rounds of several messages needs twice as many
+ * registers for the 64-bit state variables and is slower than a single lane.
+ * <p>
+ * The hash values are identical to those computed by {@link SHA512}. An
+ * instance keeps scratch arrays and must not be used by several threads
+ * concurrently.
+ */
+public final class BatchSHA512 {
+
+    // the chaining values
+    private final long[] h = new long[8];
+
+    // the message schedule
+    private final long[] w = new long[80];
+
+    // the padded final block(s)
+    private final byte[] tail = new byte[256];
+
+    /**
+     * Compute the hash values of the given messages.
+     * 
+     * @param messages
+     *                the messages
+     * @return the hash values (in the order of the messages)
+     */
+    public byte[][] digest(byte[][] messages) {
+	byte[][] result = new byte[messages.length][];
+	for (int i = 0; i < messages.length; i++) {
+	    result[i] = digest(messages[i]);
+	}
+	return result;
+    }
+
+    private byte[] digest(byte[] m) {
+	System.arraycopy(SHA512.H0, 0, h, 0, 8);
+
+	int full = m.length >>> 7;
+	for (int b = 0; b < full; b++) {
+	    loadBlock(m, b << 7);
+	    SHA384_512.compress(h, w);
+	}
+
+	// pad the final block(s)
+	int rest = m.length & 127;
+	int tailLen = rest < 112 ? 128 : 256;
+	System.arraycopy(m, full << 7, tail, 0, rest);
+	tail[rest] = (byte) 0x80;
+	for (int i = rest + 1; i < tailLen - 8; i++) {
+	    tail[i] = 0;
+	}
+	BigEndianConversions.I2OSP((long) m.length << 3, tail, tailLen - 8);
+	for (int off = 0; off < tailLen; off += 128) {
+	    loadBlock(tail, off);
+	    SHA384_512.compress(h, w);
+	}
+
+	byte[] out = new byte[64];
+	for (int j = 0; j < 8; j++) {
+	    BigEndianConversions.I2OSP(h[j], out, j << 3);
+	}
+	return out;
+    }
+
+    private void loadBlock(byte[] src, int off) {
+	for (int k = 0; k < 16; k++) {
+	    w[k] = BigEndianConversions.OS2LIP(src, off + (k << 3));
+	}
+    }
+
+}
@@ -103,7 +103,7 @@ public class DHA256 extends MessageDigest {
 	 * @param inLen
 	 *            the number of bytes to use
 	 */
-	public synchronized void update(byte[] input, int inOff, int inLen) {
+	public void update(byte[] input, int inOff, int inLen) {
 		int bufOffset = ((int) count) & 63;
 		int copyLen;
 
@@ -128,7 +128,7 @@ public class DHA256 extends MessageDigest {
 	 * @param input
 	 *            the byte to use for the update
 	 */
-	public synchronized void update(byte input) {
+	public void update(byte input) {
 		buffer[(int) count & 63] = input;
 
 		if ((int) (count & 63) == 63) {
@@ -143,7 +143,7 @@ public class DHA256 extends MessageDigest {
 	 * 
 	 * @return the digest value
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		pad();
 
 		byte[] digestValue = new byte[DHA256_DIGEST_LENGTH];
@@ -175,7 +175,7 @@ public class DHA256 extends MessageDigest {
 	/**
 	 * Compute the hash value of the current block and store it in H
 	 */
-	private synchronized void processBlock() {
+	private void processBlock() {
 		int T1, T2;
 		int[] W = new int[64];
 		int a, b, c, d, e, f, g, h;
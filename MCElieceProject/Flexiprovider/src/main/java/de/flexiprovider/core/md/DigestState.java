@@ -0,0 +1,185 @@
+package de.flexiprovider.core.md;
+
+import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.ByteUtils;
+
+/**
+ * This class represents the intermediate state of a message digest at an
+ * arbitrary position of the message, as exported by
+ * {@link ExportableDigest#exportState()}. The state consists of the name of
+ * the digest class and a compact encoding of the chaining variables, the
+ * number of processed bytes, and the bytes of the incomplete block:
+ * 
+ * <pre>
+ * H[0] || ... || H[n-1] || count || buffered bytes
+ * </pre>
+ * 
+ * where the chaining variables and the 8-byte count are encoded in big endian
+ * order. The encoding can be stored and later be imported into a fresh digest
+ * of the same type to continue the computation.
+ */
+public final class DigestState {
+
+    // the name of the digest class
+    private final String algorithm;
+
+    // the encoded state
+    private final byte[] encoded;
+
+    /**
+     * Construct a digest state from its algorithm and its encoding (as returned
+     * by {@link #getAlgorithm()} and {@link #getEncoded()}).
+     * 
+     * @param algorithm
+     *                the name of the digest class
+     * @param encoded
+     *                the encoded state
+     */
+    public DigestState(String algorithm, byte[] encoded) {
+	if (algorithm == null || encoded == null) {
+	    throw new NullPointerException();
+	}
+	this.algorithm = algorithm;
+	this.encoded = ByteUtils.clone(encoded);
+    }
+
+    /**
+     * @return the name of the digest class which exported this state
+     */
+    public String getAlgorithm() {
+	return algorithm;
+    }
+
+    /**
+     * @return a copy of the encoded state
+     */
+    public byte[] getEncoded() {
+	return ByteUtils.clone(encoded);
+    }
+
+    /**
+     * Encode the state of a digest operating on 32-bit words.
+     * 
+     * @param owner
+     *                the exporting digest
+     * @param h
+     *                the chaining variables
+     * @param count
+     *                the number of processed bytes
+     * @param buffer
+     *                the block buffer (of the block length)
+     * @return the exported state
+     */
+    static DigestState export(Object owner, int[] h, long count,
+	    byte[] buffer) {
+	int bufLen = (int) (count % buffer.length);
+	int hLen = h.length << 2;
+	byte[] enc = new byte[hLen + 8 + bufLen];
+	for (int i = 0; i < h.length; i++) {
+	    BigEndianConversions.I2OSP(h[i], enc, i << 2);
+	}
+	BigEndianConversions.I2OSP(count, enc, hLen);
+	System.arraycopy(buffer, 0, enc, hLen + 8, bufLen);
+	return new DigestState(owner.getClass().getName(), enc);
+    }
+
+    /**
+     * Encode the state of a digest operating on 64-bit words.
+     * 
+     * @param owner
+     *                the exporting digest
+     * @param h
+     *                the chaining variables
+     * @param count
+     *                the number of processed bytes
+     * @param buffer
+     *                the block buffer (of the block length)
+     * @return the exported state
+     */
+    static DigestState export(Object owner, long[] h, long count,
+	    byte[] buffer) {
+	int bufLen = (int) (count % buffer.length);
+	int hLen = h.length << 3;
+	byte[] enc = new byte[hLen + 8 + bufLen];
+	for (int i = 0; i < h.length; i++) {
+	    BigEndianConversions.I2OSP(h[i], enc, i << 3);
+	}
+	BigEndianConversions.I2OSP(count, enc, hLen);
+	System.arraycopy(buffer, 0, enc, hLen + 8, bufLen);
+	return new DigestState(owner.getClass().getName(), enc);
+    }
+
+    /**
+     * Decode a state exported by a digest operating on 32-bit words. The state
+     * is validated completely before <tt>h</tt> and <tt>buffer</tt> are
+     * written, so that a rejected state leaves the importing digest unchanged.
+     * 
+     * @param owner
+     *                the importing digest
+     * @param h
+     *                the chaining variables (filled by this method)
+     * @param buffer
+     *                the block buffer (filled by this method)
+     * @param maxCount
+     *                the maximal number of processed bytes the importing
+     *                digest can represent
+     * @return the number of processed bytes
+     * @throws IllegalArgumentException
+     *                 if the state has not been exported by a digest of the
+     *                 same type or is malformed.
+     */
+    long decode(Object owner, int[] h, byte[] buffer, long maxCount) {
+	long count = decodeCount(owner, h.length << 2, buffer.length,
+		maxCount);
+	for (int i = 0; i < h.length; i++) {
+	    h[i] = BigEndianConversions.OS2IP(encoded, i << 2);
+	}
+	System.arraycopy(encoded, (h.length << 2) + 8, buffer, 0,
+		(int) (count % buffer.length));
+	return count;
+    }
+
+    /**
+     * Decode a state exported by a digest operating on 64-bit words. The state
+     * is validated completely before <tt>h</tt> and <tt>buffer</tt> are
+     * written.
+     * 
+     * @param owner
+     *                the importing digest
+     * @param h
+     *                the chaining variables (filled by this method)
+     * @param buffer
+     *                the block buffer (filled by this method)
+     * @return the number of processed bytes
+     * @throws IllegalArgumentException
+     *                 if the state has not been exported by a digest of the
+     *                 same type or is malformed.
+     */
+    long decode(Object owner, long[] h, byte[] buffer) {
+	long count = decodeCount(owner, h.length << 3, buffer.length,
+		Long.MAX_VALUE);
+	for (int i = 0; i < h.length; i++) {
+	    h[i] = BigEndianConversions.OS2LIP(encoded, i << 3);
+	}
+	System.arraycopy(encoded, (h.length << 3) + 8, buffer, 0,
+		(int) (count % buffer.length));
+	return count;
+    }
+
+    private long decodeCount(Object owner, int hLen, int blockLen,
+	    long maxCount) {
+	if (!algorithm.equals(owner.getClass().getName())) {
+	    throw new IllegalArgumentException("state of another digest");
+	}
+	if (encoded.length < hLen + 8) {
+	    throw new IllegalArgumentException("malformed state");
+	}
+	long count = BigEndianConversions.OS2LIP(encoded, hLen);
+	if (count < 0 || count > maxCount
+		|| encoded.length != hLen + 8 + count % blockLen) {
+	    throw new IllegalArgumentException("malformed state");
+	}
+	return count;
+    }
+
+}
@@ -0,0 +1,32 @@
+package de.flexiprovider.core.md;
+
+/**
+ * This interface is implemented by message digests whose intermediate state
+ * can be exported at any position of the message and later be imported into
+ * another instance of the same digest. Together with <tt>clone()</tt>, this
+ * allows to hash a common prefix of several messages only once.
+ * 
+ * @see DigestState
+ */
+public interface ExportableDigest {
+
+    /**
+     * Export the current state of this digest. The digest itself is not
+     * modified.
+     * 
+     * @return the exported state
+     */
+    DigestState exportState();
+
+    /**
+     * Replace the state of this digest by the given state.
+     * 
+     * @param state
+     *                the state
+     * @throws IllegalArgumentException
+     *                 if the state has not been exported by a digest of the
+     *                 same type or is malformed.
+     */
+    void importState(DigestState state);
+
+}
@@ -93,7 +93,7 @@ public class FORK256 extends MessageDigest {
 	 * @param len
 	 *            the number of bytes to use
 	 */
-	public synchronized void update(byte[] input, int offset, int len) {
+	public void update(byte[] input, int offset, int len) {
 		int bufOffset = ((int) count) & 63;
 		int copyLen;
 
@@ -118,7 +118,7 @@ public class FORK256 extends MessageDigest {
 	 * @param input
 	 *            the byte to use for the update
 	 */
-	public synchronized void update(byte input) {
+	public void update(byte input) {
 		buffer[(int) count & 63] = input;
 
 		if ((int) (count & 63) == 63) {
@@ -133,7 +133,7 @@ public class FORK256 extends MessageDigest {
 	 * 
 	 * @return the digest value
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		pad();
 
 		byte[] digestValue = new byte[FORK256_DIGEST_LENGTH];
@@ -165,7 +165,7 @@ public class FORK256 extends MessageDigest {
 	/**
 	 * Compute the hash value of the current block and store it in H
 	 */
-	private synchronized void processBlock() {
+	private void processBlock() {
 		int[] W = new int[16];
 		int[] tmp1 = new int[8];
 		int[] tmp2 = new int[8];
@@ -91,7 +91,7 @@ public final class MD4 extends MDFamilyDigest {
 	 * 
 	 * @return the message digest in a byte array
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		byte[] digest = new byte[MD4_DIGEST_LENGTH];
 
 		padMessageDigest();
@@ -110,7 +110,7 @@ public final class MD4 extends MDFamilyDigest {
 	/**
 	 * process a block of 64 bytes
 	 */
-	protected synchronized void processBlock() {
+	protected void processBlock() {
 		int a = state[0];
 		int b = state[1];
 		int c = state[2];
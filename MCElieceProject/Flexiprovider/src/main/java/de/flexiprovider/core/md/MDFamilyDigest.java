@@ -9,6 +9,8 @@
 
 package de.flexiprovider.core.md;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.MessageDigest;
 import de.flexiprovider.common.util.LittleEndianConversions;
 
@@ -18,7 +20,8 @@ import de.flexiprovider.common.util.LittleEndianConversions;
  * 
  * @author Martin D_ring
  */
-public abstract class MDFamilyDigest extends MessageDigest {
+public abstract class MDFamilyDigest extends MessageDigest implements
+	ExportableDigest, Cloneable {
 
     // the digest length in bytes
     private int digestLength;
@@ -77,7 +80,7 @@ public abstract class MDFamilyDigest extends MessageDigest {
      * @param b
      *                byte to be added.
      */
-    public synchronized void update(byte b) {
+    public void update(byte b) {
 	buffer[count & 63] = b;
 	if ((count & 63) == 63) {
 	    // 64 bytes arrived -> time for some processing
@@ -101,7 +104,7 @@ public abstract class MDFamilyDigest extends MessageDigest {
      * @param len
      *                number of bytes to process
      */
-    public synchronized void update(byte[] bytes, int offset, int len) {
+    public void update(byte[] bytes, int offset, int len) {
 	// fill up buffer
 	while ((len > 0) & ((count & 63) != 0)) {
 	    update(bytes[offset++]);
@@ -131,6 +134,81 @@ public abstract class MDFamilyDigest extends MessageDigest {
 	}
     }
 
+    /**
+     * Update the digest using the remaining bytes of the given buffer. The
+     * bytes of buffers without an accessible array (e.g., direct buffers) are
+     * read directly into the block buffer of the digest, without a staging
+     * array.
+     * 
+     * @param input
+     *                the buffer to use for the update
+     */
+    public void update(ByteBuffer input) {
+	if (input.hasArray()) {
+	    super.update(input);
+	    return;
+	}
+	int inLen = input.remaining();
+
+	while (inLen > 0) {
+	    int bufOff = (int) count & 63;
+	    int copyLen = Math.min(64 - bufOff, inLen);
+	    input.get(buffer, bufOff, copyLen);
+
+	    inLen -= copyLen;
+	    count += copyLen;
+
+	    if (bufOff + copyLen == 64) {
+		for (int i = 15; i >= 0; i--) {
+		    x[i] = LittleEndianConversions.OS2IP(buffer, 4 * i);
+		}
+		processBlock();
+	    }
+	}
+    }
+
+    /**
+     * Return a copy of this digest in its current state. The copy and the
+     * original can be updated independently.
+     * 
+     * @return the copy
+     */
+    public Object clone() {
+	MDFamilyDigest clone;
+	try {
+	    clone = (MDFamilyDigest) super.clone();
+	} catch (CloneNotSupportedException cnse) {
+	    // the class implements Cloneable
+	    throw new RuntimeException("internal error");
+	}
+	clone.buffer = buffer.clone();
+	clone.x = new int[16];
+	clone.state = state.clone();
+	return clone;
+    }
+
+    /**
+     * Export the current state of this digest.
+     * 
+     * @return the exported state
+     */
+    public DigestState exportState() {
+	return DigestState.export(this, state, count, buffer);
+    }
+
+    /**
+     * Import a state exported by a digest of the same type.
+     * 
+     * @param state
+     *                the state
+     * @throws IllegalArgumentException
+     *                 if the state has not been exported by a digest of the
+     *                 same type or is malformed.
+     */
+    public void importState(DigestState state) {
+	count = (int) state.decode(this, this.state, buffer, Integer.MAX_VALUE);
+    }
+
     /**
      * this method performs the padding. A single 1-bit is appended and then
      * 0-bits, until only 64 bits are left free in the final block to enter the
@@ -0,0 +1,96 @@
+package de.flexiprovider.core.md;
+
+import de.flexiprovider.common.util.ByteUtils;
+
+/**
+ * This class holds the hash tree of a file as computed by
+ * {@link MerkleTreeHash}. Level 0 contains the hashes of the leaves (the
+ * consecutive <tt>leafSize</tt>-byte blocks of the file), each higher level
+ * contains the hashes of pairs of nodes of the level below, and the single
+ * node of the top level is the root. A node without sibling is moved up
+ * unchanged.
+ * <p>
+ * The tree keeps all levels, so that {@link MerkleTreeHash#rehash(MerkleTree,
+ * java.nio.channels.FileChannel, long, long)} only has to recompute the
+ * changed leaves and their paths to the root.
+ */
+public final class MerkleTree {
+
+    // the name of the digest
+    private final String algName;
+
+    // the leaf size in bytes
+    private final int leafSize;
+
+    // the length of the hashed file
+    long length;
+
+    // the nodes, levels[0] are the leaf hashes
+    byte[][][] levels;
+
+    /**
+     * Constructor.
+     * 
+     * @param algName
+     *                the name of the digest
+     * @param leafSize
+     *                the leaf size in bytes
+     * @param length
+     *                the length of the file
+     * @param leaves
+     *                the leaf hashes
+     */
+    MerkleTree(String algName, int leafSize, long length, byte[][] leaves) {
+	this.algName = algName;
+	this.leafSize = leafSize;
+	this.length = length;
+	levels = new byte[][][] { leaves };
+    }
+
+    /**
+     * @return the name of the digest
+     */
+    public String getAlgorithm() {
+	return algName;
+    }
+
+    /**
+     * @return the leaf size in bytes
+     */
+    public int getLeafSize() {
+	return leafSize;
+    }
+
+    /**
+     * @return the length of the hashed file in bytes
+     */
+    public long getLength() {
+	return length;
+    }
+
+    /**
+     * @return the number of leaves
+     */
+    public int getNumLeaves() {
+	return levels[0].length;
+    }
+
+    /**
+     * Return the hash of the given leaf.
+     * 
+     * @param index
+     *                the index of the leaf
+     * @return a copy of the leaf hash
+     */
+    public byte[] getLeafHash(int index) {
+	return ByteUtils.clone(levels[0][index]);
+    }
+
+    /**
+     * @return a copy of the root hash
+     */
+    public byte[] getRoot() {
+	return ByteUtils.clone(levels[levels.length - 1][0]);
+    }
+
+}
@@ -0,0 +1,357 @@
+package de.flexiprovider.core.md;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.flexiprovider.api.MessageDigest;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.exceptions.NoSuchAlgorithmException;
+import de.flexiprovider.common.util.ParallelTask;
+
+/**
+ * This class computes the hash tree ({@link MerkleTree}) of a file with any
+ * registered message digest. The file is split into leaves of
+ * <tt>leafSize</tt> bytes (the last leaf may be shorter, an empty file has a
+ * single empty leaf). The leaf hashes are computed as
+ * <tt>H(0x00 || leaf)</tt> and the inner nodes as
+ * <tt>H(0x01 || left || right)</tt>, so that leaves and inner nodes cannot be
+ * confused.
+ * <p>
+ * The file is memory-mapped in windows of up to 64 MB with
+ * {@link FileChannel#map(java.nio.channels.FileChannel.MapMode, long, long)},
+ * and the leaves are hashed by up to {@link #setNumThreads(int) numThreads}
+ * threads, each with its own digest instance and a contiguous range of
+ * leaves. The mapped leaves are passed to
+ * {@link MessageDigest#update(java.nio.ByteBuffer)}: the SHA, MD, RIPEMD, and
+ * Tiger digests of this package read them directly into their block buffer,
+ * other digests copy them through a staging array.
+ * <p>
+ * After a part of the file has changed,
+ * {@link #rehash(MerkleTree, FileChannel, long, long)} recomputes only the
+ * affected leaves and their paths to the root.
+ */
+public class MerkleTreeHash {
+
+    /**
+     * The default leaf size (1 MB)
+     */
+    public static final int DEFAULT_LEAF_SIZE = 1 << 20;
+
+    // the maximal size of a mapped window
+    private static final int MAX_WINDOW = 1 << 26;
+
+    // the prefix of leaves
+    private static final byte LEAF_PREFIX = 0x00;
+
+    // the prefix of inner nodes
+    private static final byte NODE_PREFIX = 0x01;
+
+    // the name of the digest
+    private final String algName;
+
+    // the leaf size in bytes
+    private final int leafSize;
+
+    // the maximal number of threads
+    private int numThreads;
+
+    /**
+     * Construct a tree hash with the given digest and the
+     * {@link #DEFAULT_LEAF_SIZE default leaf size}.
+     * 
+     * @param algName
+     *                the name of the digest (e.g. "SHA256")
+     * @throws NoSuchAlgorithmException
+     *                 if the digest is not registered.
+     */
+    public MerkleTreeHash(String algName) throws NoSuchAlgorithmException {
+	this(algName, DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Construct a tree hash with the given digest and leaf size.
+     * 
+     * @param algName
+     *                the name of the digest (e.g. "SHA256")
+     * @param leafSize
+     *                the leaf size in bytes
+     * @throws NoSuchAlgorithmException
+     *                 if the digest is not registered.
+     * @throws IllegalArgumentException
+     *                 if <tt>leafSize &lt; 1</tt>.
+     */
+    public MerkleTreeHash(String algName, int leafSize)
+	    throws NoSuchAlgorithmException {
+	if (leafSize < 1) {
+	    throw new IllegalArgumentException("invalid leaf size");
+	}
+	// check that the digest is available
+	Registry.getMessageDigest(algName);
+	this.algName = algName;
+	this.leafSize = leafSize;
+	numThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Set the maximal number of threads used to hash the leaves. The default
+     * is the number of available processors.
+     * 
+     * @param numThreads
+     *                the number of threads
+     * @throws IllegalArgumentException
+     *                 if <tt>numThreads &lt; 1</tt>.
+     */
+    public void setNumThreads(int numThreads) {
+	if (numThreads < 1) {
+	    throw new IllegalArgumentException("invalid number of threads");
+	}
+	this.numThreads = numThreads;
+    }
+
+    /**
+     * Compute the hash tree of the given file.
+     * 
+     * @param file
+     *                the file
+     * @return the hash tree
+     * @throws IOException
+     *                 if the file cannot be read.
+     */
+    public MerkleTree hash(File file) throws IOException {
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    return hash(raf.getChannel());
+	} finally {
+	    raf.close();
+	}
+    }
+
+    /**
+     * Compute the hash tree of the file underlying the given channel. The
+     * position of the channel is not changed.
+     * 
+     * @param channel
+     *                the channel
+     * @return the hash tree
+     * @throws IOException
+     *                 if the file cannot be read.
+     */
+    public MerkleTree hash(FileChannel channel) throws IOException {
+	long length = channel.size();
+	byte[][] leaves = new byte[numLeaves(length)][];
+	hashLeaves(channel, length, leaves, 0, leaves.length);
+	MerkleTree tree = new MerkleTree(algName, leafSize, length, leaves);
+	buildLevels(tree);
+	return tree;
+    }
+
+    /**
+     * Update the given hash tree after the bytes
+     * <tt>offset, ..., offset + len - 1</tt> of the file have changed. If the
+     * length of the file has changed, the leaves from the previous last leaf
+     * on are recomputed as well.
+     * 
+     * @param tree
+     *                the hash tree computed by this tree hash
+     * @param channel
+     *                the channel of the changed file
+     * @param offset
+     *                the offset of the changed range
+     * @param len
+     *                the length of the changed range
+     * @throws IOException
+     *                 if the file cannot be read.
+     * @throws IllegalArgumentException
+     *                 if the tree has been computed with another digest or
+     *                 leaf size or the range is invalid.
+     */
+    public void rehash(MerkleTree tree, FileChannel channel, long offset,
+	    long len) throws IOException {
+	if (!algName.equals(tree.getAlgorithm())
+		|| leafSize != tree.getLeafSize()) {
+	    throw new IllegalArgumentException("tree of another tree hash");
+	}
+	if (offset < 0 || len < 0) {
+	    throw new IllegalArgumentException("invalid range");
+	}
+
+	long length = channel.size();
+	byte[][] leaves = tree.levels[0];
+	int n = numLeaves(length);
+	int first = (int) Math.min(offset / leafSize, n);
+	int last = len == 0 ? first - 1 : (int) Math.min(
+		(offset + len - 1) / leafSize, n - 1);
+
+	if (length != tree.length) {
+	    first = Math.min(first, Math.min(leaves.length, n) - 1);
+	    last = n - 1;
+	    byte[][] newLeaves = new byte[n][];
+	    System.arraycopy(leaves, 0, newLeaves, 0, first);
+	    hashLeaves(channel, length, newLeaves, first, n);
+	    tree.length = length;
+	    tree.levels = new byte[][][] { newLeaves };
+	    buildLevels(tree);
+	    return;
+	}
+
+	if (first > last) {
+	    return;
+	}
+	hashLeaves(channel, length, leaves, first, last + 1);
+
+	// recompute the paths of the changed leaves
+	MessageDigest md = newDigest();
+	for (int l = 1; l < tree.levels.length; l++) {
+	    first >>>= 1;
+	    last >>>= 1;
+	    for (int i = first; i <= last; i++) {
+		tree.levels[l][i] = node(md, tree.levels[l - 1], i);
+	    }
+	}
+    }
+
+    private int numLeaves(long length) {
+	long n = length == 0 ? 1 : (length + leafSize - 1) / leafSize;
+	if (n > Integer.MAX_VALUE) {
+	    throw new IllegalArgumentException("too many leaves");
+	}
+	return (int) n;
+    }
+
+    /**
+     * Compute all levels above the leaves.
+     */
+    private void buildLevels(MerkleTree tree) {
+	MessageDigest md = newDigest();
+
+	int numLevels = 1;
+	for (int n = tree.levels[0].length; n > 1; n = (n + 1) >>> 1) {
+	    numLevels++;
+	}
+	byte[][][] levels = new byte[numLevels][][];
+	levels[0] = tree.levels[0];
+	for (int l = 1; l < numLevels; l++) {
+	    levels[l] = new byte[(levels[l - 1].length + 1) >>> 1][];
+	    for (int i = 0; i < levels[l].length; i++) {
+		levels[l][i] = node(md, levels[l - 1], i);
+	    }
+	}
+	tree.levels = levels;
+    }
+
+    /**
+     * Compute the parent of the nodes <tt>2i</tt> and <tt>2i+1</tt> of the
+     * given level (or move up node <tt>2i</tt> if it has no sibling).
+     */
+    private static byte[] node(MessageDigest md, byte[][] below, int i) {
+	int left = i << 1;
+	if (left + 1 == below.length) {
+	    return below[left];
+	}
+	md.update(NODE_PREFIX);
+	md.update(below[left]);
+	md.update(below[left + 1]);
+	return md.digest();
+    }
+
+    /**
+     * Hash the leaves <tt>from, ..., to - 1</tt>, in parallel if there are
+     * several.
+     */
+    private void hashLeaves(FileChannel channel, long length,
+	    byte[][] leaves, int from, int to) throws IOException {
+	int threads = Math.min(numThreads, to - from);
+	if (threads <= 1) {
+	    hashRange(channel, length, leaves, from, to, newDigest());
+	    return;
+	}
+
+	Leaves task = new Leaves(channel, length, leaves, from, to, threads);
+	task.run(threads);
+
+	// the I/O exception of the first failed range (if any)
+	for (int i = 0; i < threads; i++) {
+	    if (task.failures[i] != null) {
+		throw task.failures[i];
+	    }
+	}
+    }
+
+    /**
+     * Hash the leaves <tt>from, ..., to - 1</tt> with the given digest,
+     * mapping the file in windows of at most {@link #MAX_WINDOW} bytes.
+     */
+    private void hashRange(FileChannel channel, long length,
+	    byte[][] leaves, int from, int to, MessageDigest md)
+	    throws IOException {
+	int leavesPerWindow = Math.max(MAX_WINDOW / leafSize, 1);
+	for (int i = from; i < to;) {
+	    int k = Math.min(leavesPerWindow, to - i);
+	    long winStart = (long) i * leafSize;
+	    int winLen = (int) Math.min((long) k * leafSize, length - winStart);
+	    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+		    winStart, winLen);
+	    for (int j = 0; j < k; j++) {
+		int pos = j * leafSize;
+		buf.limit(Math.min(pos + leafSize, winLen));
+		buf.position(pos);
+		md.update(LEAF_PREFIX);
+		md.update(buf);
+		leaves[i + j] = md.digest();
+	    }
+	    i += k;
+	}
+    }
+
+    private MessageDigest newDigest() {
+	try {
+	    return Registry.getMessageDigest(algName);
+	} catch (NoSuchAlgorithmException nsae) {
+	    // the digest has been checked in the constructor
+	    throw new RuntimeException("internal error");
+	}
+    }
+
+    /**
+     * The parallel hashing of contiguous ranges of leaves.
+     */
+    private class Leaves extends ParallelTask {
+
+	private final FileChannel channel;
+
+	private final long length;
+
+	private final byte[][] leaves;
+
+	private final int from, to, numParts;
+
+	// the I/O exceptions thrown while hashing the ranges
+	final IOException[] failures;
+
+	Leaves(FileChannel channel, long length, byte[][] leaves, int from,
+		int to, int numParts) {
+	    this.channel = channel;
+	    this.length = length;
+	    this.leaves = leaves;
+	    this.from = from;
+	    this.to = to;
+	    this.numParts = numParts;
+	    failures = new IOException[numParts];
+	}
+
+	protected void runPart(int part) {
+	    int start = from + start(to - from, numParts, part);
+	    int end = from + start(to - from, numParts, part + 1);
+	    try {
+		hashRange(channel, length, leaves, start, end, newDigest());
+	    } catch (IOException ioe) {
+		failures[part] = ioe;
+	    }
+	}
+
+    }
+
+}
@@ -0,0 +1,261 @@
+package de.flexiprovider.core.md;
+
+import de.flexiprovider.common.util.BigEndianConversions;
+
+/**
+ * This class computes the SHA-256 hash values of many independent messages.
+ * Two messages are processed in lockstep: the message schedules and rounds of
+ * both lanes are interleaved, so that the processor can overlap the two
+ * dependency chains. When a message is finished, its lane is refilled with
+ * the next message. The messages are read in place (only the final padded
+ * block is copied), and no digest object is created per message. The
+ * message schedule functions and the compression function for a single lane
+ * are those of {@link SHA224_256}.
+ * <p>
+ * The hash values are identical to those computed by {@link SHA256}. An
+ * instance keeps scratch arrays and must not be used by several threads
+ * concurrently.
+ */
+public final class MultiBufferSHA256 {
+
+    /**
+     * The number of interleaved lanes
+     */
+    public static final int LANES = 2;
+
+    // the chaining values, s[j * LANES + lane]
+    private final int[] s = new int[8 * LANES];
+
+    // the interleaved message schedules, w[i * LANES + lane]
+    private final int[] w = new int[64 * LANES];
+
+    // the padded final blocks of the messages in the lanes
+    private final byte[][] tail = new byte[LANES][128];
+
+    // the index of the message in each lane (-1 if the lane is idle)
+    private final int[] msg = new int[LANES];
+
+    // the index of the next block of each lane
+    private final int[] block = new int[LANES];
+
+    // the number of blocks (including padding) of each lane
+    private final int[] numBlocks = new int[LANES];
+
+    // the number of message blocks hashed directly from the message
+    private final int[] numFull = new int[LANES];
+
+    // the chaining values and message schedule of a single remaining lane
+    private final int[] singleH = new int[8];
+
+    private final int[] singleW = new int[64];
+
+    /**
+     * Compute the hash values of the given messages.
+     * 
+     * @param messages
+     *                the messages
+     * @return the hash values (in the order of the messages)
+     */
+    public byte[][] digest(byte[][] messages) {
+	byte[][] result = new byte[messages.length][];
+	int next = 0;
+	for (int lane = 0; lane < LANES; lane++) {
+	    next = assign(lane, messages, next);
+	}
+
+	while (true) {
+	    int active = 0, last = -1;
+	    for (int lane = 0; lane < LANES; lane++) {
+		if (msg[lane] >= 0) {
+		    active++;
+		    last = lane;
+		}
+	    }
+	    if (active == 0) {
+		return result;
+	    }
+	    if (active == 1 && next == messages.length) {
+		finishLane(last, messages, result);
+		return result;
+	    }
+
+	    // idle lanes hash stale words, their result is discarded
+	    for (int lane = 0; lane < LANES; lane++) {
+		if (msg[lane] >= 0) {
+		    loadBlock(lane, messages[msg[lane]]);
+		}
+	    }
+	    compress2(s, w);
+
+	    for (int lane = 0; lane < LANES; lane++) {
+		if (msg[lane] >= 0 && ++block[lane] == numBlocks[lane]) {
+		    byte[] out = new byte[32];
+		    for (int j = 0; j < 8; j++) {
+			BigEndianConversions.I2OSP(s[j * LANES + lane], out,
+				j << 2);
+		    }
+		    result[msg[lane]] = out;
+		    next = assign(lane, messages, next);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Put the message with the given index into the given lane (or mark the
+     * lane as idle if there are no more messages).
+     * 
+     * @return the index of the next unassigned message
+     */
+    private int assign(int lane, byte[][] messages, int next) {
+	if (next == messages.length) {
+	    msg[lane] = -1;
+	    return next;
+	}
+
+	byte[] m = messages[next];
+	int full = m.length >>> 6;
+	int rest = m.length & 63;
+	int tailLen = rest < 56 ? 64 : 128;
+
+	// pad the final block(s)
+	byte[] t = tail[lane];
+	System.arraycopy(m, full << 6, t, 0, rest);
+	t[rest] = (byte) 0x80;
+	for (int i = rest + 1; i < tailLen - 8; i++) {
+	    t[i] = 0;
+	}
+	BigEndianConversions.I2OSP((long) m.length << 3, t, tailLen - 8);
+
+	msg[lane] = next;
+	block[lane] = 0;
+	numFull[lane] = full;
+	numBlocks[lane] = full + (tailLen >>> 6);
+	for (int j = 0; j < 8; j++) {
+	    s[j * LANES + lane] = SHA256.H0[j];
+	}
+	return next + 1;
+    }
+
+    /**
+     * Load the next block of the given lane into the message schedule.
+     */
+    private void loadBlock(int lane, byte[] m) {
+	int b = block[lane];
+	byte[] src;
+	int off;
+	if (b < numFull[lane]) {
+	    src = m;
+	    off = b << 6;
+	} else {
+	    src = tail[lane];
+	    off = (b - numFull[lane]) << 6;
+	}
+	for (int k = 0; k < 16; k++) {
+	    w[k * LANES + lane] = BigEndianConversions.OS2IP(src,
+		    off + (k << 2));
+	}
+    }
+
+    /**
+     * Hash the remaining blocks of the only active lane without interleaving.
+     */
+    private void finishLane(int lane, byte[][] messages, byte[][] result) {
+	for (int j = 0; j < 8; j++) {
+	    singleH[j] = s[j * LANES + lane];
+	}
+	byte[] m = messages[msg[lane]];
+	for (int b = block[lane]; b < numBlocks[lane]; b++) {
+	    byte[] src = b < numFull[lane] ? m : tail[lane];
+	    int off = (b < numFull[lane] ? b : b - numFull[lane]) << 6;
+	    for (int k = 0; k < 16; k++) {
+		singleW[k] = BigEndianConversions.OS2IP(src, off + (k << 2));
+	    }
+	    SHA224_256.compress(singleH, singleW);
+	}
+	byte[] out = new byte[32];
+	for (int j = 0; j < 8; j++) {
+	    BigEndianConversions.I2OSP(singleH[j], out, j << 2);
+	}
+	result[msg[lane]] = out;
+	msg[lane] = -1;
+    }
+
+    /**
+     * Apply the compression function to one block of each of the two lanes,
+     * with the rounds of both lanes interleaved.
+     * 
+     * @param s
+     *                the interleaved chaining values
+     * @param w
+     *                the interleaved message schedules (the blocks in the
+     *                first 32 words)
+     */
+    private static void compress2(int[] s, int[] w) {
+	for (int i = 32; i < 128; i += 2) {
+	    w[i] = SHA224_256.s1(w[i - 4]) + w[i - 14]
+		    + SHA224_256.s0(w[i - 30]) + w[i - 32];
+	    w[i + 1] = SHA224_256.s1(w[i - 3]) + w[i - 13]
+		    + SHA224_256.s0(w[i - 29]) + w[i - 31];
+	}
+
+	int a0 = s[0], b0 = s[2], c0 = s[4], d0 = s[6];
+	int e0 = s[8], f0 = s[10], g0 = s[12], h0 = s[14];
+	int a1 = s[1], b1 = s[3], c1 = s[5], d1 = s[7];
+	int e1 = s[9], f1 = s[11], g1 = s[13], h1 = s[15];
+	for (int i = 0, j = 0; i < 64; i++, j += 2) {
+	    int k = SHA224_256.K[i];
+
+	    int t1 = h0
+		    + ((e0 >>> 6 | e0 << 26) ^ (e0 >>> 11 | e0 << 21)
+		    ^ (e0 >>> 25 | e0 << 7))
+		    + (e0 & f0 ^ ~e0 & g0) + k + w[j];
+	    int t2 = ((a0 >>> 2 | a0 << 30) ^ (a0 >>> 13 | a0 << 19)
+		    ^ (a0 >>> 22 | a0 << 10))
+		    + (a0 & b0 ^ a0 & c0 ^ b0 & c0);
+	    int u1 = h1
+		    + ((e1 >>> 6 | e1 << 26) ^ (e1 >>> 11 | e1 << 21)
+		    ^ (e1 >>> 25 | e1 << 7))
+		    + (e1 & f1 ^ ~e1 & g1) + k + w[j + 1];
+	    int u2 = ((a1 >>> 2 | a1 << 30) ^ (a1 >>> 13 | a1 << 19)
+		    ^ (a1 >>> 22 | a1 << 10))
+		    + (a1 & b1 ^ a1 & c1 ^ b1 & c1);
+
+	    h0 = g0;
+	    g0 = f0;
+	    f0 = e0;
+	    e0 = d0 + t1;
+	    d0 = c0;
+	    c0 = b0;
+	    b0 = a0;
+	    a0 = t1 + t2;
+
+	    h1 = g1;
+	    g1 = f1;
+	    f1 = e1;
+	    e1 = d1 + u1;
+	    d1 = c1;
+	    c1 = b1;
+	    b1 = a1;
+	    a1 = u1 + u2;
+	}
+
+	s[0] += a0;
+	s[2] += b0;
+	s[4] += c0;
+	s[6] += d0;
+	s[8] += e0;
+	s[10] += f0;
+	s[12] += g0;
+	s[14] += h0;
+	s[1] += a1;
+	s[3] += b1;
+	s[5] += c1;
+	s[7] += d1;
+	s[9] += e1;
+	s[11] += f1;
+	s[13] += g1;
+	s[15] += h1;
+    }
+
+}
@@ -86,7 +86,7 @@ public final class RIPEMD128 extends MDFamilyDigest {
 	 * 
 	 * @return the message digest in a byte array
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		// produce the final digest
 		byte[] digest = new byte[RIPEMD128_DIGEST_LENGTH];
 
@@ -107,7 +107,7 @@ public final class RIPEMD128 extends MDFamilyDigest {
 	/**
 	 * process a block of 64 bytes
 	 */
-	protected synchronized void processBlock() {
+	protected void processBlock() {
 		int Al = state[0];
 		int Bl = state[1];
 		int Cl = state[2];
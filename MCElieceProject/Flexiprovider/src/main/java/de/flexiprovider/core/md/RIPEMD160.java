@@ -65,7 +65,7 @@ public final class RIPEMD160 extends MDFamilyDigest {
 	 * 
 	 * @return the message digest in a byte array
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		// produce the final digest
 		byte[] digest = new byte[RIPEMD160_DIGEST_LENGTH];
 
@@ -87,7 +87,7 @@ public final class RIPEMD160 extends MDFamilyDigest {
 	/**
 	 * process a block of 64 bytes
 	 */
-	protected synchronized void processBlock() {
+	protected void processBlock() {
 		int Al = state[0];
 		int Bl = state[1];
 		int Cl = state[2];
@@ -81,7 +81,7 @@ public final class RIPEMD256 extends MDFamilyDigest {
 	 * 
 	 * @return the digested message.
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		// produce the final digest
 		byte[] digest = new byte[RIPEMD256_DIGEST_LENGTH];
 		// padding because...
@@ -100,7 +100,7 @@ public final class RIPEMD256 extends MDFamilyDigest {
 	/**
 	 * Processes a block of 64 bytes.
 	 */
-	protected synchronized void processBlock() {
+	protected void processBlock() {
 
 		// aL - chaning variable A-E, aR- chaning variable A`-E`
 		int[] aL = new int[4];
@@ -75,7 +75,7 @@ public final class RIPEMD320 extends MDFamilyDigest {
 	 * 
 	 * @return the message digest in a byte array
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		// produce the final digest
 		byte[] digest = new byte[RIPEMD320_DIGEST_LENGTH];
 
@@ -93,7 +93,7 @@ public final class RIPEMD320 extends MDFamilyDigest {
 	/**
 	 * process a block of 64 bytes
 	 */
-	protected synchronized void processBlock() {
+	protected void processBlock() {
 
 		// aL - chaning variable A-E, aR- chaning variable A`-E`
 		int[] aL = new int[5];
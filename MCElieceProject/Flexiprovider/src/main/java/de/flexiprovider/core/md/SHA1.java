@@ -9,6 +9,8 @@
 
 package de.flexiprovider.core.md;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.MessageDigest;
 import de.flexiprovider.common.util.BigEndianConversions;
 
@@ -21,7 +23,8 @@ import de.flexiprovider.common.util.BigEndianConversions;
  * @author Sylvain Franke
  * @author Ralf-Philipp Weinmann
  */
-public final class SHA1 extends MessageDigest {
+public final class SHA1 extends MessageDigest implements ExportableDigest,
+		Cloneable {
 
 	/**
 	 * The algorithm name.
@@ -45,8 +48,8 @@ public final class SHA1 extends MessageDigest {
 	// counter for the bytes processed thus far
 	private long count;
 
-	// h0-h5 contain the digest after the original message has been processed
-	private int h0, h1, h2, h3, h4;
+	// H contains the digest after the original message has been processed
+	private int[] H;
 
 	// array w is a temporary buffer used while computing any block
 	private int[] w;
@@ -70,6 +73,7 @@ public final class SHA1 extends MessageDigest {
 	 * digest.
 	 */
 	public SHA1() {
+		H = new int[5];
 		w = new int[80];
 		buffer = new byte[64];
 		reset();
@@ -79,29 +83,31 @@ public final class SHA1 extends MessageDigest {
 	 * This function processBlock contains the actual SHA1 Algorithm, which is
 	 * coded in accordance to the definition of the FIPS PUB 180-1 Standard.
 	 */
-	private synchronized void processBlock() {
+	private void processBlock() {
+		/* step a */
+		for (int i = 0; i < 16; i++) {
+			w[i] = BigEndianConversions.OS2IP(buffer, i << 2);
+		}
+		compress(H, w);
+	}
+
+	/**
+	 * Apply the SHA1 compression function to one block. This method is used by
+	 * other engines of the provider which hash from precomputed states (see
+	 * {@link de.flexiprovider.core.kdf.PBKDF2Engine}) and is not intended for
+	 * applications.
+	 * 
+	 * @param h
+	 *            the chaining state (5 words, updated by this method)
+	 * @param w
+	 *            the message schedule (80 words): the words of the block in
+	 *            <tt>w[0..15]</tt>, the remaining words are overwritten
+	 */
+	public static void compress(int[] h, int[] w) {
 		int a, b, c, d, e;
 		int i;
 		int register;
 
-		/* step a */
-		w[0] = BigEndianConversions.OS2IP(buffer, 0);
-		w[1] = BigEndianConversions.OS2IP(buffer, 4);
-		w[2] = BigEndianConversions.OS2IP(buffer, 8);
-		w[3] = BigEndianConversions.OS2IP(buffer, 12);
-		w[4] = BigEndianConversions.OS2IP(buffer, 16);
-		w[5] = BigEndianConversions.OS2IP(buffer, 20);
-		w[6] = BigEndianConversions.OS2IP(buffer, 24);
-		w[7] = BigEndianConversions.OS2IP(buffer, 28);
-		w[8] = BigEndianConversions.OS2IP(buffer, 32);
-		w[9] = BigEndianConversions.OS2IP(buffer, 36);
-		w[10] = BigEndianConversions.OS2IP(buffer, 40);
-		w[11] = BigEndianConversions.OS2IP(buffer, 44);
-		w[12] = BigEndianConversions.OS2IP(buffer, 48);
-		w[13] = BigEndianConversions.OS2IP(buffer, 52);
-		w[14] = BigEndianConversions.OS2IP(buffer, 56);
-		w[15] = BigEndianConversions.OS2IP(buffer, 60);
-
 		/* step b */
 		for (i = 16; i < 80; i++) {
 			register = w[i - 3] ^ w[i - 8] ^ w[i - 14] ^ w[i - 16];
@@ -110,11 +116,11 @@ public final class SHA1 extends MessageDigest {
 		}
 
 		/* step c */
-		a = h0;
-		b = h1;
-		c = h2;
-		d = h3;
-		e = h4;
+		a = h[0];
+		b = h[1];
+		c = h[2];
+		d = h[3];
+		e = h[4];
 
 		/* step d */
 
@@ -280,11 +286,11 @@ public final class SHA1 extends MessageDigest {
 		c = c << 30 | c >>> 2;
 
 		/* step e */
-		h0 += a;
-		h1 += b;
-		h2 += c;
-		h3 += d;
-		h4 += e;
+		h[0] += a;
+		h[1] += b;
+		h[2] += c;
+		h[3] += d;
+		h[4] += e;
 	}
 
 	/**
@@ -293,16 +299,16 @@ public final class SHA1 extends MessageDigest {
 	 * 
 	 * @return the digest value
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 
 		pad();
 
 		byte[] digestValue = new byte[SHA1_DIGEST_LENGTH];
-		BigEndianConversions.I2OSP(h0, digestValue, 0);
-		BigEndianConversions.I2OSP(h1, digestValue, 4);
-		BigEndianConversions.I2OSP(h2, digestValue, 8);
-		BigEndianConversions.I2OSP(h3, digestValue, 12);
-		BigEndianConversions.I2OSP(h4, digestValue, 16);
+		BigEndianConversions.I2OSP(H[0], digestValue, 0);
+		BigEndianConversions.I2OSP(H[1], digestValue, 4);
+		BigEndianConversions.I2OSP(H[2], digestValue, 8);
+		BigEndianConversions.I2OSP(H[3], digestValue, 12);
+		BigEndianConversions.I2OSP(H[4], digestValue, 16);
 
 		reset();
 
@@ -322,11 +328,11 @@ public final class SHA1 extends MessageDigest {
 	 * Resets the digest for further use.
 	 */
 	public void reset() {
-		h0 = 0x67452301;
-		h1 = 0xefcdab89;
-		h2 = 0x98badcfe;
-		h3 = 0x10325476;
-		h4 = 0xc3d2e1f0;
+		H[0] = 0x67452301;
+		H[1] = 0xefcdab89;
+		H[2] = 0x98badcfe;
+		H[3] = 0x10325476;
+		H[4] = 0xc3d2e1f0;
 		count = 0;
 	}
 
@@ -341,7 +347,7 @@ public final class SHA1 extends MessageDigest {
 	 * @param len
 	 *            - the number of bytes to use, starting at offset.
 	 */
-	public synchronized void update(byte[] input, int offset, int len) {
+	public void update(byte[] input, int offset, int len) {
 		int bufOffset = ((int) count) & 0x3f;
 		int copyLen;
 
@@ -362,13 +368,44 @@ public final class SHA1 extends MessageDigest {
 		}
 	}
 
+	/**
+	 * Update the digest using the remaining bytes of the given buffer. The
+	 * bytes of buffers without an accessible array (e.g., direct buffers) are
+	 * read directly into the block buffer of the digest, without a staging
+	 * array.
+	 * 
+	 * @param input
+	 *                the buffer to use for the update
+	 */
+	public void update(ByteBuffer input) {
+		if (input.hasArray()) {
+			super.update(input);
+			return;
+		}
+		int bufOffset = ((int) count) & 63;
+		int inLen = input.remaining();
+
+		while (inLen > 0) {
+			int copyLen = Math.min(64 - bufOffset, inLen);
+			input.get(buffer, bufOffset, copyLen);
+
+			inLen -= copyLen;
+			count += copyLen;
+			bufOffset = (bufOffset + copyLen) & 63;
+
+			if (bufOffset == 0) {
+				processBlock();
+			}
+		}
+	}
+
 	/**
 	 * Updates the digest using the specified byte.
 	 * 
 	 * @param input
 	 *            - the byte to use for the update.
 	 */
-	public synchronized void update(byte input) {
+	public void update(byte input) {
 		buffer[(int) count & 0x3f] = input;
 
 		if ((int) (count & 0x3f) == 63) {
@@ -407,4 +444,46 @@ public final class SHA1 extends MessageDigest {
 		processBlock();
 	}
 
+	/**
+	 * Return a copy of this digest in its current state. The copy and the
+	 * original can be updated independently.
+	 * 
+	 * @return the copy
+	 */
+	public Object clone() {
+		SHA1 clone;
+		try {
+			clone = (SHA1) super.clone();
+		} catch (CloneNotSupportedException cnse) {
+			// the class implements Cloneable
+			throw new RuntimeException("internal error");
+		}
+		clone.H = H.clone();
+		clone.buffer = buffer.clone();
+		clone.w = new int[80];
+		return clone;
+	}
+
+	/**
+	 * Export the current state of this digest.
+	 * 
+	 * @return the exported state
+	 */
+	public DigestState exportState() {
+		return DigestState.export(this, H, count, buffer);
+	}
+
+	/**
+	 * Import a state exported by a digest of the same type.
+	 * 
+	 * @param state
+	 *                the state
+	 * @throws IllegalArgumentException
+	 *                 if the state has not been exported by a digest of the
+	 *                 same type or is malformed.
+	 */
+	public void importState(DigestState state) {
+		count = state.decode(this, H, buffer, Long.MAX_VALUE);
+	}
+
 }
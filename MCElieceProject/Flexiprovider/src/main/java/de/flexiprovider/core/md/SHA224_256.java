@@ -9,6 +9,8 @@
 
 package de.flexiprovider.core.md;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.MessageDigest;
 import de.flexiprovider.common.util.BigEndianConversions;
 
@@ -17,11 +19,12 @@ import de.flexiprovider.common.util.BigEndianConversions;
  * 
  * @author Ralf-P. Weinmann
  */
-public abstract class SHA224_256 extends MessageDigest {
+public abstract class SHA224_256 extends MessageDigest implements
+	ExportableDigest, Cloneable {
 
     // Constant words K<sub>0...63</sub>. These are the first thirty-two bits of
     // the fractional parts of the cube roots of the first sixty-four primes.
-    private static final int[] K = { 0x428a2f98, 0x71374491, 0xb5c0fbcf,
+    static final int[] K = { 0x428a2f98, 0x71374491, 0xb5c0fbcf,
 	    0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
 	    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74,
 	    0x80deb1fe, 0x9bdc06a7, 0xc19bf174, 0xe49b69c1, 0xefbe4786,
@@ -82,7 +85,7 @@ public abstract class SHA224_256 extends MessageDigest {
      *                the input
      * @return the rotated value
      */
-    private static int s0(int x) {
+    static int s0(int x) {
 	return ((x >>> 7) | (x << 25)) ^ ((x >>> 18) | (x << 14)) ^ (x >>> 3);
     }
 
@@ -93,7 +96,7 @@ public abstract class SHA224_256 extends MessageDigest {
      *                the input
      * @return the rotated value
      */
-    private static int s1(int x) {
+    static int s1(int x) {
 	return ((x >>> 17) | (x << 15)) ^ ((x >>> 19) | (x << 13)) ^ (x >>> 10);
     }
 
@@ -101,10 +104,33 @@ public abstract class SHA224_256 extends MessageDigest {
      * Compute the hash value of the current block and store it in H
      */
     private void processBlock() {
-	int i, i2;
+	for (int i = 0; i < 16; i++) {
+	    W[i] = BigEndianConversions.OS2IP(buffer, i << 2);
+	}
+	compress(H, W);
+    }
+
+    /**
+     * Apply the SHA-224/256 compression function to one block. This method is
+     * used by other engines of the provider which hash from precomputed states
+     * (see {@link de.flexiprovider.core.kdf.PBKDF2Engine}) and is not intended
+     * for applications.
+     * 
+     * @param H
+     *                the chaining state (8 words, updated by this method)
+     * @param W
+     *                the message schedule (64 words): the words of the block
+     *                in <tt>W[0..15]</tt>, the remaining words are
+     *                overwritten
+     */
+    public static void compress(int[] H, int[] W) {
 	int T1, T2;
 	int a, b, c, d, e, f, g, h;
 
+	for (int i = 16; i < 64; i++) {
+	    W[i] = s1(W[i - 2]) + W[i - 7] + s0(W[i - 15]) + W[i - 16];
+	}
+
 	a = H[0];
 	b = H[1];
 	c = H[2];
@@ -114,13 +140,7 @@ public abstract class SHA224_256 extends MessageDigest {
 	g = H[6];
 	h = H[7];
 
-	for (i = 0; i < 64; i++) {
-
-	    i2 = i << 2;
-	    W[i] = i < 16 ? (((buffer[i2] & 0xff) << 24)
-		    | (buffer[++i2] & 0xff) << 16 | (buffer[++i2] & 0xff) << 8 | (buffer[++i2] & 0xff))
-		    : s1(W[i - 2]) + W[i - 7] + s0(W[i - 15]) + W[i - 16];
-
+	for (int i = 0; i < 64; i++) {
 	    T1 = ((e >>> 6 | e << 26) ^ (e >>> 11 | e << 21) ^ (e >>> 25 | e << 7))
 		    + (e & f ^ ~e & g) + h + K[i] + W[i];
 	    T2 = ((a >>> 2 | a << 30) ^ (a >>> 13 | a << 19) ^ (a >>> 22 | a << 10))
@@ -144,7 +164,6 @@ public abstract class SHA224_256 extends MessageDigest {
 	H[5] += f;
 	H[6] += g;
 	H[7] += h;
-
     }
 
     /**
@@ -192,7 +211,7 @@ public abstract class SHA224_256 extends MessageDigest {
      * @param input
      *                the input byte
      */
-    public synchronized void update(byte input) {
+    public void update(byte input) {
 	buffer[(int) count & 63] = input;
 
 	if ((int) (count & 63) == 63) {
@@ -212,7 +231,7 @@ public abstract class SHA224_256 extends MessageDigest {
      * @param inLen
      *                the input length
      */
-    public synchronized void update(byte[] input, int inOff, int inLen) {
+    public void update(byte[] input, int inOff, int inLen) {
 	int bufOff = ((int) count) & 63;
 
 	while (inLen > 0) {
@@ -232,13 +251,86 @@ public abstract class SHA224_256 extends MessageDigest {
 	}
     }
 
+    /**
+     * Update the digest using the remaining bytes of the given buffer. The
+     * bytes of buffers without an accessible array (e.g., direct buffers) are
+     * read directly into the block buffer of the digest, without a staging
+     * array.
+     * 
+     * @param input
+     *                the buffer to use for the update
+     */
+    public void update(ByteBuffer input) {
+	if (input.hasArray()) {
+	    super.update(input);
+	    return;
+	}
+	int bufOff = ((int) count) & 63;
+	int inLen = input.remaining();
+
+	while (inLen > 0) {
+	    int copyLen = Math.min(64 - bufOff, inLen);
+	    input.get(buffer, bufOff, copyLen);
+
+	    inLen -= copyLen;
+	    count += copyLen;
+	    bufOff = (bufOff + copyLen) & 63;
+
+	    if (bufOff == 0) {
+		processBlock();
+	    }
+	}
+    }
+
+    /**
+     * Return a copy of this digest in its current state. The copy and the
+     * original can be updated independently.
+     * 
+     * @return the copy
+     */
+    public Object clone() {
+	SHA224_256 clone;
+	try {
+	    clone = (SHA224_256) super.clone();
+	} catch (CloneNotSupportedException cnse) {
+	    // the class implements Cloneable
+	    throw new RuntimeException("internal error");
+	}
+	clone.W = new int[64];
+	clone.H = H.clone();
+	clone.buffer = buffer.clone();
+	return clone;
+    }
+
+    /**
+     * Export the current state of this digest.
+     * 
+     * @return the exported state
+     */
+    public DigestState exportState() {
+	return DigestState.export(this, H, count, buffer);
+    }
+
+    /**
+     * Import a state exported by a digest of the same type.
+     * 
+     * @param state
+     *                the state
+     * @throws IllegalArgumentException
+     *                 if the state has not been exported by a digest of the
+     *                 same type or is malformed.
+     */
+    public void importState(DigestState state) {
+	count = state.decode(this, H, buffer, Long.MAX_VALUE);
+    }
+
     /**
      * Complete the hash computation by performing final operations such as
      * padding.
      * 
      * @return the digest value
      */
-    public synchronized byte[] digest() {
+    public byte[] digest() {
 	pad();
 
 	byte[] digestValue = new byte[digestLength];
@@ -9,6 +9,8 @@
 
 package de.flexiprovider.core.md;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.MessageDigest;
 import de.flexiprovider.common.util.BigEndianConversions;
 
@@ -18,11 +20,12 @@ import de.flexiprovider.common.util.BigEndianConversions;
  * 
  * @author Ralf-P. Weinmann
  */
-public abstract class SHA384_512 extends MessageDigest {
+public abstract class SHA384_512 extends MessageDigest implements
+	ExportableDigest, Cloneable {
 
     // Constant words K<sub>0...79</sub>. These are the first sixty-four bits of
     // the fractional parts of the cube roots of the first eighty primes.
-    private static final long[] K = { 0x428a2f98d728ae22L, 0x7137449123ef65cdL,
+    static final long[] K = { 0x428a2f98d728ae22L, 0x7137449123ef65cdL,
 	    0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL, 0x3956c25bf348b538L,
 	    0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
 	    0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL,
@@ -116,6 +119,30 @@ public abstract class SHA384_512 extends MessageDigest {
      * Compute the hash value of the current block and store it in H.
      */
     private void processBlock() {
+	for (int i = 0; i < 16; i++) {
+	    W[i] = BigEndianConversions.OS2LIP(buffer, i << 3);
+	}
+	compress(H, W);
+    }
+
+    /**
+     * Apply the SHA-384/512 compression function to one block. This method is
+     * used by other engines of the provider which hash from precomputed states
+     * (see {@link de.flexiprovider.core.kdf.PBKDF2Engine}) and is not intended
+     * for applications.
+     * 
+     * @param H
+     *                the chaining state (8 words, updated by this method)
+     * @param W
+     *                the message schedule (80 words): the words of the block
+     *                in <tt>W[0..15]</tt>, the remaining words are
+     *                overwritten
+     */
+    public static void compress(long[] H, long[] W) {
+	for (int i = 16; i < 80; i++) {
+	    W[i] = sigma1(W[i - 2]) + W[i - 7] + sigma0(W[i - 15]) + W[i - 16];
+	}
+
 	long a = H[0];
 	long b = H[1];
 	long c = H[2];
@@ -126,11 +153,6 @@ public abstract class SHA384_512 extends MessageDigest {
 	long h = H[7];
 
 	for (int i = 0; i < 80; i++) {
-
-	    W[i] = i < 16 ? BigEndianConversions.OS2LIP(buffer, i << 3)
-		    : sigma1(W[i - 2]) + W[i - 7] + sigma0(W[i - 15])
-			    + W[i - 16];
-
 	    long T1 = ((e >>> 14 | e << 50) ^ (e >>> 18 | e << 46) ^ (e >>> 41 | e << 23))
 		    + (e & f ^ ~e & g) + h + K[i] + W[i];
 
@@ -210,7 +232,7 @@ public abstract class SHA384_512 extends MessageDigest {
      * @param input
      *                the input byte
      */
-    public synchronized void update(byte input) {
+    public void update(byte input) {
 	buffer[(int) count & 127] = input;
 
 	if ((int) (count & 127) == 127) {
@@ -230,7 +252,7 @@ public abstract class SHA384_512 extends MessageDigest {
      * @param inLen
      *                the input length
      */
-    public synchronized void update(byte[] input, int inOff, int inLen) {
+    public void update(byte[] input, int inOff, int inLen) {
 	int bufOffset = ((int) count) & 127;
 
 	while (inLen > 0) {
@@ -250,13 +272,86 @@ public abstract class SHA384_512 extends MessageDigest {
 	}
     }
 
+    /**
+     * Update the digest using the remaining bytes of the given buffer. The
+     * bytes of buffers without an accessible array (e.g., direct buffers) are
+     * read directly into the block buffer of the digest, without a staging
+     * array.
+     * 
+     * @param input
+     *                the buffer to use for the update
+     */
+    public void update(ByteBuffer input) {
+	if (input.hasArray()) {
+	    super.update(input);
+	    return;
+	}
+	int bufOffset = ((int) count) & 127;
+	int inLen = input.remaining();
+
+	while (inLen > 0) {
+	    int copyLen = Math.min(128 - bufOffset, inLen);
+	    input.get(buffer, bufOffset, copyLen);
+
+	    inLen -= copyLen;
+	    count += copyLen;
+	    bufOffset = (bufOffset + copyLen) & 127;
+
+	    if (bufOffset == 0) {
+		processBlock();
+	    }
+	}
+    }
+
+    /**
+     * Return a copy of this digest in its current state. The copy and the
+     * original can be updated independently.
+     * 
+     * @return the copy
+     */
+    public Object clone() {
+	SHA384_512 clone;
+	try {
+	    clone = (SHA384_512) super.clone();
+	} catch (CloneNotSupportedException cnse) {
+	    // the class implements Cloneable
+	    throw new RuntimeException("internal error");
+	}
+	clone.W = new long[80];
+	clone.H = H.clone();
+	clone.buffer = buffer.clone();
+	return clone;
+    }
+
+    /**
+     * Export the current state of this digest.
+     * 
+     * @return the exported state
+     */
+    public DigestState exportState() {
+	return DigestState.export(this, H, count, buffer);
+    }
+
+    /**
+     * Import a state exported by a digest of the same type.
+     * 
+     * @param state
+     *                the state
+     * @throws IllegalArgumentException
+     *                 if the state has not been exported by a digest of the
+     *                 same type or is malformed.
+     */
+    public void importState(DigestState state) {
+	count = state.decode(this, H, buffer);
+    }
+
     /**
      * Completes the hash computation by performing final operations such as
      * padding.
      * 
      * @return the digest value
      */
-    public synchronized byte[] digest() {
+    public byte[] digest() {
 	pad();
 
 	byte[] digestValue = new byte[digestLength];
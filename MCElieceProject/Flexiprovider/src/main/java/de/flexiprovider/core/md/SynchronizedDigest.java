@@ -0,0 +1,99 @@
+package de.flexiprovider.core.md;
+
+import java.nio.ByteBuffer;
+
+import de.flexiprovider.api.MessageDigest;
+
+/**
+ * This class wraps a message digest so that it can be shared by several
+ * threads. All methods are synchronized on the wrapper. Note that a sequence
+ * of calls (e.g. several updates followed by {@link #digest()}) is only atomic
+ * if the caller holds the lock of the wrapper for the whole sequence:
+ * 
+ * <pre>
+ * synchronized (digest) {
+ *     digest.update(a);
+ *     digest.update(b);
+ *     result = digest.digest();
+ * }
+ * </pre>
+ * 
+ * Digests used by a single thread should not be wrapped.
+ */
+public class SynchronizedDigest extends MessageDigest {
+
+    // the wrapped digest
+    private final MessageDigest md;
+
+    /**
+     * Constructor.
+     * 
+     * @param md
+     *                the digest to wrap
+     */
+    public SynchronizedDigest(MessageDigest md) {
+	if (md == null) {
+	    throw new NullPointerException("md");
+	}
+	this.md = md;
+    }
+
+    /**
+     * @return the digest length in bytes
+     */
+    public synchronized int getDigestLength() {
+	return md.getDigestLength();
+    }
+
+    /**
+     * Update the digest using the specified byte.
+     * 
+     * @param input
+     *                the byte to use for the update
+     */
+    public synchronized void update(byte input) {
+	md.update(input);
+    }
+
+    /**
+     * Update the digest using the specified array of bytes, starting at the
+     * specified offset.
+     * 
+     * @param input
+     *                the array of bytes to use for the update
+     * @param offset
+     *                the offset to start from in the array of bytes
+     * @param len
+     *                the number of bytes to use, starting at <tt>offset</tt>
+     */
+    public synchronized void update(byte[] input, int offset, int len) {
+	md.update(input, offset, len);
+    }
+
+    /**
+     * Update the digest using the remaining bytes of the specified buffer.
+     * 
+     * @param input
+     *                the buffer
+     */
+    public synchronized void update(ByteBuffer input) {
+	md.update(input);
+    }
+
+    /**
+     * Complete the hash computation and reset the digest.
+     * 
+     * @return the computed digest
+     */
+    public synchronized byte[] digest() {
+	return md.digest();
+    }
+
+    /**
+     * Reset the digest for further use.
+     */
+    public synchronized void reset() {
+	md.reset();
+    }
+
+}
@@ -9,6 +9,8 @@
  */
 package de.flexiprovider.core.md;
 
+import java.nio.ByteBuffer;
+
 import de.flexiprovider.api.MessageDigest;
 import de.flexiprovider.common.util.LittleEndianConversions;
 
@@ -26,7 +28,8 @@ import de.flexiprovider.common.util.LittleEndianConversions;
  * 
  * @author Elena Klintsevitch
  */
-public final class Tiger extends MessageDigest {
+public final class Tiger extends MessageDigest implements ExportableDigest,
+		Cloneable {
 
 	/**
 	 * The algorithm name.
@@ -650,7 +653,7 @@ public final class Tiger extends MessageDigest {
 	/**
 	 * process a block of 8 bytes
 	 */
-	private synchronized void processBlock() {
+	private void processBlock() {
 		long a, b, c, mull;
 		a = state[0];
 		b = state[1];
@@ -883,7 +886,7 @@ public final class Tiger extends MessageDigest {
 	 * @param b
 	 *            the input byte
 	 */
-	public synchronized void update(byte b) {
+	public void update(byte b) {
 		buffer[(int) count & 63] = b;
 		if ((count & 63) == 63) {
 			// 64 bytes arrived -> time for some processing
@@ -907,7 +910,7 @@ public final class Tiger extends MessageDigest {
 	 * @param len
 	 *            the input length
 	 */
-	public synchronized void update(byte[] bytes, int offset, int len) {
+	public void update(byte[] bytes, int offset, int len) {
 		// fill up buffer
 
 		while ((len > 0) & ((count & 63) != 0)) {
@@ -938,12 +941,45 @@ public final class Tiger extends MessageDigest {
 		}
 	}
 
+	/**
+	 * Update the digest using the remaining bytes of the given buffer. The
+	 * bytes of buffers without an accessible array (e.g., direct buffers) are
+	 * read directly into the block buffer of the digest, without a staging
+	 * array.
+	 * 
+	 * @param input
+	 *                the buffer to use for the update
+	 */
+	public void update(ByteBuffer input) {
+		if (input.hasArray()) {
+			super.update(input);
+			return;
+		}
+		int inLen = input.remaining();
+
+		while (inLen > 0) {
+			int bufOff = (int) count & 63;
+			int copyLen = Math.min(64 - bufOff, inLen);
+			input.get(buffer, bufOff, copyLen);
+
+			inLen -= copyLen;
+			count += copyLen;
+
+			if (bufOff + copyLen == 64) {
+				for (int i = x.length - 1; i >= 0; i--) {
+					x[i] = LittleEndianConversions.OS2LIP(buffer, i << 3);
+				}
+				processBlock();
+			}
+		}
+	}
+
 	/**
 	 * Compute the digest and reset the engine
 	 * 
 	 * @return the message digest in a byte array
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		// produce the final digest
 		byte[] digest = new byte[TIGER_DIGEST_LENGTH];
 
@@ -965,4 +1001,46 @@ public final class Tiger extends MessageDigest {
 		initMessageDigest(initState);
 	}
 
+	/**
+	 * Return a copy of this digest in its current state. The copy and the
+	 * original can be updated independently.
+	 * 
+	 * @return the copy
+	 */
+	public Object clone() {
+		Tiger clone;
+		try {
+			clone = (Tiger) super.clone();
+		} catch (CloneNotSupportedException cnse) {
+			// the class implements Cloneable
+			throw new RuntimeException("internal error");
+		}
+		clone.buffer = buffer.clone();
+		clone.x = new long[8];
+		clone.state = state.clone();
+		return clone;
+	}
+
+	/**
+	 * Export the current state of this digest.
+	 * 
+	 * @return the exported state
+	 */
+	public DigestState exportState() {
+		return DigestState.export(this, state, count, buffer);
+	}
+
+	/**
+	 * Import a state exported by a digest of the same type.
+	 * 
+	 * @param state
+	 *            the state
+	 * @throws IllegalArgumentException
+	 *             if the state has not been exported by a digest of the
+	 *             same type or is malformed.
+	 */
+	public void importState(DigestState state) {
+		count = state.decode(this, this.state, buffer);
+	}
+
 }
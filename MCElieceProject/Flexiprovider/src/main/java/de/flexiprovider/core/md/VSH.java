@@ -251,7 +251,7 @@ public class VSH extends MessageDigest {
 	 * @param len
 	 *            the number of bytes to use, starting at offset.
 	 */
-	public synchronized void update(byte[] input, int offset, int len) {
+	public void update(byte[] input, int offset, int len) {
 		int bufOffset = ((int) count) % b;
 		int copyLen;
 
@@ -276,7 +276,7 @@ public class VSH extends MessageDigest {
 	 * @param input
 	 *            - the byte to use for the update.
 	 */
-	public synchronized void update(byte input) {
+	public void update(byte input) {
 		buffer[(int) count % b] = input;
 
 		if ((int) (count % b) == (b - 1)) {
@@ -288,7 +288,7 @@ public class VSH extends MessageDigest {
 	/**
 	 * Resets the digest for further use.
 	 */
-	public synchronized void reset() {
+	public void reset() {
 		count = 0;
 		state = FlexiBigInt.ONE;
 	}
@@ -299,7 +299,7 @@ public class VSH extends MessageDigest {
 	 * 
 	 * @return the digest value
 	 */
-	public synchronized byte[] digest() {
+	public byte[] digest() {
 		pad();
 
 		// append length of message in bits at end of message in a new block
@@ -366,7 +366,7 @@ public class VSH extends MessageDigest {
 	/**
 	 * Process t blocks of k bytes.
 	 */
-	private synchronized void processBlock(int t) {
+	private void processBlock(int t) {
 		int length = buffer.length << 3;
 		FlexiBigInt[] x_ = new FlexiBigInt[t + 1];
 
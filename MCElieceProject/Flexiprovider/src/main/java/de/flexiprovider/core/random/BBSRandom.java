@@ -11,7 +11,6 @@ package de.flexiprovider.core.random;
 
 import de.flexiprovider.api.SecureRandom;
 import de.flexiprovider.common.math.FlexiBigInt;
-import de.flexiprovider.common.util.SeedGenerator;
 
 /**
  * This is an implementation of a pseudorandom number based on a paper written
@@ -28,7 +27,8 @@ import de.flexiprovider.common.util.SeedGenerator;
  * <li>The generator uses an internal 200 bit seed, so it is inefficient to do
  * something like a "brute force" attack (i.e. enumerate all possible seeds).
  * The seed can be set using the {@link #setSeed(byte[] bytes)} member function.
- * If it is not set explicitly, then it is generated by a seed generator.
+ * If it is not set explicitly, then it is obtained from the seed generator of
+ * the default <tt>java.security.SecureRandom</tt>.
  * <li>In order to generate the parameters used during the generation, the
  * internal seed is expanded using a Linear Congruential Generator (LCG). This
  * generator is not secure in a cryptographical manner, but as no output of the
@@ -44,6 +44,12 @@ import de.flexiprovider.common.util.SeedGenerator;
  * representation of X are collected and form the output of the generator.
  * </ol>
  * <p>
+ * X is kept in Montgomery representation (as X*R mod N with R = 2<sup>32s</sup>
+ * for an s-word modulus) in fixed-size <tt>int</tt> arrays, so that each
+ * iteration is an in-place squaring followed by a Montgomery reduction and no
+ * objects are created. The log<SUB><SMALL>2</SMALL></SUB>(|N|) output bits of
+ * an iteration are extracted at once.
+ * <p>
  * <h4>Timings:</h4>
  * <p>
  * <table BORDER CELLPADDING=2 CELLSPACING=0>
@@ -68,7 +74,6 @@ import de.flexiprovider.common.util.SeedGenerator;
  * 
  * @see "java.security.SecureRandom"
  * @see "java.security.SecureRandomSpi"
- * @see "de.flexiprovider.common.util.SeedGenerator"
  * @author Marcus Lippert
  * @author Martin D_ring
  */
@@ -130,11 +135,37 @@ public final class BBSRandom extends SecureRandom {
 
 	private FlexiBigInt q;
 
-	private FlexiBigInt x = null;
+	/**
+	 * The modulus N in little endian order of 32 bit words
+	 */
+	private int[] nWords;
 
-	private FlexiBigInt seed = null;
+	/**
+	 * The words of N as unsigned longs
+	 */
+	private long[] nLong;
+
+	/**
+	 * -N<sup>-1</sup> mod 2<sup>32</sup>
+	 */
+	private int nInv;
+
+	/**
+	 * The current X in Montgomery representation (X*R mod N)
+	 */
+	private int[] xMont;
+
+	/**
+	 * The current X (the output bits are taken from xWords[0])
+	 */
+	private int[] xWords;
 
-	private SeedGenerator seedGenerator;
+	/**
+	 * Scratch space for double length products
+	 */
+	private int[] t;
+
+	private FlexiBigInt seed = null;
 
 	private boolean isSeeded;
 
@@ -154,9 +185,6 @@ public final class BBSRandom extends SecureRandom {
 		// the parameters p, q, x have not been generated yet
 		parametersGenerated = false;
 
-		// generate the object that will do seeding
-		seedGenerator = new SeedGenerator();
-
 		// calculate the number of bits to be generated per iteration
 		bitsPerRound = 0;
 		for (int i = 0; i < 32; i++) {
@@ -178,8 +206,11 @@ public final class BBSRandom extends SecureRandom {
 	 * @return a byte array containig the pseudo-random bytes
 	 */
 	public byte[] generateSeed(int numBytes) {
-	    	return this.generateSeed(numBytes);
-	    	//return seedGenerator.generateSeed(numBytes);
+		if (numBytes <= 0) {
+			return new byte[0];
+		}
+		java.security.SecureRandom sr = new java.security.SecureRandom();
+		return sr.generateSeed(numBytes);
 	}
 
 	/**
@@ -194,17 +225,6 @@ public final class BBSRandom extends SecureRandom {
 			return;
 		}
 
-		// number of bits to be generated
-		int numBits = bytes.length << 3;
-		// bitmask of next bit to be set
-		int aktResultBit = 1;
-		// generated byte
-		int aktResultByte = 0;
-		// bit to be copied
-		int aktSourceBit = 0;
-		// number of bits processed
-		int aktResult = 0;
-
 		// ensure that a Seed has been generated
 		if (!isSeeded) {
 			selfSeed();
@@ -215,43 +235,38 @@ public final class BBSRandom extends SecureRandom {
 			generateParameters();
 		}
 
-		// clear first byte
-		bytes[0] = 0;
-
-		do {
-			// if source-bit is set
-			if (x.testBit(aktSourceBit++)) {
-				// set corresponding bit in result-vector
-				bytes[aktResultByte] += aktResultBit;
-			}
-			// shift left bitmask by one
-			aktResultBit = aktResultBit << 1;
-
-			// if bitsPerRound is reached
-			if (aktSourceBit == bitsPerRound) {
-				// reset counter,
-				aktSourceBit = 0;
-				// and generate new seed (sqare-mod-generator)
-				x = (x.multiply(x)).mod(n);
-			}
-
-			// if a whole byte has been generated
-			if (aktResultBit == 256) {
-				// reset bitmask
-				aktResultBit = 1;
-				// and switch to next byte
-				aktResultByte++;
-				// if one more byte is left to do
-				if (aktResultByte < bytes.length) {
-					// clear it.
-					bytes[aktResultByte] = 0;
-				}
+		// number of bits to be generated
+		int numBits = bytes.length << 3;
+		// collected bits not yet written (LSB first)
+		int acc = 0;
+		// number of collected bits
+		int accBits = 0;
+		// index of the next byte
+		int pos = 0;
+
+		// take bitsPerRound bits of each x, then square x
+		int mask = (1 << bitsPerRound) - 1;
+		for (int rounds = numBits / bitsPerRound; rounds > 0; rounds--) {
+			acc |= (xWords[0] & mask) << accBits;
+			accBits += bitsPerRound;
+			while (accBits >= 8) {
+				bytes[pos++] = (byte) acc;
+				acc >>>= 8;
+				accBits -= 8;
 			}
+			nextX();
+		}
 
-			// next bit
-			aktResult++;
-		} // while still some bits are to be generated
-		while (aktResult < numBits);
+		// the remaining bits are taken from the current x, which is not
+		// squared (the next call starts again with its least significant bit)
+		int rest = numBits % bitsPerRound;
+		acc |= (xWords[0] & ((1 << rest) - 1)) << accBits;
+		accBits += rest;
+		while (accBits > 0) {
+			bytes[pos++] = (byte) acc;
+			acc >>>= 8;
+			accBits -= 8;
+		}
 	}
 
 	/**
@@ -407,15 +422,157 @@ public final class BBSRandom extends SecureRandom {
 		while (q.compareTo(p) == 0);
 
 		// create seed for the BBS
+		FlexiBigInt x;
 		do {
 			buf = lcg(n.bitLength());
 			x = (new FlexiBigInt(1, buf)).mod(n);
 		} while ((x.compareTo(FlexiBigInt.ZERO) == 0) || (x.compareTo(p) == 0)
 				|| (x.compareTo(q) == 0));
 
+		initMontgomery(x);
 		parametersGenerated = true;
 	}
 
+	/**
+	 * Set up the word representations of N and of the seed X and the
+	 * Montgomery constants.
+	 * 
+	 * @param x
+	 *            the seed X
+	 */
+	private void initMontgomery(FlexiBigInt x) {
+		int s = (n.bitLength() + 31) >>> 5;
+		nWords = toWords(n, s);
+		nLong = new long[s];
+		for (int i = 0; i < s; i++) {
+			nLong[i] = nWords[i] & 0xffffffffL;
+		}
+
+		// Newton iteration for N^-1 mod 2^32 (N*N = 1 mod 8 for odd N)
+		int inv = nWords[0];
+		for (int i = 0; i < 4; i++) {
+			inv *= 2 - nWords[0] * inv;
+		}
+		nInv = -inv;
+
+		xMont = toWords(x.shiftLeft(s << 5).mod(n), s);
+		xWords = toWords(x, s);
+		t = new int[(s << 1) + 1];
+	}
+
+	/**
+	 * Convert a nonnegative number to s little endian 32 bit words.
+	 */
+	private static int[] toWords(FlexiBigInt a, int s) {
+		byte[] b = a.toByteArray();
+		int[] result = new int[s];
+		for (int i = 0, j = b.length - 1; i < s << 2 && j >= 0; i++, j--) {
+			result[i >>> 2] |= (b[j] & 0xff) << ((i & 3) << 3);
+		}
+		return result;
+	}
+
+	/**
+	 * Replace X by X<sup>2</sup> mod N: square xMont in place and convert the
+	 * result to xWords.
+	 */
+	private void nextX() {
+		int s = nWords.length;
+		int[] a = xMont;
+
+		// the products a[i] * a[j] with i < j
+		for (int k = (s << 1) - 1; k >= 0; k--) {
+			t[k] = 0;
+		}
+		for (int i = 0; i < s - 1; i++) {
+			long ai = a[i] & 0xffffffffL;
+			long carry = 0;
+			for (int j = i + 1; j < s; j++) {
+				carry += ai * (a[j] & 0xffffffffL) + (t[i + j] & 0xffffffffL);
+				t[i + j] = (int) carry;
+				carry >>>= 32;
+			}
+			t[i + s] = (int) carry;
+		}
+
+		// double them and add the squares a[i] * a[i]
+		int bit = 0;
+		for (int k = 0; k < s << 1; k++) {
+			int v = t[k];
+			t[k] = v << 1 | bit;
+			bit = v >>> 31;
+		}
+		long carry = 0;
+		for (int i = 0; i < s; i++) {
+			long ai = a[i] & 0xffffffffL;
+			long sq = ai * ai;
+			carry += (t[i << 1] & 0xffffffffL) + (sq & 0xffffffffL);
+			t[i << 1] = (int) carry;
+			carry >>>= 32;
+			carry += (t[(i << 1) + 1] & 0xffffffffL) + (sq >>> 32);
+			t[(i << 1) + 1] = (int) carry;
+			carry >>>= 32;
+		}
+		t[s << 1] = 0;
+		reduce(xMont);
+
+		// X = xMont * R^-1 mod N
+		System.arraycopy(xMont, 0, t, 0, s);
+		for (int k = s << 1; k >= s; k--) {
+			t[k] = 0;
+		}
+		reduce(xWords);
+	}
+
+	/**
+	 * Montgomery reduction: compute t * R<sup>-1</sup> mod N for t &lt; N*R.
+	 * The scratch array t is overwritten.
+	 * 
+	 * @param r
+	 *            the array the result is stored in
+	 */
+	private void reduce(int[] r) {
+		int s = nWords.length;
+		for (int i = 0; i < s; i++) {
+			// add m * N * 2^(32i) such that the word i becomes zero
+			long m = (t[i] * nInv) & 0xffffffffL;
+			long carry = 0;
+			for (int j = 0; j < s; j++) {
+				carry += m * nLong[j] + (t[i + j] & 0xffffffffL);
+				t[i + j] = (int) carry;
+				carry >>>= 32;
+			}
+			for (int k = i + s; carry != 0; k++) {
+				carry += t[k] & 0xffffffffL;
+				t[k] = (int) carry;
+				carry >>>= 32;
+			}
+		}
+
+		// the result t[s..2s] is less than 2N
+		boolean subtract = t[s << 1] != 0;
+		if (!subtract) {
+			subtract = true;
+			for (int j = s - 1; j >= 0; j--) {
+				if (t[s + j] != nWords[j]) {
+					subtract = (t[s + j] ^ 0x80000000) > (nWords[j]
+							^ 0x80000000);
+					break;
+				}
+			}
+		}
+		if (!subtract) {
+			System.arraycopy(t, s, r, 0, s);
+			return;
+		}
+		long borrow = 0;
+		for (int j = 0; j < s; j++) {
+			borrow += (t[s + j] & 0xffffffffL) - (nWords[j] & 0xffffffffL);
+			r[j] = (int) borrow;
+			borrow >>= 32;
+		}
+	}
+
 	/**
 	 * This method implements a linear congruential generator to extend the seed
 	 * of 200 Bits to a size needed with the BBS generator. Theese bits are used
@@ -470,8 +627,7 @@ public final class BBSRandom extends SecureRandom {
 
 	private void selfSeed() {
 		// generate seed
-		//seed = new FlexiBigInt(1, seedGenerator.generateSeed(LCG_BYTE_SIZE));
-	    	seed = new FlexiBigInt(1, this.generateSeed(LCG_BYTE_SIZE));
+		seed = new FlexiBigInt(1, generateSeed(LCG_BYTE_SIZE));
 		isSeeded = true;
 	}
 
@@ -15,6 +15,7 @@ import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.keys.SecretKeySpec;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.KeyScheduleCache;
 import de.flexiprovider.common.util.LittleEndianConversions;
 
 /**
@@ -101,7 +102,16 @@ public class RC6 extends BlockCipher {
 		if (!(key instanceof RC6Key)) {
 			throw new InvalidKeyException("not a RC6 Key");
 		}
-		keySchedule(key.getEncoded());
+		byte[] keyBytes = key.getEncoded();
+		if (S == null) {
+			S = new int[(rounds << 1) + 4];
+		}
+		Object[] schedule = { S };
+		if (!KeyScheduleCache.restore(ALG_NAME, keyBytes, schedule)) {
+			// the key schedule allocates a new array
+			keySchedule(keyBytes);
+			KeyScheduleCache.store(ALG_NAME, keyBytes, new Object[] { S });
+		}
 	}
 
 	/**
@@ -0,0 +1,719 @@
+package de.flexiprovider.core.rijndael;
+
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.LittleEndianConversions;
+
+/**
+ * This class implements AES in constant time using bitslicing. In contrast to
+ * the table-driven {@link Rijndael} implementation, no memory access depends
+ * on the key or the data, so the cipher does not leak through cache timing.
+ * <p>
+ * The state of four blocks is held in eight 64-bit words: word <tt>i</tt>
+ * holds bit <tt>i</tt> of all 64 state bytes. The S-box is evaluated as a
+ * boolean circuit (Boyar and Peralta) on all bytes at once, ShiftRows and
+ * MixColumns become shifts and rotations of the words. The key schedule is
+ * computed with the same circuit.
+ * <p>
+ * Since four blocks are processed at the cost of one, the cipher is intended
+ * for modes which encrypt many independent blocks at a time, such as CTR, GCM,
+ * ECB, CBC decryption and {@link RijndaelXTS}. Single blocks (e.g., CBC
+ * encryption) are processed in a batch of their own and are therefore slower
+ * than with the table-driven implementation.
+ * <p>
+ * The key schedule is not modified after initialization, so encryption and
+ * decryption of blocks may be performed concurrently by several threads.
+ */
+public class BitslicedAES extends Rijndael.AES {
+
+	/**
+	 * The algorithm name.
+	 */
+	public static final String ALG_NAME = "BitslicedAES";
+
+	/**
+	 * The number of blocks processed with one pass of the round function
+	 */
+	private static final int BATCH_SIZE = 4;
+
+	// the round constants
+	private static final int[] RCON = { 0x01, 0x02, 0x04, 0x08, 0x10, 0x20,
+			0x40, 0x80, 0x1b, 0x36 };
+
+	// the number of rounds
+	private int rounds;
+
+	// the bitsliced round keys (8 words per round key)
+	private long[] skey;
+
+	/**
+	 * Constructor.
+	 */
+	public BitslicedAES() {
+		algName = ALG_NAME;
+	}
+
+	/**
+	 * Initialize the block cipher with a given key and parameters for data
+	 * encryption.
+	 * 
+	 * @param key
+	 *            the secret key
+	 * @param params
+	 *            the parameters (<tt>null</tt> or an instance of
+	 *            {@link RijndaelParameterSpec})
+	 * @throws de.flexiprovider.api.exceptions.InvalidKeyException
+	 *             if the given key is illegal for this cipher.
+	 * @throws de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException
+	 *             if the parameters are illegal for this cipher.
+	 */
+	protected void initCipherEncrypt(SecretKey key,
+			AlgorithmParameterSpec params) throws InvalidKeyException,
+			InvalidAlgorithmParameterException {
+
+		if (!(key instanceof RijndaelKey)) {
+			throw new InvalidKeyException("unsupported type");
+		}
+		if (params != null && !(params instanceof RijndaelParameterSpec)) {
+			throw new InvalidAlgorithmParameterException("unsupported type");
+		}
+
+		byte[] keyBytes = key.getEncoded();
+		int len = keyBytes.length;
+		if (len != 16 && len != 24 && len != 32) {
+			throw new InvalidKeyException("invalid length");
+		}
+		if (keySizeIsMutable) {
+			keySize = len >> 2;
+		} else if (len != keySize << 2) {
+			throw new InvalidKeyException(
+					"key size does not match specified length.");
+		}
+
+		keyExpansion(keyBytes);
+	}
+
+	/**
+	 * Initialize the block cipher with a given key and parameters for data
+	 * decryption. Encryption and decryption use the same key schedule.
+	 * 
+	 * @param key
+	 *            the secret key
+	 * @param params
+	 *            the parameters (<tt>null</tt> or an instance of
+	 *            {@link RijndaelParameterSpec})
+	 * @throws de.flexiprovider.api.exceptions.InvalidKeyException
+	 *             if the given key is illegal for this cipher.
+	 * @throws de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException
+	 *             if the parameters are illegal for this cipher.
+	 */
+	protected void initCipherDecrypt(SecretKey key,
+			AlgorithmParameterSpec params) throws InvalidKeyException,
+			InvalidAlgorithmParameterException {
+		initCipherEncrypt(key, params);
+	}
+
+	/**
+	 * Encrypt a single block of data.
+	 * 
+	 * @param input
+	 *            byte array containing the plaintext block to be encrypted
+	 * @param inOff
+	 *            index where the plaintext block starts
+	 * @param output
+	 *            byte array to hold the ciphertext block
+	 * @param outOff
+	 *            index where the ciphertext block will start
+	 */
+	protected void singleBlockEncrypt(byte[] input, int inOff, byte[] output,
+			int outOff) {
+		processBlocksEncrypt(input, inOff, output, outOff, 1);
+	}
+
+	/**
+	 * Decrypt a single block of data.
+	 * 
+	 * @param input
+	 *            byte array containing the ciphertext block to be decrypted
+	 * @param inOff
+	 *            index where the ciphertext block starts
+	 * @param output
+	 *            byte array to hold the plaintext block
+	 * @param outOff
+	 *            index where the plaintext block will start
+	 */
+	protected void singleBlockDecrypt(byte[] input, int inOff, byte[] output,
+			int outOff) {
+		processBlocksDecrypt(input, inOff, output, outOff, 1);
+	}
+
+	/**
+	 * Encrypt consecutive blocks of data, four blocks per pass.
+	 * 
+	 * @param input
+	 *            byte array containing the plaintext blocks
+	 * @param inOff
+	 *            index where the plaintext starts
+	 * @param output
+	 *            byte array to hold the ciphertext blocks
+	 * @param outOff
+	 *            index where the ciphertext will start
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	protected void processBlocksEncrypt(byte[] input, int inOff,
+			byte[] output, int outOff, int numBlocks) {
+		long[] sk = skey;
+		int nr = rounds;
+		long[] q = new long[8];
+		while (numBlocks > 0) {
+			int n = Math.min(numBlocks, BATCH_SIZE);
+			load(input, inOff, n, q);
+			encrypt(nr, sk, q);
+			store(q, n, output, outOff);
+			inOff += n << 4;
+			outOff += n << 4;
+			numBlocks -= n;
+		}
+	}
+
+	/**
+	 * Decrypt consecutive blocks of data, four blocks per pass.
+	 * 
+	 * @param input
+	 *            byte array containing the ciphertext blocks
+	 * @param inOff
+	 *            index where the ciphertext starts
+	 * @param output
+	 *            byte array to hold the plaintext blocks
+	 * @param outOff
+	 *            index where the plaintext will start
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	protected void processBlocksDecrypt(byte[] input, int inOff,
+			byte[] output, int outOff, int numBlocks) {
+		long[] sk = skey;
+		int nr = rounds;
+		long[] q = new long[8];
+		while (numBlocks > 0) {
+			int n = Math.min(numBlocks, BATCH_SIZE);
+			load(input, inOff, n, q);
+			decrypt(nr, sk, q);
+			store(q, n, output, outOff);
+			inOff += n << 4;
+			outOff += n << 4;
+			numBlocks -= n;
+		}
+	}
+
+	/**
+	 * Compute the bitsliced round keys. The round keys are expanded as
+	 * specified for AES, with the S-box evaluated by the bitsliced circuit,
+	 * and each round key is then replicated into all four block positions of
+	 * the bitsliced representation.
+	 * 
+	 * @param key
+	 *            the key bytes
+	 */
+	private void keyExpansion(byte[] key) {
+		int nk = key.length >> 2;
+		int nr = nk + 6;
+		int nkf = (nr + 1) << 2;
+
+		int[] w = new int[nkf];
+		for (int i = 0; i < nk; i++) {
+			w[i] = LittleEndianConversions.OS2IP(key, i << 2);
+		}
+		int tmp = w[nk - 1];
+		for (int i = nk, j = 0, k = 0; i < nkf; i++) {
+			if (j == 0) {
+				tmp = (tmp << 24) | (tmp >>> 8);
+				tmp = subWord(tmp) ^ RCON[k];
+			} else if (nk > 6 && j == 4) {
+				tmp = subWord(tmp);
+			}
+			tmp ^= w[i - nk];
+			w[i] = tmp;
+			if (++j == nk) {
+				j = 0;
+				k++;
+			}
+		}
+
+		long[] sk = new long[(nr + 1) << 3];
+		long[] q = new long[8];
+		for (int i = 0; i < nkf; i += 4) {
+			interleaveIn(q, 0, w[i], w[i + 1], w[i + 2], w[i + 3]);
+			q[1] = q[2] = q[3] = q[0];
+			q[5] = q[6] = q[7] = q[4];
+			ortho(q);
+			System.arraycopy(q, 0, sk, i << 1, 8);
+		}
+
+		rounds = nr;
+		skey = sk;
+	}
+
+	/**
+	 * Apply the S-box to the four bytes of a word.
+	 */
+	private static int subWord(int x) {
+		long[] q = new long[8];
+		q[0] = x & 0xffffffffL;
+		ortho(q);
+		sbox(q);
+		ortho(q);
+		return (int) q[0];
+	}
+
+	/**
+	 * Load <tt>n</tt> blocks (at most four) into the bitsliced
+	 * representation. Unused block positions are set to zero.
+	 */
+	private static void load(byte[] input, int inOff, int n, long[] q) {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			if (i < n) {
+				int off = inOff + (i << 4);
+				interleaveIn(q, i, LittleEndianConversions.OS2IP(input, off),
+						LittleEndianConversions.OS2IP(input, off + 4),
+						LittleEndianConversions.OS2IP(input, off + 8),
+						LittleEndianConversions.OS2IP(input, off + 12));
+			} else {
+				q[i] = 0;
+				q[i + 4] = 0;
+			}
+		}
+		ortho(q);
+	}
+
+	/**
+	 * Store the first <tt>n</tt> blocks of the bitsliced representation.
+	 * The representation is destroyed.
+	 */
+	private static void store(long[] q, int n, byte[] output, int outOff) {
+		ortho(q);
+		for (int i = 0; i < n; i++) {
+			int off = outOff + (i << 4);
+			long x0 = q[i] & 0x00ff00ff00ff00ffL;
+			long x1 = q[i + 4] & 0x00ff00ff00ff00ffL;
+			long x2 = (q[i] >>> 8) & 0x00ff00ff00ff00ffL;
+			long x3 = (q[i + 4] >>> 8) & 0x00ff00ff00ff00ffL;
+			x0 |= x0 >>> 8;
+			x1 |= x1 >>> 8;
+			x2 |= x2 >>> 8;
+			x3 |= x3 >>> 8;
+			x0 &= 0x0000ffff0000ffffL;
+			x1 &= 0x0000ffff0000ffffL;
+			x2 &= 0x0000ffff0000ffffL;
+			x3 &= 0x0000ffff0000ffffL;
+			LittleEndianConversions.I2OSP((int) x0 | (int) (x0 >>> 16), output,
+					off);
+			LittleEndianConversions.I2OSP((int) x1 | (int) (x1 >>> 16), output,
+					off + 4);
+			LittleEndianConversions.I2OSP((int) x2 | (int) (x2 >>> 16), output,
+					off + 8);
+			LittleEndianConversions.I2OSP((int) x3 | (int) (x3 >>> 16), output,
+					off + 12);
+		}
+	}
+
+	/**
+	 * Spread the four (little-endian) words of a block over the words
+	 * <tt>q[i]</tt> and <tt>q[i + 4]</tt>.
+	 */
+	private static void interleaveIn(long[] q, int i, int w0, int w1, int w2,
+			int w3) {
+		long x0 = w0 & 0xffffffffL;
+		long x1 = w1 & 0xffffffffL;
+		long x2 = w2 & 0xffffffffL;
+		long x3 = w3 & 0xffffffffL;
+		x0 |= x0 << 16;
+		x1 |= x1 << 16;
+		x2 |= x2 << 16;
+		x3 |= x3 << 16;
+		x0 &= 0x0000ffff0000ffffL;
+		x1 &= 0x0000ffff0000ffffL;
+		x2 &= 0x0000ffff0000ffffL;
+		x3 &= 0x0000ffff0000ffffL;
+		x0 |= x0 << 8;
+		x1 |= x1 << 8;
+		x2 |= x2 << 8;
+		x3 |= x3 << 8;
+		x0 &= 0x00ff00ff00ff00ffL;
+		x1 &= 0x00ff00ff00ff00ffL;
+		x2 &= 0x00ff00ff00ff00ffL;
+		x3 &= 0x00ff00ff00ff00ffL;
+		q[i] = x0 | (x2 << 8);
+		q[i + 4] = x1 | (x3 << 8);
+	}
+
+	/**
+	 * Transpose the 8x8 bit matrices formed by the eight words, converting
+	 * between the byte-wise and the bitsliced representation (the operation
+	 * is an involution).
+	 */
+	private static void ortho(long[] q) {
+		swap(q, 0, 1, 0x5555555555555555L, 1);
+		swap(q, 2, 3, 0x5555555555555555L, 1);
+		swap(q, 4, 5, 0x5555555555555555L, 1);
+		swap(q, 6, 7, 0x5555555555555555L, 1);
+
+		swap(q, 0, 2, 0x3333333333333333L, 2);
+		swap(q, 1, 3, 0x3333333333333333L, 2);
+		swap(q, 4, 6, 0x3333333333333333L, 2);
+		swap(q, 5, 7, 0x3333333333333333L, 2);
+
+		swap(q, 0, 4, 0x0f0f0f0f0f0f0f0fL, 4);
+		swap(q, 1, 5, 0x0f0f0f0f0f0f0f0fL, 4);
+		swap(q, 2, 6, 0x0f0f0f0f0f0f0f0fL, 4);
+		swap(q, 3, 7, 0x0f0f0f0f0f0f0f0fL, 4);
+	}
+
+	private static void swap(long[] q, int x, int y, long cl, int s) {
+		long a = q[x];
+		long b = q[y];
+		long ch = ~cl;
+		q[x] = (a & cl) | ((b & cl) << s);
+		q[y] = ((a & ch) >>> s) | (b & ch);
+	}
+
+	/**
+	 * Encrypt the bitsliced state.
+	 */
+	private static void encrypt(int nr, long[] sk, long[] q) {
+		addRoundKey(q, sk, 0);
+		for (int r = 1; r < nr; r++) {
+			sbox(q);
+			shiftRows(q);
+			mixColumns(q, sk, r << 3);
+		}
+		sbox(q);
+		shiftRows(q);
+		addRoundKey(q, sk, nr << 3);
+	}
+
+	/**
+	 * Decrypt the bitsliced state.
+	 */
+	private static void decrypt(int nr, long[] sk, long[] q) {
+		addRoundKey(q, sk, nr << 3);
+		for (int r = nr - 1; r > 0; r--) {
+			invSbox(q);
+			invMixColumns(q, sk, r << 3);
+		}
+		invSbox(q);
+		addRoundKey(q, sk, 0);
+	}
+
+	private static void addRoundKey(long[] q, long[] sk, int off) {
+		q[0] ^= sk[off];
+		q[1] ^= sk[off + 1];
+		q[2] ^= sk[off + 2];
+		q[3] ^= sk[off + 3];
+		q[4] ^= sk[off + 4];
+		q[5] ^= sk[off + 5];
+		q[6] ^= sk[off + 6];
+		q[7] ^= sk[off + 7];
+	}
+
+	/**
+	 * Apply the S-box to all bytes of the bitsliced state (circuit by Boyar
+	 * and Peralta with 113 gates).
+	 */
+	private static void sbox(long[] q) {
+		long x0, x1, x2, x3, x4, x5, x6, x7;
+		long y1, y2, y3, y4, y5, y6, y7, y8, y9;
+		long y10, y11, y12, y13, y14, y15, y16, y17, y18, y19;
+		long y20, y21;
+		long z0, z1, z2, z3, z4, z5, z6, z7, z8, z9;
+		long z10, z11, z12, z13, z14, z15, z16, z17;
+		long t0, t1, t2, t3, t4, t5, t6, t7, t8, t9;
+		long t10, t11, t12, t13, t14, t15, t16, t17, t18, t19;
+		long t20, t21, t22, t23, t24, t25, t26, t27, t28, t29;
+		long t30, t31, t32, t33, t34, t35, t36, t37, t38, t39;
+		long t40, t41, t42, t43, t44, t45, t46, t47, t48, t49;
+		long t50, t51, t52, t53, t54, t55, t56, t57, t58, t59;
+		long t60, t61, t62, t63, t64, t65, t66, t67;
+		long s0, s1, s2, s3, s4, s5, s6, s7;
+
+		x0 = q[7];
+		x1 = q[6];
+		x2 = q[5];
+		x3 = q[4];
+		x4 = q[3];
+		x5 = q[2];
+		x6 = q[1];
+		x7 = q[0];
+
+		// top linear transformation
+		y14 = x3 ^ x5;
+		y13 = x0 ^ x6;
+		y9 = x0 ^ x3;
+		y8 = x0 ^ x5;
+		t0 = x1 ^ x2;
+		y1 = t0 ^ x7;
+		y4 = y1 ^ x3;
+		y12 = y13 ^ y14;
+		y2 = y1 ^ x0;
+		y5 = y1 ^ x6;
+		y3 = y5 ^ y8;
+		t1 = x4 ^ y12;
+		y15 = t1 ^ x5;
+		y20 = t1 ^ x1;
+		y6 = y15 ^ x7;
+		y10 = y15 ^ t0;
+		y11 = y20 ^ y9;
+		y7 = x7 ^ y11;
+		y17 = y10 ^ y11;
+		y19 = y10 ^ y8;
+		y16 = t0 ^ y11;
+		y21 = y13 ^ y16;
+		y18 = x0 ^ y16;
+
+		// non-linear section
+		t2 = y12 & y15;
+		t3 = y3 & y6;
+		t4 = t3 ^ t2;
+		t5 = y4 & x7;
+		t6 = t5 ^ t2;
+		t7 = y13 & y16;
+		t8 = y5 & y1;
+		t9 = t8 ^ t7;
+		t10 = y2 & y7;
+		t11 = t10 ^ t7;
+		t12 = y9 & y11;
+		t13 = y14 & y17;
+		t14 = t13 ^ t12;
+		t15 = y8 & y10;
+		t16 = t15 ^ t12;
+		t17 = t4 ^ t14;
+		t18 = t6 ^ t16;
+		t19 = t9 ^ t14;
+		t20 = t11 ^ t16;
+		t21 = t17 ^ y20;
+		t22 = t18 ^ y19;
+		t23 = t19 ^ y21;
+		t24 = t20 ^ y18;
+
+		t25 = t21 ^ t22;
+		t26 = t21 & t23;
+		t27 = t24 ^ t26;
+		t28 = t25 & t27;
+		t29 = t28 ^ t22;
+		t30 = t23 ^ t24;
+		t31 = t22 ^ t26;
+		t32 = t31 & t30;
+		t33 = t32 ^ t24;
+		t34 = t23 ^ t33;
+		t35 = t27 ^ t33;
+		t36 = t24 & t35;
+		t37 = t36 ^ t34;
+		t38 = t27 ^ t36;
+		t39 = t29 & t38;
+		t40 = t25 ^ t39;
+
+		t41 = t40 ^ t37;
+		t42 = t29 ^ t33;
+		t43 = t29 ^ t40;
+		t44 = t33 ^ t37;
+		t45 = t42 ^ t41;
+		z0 = t44 & y15;
+		z1 = t37 & y6;
+		z2 = t33 & x7;
+		z3 = t43 & y16;
+		z4 = t40 & y1;
+		z5 = t29 & y7;
+		z6 = t42 & y11;
+		z7 = t45 & y17;
+		z8 = t41 & y10;
+		z9 = t44 & y12;
+		z10 = t37 & y3;
+		z11 = t33 & y4;
+		z12 = t43 & y13;
+		z13 = t40 & y5;
+		z14 = t29 & y2;
+		z15 = t42 & y9;
+		z16 = t45 & y14;
+		z17 = t41 & y8;
+
+		// bottom linear transformation
+		t46 = z15 ^ z16;
+		t47 = z10 ^ z11;
+		t48 = z5 ^ z13;
+		t49 = z9 ^ z10;
+		t50 = z2 ^ z12;
+		t51 = z2 ^ z5;
+		t52 = z7 ^ z8;
+		t53 = z0 ^ z3;
+		t54 = z6 ^ z7;
+		t55 = z16 ^ z17;
+		t56 = z12 ^ t48;
+		t57 = t50 ^ t53;
+		t58 = z4 ^ t46;
+		t59 = z3 ^ t54;
+		t60 = t46 ^ t57;
+		t61 = z14 ^ t57;
+		t62 = t52 ^ t58;
+		t63 = t49 ^ t58;
+		t64 = z4 ^ t59;
+		t65 = t61 ^ t62;
+		t66 = z1 ^ t63;
+		s0 = t59 ^ t63;
+		s6 = t56 ^ ~t62;
+		s7 = t48 ^ ~t60;
+		t67 = t64 ^ t65;
+		s3 = t53 ^ t66;
+		s4 = t51 ^ t66;
+		s5 = t47 ^ t65;
+		s1 = t64 ^ ~s3;
+		s2 = t55 ^ ~t67;
+
+		q[7] = s0;
+		q[6] = s1;
+		q[5] = s2;
+		q[4] = s3;
+		q[3] = s4;
+		q[2] = s5;
+		q[1] = s6;
+		q[0] = s7;
+	}
+
+	/**
+	 * Apply InvShiftRows and the inverse S-box to the bitsliced state. The
+	 * inverse S-box is computed as <tt>A^-1(S(A^-1(x)))</tt>, where
+	 * <tt>A</tt> is the affine transformation of the S-box.
+	 */
+	private static void invSbox(long[] q) {
+		q[0] = invShiftRows(q[0]);
+		q[1] = invShiftRows(q[1]);
+		q[2] = invShiftRows(q[2]);
+		q[3] = invShiftRows(q[3]);
+		q[4] = invShiftRows(q[4]);
+		q[5] = invShiftRows(q[5]);
+		q[6] = invShiftRows(q[6]);
+		q[7] = invShiftRows(q[7]);
+		invAffine(q);
+		sbox(q);
+		invAffine(q);
+	}
+
+	private static void invAffine(long[] q) {
+		long q0 = ~q[0];
+		long q1 = ~q[1];
+		long q2 = q[2];
+		long q3 = q[3];
+		long q4 = q[4];
+		long q5 = ~q[5];
+		long q6 = ~q[6];
+		long q7 = q[7];
+		q[7] = q1 ^ q4 ^ q6;
+		q[6] = q0 ^ q3 ^ q5;
+		q[5] = q7 ^ q2 ^ q4;
+		q[4] = q6 ^ q1 ^ q3;
+		q[3] = q5 ^ q0 ^ q2;
+		q[2] = q4 ^ q7 ^ q1;
+		q[1] = q3 ^ q6 ^ q0;
+		q[0] = q2 ^ q5 ^ q7;
+	}
+
+	private static void shiftRows(long[] q) {
+		q[0] = shiftRows(q[0]);
+		q[1] = shiftRows(q[1]);
+		q[2] = shiftRows(q[2]);
+		q[3] = shiftRows(q[3]);
+		q[4] = shiftRows(q[4]);
+		q[5] = shiftRows(q[5]);
+		q[6] = shiftRows(q[6]);
+		q[7] = shiftRows(q[7]);
+	}
+
+	private static long shiftRows(long x) {
+		return (x & 0x000000000000ffffL) | ((x & 0x00000000fff00000L) >>> 4)
+				| ((x & 0x00000000000f0000L) << 12)
+				| ((x & 0x0000ff0000000000L) >>> 8)
+				| ((x & 0x000000ff00000000L) << 8)
+				| ((x & 0xf000000000000000L) >>> 12)
+				| ((x & 0x0fff000000000000L) << 4);
+	}
+
+	private static long invShiftRows(long x) {
+		return (x & 0x000000000000ffffL) | ((x & 0x000000000fff0000L) << 4)
+				| ((x & 0x00000000f0000000L) >>> 12)
+				| ((x & 0x000000ff00000000L) << 8)
+				| ((x & 0x0000ff0000000000L) >>> 8)
+				| ((x & 0x000f000000000000L) << 12)
+				| ((x & 0xfff0000000000000L) >>> 4);
+	}
+
+	/**
+	 * Apply MixColumns and AddRoundKey to the bitsliced state.
+	 */
+	private static void mixColumns(long[] q, long[] sk, int off) {
+		long q0 = q[0], q1 = q[1], q2 = q[2], q3 = q[3];
+		long q4 = q[4], q5 = q[5], q6 = q[6], q7 = q[7];
+		long r0 = (q0 >>> 16) | (q0 << 48);
+		long r1 = (q1 >>> 16) | (q1 << 48);
+		long r2 = (q2 >>> 16) | (q2 << 48);
+		long r3 = (q3 >>> 16) | (q3 << 48);
+		long r4 = (q4 >>> 16) | (q4 << 48);
+		long r5 = (q5 >>> 16) | (q5 << 48);
+		long r6 = (q6 >>> 16) | (q6 << 48);
+		long r7 = (q7 >>> 16) | (q7 << 48);
+
+		q[0] = q7 ^ r7 ^ r0 ^ rotr32(q0 ^ r0) ^ sk[off];
+		q[1] = q0 ^ r0 ^ q7 ^ r7 ^ r1 ^ rotr32(q1 ^ r1) ^ sk[off + 1];
+		q[2] = q1 ^ r1 ^ r2 ^ rotr32(q2 ^ r2) ^ sk[off + 2];
+		q[3] = q2 ^ r2 ^ q7 ^ r7 ^ r3 ^ rotr32(q3 ^ r3) ^ sk[off + 3];
+		q[4] = q3 ^ r3 ^ q7 ^ r7 ^ r4 ^ rotr32(q4 ^ r4) ^ sk[off + 4];
+		q[5] = q4 ^ r4 ^ r5 ^ rotr32(q5 ^ r5) ^ sk[off + 5];
+		q[6] = q5 ^ r5 ^ r6 ^ rotr32(q6 ^ r6) ^ sk[off + 6];
+		q[7] = q6 ^ r6 ^ r7 ^ rotr32(q7 ^ r7) ^ sk[off + 7];
+	}
+
+	/**
+	 * Apply AddRoundKey and InvMixColumns to the bitsliced state.
+	 */
+	private static void invMixColumns(long[] q, long[] sk, int off) {
+		long q0 = q[0] ^ sk[off];
+		long q1 = q[1] ^ sk[off + 1];
+		long q2 = q[2] ^ sk[off + 2];
+		long q3 = q[3] ^ sk[off + 3];
+		long q4 = q[4] ^ sk[off + 4];
+		long q5 = q[5] ^ sk[off + 5];
+		long q6 = q[6] ^ sk[off + 6];
+		long q7 = q[7] ^ sk[off + 7];
+		long r0 = (q0 >>> 16) | (q0 << 48);
+		long r1 = (q1 >>> 16) | (q1 << 48);
+		long r2 = (q2 >>> 16) | (q2 << 48);
+		long r3 = (q3 >>> 16) | (q3 << 48);
+		long r4 = (q4 >>> 16) | (q4 << 48);
+		long r5 = (q5 >>> 16) | (q5 << 48);
+		long r6 = (q6 >>> 16) | (q6 << 48);
+		long r7 = (q7 >>> 16) | (q7 << 48);
+
+		q[0] = q5 ^ q6 ^ q7 ^ r0 ^ r5 ^ r7
+				^ rotr32(q0 ^ q5 ^ q6 ^ r0 ^ r5);
+		q[1] = q0 ^ q5 ^ r0 ^ r1 ^ r5 ^ r6 ^ r7
+				^ rotr32(q1 ^ q5 ^ q7 ^ r1 ^ r5 ^ r6);
+		q[2] = q0 ^ q1 ^ q6 ^ r1 ^ r2 ^ r6 ^ r7
+				^ rotr32(q0 ^ q2 ^ q6 ^ r2 ^ r6 ^ r7);
+		q[3] = q0 ^ q1 ^ q2 ^ q5 ^ q6 ^ r0 ^ r2 ^ r3 ^ r5
+				^ rotr32(q0 ^ q1 ^ q3 ^ q5 ^ q6 ^ q7 ^ r0 ^ r3 ^ r5 ^ r7);
+		q[4] = q1 ^ q2 ^ q3 ^ q5 ^ r1 ^ r3 ^ r4 ^ r5 ^ r6 ^ r7
+				^ rotr32(q1 ^ q2 ^ q4 ^ q5 ^ q7 ^ r1 ^ r4 ^ r5 ^ r6);
+		q[5] = q2 ^ q3 ^ q4 ^ q6 ^ r2 ^ r4 ^ r5 ^ r6 ^ r7
+				^ rotr32(q2 ^ q3 ^ q5 ^ q6 ^ r2 ^ r5 ^ r6 ^ r7);
+		q[6] = q3 ^ q4 ^ q5 ^ q7 ^ r3 ^ r5 ^ r6 ^ r7
+				^ rotr32(q3 ^ q4 ^ q6 ^ q7 ^ r3 ^ r6 ^ r7);
+		q[7] = q4 ^ q5 ^ q6 ^ r4 ^ r6 ^ r7
+				^ rotr32(q4 ^ q5 ^ q7 ^ r4 ^ r7);
+	}
+
+	private static long rotr32(long x) {
+		return (x << 32) | (x >>> 32);
+	}
+
+}
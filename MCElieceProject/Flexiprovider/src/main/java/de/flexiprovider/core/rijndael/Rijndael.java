@@ -16,6 +16,7 @@ import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
 import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.KeyScheduleCache;
 
 /**
  * This class implements the Rijndael block cipher. Rijndael uses a block size
@@ -1141,7 +1142,13 @@ public class Rijndael extends BlockCipher {
 		}
 
 		numRounds = computeNumRounds();
-		keyExpansion(keyBytes);
+		// the key schedule depends on the block size
+		String cacheName = ALG_NAME + "/" + (blockSize << 5);
+		Object[] schedule = { K, Ki };
+		if (!KeyScheduleCache.restore(cacheName, keyBytes, schedule)) {
+			keyExpansion(keyBytes);
+			KeyScheduleCache.store(cacheName, keyBytes, schedule);
+		}
 	}
 
 	/**
@@ -1185,57 +1192,7 @@ public class Rijndael extends BlockCipher {
 
 		// check if block length = 16 bytes
 		if (blockSize == 4) {
-
-			// convert input bytes to ints
-			d0 = BigEndianConversions.OS2IP(input, inOff);
-			d1 = BigEndianConversions.OS2IP(input, inOff + 4);
-			d2 = BigEndianConversions.OS2IP(input, inOff + 8);
-			d3 = BigEndianConversions.OS2IP(input, inOff + 12);
-
-			// XOR keys and data
-			d0 ^= K[0];
-			d1 ^= K[1];
-			d2 ^= K[2];
-			d3 ^= K[3];
-
-			// (n - 1) transformation rounds
-			for (j = 1; j < numRounds; j++) {
-				i = j * blockSize;
-				a0 = T0[(d0 >>> 24) & 0xff] ^ T1[(d1 >> 16) & 0xff]
-						^ T2[(d2 >> 8) & 0xff] ^ T3[d3 & 0xff] ^ K[i];
-				a1 = T0[(d1 >>> 24) & 0xff] ^ T1[(d2 >> 16) & 0xff]
-						^ T2[(d3 >> 8) & 0xff] ^ T3[d0 & 0xff] ^ K[i + 1];
-				a2 = T0[(d2 >>> 24) & 0xff] ^ T1[(d3 >> 16) & 0xff]
-						^ T2[(d0 >> 8) & 0xff] ^ T3[d1 & 0xff] ^ K[i + 2];
-				a3 = T0[(d3 >>> 24) & 0xff] ^ T1[(d0 >> 16) & 0xff]
-						^ T2[(d1 >> 8) & 0xff] ^ T3[d2 & 0xff] ^ K[i + 3];
-				d0 = a0;
-				d1 = a1;
-				d2 = a2;
-				d3 = a3;
-			}
-
-			// convert ints to output bytes plus last transformation round
-			i = numRounds * blockSize;
-			output[outOff++] = (byte) (S[(d0 >>> 24) & 0xff] ^ (K[i] >>> 24));
-			output[outOff++] = (byte) (S[(d1 >>> 16) & 0xff] ^ (K[i] >>> 16));
-			output[outOff++] = (byte) (S[(d2 >>> 8) & 0xff] ^ (K[i] >>> 8));
-			output[outOff++] = (byte) (S[d3 & 0xff] ^ K[i]);
-			i++;
-			output[outOff++] = (byte) (S[(d1 >>> 24) & 0xff] ^ (K[i] >>> 24));
-			output[outOff++] = (byte) (S[(d2 >>> 16) & 0xff] ^ (K[i] >>> 16));
-			output[outOff++] = (byte) (S[(d3 >>> 8) & 0xff] ^ (K[i] >>> 8));
-			output[outOff++] = (byte) (S[d0 & 0xff] ^ K[i]);
-			i++;
-			output[outOff++] = (byte) (S[(d2 >>> 24) & 0xff] ^ (K[i] >>> 24));
-			output[outOff++] = (byte) (S[(d3 >>> 16) & 0xff] ^ (K[i] >>> 16));
-			output[outOff++] = (byte) (S[(d0 >>> 8) & 0xff] ^ (K[i] >>> 8));
-			output[outOff++] = (byte) (S[d1 & 0xff] ^ K[i]);
-			i++;
-			output[outOff++] = (byte) (S[(d3 >>> 24) & 0xff] ^ (K[i] >>> 24));
-			output[outOff++] = (byte) (S[(d0 >>> 16) & 0xff] ^ (K[i] >>> 16));
-			output[outOff++] = (byte) (S[(d1 >>> 8) & 0xff] ^ (K[i] >>> 8));
-			output[outOff++] = (byte) (S[d2 & 0xff] ^ K[i]);
+			encryptBlock128(K, numRounds, input, inOff, output, outOff);
 		} else
 
 		// check if block length = 24 bytes
@@ -1430,57 +1387,7 @@ public class Rijndael extends BlockCipher {
 
 		// check if block length = 16 bytes
 		if (blockSize == 4) {
-
-			// convert input bytes to ints
-			d0 = BigEndianConversions.OS2IP(input, inOff);
-			d1 = BigEndianConversions.OS2IP(input, inOff + 4);
-			d2 = BigEndianConversions.OS2IP(input, inOff + 8);
-			d3 = BigEndianConversions.OS2IP(input, inOff + 12);
-
-			// XOR keys and data
-			d0 ^= Ki[0];
-			d1 ^= Ki[1];
-			d2 ^= Ki[2];
-			d3 ^= Ki[3];
-
-			// (n - 1) transformation rounds
-			for (j = 1; j < numRounds; j++) {
-				i = j * blockSize;
-				a0 = T0i[(d0 >>> 24) & 0xff] ^ T1i[(d3 >> 16) & 0xff]
-						^ T2i[(d2 >> 8) & 0xff] ^ T3i[d1 & 0xff] ^ Ki[i];
-				a1 = T0i[(d1 >>> 24) & 0xff] ^ T1i[(d0 >> 16) & 0xff]
-						^ T2i[(d3 >> 8) & 0xff] ^ T3i[d2 & 0xff] ^ Ki[i + 1];
-				a2 = T0i[(d2 >>> 24) & 0xff] ^ T1i[(d1 >> 16) & 0xff]
-						^ T2i[(d0 >> 8) & 0xff] ^ T3i[d3 & 0xff] ^ Ki[i + 2];
-				a3 = T0i[(d3 >>> 24) & 0xff] ^ T1i[(d2 >> 16) & 0xff]
-						^ T2i[(d1 >> 8) & 0xff] ^ T3i[d0 & 0xff] ^ Ki[i + 3];
-				d0 = a0;
-				d1 = a1;
-				d2 = a2;
-				d3 = a3;
-			}
-
-			// convert ints to output bytes plus last transformation round
-			i = numRounds * blockSize;
-			output[outOff++] = (byte) (Si[(d0 >>> 24) & 0xff] ^ (Ki[i] >>> 24));
-			output[outOff++] = (byte) (Si[(d3 >>> 16) & 0xff] ^ (Ki[i] >>> 16));
-			output[outOff++] = (byte) (Si[(d2 >>> 8) & 0xff] ^ (Ki[i] >>> 8));
-			output[outOff++] = (byte) (Si[d1 & 0xff] ^ Ki[i]);
-			i++;
-			output[outOff++] = (byte) (Si[(d1 >>> 24) & 0xff] ^ (Ki[i] >>> 24));
-			output[outOff++] = (byte) (Si[(d0 >>> 16) & 0xff] ^ (Ki[i] >>> 16));
-			output[outOff++] = (byte) (Si[(d3 >>> 8) & 0xff] ^ (Ki[i] >>> 8));
-			output[outOff++] = (byte) (Si[d2 & 0xff] ^ Ki[i]);
-			i++;
-			output[outOff++] = (byte) (Si[(d2 >>> 24) & 0xff] ^ (Ki[i] >>> 24));
-			output[outOff++] = (byte) (Si[(d1 >>> 16) & 0xff] ^ (Ki[i] >>> 16));
-			output[outOff++] = (byte) (Si[(d0 >>> 8) & 0xff] ^ (Ki[i] >>> 8));
-			output[outOff++] = (byte) (Si[d3 & 0xff] ^ Ki[i]);
-			i++;
-			output[outOff++] = (byte) (Si[(d3 >>> 24) & 0xff] ^ (Ki[i] >>> 24));
-			output[outOff++] = (byte) (Si[(d2 >>> 16) & 0xff] ^ (Ki[i] >>> 16));
-			output[outOff++] = (byte) (Si[(d1 >>> 8) & 0xff] ^ (Ki[i] >>> 8));
-			output[outOff++] = (byte) (Si[d0 & 0xff] ^ Ki[i]);
+			decryptBlock128(Ki, numRounds, input, inOff, output, outOff);
 		} else
 
 		// check if block length = 24 bytes
@@ -1654,6 +1561,405 @@ public class Rijndael extends BlockCipher {
 		}
 	}
 
+	/**
+	 * Encrypt consecutive blocks of data. For 128-bit blocks, the expanded key
+	 * and the number of rounds are kept in local variables for all blocks.
+	 * 
+	 * @param input
+	 *            byte array containing the plaintext blocks
+	 * @param inOff
+	 *            index where the plaintext starts
+	 * @param output
+	 *            byte array to hold the ciphertext blocks
+	 * @param outOff
+	 *            index where the ciphertext will start
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	protected void processBlocksEncrypt(byte[] input, int inOff,
+			byte[] output, int outOff, int numBlocks) {
+		if (blockSize != 4) {
+			super.processBlocksEncrypt(input, inOff, output, outOff,
+					numBlocks);
+			return;
+		}
+		int[] k = K;
+		int rounds = numRounds;
+		for (int b = 0; b < numBlocks; b++) {
+			encryptBlock128(k, rounds, input, inOff, output, outOff);
+			inOff += 16;
+			outOff += 16;
+		}
+	}
+
+	/**
+	 * Decrypt consecutive blocks of data. For 128-bit blocks, the inverse
+	 * expanded key and the number of rounds are kept in local variables for all
+	 * blocks, and four blocks at a time are decrypted with interleaved rounds.
+	 * 
+	 * @param input
+	 *            byte array containing the ciphertext blocks
+	 * @param inOff
+	 *            index where the ciphertext starts
+	 * @param output
+	 *            byte array to hold the plaintext blocks
+	 * @param outOff
+	 *            index where the plaintext will start
+	 * @param numBlocks
+	 *            the number of blocks
+	 */
+	protected void processBlocksDecrypt(byte[] input, int inOff,
+			byte[] output, int outOff, int numBlocks) {
+		if (blockSize != 4) {
+			super.processBlocksDecrypt(input, inOff, output, outOff,
+					numBlocks);
+			return;
+		}
+		int[] k = Ki;
+		int rounds = numRounds;
+		int b = 0;
+		for (; b + 4 <= numBlocks; b += 4) {
+			decryptBlocks128x4(k, rounds, input, inOff, output, outOff);
+			inOff += 64;
+			outOff += 64;
+		}
+		for (; b < numBlocks; b++) {
+			decryptBlock128(k, rounds, input, inOff, output, outOff);
+			inOff += 16;
+			outOff += 16;
+		}
+	}
+
+	/**
+	 * Encrypt a single 128-bit block of data.
+	 * 
+	 * @param k
+	 *            the expanded key
+	 * @param rounds
+	 *            the number of rounds
+	 * @param input
+	 *            byte array containing the input block
+	 * @param inOff
+	 *            index where the input block starts
+	 * @param output
+	 *            byte array to hold the output block
+	 * @param outOff
+	 *            index where the output block will start
+	 */
+	private static void encryptBlock128(int[] k, int rounds, byte[] input,
+			int inOff, byte[] output, int outOff) {
+
+		int i, j;
+		int d0, d1, d2, d3;
+		int a0, a1, a2, a3;
+
+		// convert input bytes to ints
+		d0 = BigEndianConversions.OS2IP(input, inOff);
+		d1 = BigEndianConversions.OS2IP(input, inOff + 4);
+		d2 = BigEndianConversions.OS2IP(input, inOff + 8);
+		d3 = BigEndianConversions.OS2IP(input, inOff + 12);
+
+		// XOR keys and data
+		d0 ^= k[0];
+		d1 ^= k[1];
+		d2 ^= k[2];
+		d3 ^= k[3];
+
+		// (n - 1) transformation rounds
+		for (j = 1; j < rounds; j++) {
+			i = j << 2;
+			a0 = T0[(d0 >>> 24) & 0xff] ^ T1[(d1 >> 16) & 0xff]
+					^ T2[(d2 >> 8) & 0xff] ^ T3[d3 & 0xff] ^ k[i];
+			a1 = T0[(d1 >>> 24) & 0xff] ^ T1[(d2 >> 16) & 0xff]
+					^ T2[(d3 >> 8) & 0xff] ^ T3[d0 & 0xff] ^ k[i + 1];
+			a2 = T0[(d2 >>> 24) & 0xff] ^ T1[(d3 >> 16) & 0xff]
+					^ T2[(d0 >> 8) & 0xff] ^ T3[d1 & 0xff] ^ k[i + 2];
+			a3 = T0[(d3 >>> 24) & 0xff] ^ T1[(d0 >> 16) & 0xff]
+					^ T2[(d1 >> 8) & 0xff] ^ T3[d2 & 0xff] ^ k[i + 3];
+			d0 = a0;
+			d1 = a1;
+			d2 = a2;
+			d3 = a3;
+		}
+
+		// convert ints to output bytes plus last transformation round
+		i = rounds << 2;
+		output[outOff++] = (byte) (S[(d0 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (S[(d1 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (S[(d2 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (S[d3 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (S[(d1 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (S[(d2 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (S[(d3 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (S[d0 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (S[(d2 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (S[(d3 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (S[(d0 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (S[d1 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (S[(d3 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (S[(d0 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (S[(d1 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (S[d2 & 0xff] ^ k[i]);
+	}
+
+	/**
+	 * Decrypt four consecutive 128-bit blocks of data. The rounds of the four
+	 * blocks are interleaved, so that their independent table lookups can be
+	 * executed in parallel by the processor.
+	 * 
+	 * @param k
+	 *            the inverse expanded key
+	 * @param rounds
+	 *            the number of rounds
+	 * @param input
+	 *            byte array containing the input blocks
+	 * @param inOff
+	 *            index where the input blocks start
+	 * @param output
+	 *            byte array to hold the output blocks
+	 * @param outOff
+	 *            index where the output blocks will start
+	 */
+	private static void decryptBlocks128x4(int[] k, int rounds,
+			byte[] input, int inOff, byte[] output, int outOff) {
+
+		int i, j;
+		int x0, x1, x2, x3, y0, y1, y2, y3;
+		int z0, z1, z2, z3, w0, w1, w2, w3;
+		int a0, a1, a2, a3;
+
+		// convert input bytes to ints and XOR keys and data
+		x0 = BigEndianConversions.OS2IP(input, inOff) ^ k[0];
+		x1 = BigEndianConversions.OS2IP(input, inOff + 4) ^ k[1];
+		x2 = BigEndianConversions.OS2IP(input, inOff + 8) ^ k[2];
+		x3 = BigEndianConversions.OS2IP(input, inOff + 12) ^ k[3];
+		y0 = BigEndianConversions.OS2IP(input, inOff + 16) ^ k[0];
+		y1 = BigEndianConversions.OS2IP(input, inOff + 20) ^ k[1];
+		y2 = BigEndianConversions.OS2IP(input, inOff + 24) ^ k[2];
+		y3 = BigEndianConversions.OS2IP(input, inOff + 28) ^ k[3];
+		z0 = BigEndianConversions.OS2IP(input, inOff + 32) ^ k[0];
+		z1 = BigEndianConversions.OS2IP(input, inOff + 36) ^ k[1];
+		z2 = BigEndianConversions.OS2IP(input, inOff + 40) ^ k[2];
+		z3 = BigEndianConversions.OS2IP(input, inOff + 44) ^ k[3];
+		w0 = BigEndianConversions.OS2IP(input, inOff + 48) ^ k[0];
+		w1 = BigEndianConversions.OS2IP(input, inOff + 52) ^ k[1];
+		w2 = BigEndianConversions.OS2IP(input, inOff + 56) ^ k[2];
+		w3 = BigEndianConversions.OS2IP(input, inOff + 60) ^ k[3];
+
+		// (n - 1) transformation rounds
+		for (j = 1; j < rounds; j++) {
+			i = j << 2;
+			a0 = T0i[(x0 >>> 24) & 0xff] ^ T1i[(x3 >> 16) & 0xff]
+					^ T2i[(x2 >> 8) & 0xff] ^ T3i[x1 & 0xff] ^ k[i];
+			a1 = T0i[(x1 >>> 24) & 0xff] ^ T1i[(x0 >> 16) & 0xff]
+					^ T2i[(x3 >> 8) & 0xff] ^ T3i[x2 & 0xff] ^ k[i + 1];
+			a2 = T0i[(x2 >>> 24) & 0xff] ^ T1i[(x1 >> 16) & 0xff]
+					^ T2i[(x0 >> 8) & 0xff] ^ T3i[x3 & 0xff] ^ k[i + 2];
+			a3 = T0i[(x3 >>> 24) & 0xff] ^ T1i[(x2 >> 16) & 0xff]
+					^ T2i[(x1 >> 8) & 0xff] ^ T3i[x0 & 0xff] ^ k[i + 3];
+			x0 = a0;
+			x1 = a1;
+			x2 = a2;
+			x3 = a3;
+			a0 = T0i[(y0 >>> 24) & 0xff] ^ T1i[(y3 >> 16) & 0xff]
+					^ T2i[(y2 >> 8) & 0xff] ^ T3i[y1 & 0xff] ^ k[i];
+			a1 = T0i[(y1 >>> 24) & 0xff] ^ T1i[(y0 >> 16) & 0xff]
+					^ T2i[(y3 >> 8) & 0xff] ^ T3i[y2 & 0xff] ^ k[i + 1];
+			a2 = T0i[(y2 >>> 24) & 0xff] ^ T1i[(y1 >> 16) & 0xff]
+					^ T2i[(y0 >> 8) & 0xff] ^ T3i[y3 & 0xff] ^ k[i + 2];
+			a3 = T0i[(y3 >>> 24) & 0xff] ^ T1i[(y2 >> 16) & 0xff]
+					^ T2i[(y1 >> 8) & 0xff] ^ T3i[y0 & 0xff] ^ k[i + 3];
+			y0 = a0;
+			y1 = a1;
+			y2 = a2;
+			y3 = a3;
+			a0 = T0i[(z0 >>> 24) & 0xff] ^ T1i[(z3 >> 16) & 0xff]
+					^ T2i[(z2 >> 8) & 0xff] ^ T3i[z1 & 0xff] ^ k[i];
+			a1 = T0i[(z1 >>> 24) & 0xff] ^ T1i[(z0 >> 16) & 0xff]
+					^ T2i[(z3 >> 8) & 0xff] ^ T3i[z2 & 0xff] ^ k[i + 1];
+			a2 = T0i[(z2 >>> 24) & 0xff] ^ T1i[(z1 >> 16) & 0xff]
+					^ T2i[(z0 >> 8) & 0xff] ^ T3i[z3 & 0xff] ^ k[i + 2];
+			a3 = T0i[(z3 >>> 24) & 0xff] ^ T1i[(z2 >> 16) & 0xff]
+					^ T2i[(z1 >> 8) & 0xff] ^ T3i[z0 & 0xff] ^ k[i + 3];
+			z0 = a0;
+			z1 = a1;
+			z2 = a2;
+			z3 = a3;
+			a0 = T0i[(w0 >>> 24) & 0xff] ^ T1i[(w3 >> 16) & 0xff]
+					^ T2i[(w2 >> 8) & 0xff] ^ T3i[w1 & 0xff] ^ k[i];
+			a1 = T0i[(w1 >>> 24) & 0xff] ^ T1i[(w0 >> 16) & 0xff]
+					^ T2i[(w3 >> 8) & 0xff] ^ T3i[w2 & 0xff] ^ k[i + 1];
+			a2 = T0i[(w2 >>> 24) & 0xff] ^ T1i[(w1 >> 16) & 0xff]
+					^ T2i[(w0 >> 8) & 0xff] ^ T3i[w3 & 0xff] ^ k[i + 2];
+			a3 = T0i[(w3 >>> 24) & 0xff] ^ T1i[(w2 >> 16) & 0xff]
+					^ T2i[(w1 >> 8) & 0xff] ^ T3i[w0 & 0xff] ^ k[i + 3];
+			w0 = a0;
+			w1 = a1;
+			w2 = a2;
+			w3 = a3;
+		}
+
+		// convert ints to output bytes plus last transformation round
+		i = rounds << 2;
+		output[outOff++] = (byte) (Si[(x0 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(x3 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(x2 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[x1 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(x1 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(x0 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(x3 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[x2 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(x2 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(x1 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(x0 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[x3 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(x3 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(x2 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(x1 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[x0 & 0xff] ^ k[i]);
+		i = rounds << 2;
+		output[outOff++] = (byte) (Si[(y0 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(y3 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(y2 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[y1 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(y1 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(y0 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(y3 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[y2 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(y2 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(y1 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(y0 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[y3 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(y3 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(y2 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(y1 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[y0 & 0xff] ^ k[i]);
+		i = rounds << 2;
+		output[outOff++] = (byte) (Si[(z0 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(z3 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(z2 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[z1 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(z1 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(z0 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(z3 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[z2 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(z2 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(z1 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(z0 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[z3 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(z3 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(z2 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(z1 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[z0 & 0xff] ^ k[i]);
+		i = rounds << 2;
+		output[outOff++] = (byte) (Si[(w0 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(w3 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(w2 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[w1 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(w1 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(w0 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(w3 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[w2 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(w2 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(w1 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(w0 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[w3 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(w3 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(w2 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(w1 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[w0 & 0xff] ^ k[i]);
+	}
+
+	/**
+	 * Decrypt a single 128-bit block of data.
+	 * 
+	 * @param k
+	 *            the inverse expanded key
+	 * @param rounds
+	 *            the number of rounds
+	 * @param input
+	 *            byte array containing the input block
+	 * @param inOff
+	 *            index where the input block starts
+	 * @param output
+	 *            byte array to hold the output block
+	 * @param outOff
+	 *            index where the output block will start
+	 */
+	private static void decryptBlock128(int[] k, int rounds, byte[] input,
+			int inOff, byte[] output, int outOff) {
+
+		int i, j;
+		int d0, d1, d2, d3;
+		int a0, a1, a2, a3;
+
+		// convert input bytes to ints
+		d0 = BigEndianConversions.OS2IP(input, inOff);
+		d1 = BigEndianConversions.OS2IP(input, inOff + 4);
+		d2 = BigEndianConversions.OS2IP(input, inOff + 8);
+		d3 = BigEndianConversions.OS2IP(input, inOff + 12);
+
+		// XOR keys and data
+		d0 ^= k[0];
+		d1 ^= k[1];
+		d2 ^= k[2];
+		d3 ^= k[3];
+
+		// (n - 1) transformation rounds
+		for (j = 1; j < rounds; j++) {
+			i = j << 2;
+			a0 = T0i[(d0 >>> 24) & 0xff] ^ T1i[(d3 >> 16) & 0xff]
+					^ T2i[(d2 >> 8) & 0xff] ^ T3i[d1 & 0xff] ^ k[i];
+			a1 = T0i[(d1 >>> 24) & 0xff] ^ T1i[(d0 >> 16) & 0xff]
+					^ T2i[(d3 >> 8) & 0xff] ^ T3i[d2 & 0xff] ^ k[i + 1];
+			a2 = T0i[(d2 >>> 24) & 0xff] ^ T1i[(d1 >> 16) & 0xff]
+					^ T2i[(d0 >> 8) & 0xff] ^ T3i[d3 & 0xff] ^ k[i + 2];
+			a3 = T0i[(d3 >>> 24) & 0xff] ^ T1i[(d2 >> 16) & 0xff]
+					^ T2i[(d1 >> 8) & 0xff] ^ T3i[d0 & 0xff] ^ k[i + 3];
+			d0 = a0;
+			d1 = a1;
+			d2 = a2;
+			d3 = a3;
+		}
+
+		// convert ints to output bytes plus last transformation round
+		i = rounds << 2;
+		output[outOff++] = (byte) (Si[(d0 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(d3 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(d2 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[d1 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(d1 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(d0 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(d3 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[d2 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(d2 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(d1 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(d0 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[d3 & 0xff] ^ k[i]);
+		i++;
+		output[outOff++] = (byte) (Si[(d3 >>> 24) & 0xff] ^ (k[i] >>> 24));
+		output[outOff++] = (byte) (Si[(d2 >>> 16) & 0xff] ^ (k[i] >>> 16));
+		output[outOff++] = (byte) (Si[(d1 >>> 8) & 0xff] ^ (k[i] >>> 8));
+		output[outOff++] = (byte) (Si[d0 & 0xff] ^ k[i]);
+	}
+
 	/**
 	 * Compute the number of rounds.
 	 */
@@ -0,0 +1,496 @@
+package de.flexiprovider.core.rijndael;
+
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.keys.SecretKey;
+import de.flexiprovider.common.mode.ParallelModeParameterSpec;
+import de.flexiprovider.common.util.ByteUtils;
+import de.flexiprovider.common.util.LittleEndianConversions;
+import de.flexiprovider.common.util.ParallelTask;
+
+/**
+ * This class implements XTS-AES as specified in IEEE Std 1619-2007 (XEX-based
+ * tweaked codebook mode with ciphertext stealing) for the encryption of
+ * sector-based storage such as block devices and random-access files.
+ * <p>
+ * The data is divided into data units (sectors) which are encrypted
+ * independently. The tweak of a sector is its sector number, so reading or
+ * writing a sector only requires the sector itself and its number. Sectors
+ * need not be a multiple of the block size (16 bytes), but must be at least
+ * one block long; the last incomplete block is handled by ciphertext
+ * stealing. The ciphertext has the same length as the plaintext.
+ * <p>
+ * The engine is bound to a pair of AES keys of 128 or 256 bits each: the data
+ * key encrypts the blocks, and the tweak key encrypts the sector numbers. The
+ * key schedules are computed once by the constructor and are not modified
+ * afterwards, so an instance can be shared by any number of threads. Runs of
+ * consecutive sectors ({@link #encryptSectors(long, int, byte[], int, int,
+ * byte[], int)}) are spread over several threads if the input is large
+ * enough.
+ * <p>
+ * Usage example:
+ * 
+ * <pre>
+ * RijndaelXTS xts = new RijndaelXTS(key); // 32 or 64 bytes
+ * // encrypt sector 42 in place
+ * xts.encryptSector(42, sector, 0, 512, sector, 0);
+ * </pre>
+ */
+public final class RijndaelXTS {
+
+    /**
+     * The block size in bytes
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    // the cipher for the data blocks
+    private final Rijndael dataCipher;
+
+    // the cipher for the tweaks
+    private final Rijndael tweakCipher;
+
+    // the number of threads used for runs of sectors
+    private final int numThreads;
+
+    // the minimal input length for parallel processing
+    private final int threshold;
+
+    /**
+     * Constructor. Split the given XTS key into the data key (first half)
+     * and the tweak key (second half), as specified by IEEE Std 1619-2007.
+     * All available processors are used for runs of sectors of at least
+     * {@link ParallelModeParameterSpec#DEFAULT_THRESHOLD} bytes.
+     * 
+     * @param key
+     *                the XTS key (32 bytes for XTS-AES-128, 64 bytes for
+     *                XTS-AES-256)
+     * @throws InvalidKeyException
+     *                 if the key length is invalid or both halves of the key
+     *                 are equal.
+     */
+    public RijndaelXTS(byte[] key) throws InvalidKeyException {
+	this(splitKey(key, 0), splitKey(key, 1));
+    }
+
+    /**
+     * Constructor. All available processors are used for runs of sectors of
+     * at least {@link ParallelModeParameterSpec#DEFAULT_THRESHOLD} bytes.
+     * 
+     * @param dataKey
+     *                the key used for the data blocks
+     * @param tweakKey
+     *                the key used for the tweaks
+     * @throws InvalidKeyException
+     *                 if the keys are not {@link RijndaelKey}s of 128 or 256
+     *                 bits and equal length or if the keys are equal.
+     */
+    public RijndaelXTS(SecretKey dataKey, SecretKey tweakKey)
+	    throws InvalidKeyException {
+	this(dataKey, tweakKey, Runtime.getRuntime().availableProcessors(),
+		ParallelModeParameterSpec.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param dataKey
+     *                the key used for the data blocks
+     * @param tweakKey
+     *                the key used for the tweaks
+     * @param numThreads
+     *                the number of threads used for runs of sectors (<tt>1</tt>
+     *                disables parallel processing)
+     * @param threshold
+     *                the minimal input length (in bytes) for parallel
+     *                processing
+     * @throws InvalidKeyException
+     *                 if the keys are not {@link RijndaelKey}s of 128 or 256
+     *                 bits and equal length or if the keys are equal.
+     * @throws IllegalArgumentException
+     *                 if <tt>numThreads &lt; 1</tt> or
+     *                 <tt>threshold &lt; 0</tt>.
+     */
+    public RijndaelXTS(SecretKey dataKey, SecretKey tweakKey, int numThreads,
+	    int threshold) throws InvalidKeyException {
+	this(dataKey, tweakKey, numThreads, threshold, false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param dataKey
+     *                the key used for the data blocks
+     * @param tweakKey
+     *                the key used for the tweaks
+     * @param numThreads
+     *                the number of threads used for runs of sectors (<tt>1</tt>
+     *                disables parallel processing)
+     * @param threshold
+     *                the minimal input length (in bytes) for parallel
+     *                processing
+     * @param constantTime
+     *                whether to use the constant-time {@link BitslicedAES}
+     *                instead of the table-driven AES implementation
+     * @throws InvalidKeyException
+     *                 if the keys are not {@link RijndaelKey}s of 128 or 256
+     *                 bits and equal length or if the keys are equal.
+     * @throws IllegalArgumentException
+     *                 if <tt>numThreads &lt; 1</tt> or
+     *                 <tt>threshold &lt; 0</tt>.
+     */
+    public RijndaelXTS(SecretKey dataKey, SecretKey tweakKey, int numThreads,
+	    int threshold, boolean constantTime) throws InvalidKeyException {
+	if (!(dataKey instanceof RijndaelKey)
+		|| !(tweakKey instanceof RijndaelKey)) {
+	    throw new InvalidKeyException("unsupported type");
+	}
+	byte[] k1 = dataKey.getEncoded();
+	byte[] k2 = tweakKey.getEncoded();
+	if ((k1.length != 16 && k1.length != 32) || k2.length != k1.length) {
+	    throw new InvalidKeyException("invalid length");
+	}
+	if (ByteUtils.equals(k1, k2)) {
+	    throw new InvalidKeyException(
+		    "data key and tweak key must be different");
+	}
+	if (numThreads < 1) {
+	    throw new IllegalArgumentException("invalid number of threads");
+	}
+	if (threshold < 0) {
+	    throw new IllegalArgumentException("invalid threshold");
+	}
+
+	if (constantTime) {
+	    dataCipher = new BitslicedAES();
+	    tweakCipher = new BitslicedAES();
+	} else {
+	    dataCipher = new Rijndael.AES();
+	    tweakCipher = new Rijndael.AES();
+	}
+	try {
+	    dataCipher.initCipherEncrypt(dataKey, null);
+	    tweakCipher.initCipherEncrypt(tweakKey, null);
+	} catch (InvalidAlgorithmParameterException iape) {
+	    // the default parameters are always accepted
+	    throw new RuntimeException("internal error");
+	}
+	this.numThreads = numThreads;
+	this.threshold = threshold;
+    }
+
+    /**
+     * Encrypt a single sector. Input and output may be the same array at the
+     * same offset.
+     * 
+     * @param sectorNumber
+     *                the sector number (the tweak)
+     * @param input
+     *                the plaintext
+     * @param inOff
+     *                the offset where the plaintext starts
+     * @param len
+     *                the length of the sector (at least 16 bytes)
+     * @param output
+     *                the array to hold the ciphertext
+     * @param outOff
+     *                the offset where the ciphertext will start
+     * @throws IllegalArgumentException
+     *                 if the sector is shorter than 16 bytes.
+     */
+    public void encryptSector(long sectorNumber, byte[] input, int inOff,
+	    int len, byte[] output, int outOff) {
+	checkLength(len);
+	processSector(true, sectorNumber, input, inOff, len, output, outOff);
+    }
+
+    /**
+     * Decrypt a single sector. Input and output may be the same array at the
+     * same offset.
+     * 
+     * @param sectorNumber
+     *                the sector number (the tweak)
+     * @param input
+     *                the ciphertext
+     * @param inOff
+     *                the offset where the ciphertext starts
+     * @param len
+     *                the length of the sector (at least 16 bytes)
+     * @param output
+     *                the array to hold the plaintext
+     * @param outOff
+     *                the offset where the plaintext will start
+     * @throws IllegalArgumentException
+     *                 if the sector is shorter than 16 bytes.
+     */
+    public void decryptSector(long sectorNumber, byte[] input, int inOff,
+	    int len, byte[] output, int outOff) {
+	checkLength(len);
+	processSector(false, sectorNumber, input, inOff, len, output, outOff);
+    }
+
+    /**
+     * Encrypt a run of consecutive sectors of equal size. The last sector may
+     * be shorter than the others, but must be at least 16 bytes long. Input
+     * and output may be the same array at the same offset.
+     * 
+     * @param firstSector
+     *                the sector number of the first sector
+     * @param sectorSize
+     *                the size of the sectors (at least 16 bytes)
+     * @param input
+     *                the plaintext
+     * @param inOff
+     *                the offset where the plaintext starts
+     * @param len
+     *                the length of the plaintext
+     * @param output
+     *                the array to hold the ciphertext
+     * @param outOff
+     *                the offset where the ciphertext will start
+     * @throws IllegalArgumentException
+     *                 if the sector size or the length of the last sector is
+     *                 less than 16 bytes.
+     */
+    public void encryptSectors(long firstSector, int sectorSize, byte[] input,
+	    int inOff, int len, byte[] output, int outOff) {
+	processSectors(true, firstSector, sectorSize, input, inOff, len,
+		output, outOff);
+    }
+
+    /**
+     * Decrypt a run of consecutive sectors of equal size (see
+     * {@link #encryptSectors(long, int, byte[], int, int, byte[], int)}).
+     * 
+     * @param firstSector
+     *                the sector number of the first sector
+     * @param sectorSize
+     *                the size of the sectors (at least 16 bytes)
+     * @param input
+     *                the ciphertext
+     * @param inOff
+     *                the offset where the ciphertext starts
+     * @param len
+     *                the length of the ciphertext
+     * @param output
+     *                the array to hold the plaintext
+     * @param outOff
+     *                the offset where the plaintext will start
+     * @throws IllegalArgumentException
+     *                 if the sector size or the length of the last sector is
+     *                 less than 16 bytes.
+     */
+    public void decryptSectors(long firstSector, int sectorSize, byte[] input,
+	    int inOff, int len, byte[] output, int outOff) {
+	processSectors(false, firstSector, sectorSize, input, inOff, len,
+		output, outOff);
+    }
+
+    private static void checkLength(int len) {
+	if (len < BLOCK_SIZE) {
+	    throw new IllegalArgumentException(
+		    "sectors must be at least 16 bytes long");
+	}
+    }
+
+    /**
+     * Process a run of sectors, either in the calling thread or spread over
+     * several threads (whole sectors per thread).
+     */
+    private void processSectors(boolean encrypt, long firstSector,
+	    int sectorSize, byte[] input, int inOff, int len, byte[] output,
+	    int outOff) {
+	checkLength(sectorSize);
+	int lastLen = len % sectorSize;
+	if (lastLen != 0) {
+	    checkLength(lastLen);
+	}
+	int numSectors = len / sectorSize + (lastLen != 0 ? 1 : 0);
+
+	int numSegments = Math.min(numThreads, numSectors);
+	if (len < threshold || numSegments < 2) {
+	    processRun(encrypt, firstSector, sectorSize, input, inOff, len,
+		    output, outOff);
+	    return;
+	}
+
+	new Segments(encrypt, firstSector, sectorSize, numSectors,
+		numSegments, input, inOff, len, output, outOff).run(numSegments);
+    }
+
+    /**
+     * Process a run of sectors in the calling thread.
+     */
+    private void processRun(boolean encrypt, long sector, int sectorSize,
+	    byte[] input, int inOff, int len, byte[] output, int outOff) {
+	while (len > 0) {
+	    int n = Math.min(len, sectorSize);
+	    processSector(encrypt, sector, input, inOff, n, output, outOff);
+	    sector++;
+	    inOff += n;
+	    outOff += n;
+	    len -= n;
+	}
+    }
+
+    /**
+     * En- or decrypt a single sector.
+     */
+    private void processSector(boolean encrypt, long sectorNumber,
+	    byte[] input, int inOff, int len, byte[] output, int outOff) {
+
+	// compute the initial tweak T = E_K2(sector number)
+	byte[] tweak = new byte[BLOCK_SIZE];
+	LittleEndianConversions.I2OSP(sectorNumber, tweak, 0);
+	tweakCipher.singleBlockEncrypt(tweak, 0, tweak, 0);
+
+	int numBlocks = len >>> 4;
+	int rest = len & 15;
+	// with ciphertext stealing, the last complete block is processed
+	// together with the incomplete block
+	int bulkBlocks = rest == 0 ? numBlocks : numBlocks - 1;
+	processBlocks(encrypt, tweak, input, inOff, output, outOff, bulkBlocks);
+	if (rest == 0) {
+	    return;
+	}
+
+	int off = bulkBlocks << 4;
+	byte[] block = new byte[BLOCK_SIZE];
+	if (encrypt) {
+	    // CC = E(P_{m-1} xor T_{m-1}) xor T_{m-1}
+	    System.arraycopy(input, inOff + off, block, 0, BLOCK_SIZE);
+	    processBlocks(true, tweak, block, 0, block, 0, 1);
+	    // PP = P_m || CC[rest..15], C_m = CC[0..rest-1]
+	    for (int i = 0; i < rest; i++) {
+		byte p = input[inOff + off + BLOCK_SIZE + i];
+		output[outOff + off + BLOCK_SIZE + i] = block[i];
+		block[i] = p;
+	    }
+	    // C_{m-1} = E(PP xor T_m) xor T_m
+	    processBlocks(true, tweak, block, 0, output, outOff + off, 1);
+	} else {
+	    // the last complete block is decrypted with the tweak T_m
+	    byte[] nextTweak = ByteUtils.clone(tweak);
+	    multiplyByAlpha(nextTweak);
+	    System.arraycopy(input, inOff + off, block, 0, BLOCK_SIZE);
+	    processBlocks(false, nextTweak, block, 0, block, 0, 1);
+	    // CC = C_m || PP[rest..15], P_m = PP[0..rest-1]
+	    for (int i = 0; i < rest; i++) {
+		byte c = input[inOff + off + BLOCK_SIZE + i];
+		output[outOff + off + BLOCK_SIZE + i] = block[i];
+		block[i] = c;
+	    }
+	    // P_{m-1} = D(CC xor T_{m-1}) xor T_{m-1}
+	    processBlocks(false, tweak, block, 0, output, outOff + off, 1);
+	}
+    }
+
+    /**
+     * En- or decrypt consecutive blocks: each block is masked with its tweak
+     * before and after the block cipher. The masked blocks are passed to the
+     * block cipher at once. Upon return, the tweak is advanced by the number
+     * of blocks.
+     */
+    private void processBlocks(boolean encrypt, byte[] tweak, byte[] input,
+	    int inOff, byte[] output, int outOff, int numBlocks) {
+	if (numBlocks == 0) {
+	    return;
+	}
+	int len = numBlocks << 4;
+	byte[] t = ByteUtils.clone(tweak);
+	for (int off = 0; off < len; off += BLOCK_SIZE) {
+	    int o = outOff + off;
+	    int p = inOff + off;
+	    for (int i = 0; i < BLOCK_SIZE; i++) {
+		output[o + i] = (byte) (input[p + i] ^ t[i]);
+	    }
+	    multiplyByAlpha(t);
+	}
+	if (encrypt) {
+	    dataCipher.processBlocksEncrypt(output, outOff, output, outOff,
+		    numBlocks);
+	} else {
+	    dataCipher.processBlocksDecrypt(output, outOff, output, outOff,
+		    numBlocks);
+	}
+	for (int off = 0; off < len; off += BLOCK_SIZE) {
+	    for (int i = 0; i < BLOCK_SIZE; i++) {
+		output[outOff + off + i] ^= tweak[i];
+	    }
+	    multiplyByAlpha(tweak);
+	}
+    }
+
+    /**
+     * Multiply the tweak by the primitive element <tt>alpha</tt> of
+     * <tt>GF(2<sup>128</sup>)</tt> (little-endian byte order, reduction
+     * polynomial <tt>x<sup>128</sup> + x<sup>7</sup> + x<sup>2</sup> + x +
+     * 1</tt>).
+     * 
+     * @param tweak
+     *                the tweak
+     */
+    private static void multiplyByAlpha(byte[] tweak) {
+	int carry = 0;
+	for (int i = 0; i < BLOCK_SIZE; i++) {
+	    int b = tweak[i] & 0xff;
+	    tweak[i] = (byte) ((b << 1) | carry);
+	    carry = b >>> 7;
+	}
+	if (carry != 0) {
+	    tweak[0] ^= (byte) 0x87;
+	}
+    }
+
+    /**
+     * Return one half of an XTS key as a {@link RijndaelKey}.
+     */
+    private static RijndaelKey splitKey(byte[] key, int half)
+	    throws InvalidKeyException {
+	if (key == null || (key.length != 32 && key.length != 64)) {
+	    throw new InvalidKeyException("invalid length");
+	}
+	byte[][] halves = ByteUtils.split(key, key.length >> 1);
+	return new RijndaelKey(halves[half]);
+    }
+
+    /**
+     * The parallel processing of a run of sectors, split into segments of
+     * whole sectors.
+     */
+    private class Segments extends ParallelTask {
+
+	private boolean encrypt;
+
+	private long firstSector;
+
+	private int sectorSize, numSectors, numSegments, inOff, len, outOff;
+
+	private byte[] input, output;
+
+	Segments(boolean encrypt, long firstSector, int sectorSize,
+		int numSectors, int numSegments, byte[] input, int inOff,
+		int len, byte[] output, int outOff) {
+	    this.encrypt = encrypt;
+	    this.firstSector = firstSector;
+	    this.sectorSize = sectorSize;
+	    this.numSectors = numSectors;
+	    this.numSegments = numSegments;
+	    this.input = input;
+	    this.inOff = inOff;
+	    this.len = len;
+	    this.output = output;
+	    this.outOff = outOff;
+	}
+
+	protected void runPart(int part) {
+	    int first = start(numSectors, numSegments, part);
+	    int end = start(numSectors, numSegments, part + 1);
+	    int off = first * sectorSize;
+	    int n = (int) Math.min((long) end * sectorSize, len) - off;
+	    processRun(encrypt, firstSector + first, sectorSize, input, inOff
+		    + off, n, output, outOff + off);
+	}
+
+    }
+
+}
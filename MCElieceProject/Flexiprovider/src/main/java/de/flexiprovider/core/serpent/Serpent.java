@@ -16,6 +16,7 @@ import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.keys.SecretKeySpec;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.KeyScheduleCache;
 
 /**
  * This class implementes the Serpent block cipher. For more information, see <a
@@ -341,7 +342,11 @@ public class Serpent extends BlockCipher {
 			throw new InvalidKeyException(
 					"key size does not match specified length.");
 		}
-		keyExpansion(keyBytes);
+		Object[] schedule = { K };
+		if (!KeyScheduleCache.restore(ALG_NAME, keyBytes, schedule)) {
+			keyExpansion(keyBytes);
+			KeyScheduleCache.store(ALG_NAME, keyBytes, schedule);
+		}
 	}
 
 	/**
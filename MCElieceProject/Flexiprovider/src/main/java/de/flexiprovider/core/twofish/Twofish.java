@@ -14,6 +14,7 @@ import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.keys.SecretKey;
 import de.flexiprovider.api.keys.SecretKeySpec;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.util.KeyScheduleCache;
 import de.flexiprovider.common.util.LittleEndianConversions;
 
 /**
@@ -417,7 +418,14 @@ public class Twofish extends BlockCipher {
 		if ((key == null) || !(key instanceof TwofishKey)) {
 			throw new InvalidKeyException("wrong type");
 		}
-		keyExpansion(key.getEncoded());
+		byte[] keyBytes = key.getEncoded();
+		Object[] schedule = { K, S, mdsExp };
+		if (KeyScheduleCache.restore(ALG_NAME, keyBytes, schedule)) {
+			k = keyBytes.length >> 3;
+		} else {
+			keyExpansion(keyBytes);
+			KeyScheduleCache.store(ALG_NAME, keyBytes, schedule);
+		}
 	}
 
 	/**
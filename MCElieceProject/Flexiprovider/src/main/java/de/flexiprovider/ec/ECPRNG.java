@@ -12,26 +12,33 @@ import de.flexiprovider.api.SecureRandom;
 import de.flexiprovider.common.exceptions.InvalidPointException;
 import de.flexiprovider.common.math.FlexiBigInt;
 import de.flexiprovider.common.math.ellipticcurves.EllipticCurveGFP;
+import de.flexiprovider.common.math.ellipticcurves.Point;
 import de.flexiprovider.common.math.ellipticcurves.PointGFP;
 import de.flexiprovider.common.math.ellipticcurves.ScalarMult;
 import de.flexiprovider.common.math.finitefields.GFPElement;
-import de.flexiprovider.common.util.SeedGenerator;
 
 /**
  * This class implements a pseudorandom number generator as proposed by Kaliski.
  * Its security bases on the elliptic curve discrete logarithm problem. For
  * details, we refer to the ICICS 2002 paper of H. Baier.
  * 
- * The curve parameters are stored in a file named 'curve_parameters'. This file
- * has to be stored in the same directory as the Java-class containing the
- * main(...)-method . The validity of the parameters is not checked!!! Thus the
- * user is responsible for a good choice.
+ * The curve parameters are fixed. The validity of the parameters is not
+ * checked!!! The scalar multiplications with the two base points use
+ * fixed-base comb tables (see {@link ScalarMult#pre_comb}), which are computed
+ * once when the first instance is created and shared by all instances. The
+ * output is generated in blocks of {@link #BUFFER_SIZE} bytes and buffered
+ * between calls of {@link #nextBytes(byte[])}.
  * 
  * @author Harald Baier
  * @see de.flexiprovider.common.math.ellipticcurves.EllipticCurveGFP
  */
 public class ECPRNG extends SecureRandom {
 
+    /**
+     * The number of bytes generated at once
+     */
+    public static final int BUFFER_SIZE = 32;
+
     // parameters used by the PRNG
     private static final String p = "965627713414686037773998887356363665495489701319";
     private static final String r = "965627713414686037773998839797242751054848709919";
@@ -46,163 +53,137 @@ public class ECPRNG extends SecureRandom {
     private static final String gxtw = "366500700833382456097277943560492718018620012876";
     private static final String gytw = "386244879790635939190694479506736774122111430939";
 
-    private SeedGenerator seedGenerator;
+    // number of rows and of blocks per row of the comb tables
+    private static final int COMB_ROWS = 8;
+
+    private static final int COMB_BLOCKS = 4;
+
+    // the shared parameters (created by the first instance)
+    private static Params params;
+
+    // the parameters used by this instance
+    private final Params mParams;
 
     // to store if ECPRNG is seeded
     private boolean mIsSeeded = false;
 
-    private byte mCurrentByte;
+    // the value s of the paper
+    private FlexiBigInt mS;
 
-    private int mSeedLength;
+    // the generated bytes, the unused bytes start at mBufPos
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
 
-    // characteristic p of finite prime field
-    private FlexiBigInt mP;
+    private int mBufPos = BUFFER_SIZE;
 
-    // = ( mP - 1 )/2
-    private FlexiBigInt mP_minus_1_half;
+    /**
+     * The curve parameters and the comb tables of the two base points.
+     */
+    private static final class Params {
 
-    // quadratic non-residue modulo mP for twisted curves
-    private FlexiBigInt mGamma;
+	// characteristic p of finite prime field
+	final FlexiBigInt mP;
 
-    // inverse of mGamma mod mP
-    private FlexiBigInt mGammaInverse;
+	// = ( mP - 1 )/2
+	final FlexiBigInt mP_minus_1_half;
 
-    // elliptic curve of prime order
-    private EllipticCurveGFP mE;
+	// inverse of the quadratic non-residue gamma mod mP
+	final FlexiBigInt mGammaInverse;
 
-    // twist of mE over \F_p
-    private EllipticCurveGFP mE_tw;
+	// prime order of the base point G in E(\F_p)
+	final FlexiBigInt mR;
 
-    // the base point mG on mE of order mR
-    private PointGFP mG;
+	// = ( mR - 1 )/2
+	final FlexiBigInt mR_minus_1_half;
 
-    // array of multiples of mG
-    private PointGFP[] mGArray;
+	final int bitLengthR;
 
-    // prime order of mG in E(\F_p)
-    private FlexiBigInt mR;
+	// comb tables of G
+	final Point[][] mGTable;
 
-    // = ( mR - 1 )/2
-    private FlexiBigInt mR_minus_1_half;
+	// prime order of the base point G_tw in E_tw(\F_p)
+	final FlexiBigInt mR_tw;
 
-    private int bitLengthR;
+	// = ( mR_tw - 1 )/2
+	final FlexiBigInt mR_tw_minus_1_half;
 
-    // base point in E_tw(\F_p)
-    private PointGFP mG_tw;
+	final int bitLengthR_tw;
 
-    // array of multiples of mG_tw
-    private PointGFP[] mG_twArray;
+	// comb tables of G_tw
+	final Point[][] mG_twTable;
 
-    // prime order of mG_tw in E_tw(\F_p)
-    private FlexiBigInt mR_tw;
+	// the length of the seed in bytes
+	final int mSeedLength;
 
-    // = ( mR_tw - 1 )/2
-    private FlexiBigInt mR_tw_minus_1_half;
+	Params() throws InvalidPointException {
+	    // initialize the prime field
+	    mP = new FlexiBigInt(p);
 
-    private int bitLengthR_tw;
+	    // initialize the order r of G
+	    mR = new FlexiBigInt(r);
 
-    // the current multiple of mG
-    private PointGFP mPoint;
+	    // initialize the elliptic curve
+	    EllipticCurveGFP e = new EllipticCurveGFP(new GFPElement(
+		    new FlexiBigInt(a), mP), new GFPElement(new FlexiBigInt(b),
+		    mP), mP);
 
-    // the (affine) x-coordinate of mPoint
-    private FlexiBigInt mX;
+	    // initialize the base point G on E
+	    PointGFP g = new PointGFP(new GFPElement(new FlexiBigInt(gx), mP),
+		    new GFPElement(new FlexiBigInt(gy), mP), e);
 
-    // the (affine) y-coordinate of mPoint
-    private FlexiBigInt mY;
+	    // initialize the order r^tw of G^tw
+	    mR_tw = new FlexiBigInt(rtw);
 
-    // the value s of the paper
-    private FlexiBigInt mS;
+	    // initialize the elliptic curve E^tw
+	    EllipticCurveGFP eTw = new EllipticCurveGFP(new GFPElement(
+		    new FlexiBigInt(atw), mP), new GFPElement(new FlexiBigInt(
+		    btw), mP), mP);
+
+	    // initialize the base point G^tw on E^tw
+	    PointGFP gTw = new PointGFP(new GFPElement(new FlexiBigInt(gxtw),
+		    mP), new GFPElement(new FlexiBigInt(gytw), mP), eTw);
+
+	    // compute the inverse of the quadratic non-residue gamma
+	    mGammaInverse = new FlexiBigInt(gamma).modInverse(mP);
 
-    // the value of s - r
-    private FlexiBigInt mS_minus_mR;
+	    // compute bitlengths of mR and mR_tw
+	    bitLengthR = mR.bitLength();
+	    bitLengthR_tw = mR_tw.bitLength();
 
-    // a temporary variable
-    private FlexiBigInt tmp;
+	    // compute (mP - 1)/2, (mR - 1)/2 and (mR_tw - 1)/2
+	    mP_minus_1_half = mP.subtract(FlexiBigInt.ONE).shiftRight(1);
+	    mR_minus_1_half = mR.subtract(FlexiBigInt.ONE).shiftRight(1);
+	    mR_tw_minus_1_half = mR_tw.subtract(FlexiBigInt.ONE).shiftRight(1);
 
-    // variables for computing the current byte
+	    // compute the length of the seed in bytes: bitlenghtR + 1 bits
+	    mSeedLength = (bitLengthR + 1) >> 3;
 
-    // the local byte
-    private byte mLocalByte;
+	    // compute the comb tables
+	    mGTable = ScalarMult.pre_comb(g, bitLengthR, COMB_ROWS,
+		    COMB_BLOCKS);
+	    mG_twTable = ScalarMult.pre_comb(gTw, bitLengthR_tw, COMB_ROWS,
+		    COMB_BLOCKS);
+	}
 
-    // the bitmask to manipulate mLocalByte
-    private byte mBitmask;
+    }
 
     /**
-     * Constructor.
+     * Constructor. The curve parameters and comb tables are computed by the
+     * first instance only.
      * 
      * @throws de.flexiprovider.common.exceptions.InvalidPointException
      *                 should not happen with the default parameters.
      */
     public ECPRNG() throws InvalidPointException {
+	mParams = getParams();
+    }
 
-	// generate the seed generator object
-	seedGenerator = new SeedGenerator();
-
-	// initialize the prime field
-	mP = new FlexiBigInt(p);
-
-	// initialize the order r of G
-	mR = new FlexiBigInt(r);
-
-	// initialize the elliptic curve
-	mE = new EllipticCurveGFP(new GFPElement(new FlexiBigInt(a), mP),
-		new GFPElement(new FlexiBigInt(b), mP), mP);
-
-	// initialize the base point G on E
-	mG = new PointGFP(new GFPElement(new FlexiBigInt(gx), mP),
-		new GFPElement(new FlexiBigInt(gy), mP), mE);
-
-	// initialize the quadratic non-residue mGamma
-	mGamma = new FlexiBigInt(gamma);
-
-	// initialize the order r^tw of G^tw
-	mR_tw = new FlexiBigInt(rtw);
-
-	// initialize the elliptic curve E^tw
-	mE_tw = new EllipticCurveGFP(new GFPElement(new FlexiBigInt(atw), mP),
-		new GFPElement(new FlexiBigInt(btw), mP), mP);
-
-	// initialize the base point G^tw on E^tw
-	mG_tw = new PointGFP(new GFPElement(new FlexiBigInt(gxtw), mP),
-		new GFPElement(new FlexiBigInt(gytw), mP), mE_tw);
-
-	// compute mGammaInverse
-	mGammaInverse = mGamma.modInverse(mP);
-
-	// compute bitlengths of mR and mR_tw
-	bitLengthR = mR.bitLength();
-	bitLengthR_tw = mR_tw.bitLength();
-
-	// compute (mP - 1)/2
-	mP_minus_1_half = mP.subtract(FlexiBigInt.ONE);
-	mP_minus_1_half = mP_minus_1_half.shiftRight(1);
-
-	// compute (mR - 1)/2
-	mR_minus_1_half = mR.subtract(FlexiBigInt.ONE);
-	mR_minus_1_half = mR_minus_1_half.shiftRight(1);
-
-	// compute (mR_tw - 1)/2
-	mR_tw_minus_1_half = mR_tw.subtract(FlexiBigInt.ONE);
-	mR_tw_minus_1_half = mR_tw_minus_1_half.shiftRight(1);
-
-	// compute the length of the seed in bytes: bitlenghtR + 1 bits
-	mSeedLength = (bitLengthR + 1) >> 3;
-
-	// initialize mGArray with multiples of mG
-	mPoint = new PointGFP(mG);
-	mGArray = new PointGFP[bitLengthR];
-	for (int kk = 0; kk < bitLengthR; kk++) {
-	    mGArray[kk] = new PointGFP(mPoint);
-	    mPoint.multiplyThisBy2();
-	}
-
-	mPoint = new PointGFP(mG_tw);
-	mG_twArray = new PointGFP[bitLengthR_tw];
-	for (int kk = 0; kk < bitLengthR_tw; kk++) {
-	    mG_twArray[kk] = new PointGFP(mPoint);
-	    mPoint.multiplyThisBy2();
+    private static synchronized Params getParams()
+	    throws InvalidPointException {
+	if (params == null) {
+	    params = new Params();
 	}
-    } // end of constructor ECPRNG()
+	return params;
+    }
 
     /**
      * Generate a seed of the given length.
@@ -217,11 +198,10 @@ public class ECPRNG extends SecureRandom {
 	}
 	java.security.SecureRandom sr = new java.security.SecureRandom();
 	return sr.generateSeed(numBytes);
-//	return this.generateSeed(numBytes);
     }
 
     /**
-     * Sets the seed to the given argument.
+     * Sets the seed to the given argument. Buffered output is discarded.
      * 
      * @param seed -
      *                the seed
@@ -249,11 +229,20 @@ public class ECPRNG extends SecureRandom {
 
 	// set the seed
 	if (!mIsSeeded) {
-	    initializeS(generateSeed(mSeedLength));
+	    initializeS(generateSeed(mParams.mSeedLength));
 	}
 
-	for (int i = 0; i < length; i++) {
-	    randomBytes[i] = phi();
+	for (int i = 0; i < length;) {
+	    if (mBufPos == BUFFER_SIZE) {
+		for (int j = 0; j < BUFFER_SIZE; j++) {
+		    mBuffer[j] = phi();
+		}
+		mBufPos = 0;
+	    }
+	    int n = Math.min(BUFFER_SIZE - mBufPos, length - i);
+	    System.arraycopy(mBuffer, mBufPos, randomBytes, i, n);
+	    mBufPos += n;
+	    i += n;
 	}
 
 	// to ensure that a new seed is set before computing the next bytes
@@ -266,8 +255,11 @@ public class ECPRNG extends SecureRandom {
     private void initializeS(byte[] seed) {
 	mS = new FlexiBigInt(seed);
 
+	// discard the output of the previous state
+	mBufPos = BUFFER_SIZE;
+
 	// set tmp = 2*mP + 2
-	tmp = new FlexiBigInt(mP.toString());
+	FlexiBigInt tmp = new FlexiBigInt(mParams.mP.toString());
 	tmp.shiftLeft(1);
 	tmp = tmp.add(FlexiBigInt.ONE);
 	tmp = tmp.add(FlexiBigInt.ONE);
@@ -285,105 +277,99 @@ public class ECPRNG extends SecureRandom {
 
     // the function computeB() computes the byte B corresponding
     // to the current state mS as explained in the paper
-    private byte computeB(FlexiBigInt s, FlexiBigInt r,
+    private static byte computeB(FlexiBigInt s, FlexiBigInt r,
 	    FlexiBigInt r_minus_1_half) {
 
 	// initialize tmp with the current state mS = s
-	tmp = new FlexiBigInt(s.toString());
-	// mLocalByte stores the result; initialized with 0
-	mLocalByte = 0;
-	// mBitmask stores the current bit to set
-	mBitmask = 1;
+	FlexiBigInt tmp = s;
+	// localByte stores the result; initialized with 0
+	byte localByte = 0;
+	// bitmask stores the current bit to set
+	byte bitmask = 1;
 
 	for (int i = 0; i < 8; i++) {
 	    // set the current bit
 	    if ((tmp.compareTo(r_minus_1_half)) == 1) {
-		mLocalByte |= mBitmask;
+		localByte |= bitmask;
 	    }
 
 	    // update tmp: tmp <-- 2*tmp mod r
 	    tmp = tmp.shiftLeft(1);
 	    tmp = tmp.remainder(r);
-	    // update mBitmask: mBitmask <-- 2*mBitmask
-	    mBitmask <<= 1;
+	    // update bitmask: bitmask <-- 2*bitmask
+	    bitmask <<= 1;
 	} // end of for-loop
 
-	return mLocalByte;
+	return localByte;
     } // end of private method computeB
 
     // the function phi() is explained in the paper
     private byte phi() {
-	if (mS.equals(FlexiBigInt.ZERO)) {
+	Params pa = mParams;
 
-	    // the current byte is equal to 0
-	    mCurrentByte = 0;
+	if (mS.equals(FlexiBigInt.ZERO)) {
 
-	    // The point mPoint is equal to O in E(\F_p)
+	    // The point mS * G is equal to O in E(\F_p)
 	    // The updated mS is equal to 2mP
-	    mS = mP.shiftLeft(1); // mS = 2*mP
+	    mS = pa.mP.shiftLeft(1); // mS = 2*mP
 
-	    return mCurrentByte;
+	    // the current byte is equal to 0
+	    return 0;
 	}
 
 	// mS is positive and smaller than mR
-	if ((mS.compareTo(mR)) == -1) {
+	if ((mS.compareTo(pa.mR)) == -1) {
 	    // compute the current byte
-	    mCurrentByte = computeB(mS, mR, mR_minus_1_half);
+	    byte currentByte = computeB(mS, pa.mR, pa.mR_minus_1_half);
 
-	    // set mPoint <-- mS * mG
-	    mPoint = (PointGFP) ScalarMult.eval_SquareMultiply(ScalarMult
-		    .determineNaf(mS, 4), mGArray);
+	    // compute mS * G (in affine coordinates)
+	    Point point = ScalarMult.eval_comb(mS, pa.bitLengthR, pa.mGTable);
 
-	    // get x- and y-coordinate of mPoint
-	    mX = mPoint.getXAffin().toFlexiBigInt();
-	    mY = mPoint.getYAffin().toFlexiBigInt();
+	    FlexiBigInt x = point.getX().toFlexiBigInt();
+	    FlexiBigInt y = point.getY().toFlexiBigInt();
 
-	    // initialize new state with 2*mX
-	    mS = mX.shiftLeft(1);
+	    // initialize new state with 2*x
+	    mS = x.shiftLeft(1);
 	    // if y-coordinate is at least (p-1)/2, set mS <-- mS + 1
-	    if ((mY.compareTo(mP_minus_1_half)) == 1) {
+	    if ((y.compareTo(pa.mP_minus_1_half)) == 1) {
 		mS = mS.add(FlexiBigInt.ONE);
 	    }
 
-	    return mCurrentByte;
+	    return currentByte;
 	}
 
 	// mS is equal to mR
-	if (mS.equals(mR)) {
+	if (mS.equals(pa.mR)) {
 
-	    // The current byte is the equal to 0
-	    mCurrentByte = 0;
-
-	    // The point mPoint is equal to O in E_tw(\F_p)
-	    mS = mP.shiftLeft(1); // mS = 2*mP + 1
+	    // The point is equal to O in E_tw(\F_p)
+	    mS = pa.mP.shiftLeft(1); // mS = 2*mP + 1
 	    mS.add(FlexiBigInt.ONE);
 
-	    return mCurrentByte;
+	    // The current byte is the equal to 0
+	    return 0;
 	}
-	// mS_minus_mR = mS - mR
-	mS_minus_mR = mS.subtract(mR);
+	FlexiBigInt s_minus_r = mS.subtract(pa.mR);
 
 	// compute the current byte
-	mCurrentByte = computeB(mS_minus_mR, mR_tw, mR_tw_minus_1_half);
+	byte currentByte = computeB(s_minus_r, pa.mR_tw, pa.mR_tw_minus_1_half);
 
-	// mPoint <-- (mS-mR) * mG_tw
-	mPoint = (PointGFP) ScalarMult.eval_SquareMultiply(ScalarMult
-		.determineNaf(mS_minus_mR, 4), mG_twArray);
+	// compute (mS-mR) * G_tw (in affine coordinates)
+	Point point = ScalarMult.eval_comb(s_minus_r, pa.bitLengthR_tw,
+		pa.mG_twTable);
 
-	// get x- and y-coordinate of mPoint
-	mX = mPoint.getXAffin().toFlexiBigInt();
-	mY = mPoint.getYAffin().toFlexiBigInt();
+	FlexiBigInt x = point.getX().toFlexiBigInt();
+	FlexiBigInt y = point.getY().toFlexiBigInt();
 
-	// mS = 2 * ( mX / mGamma mod mP )
-	mS = mX.multiply(mGammaInverse);
-	mS = mS.remainder(mP);
+	// mS = 2 * ( x / gamma mod mP )
+	mS = x.multiply(pa.mGammaInverse);
+	mS = mS.remainder(pa.mP);
 	mS = mS.shiftLeft(1);
 	// if y-coordinate is at least (p-1)/2, increase mS by 1
-	if ((mY.compareTo(mP_minus_1_half)) == 1) {
+	if ((y.compareTo(pa.mP_minus_1_half)) == 1) {
 	    mS = mS.add(FlexiBigInt.ONE);
 	}
 
-	return mCurrentByte;
+	return currentByte;
     } // end of method phi()
 
 }
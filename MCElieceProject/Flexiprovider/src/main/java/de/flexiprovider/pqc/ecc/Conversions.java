@@ -1,7 +1,6 @@
 package de.flexiprovider.pqc.ecc;
 
 import de.flexiprovider.common.math.FlexiBigInt;
-import de.flexiprovider.common.math.IntegerFunctions;
 import de.flexiprovider.common.math.linearalgebra.GF2Vector;
 import de.flexiprovider.common.util.FlexiBigIntUtils;
 
@@ -38,7 +37,7 @@ public final class Conversions {
 	}
 
 	// compute the binomial c = (n|t)
-	FlexiBigInt c = IntegerFunctions.binomial(n, t);
+	FlexiBigInt c = ECCParameterCache.getBinomial(n, t);
 	// get the number encoded in m
 	FlexiBigInt i = new FlexiBigInt(1, m);
 	// compare
@@ -90,7 +89,7 @@ public final class Conversions {
 	}
 	int[] vecArray = vec.getVecArray();
 
-	FlexiBigInt bc = IntegerFunctions.binomial(n, t);
+	FlexiBigInt bc = ECCParameterCache.getBinomial(n, t);
 	FlexiBigInt d = FlexiBigInt.ZERO;
 	int nn = n;
 	int tt = t;
@@ -136,7 +135,7 @@ public final class Conversions {
 	    throw new IllegalArgumentException("n < t");
 	}
 
-	FlexiBigInt bc = IntegerFunctions.binomial(n, t);
+	FlexiBigInt bc = ECCParameterCache.getBinomial(n, t);
 	// finds s = floor[log(binomial(n,t))]
 	int s = bc.bitLength() - 1;
 	// s = sq*8 + sr;
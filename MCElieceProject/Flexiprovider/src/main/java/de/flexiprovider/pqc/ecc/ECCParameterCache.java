@@ -0,0 +1,157 @@
+package de.flexiprovider.pqc.ecc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import de.flexiprovider.common.math.FlexiBigInt;
+import de.flexiprovider.common.math.IntegerFunctions;
+import de.flexiprovider.common.math.codingtheory.GF2mField;
+import de.flexiprovider.common.util.LittleEndianConversions;
+
+/**
+ * This class provides a process-wide cache for the precomputations that only
+ * depend on the parameter set of a code-based cryptosystem and can therefore
+ * be shared by all keys using the same parameters:
+ * <ul>
+ * <li>the finite fields <tt>GF(2<sup>m</sup>)</tt>, keyed by <tt>m</tt> and
+ * the field polynomial (constructing a field checks the irreducibility of the
+ * field polynomial), and</li>
+ * <li>the binomial coefficients <tt>(n|t)</tt> used by the CCA2-secure
+ * conversions, keyed by <tt>(n, t)</tt>.</li>
+ * </ul>
+ * All cached objects are immutable. The cache is thread-safe. Each of the two
+ * tables holds at most a fixed number of entries; when a table is full, its
+ * least recently used entry is evicted.
+ * <p>
+ * The squaring and square root matrices of the polynomial ring
+ * <tt>GF(2<sup>m</sup>)[X]/g(X)</tt> are not cached here since they depend
+ * on the secret Goppa polynomial <tt>g(X)</tt> of each key.
+ */
+public final class ECCParameterCache {
+
+    /**
+     * The maximal number of cached fields
+     */
+    public static final int MAX_FIELDS = 16;
+
+    /**
+     * The maximal number of cached binomial coefficients
+     */
+    public static final int MAX_BINOMIALS = 64;
+
+    // the cached fields in access order (key: field polynomial)
+    private static final LinkedHashMap fields = new LinkedHashMap(16, 0.75f,
+	    true);
+
+    // the cached binomial coefficients in access order (key: (n, t))
+    private static final LinkedHashMap binomials = new LinkedHashMap(16,
+	    0.75f, true);
+
+    /**
+     * Default constructor (private).
+     */
+    private ECCParameterCache() {
+	// empty
+    }
+
+    /**
+     * Return the finite field <tt>GF(2<sup>m</sup>)</tt> defined by the given
+     * field polynomial.
+     * 
+     * @param m
+     *                the degree of the field
+     * @param poly
+     *                the field polynomial
+     * @return the (shared) finite field
+     * @throws IllegalArgumentException
+     *                 if the degree of the field polynomial is not <tt>m</tt>
+     *                 or if the polynomial is reducible.
+     */
+    public static GF2mField getField(int m, int poly) {
+	Integer key = Integer.valueOf(poly);
+	GF2mField field = (GF2mField) get(fields, key);
+	if (field == null) {
+	    field = new GF2mField(m, poly);
+	    put(fields, key, field, MAX_FIELDS);
+	} else if (field.getDegree() != m) {
+	    throw new IllegalArgumentException(
+		    " Error: the degree is not correct");
+	}
+	return field;
+    }
+
+    /**
+     * Return the finite field defined by the given encoded field (see
+     * {@link GF2mField#getEncoded()}).
+     * 
+     * @param encField
+     *                the encoded field
+     * @return the (shared) finite field
+     * @throws IllegalArgumentException
+     *                 if the byte array is not an encoded finite field.
+     */
+    public static GF2mField getField(byte[] encField) {
+	if (encField.length != 4) {
+	    throw new IllegalArgumentException(
+		    "byte array is not an encoded finite field");
+	}
+	Integer key = Integer.valueOf(LittleEndianConversions.OS2IP(encField));
+	GF2mField field = (GF2mField) get(fields, key);
+	if (field == null) {
+	    field = new GF2mField(encField);
+	    put(fields, key, field, MAX_FIELDS);
+	}
+	return field;
+    }
+
+    /**
+     * Return the binomial coefficient <tt>(n|t)</tt>.
+     * 
+     * @param n
+     *                the "upper" integer
+     * @param t
+     *                the "lower" integer
+     * @return the (shared) binomial coefficient
+     */
+    public static FlexiBigInt getBinomial(int n, int t) {
+	Long key = Long.valueOf(((long) n << 32) | (t & 0xffffffffL));
+	FlexiBigInt binomial = (FlexiBigInt) get(binomials, key);
+	if (binomial == null) {
+	    binomial = IntegerFunctions.binomial(n, t);
+	    put(binomials, key, binomial, MAX_BINOMIALS);
+	}
+	return binomial;
+    }
+
+    /**
+     * Remove all cached objects.
+     */
+    public static synchronized void clear() {
+	fields.clear();
+	binomials.clear();
+    }
+
+    /**
+     * Look up a cached object (and mark it as recently used).
+     */
+    private static synchronized Object get(LinkedHashMap table, Object key) {
+	return table.get(key);
+    }
+
+    /**
+     * Cache an object, evicting the least recently used entries if the table
+     * would exceed the given size. The object is computed outside the lock,
+     * so another thread may have cached an equal object in the meantime; it
+     * is simply replaced.
+     */
+    private static synchronized void put(LinkedHashMap table, Object key,
+	    Object value, int maxSize) {
+	table.put(key, value);
+	Iterator it = table.keySet().iterator();
+	while (table.size() > maxSize && it.hasNext()) {
+	    it.next();
+	    it.remove();
+	}
+    }
+
+}
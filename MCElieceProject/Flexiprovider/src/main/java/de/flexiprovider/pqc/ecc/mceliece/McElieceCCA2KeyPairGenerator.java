@@ -15,6 +15,7 @@ import de.flexiprovider.common.math.codingtheory.GoppaCode.MaMaPe;
 import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
 import de.flexiprovider.common.math.linearalgebra.Permutation;
 import de.flexiprovider.pqc.ecc.ECCKeyGenParameterSpec;
+import de.flexiprovider.pqc.ecc.ECCParameterCache;
 
 /**
  * This class implements key pair generation of the McEliece Public Key
@@ -165,19 +166,31 @@ public class McElieceCCA2KeyPairGenerator extends KeyPairGenerator {
 	    initializeDefault();
 	}
 
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	// finite field GF(2^m)
-	GF2mField field = new GF2mField(m, fieldPoly);
+	GF2mField field = ECCParameterCache.getField(m, fieldPoly);
 
 	// irreducible Goppa polynomial
 	PolynomialGF2mSmallM gp = new PolynomialGF2mSmallM(field, t,
 		PolynomialGF2mSmallM.RANDOM_IRREDUCIBLE_POLYNOMIAL, random);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_GOPPA_POLYNOMIAL, time);
 	PolynomialRingGF2m ring = new PolynomialRingGF2m(field, gp);
 
 	// matrix for computing square roots in (GF(2^m))^t
 	PolynomialGF2mSmallM[] qInv = ring.getSquareRootMatrix();
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_SQUARE_ROOT_MATRIX, time);
 
 	// generate canonical check matrix
 	GF2Matrix h = GoppaCode.createCanonicalCheckMatrix(field, gp);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_CHECK_MATRIX, time);
 
 	// compute short systematic form of check matrix
 	MaMaPe mmp = GoppaCode.computeSystematicForm(h, random);
@@ -189,6 +202,9 @@ public class McElieceCCA2KeyPairGenerator extends KeyPairGenerator {
 
 	// obtain number of rows of G (= dimension of the code)
 	int k = shortG.getNumRows();
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_SYSTEMATIC_FORM, time);
 
 	// generate keys
 	McElieceCCA2PublicKey pubKey = new McElieceCCA2PublicKey(n, t, shortG);
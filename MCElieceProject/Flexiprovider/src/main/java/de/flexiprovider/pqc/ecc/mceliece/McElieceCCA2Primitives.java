@@ -36,9 +36,16 @@ public final class McElieceCCA2Primitives {
     public static GF2Vector encryptionPrimitive(McElieceCCA2PublicKey pubKey,
 	    GF2Vector m, GF2Vector z) {
 
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	GF2Matrix matrixG = pubKey.getG();
 	Vector mG = matrixG.leftMultiplyLeftCompactForm(m);
-	return (GF2Vector) mG.add(z);
+	GF2Vector result = (GF2Vector) mG.add(z);
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_MULTIPLY, time);
+
+	return result;
     }
 
     /**
@@ -53,6 +60,9 @@ public final class McElieceCCA2Primitives {
     public static GF2Vector[] decryptionPrimitive(
 	    McElieceCCA2PrivateKey privKey, GF2Vector c) {
 
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	// obtain values from private key
 	int k = privKey.getK();
 	Permutation p = privKey.getP();
@@ -66,12 +76,31 @@ public final class McElieceCCA2Primitives {
 
 	// multiply c with permutation P^-1
 	GF2Vector cPInv = (GF2Vector) c.multiply(pInv);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_PERMUTATION, time);
 
 	// compute syndrome of cP^-1
 	GF2Vector syndVec = (GF2Vector) h.rightMultiply(cPInv);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_SYNDROME, time);
 
 	// decode syndrome
-	GF2Vector errors = GoppaCode.syndromeDecode(syndVec, field, gp, q);
+	GF2Vector errors;
+	if (syndVec.isZero()) {
+	    errors = new GF2Vector(1 << field.getDegree());
+	} else {
+	    PolynomialGF2mSmallM elp = GoppaCode.computeErrorLocatorPolynomial(
+		    syndVec, field, gp, q);
+	    time = McElieceInstrumentation.phase(l,
+		    McElieceInstrumentation.OP_DECRYPT,
+		    McElieceInstrumentation.PHASE_DECODE, time);
+	    errors = GoppaCode.findErrorPositions(elp, field);
+	    time = McElieceInstrumentation.phase(l,
+		    McElieceInstrumentation.OP_DECRYPT,
+		    McElieceInstrumentation.PHASE_ROOT_FINDING, time);
+	}
 	GF2Vector mG = (GF2Vector) cPInv.add(errors);
 
 	// multiply codeword and error vector with P
@@ -80,6 +109,8 @@ public final class McElieceCCA2Primitives {
 
 	// extract plaintext vector (last k columns of mG)
 	GF2Vector m = mG.extractRightVector(k);
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_UNSCRAMBLE, time);
 
 	// return vectors
 	return new GF2Vector[] { m, errors };
@@ -5,6 +5,7 @@ import de.flexiprovider.common.math.codingtheory.GF2mField;
 import de.flexiprovider.common.math.codingtheory.PolynomialGF2mSmallM;
 import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
 import de.flexiprovider.common.math.linearalgebra.Permutation;
+import de.flexiprovider.pqc.ecc.ECCParameterCache;
 
 /**
  * This class provides a specification for a McEliece CCA2 private key.
@@ -91,7 +92,7 @@ public class McElieceCCA2PrivateKeySpec implements KeySpec {
 	    byte[] encGoppaPoly, byte[] encP, byte[] encH, byte[][] encQInv) {
 	this.n = n;
 	this.k = k;
-	field = new GF2mField(encFieldPoly);
+	field = ECCParameterCache.getField(encFieldPoly);
 	goppaPoly = new PolynomialGF2mSmallM(field, encGoppaPoly);
 	p = new Permutation(encP);
 	h = new GF2Matrix(encH);
@@ -0,0 +1,62 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import de.flexiprovider.api.exceptions.InvalidParameterException;
+
+/**
+ * This class provides a specification for the parameters of the
+ * {@link McElieceCFSSignature}: the name of the hash function and the number of
+ * threads used to search for a decodable syndrome during signing.
+ * 
+ * @see McElieceCFSSignature
+ */
+public class McElieceCFSParameterSpec extends McElieceCCA2ParameterSpec {
+
+    private int numThreads;
+
+    /**
+     * Construct the default parameters: use the default hash function
+     * ({@link McElieceCCA2ParameterSpec#DEFAULT_MD}) and as many threads as
+     * processors are available.
+     */
+    public McElieceCFSParameterSpec() {
+	this(DEFAULT_MD);
+    }
+
+    /**
+     * Construct parameters using the given hash function and as many threads
+     * as processors are available.
+     * 
+     * @param mdName
+     *                the name of the hash function
+     */
+    public McElieceCFSParameterSpec(String mdName) {
+	this(mdName, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param mdName
+     *                the name of the hash function
+     * @param numThreads
+     *                the number of threads used for signing
+     * @throws InvalidParameterException
+     *                 if <tt>numThreads &lt; 1</tt>.
+     */
+    public McElieceCFSParameterSpec(String mdName, int numThreads) {
+	super(mdName);
+	if (numThreads < 1) {
+	    throw new InvalidParameterException(
+		    "number of threads must be positive");
+	}
+	this.numThreads = numThreads;
+    }
+
+    /**
+     * @return the number of threads used for signing
+     */
+    public int getNumThreads() {
+	return numThreads;
+    }
+
+}
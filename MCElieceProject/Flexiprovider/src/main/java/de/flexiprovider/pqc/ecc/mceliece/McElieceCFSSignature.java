@@ -0,0 +1,519 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import de.flexiprovider.api.MessageDigest;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.SecureRandom;
+import de.flexiprovider.api.Signature;
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.exceptions.NoSuchAlgorithmException;
+import de.flexiprovider.api.exceptions.SignatureException;
+import de.flexiprovider.api.keys.PrivateKey;
+import de.flexiprovider.api.keys.PublicKey;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+import de.flexiprovider.common.math.IntegerFunctions;
+import de.flexiprovider.common.math.codingtheory.GF2mField;
+import de.flexiprovider.common.math.codingtheory.GoppaCode;
+import de.flexiprovider.common.math.codingtheory.PolynomialGF2mSmallM;
+import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
+import de.flexiprovider.common.math.linearalgebra.GF2Vector;
+import de.flexiprovider.common.math.linearalgebra.Permutation;
+import de.flexiprovider.common.util.BigEndianConversions;
+import de.flexiprovider.common.util.LittleEndianConversions;
+
+/**
+ * This class implements the Courtois-Finiasz-Sendrier (CFS) signature scheme
+ * based on the Niederreiter variant of the McEliece PKCS. It was described in
+ * N. Courtois, M. Finiasz, N. Sendrier, "How to achieve a McEliece-based
+ * Digital Signature Scheme", ASIACRYPT 2001.
+ * <p>
+ * The scheme uses McEliece CCA2 keys as generated by the
+ * {@link McElieceCCA2KeyPairGenerator}. The public generator matrix
+ * <tt>G = (Q|Id)</tt> defines the public check matrix
+ * <tt>H = (Id|Q<sup>T</sup>)</tt> of dimension <tt>mt x n</tt>.
+ * <p>
+ * To sign a message <tt>M</tt>, the signer computes the syndromes
+ * <tt>s<sub>i</sub> = h(h(M)||i)</tt> (truncated to <tt>mt</tt> bits) for
+ * <tt>i = 0, 1, 2, ...</tt> until one of them can be decoded to an error
+ * vector <tt>e</tt> of weight <tt>t</tt> with <tt>H*e = s<sub>i</sub></tt>.
+ * Only about one syndrome out of <tt>t!</tt> is decodable, so the attempts
+ * are distributed over several threads (see {@link McElieceCFSParameterSpec}),
+ * which stop as soon as one of them succeeds. Whether a syndrome is decodable
+ * is determined from its error locator polynomial <tt>sigma</tt> by checking
+ * <tt>X<sup>2<sup>m</sup></sup> = X mod sigma</tt>, which avoids the
+ * exhaustive root search for all failed attempts.
+ * <p>
+ * The signature consists of the counter <tt>i</tt> (4 bytes) followed by the
+ * <tt>t</tt> error positions in ascending order (each encoded using
+ * <tt>ceil(log<sub>256</sub> n)</tt> bytes, big endian). Verification only
+ * adds <tt>t</tt> columns of <tt>H</tt> and compares the result with
+ * <tt>s<sub>i</sub></tt>.
+ * <p>
+ * Since signing needs about <tt>t!</tt> decoding attempts, the scheme is only
+ * practical for small <tt>t</tt> (e.g., <tt>m = 16</tt>, <tt>t = 9</tt>), so
+ * the key pair generator has to be initialized accordingly.
+ * 
+ * @see McElieceCFSParameterSpec
+ * @see McElieceCCA2KeyPairGenerator
+ */
+public class McElieceCFSSignature extends Signature {
+
+    /**
+     * The OID of the algorithm.
+     */
+    public static final String OID = McElieceCCA2KeyFactory.OID + ".4";
+
+    // the public key
+    private McElieceCCA2PublicKey pubKey;
+
+    // the private key
+    private McElieceCCA2PrivateKey privKey;
+
+    // the inverse of the secret permutation
+    private Permutation pInv;
+
+    // the message digest used to hash the message
+    private MessageDigest md;
+
+    // the name of the message digest
+    private String mdName;
+
+    // the number of threads used for signing
+    private int numThreads;
+
+    // the length of the code
+    private int n;
+
+    // the error correction capability
+    private int t;
+
+    // the number of rows of the check matrix (mt)
+    private int synLen;
+
+    // the length of an encoded error position in bytes
+    private int posLen;
+
+    /**
+     * Constructor. Use the default parameters.
+     */
+    public McElieceCFSSignature() {
+	setParams(new McElieceCFSParameterSpec());
+    }
+
+    /**
+     * Initialize the signature algorithm for signing a message.
+     * 
+     * @param key
+     *                the private key of the signer
+     * @param random
+     *                the source of randomness (not used)
+     * @throws InvalidKeyException
+     *                 if the key is not an instance of
+     *                 {@link McElieceCCA2PrivateKey}.
+     */
+    public void initSign(PrivateKey key, SecureRandom random)
+	    throws InvalidKeyException {
+	if (!(key instanceof McElieceCCA2PrivateKey)) {
+	    throw new InvalidKeyException("unsupported type");
+	}
+	privKey = (McElieceCCA2PrivateKey) key;
+	pubKey = null;
+
+	pInv = privKey.getP().computeInverse();
+	n = privKey.getN();
+	t = privKey.getT();
+	synLen = n - privKey.getK();
+	posLen = IntegerFunctions.ceilLog256(n - 1);
+
+	md.reset();
+    }
+
+    /**
+     * Initialize the signature algorithm for verifying a signature.
+     * 
+     * @param key
+     *                the public key of the signer
+     * @throws InvalidKeyException
+     *                 if the key is not an instance of
+     *                 {@link McElieceCCA2PublicKey}.
+     */
+    public void initVerify(PublicKey key) throws InvalidKeyException {
+	if (!(key instanceof McElieceCCA2PublicKey)) {
+	    throw new InvalidKeyException("unsupported type");
+	}
+	pubKey = (McElieceCCA2PublicKey) key;
+	privKey = null;
+	pInv = null;
+
+	n = pubKey.getN();
+	t = pubKey.getT();
+	synLen = n - pubKey.getK();
+	posLen = IntegerFunctions.ceilLog256(n - 1);
+
+	md.reset();
+    }
+
+    /**
+     * Set the parameters (hash function and number of threads).
+     * 
+     * @param params
+     *                the parameters (an instance of
+     *                {@link McElieceCFSParameterSpec} or
+     *                {@link McElieceCCA2ParameterSpec})
+     * @throws InvalidAlgorithmParameterException
+     *                 if the parameters are of an unsupported type.
+     */
+    public void setParameters(AlgorithmParameterSpec params)
+	    throws InvalidAlgorithmParameterException {
+	if (params == null) {
+	    params = new McElieceCFSParameterSpec();
+	}
+	if (params instanceof McElieceCFSParameterSpec) {
+	    setParams((McElieceCFSParameterSpec) params);
+	} else if (params instanceof McElieceCCA2ParameterSpec) {
+	    setParams(new McElieceCFSParameterSpec(
+		    ((McElieceCCA2ParameterSpec) params).getMDName()));
+	} else {
+	    throw new InvalidAlgorithmParameterException("unsupported type");
+	}
+    }
+
+    private void setParams(McElieceCFSParameterSpec params) {
+	mdName = params.getMDName();
+	numThreads = params.getNumThreads();
+	md = newDigest();
+    }
+
+    /**
+     * Feed a message byte to the message digest.
+     * 
+     * @param input
+     *                the message byte
+     */
+    public void update(byte input) {
+	md.update(input);
+    }
+
+    /**
+     * Feed message bytes to the message digest.
+     * 
+     * @param input
+     *                the array of message bytes
+     * @param inOff
+     *                index of message start
+     * @param inLen
+     *                number of message bytes
+     */
+    public void update(byte[] input, int inOff, int inLen) {
+	md.update(input, inOff, inLen);
+    }
+
+    /**
+     * Sign a message.
+     * 
+     * @return the signature
+     * @throws SignatureException
+     *                 if the signature has not been initialized for signing
+     *                 or no decodable syndrome could be found.
+     */
+    public byte[] sign() throws SignatureException {
+	if (privKey == null) {
+	    throw new SignatureException("not initialized for signing");
+	}
+
+	byte[] mHash = md.digest();
+	SearchState state = new SearchState();
+
+	if (numThreads == 1) {
+	    new DecodingWorker(mHash, 0, 1, state).run();
+	} else {
+	    Thread[] threads = new Thread[numThreads];
+	    for (int i = 0; i < numThreads; i++) {
+		threads[i] = new Thread(new DecodingWorker(mHash, i,
+			numThreads, state), "CFS-sign-" + i);
+		threads[i].start();
+	    }
+	    try {
+		for (int i = 0; i < numThreads; i++) {
+		    threads[i].join();
+		}
+	    } catch (InterruptedException ie) {
+		state.finish(-1, null, null);
+		Thread.currentThread().interrupt();
+		throw new SignatureException("interrupted");
+	    }
+	}
+
+	if (state.error != null) {
+	    throw new SignatureException("decoding failed: "
+		    + state.error.getMessage());
+	}
+	if (state.positions == null) {
+	    throw new SignatureException("no decodable syndrome found");
+	}
+
+	// encode the signature (counter||positions)
+	byte[] result = new byte[4 + t * posLen];
+	BigEndianConversions.I2OSP(state.counter, result, 0);
+	for (int i = 0; i < t; i++) {
+	    BigEndianConversions.I2OSP(state.positions[i], result, 4 + i
+		    * posLen, posLen);
+	}
+	return result;
+    }
+
+    /**
+     * Verify a signature.
+     * 
+     * @param signature
+     *                the signature to be verified
+     * @return <tt>true</tt> if the signature is valid, <tt>false</tt>
+     *         otherwise
+     * @throws SignatureException
+     *                 if the signature has not been initialized for
+     *                 verification.
+     */
+    public boolean verify(byte[] signature) throws SignatureException {
+	if (pubKey == null) {
+	    throw new SignatureException("not initialized for verification");
+	}
+
+	byte[] mHash = md.digest();
+
+	if (signature.length != 4 + t * posLen) {
+	    return false;
+	}
+	int counter = BigEndianConversions.OS2IP(signature, 0);
+	if (counter < 0) {
+	    return false;
+	}
+
+	// compute H*e as the sum of the columns of H = (Id|Q^T) indexed by the
+	// error positions (the columns of Q^T are the rows of Q)
+	GF2Matrix q = pubKey.getG();
+	int[] hE = new int[(synLen + 31) >> 5];
+	int lastPos = -1;
+	for (int i = 0; i < t; i++) {
+	    int pos = BigEndianConversions.OS2IP(signature, 4 + i * posLen,
+		    posLen);
+	    // positions have to be in ascending order
+	    if (pos <= lastPos || pos >= n) {
+		return false;
+	    }
+	    lastPos = pos;
+
+	    if (pos < synLen) {
+		hE[pos >> 5] ^= 1 << (pos & 0x1f);
+	    } else {
+		int[] column = q.getRow(pos - synLen);
+		for (int j = hE.length - 1; j >= 0; j--) {
+		    hE[j] ^= column[j];
+		}
+	    }
+	}
+
+	int[] syndrome = computeSyndrome(md, mHash, counter, synLen);
+	for (int j = hE.length - 1; j >= 0; j--) {
+	    if (hE[j] != syndrome[j]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Compute the syndrome <tt>s<sub>i</sub></tt> as the first
+     * <tt>synLen</tt> bits of <tt>h(h(M)||i||0)||h(h(M)||i||1)||...</tt>.
+     * 
+     * @param md
+     *                the message digest
+     * @param mHash
+     *                the hash value <tt>h(M)</tt> of the message
+     * @param counter
+     *                the counter <tt>i</tt>
+     * @param synLen
+     *                the length of the syndrome in bits
+     * @return the syndrome as int array (little endian bit order)
+     */
+    private static int[] computeSyndrome(MessageDigest md, byte[] mHash,
+	    int counter, int synLen) {
+	int byteLen = (synLen + 7) >> 3;
+	byte[] synBytes = new byte[byteLen];
+	byte[] counterBytes = BigEndianConversions.I2OSP(counter);
+	int mdLen = md.getDigestLength();
+	for (int off = 0, block = 0; off < byteLen; off += mdLen, block++) {
+	    md.update(mHash);
+	    md.update(counterBytes);
+	    md.update((byte) block);
+	    byte[] digest = md.digest();
+	    System.arraycopy(digest, 0, synBytes, off, Math.min(mdLen, byteLen
+		    - off));
+	}
+
+	int[] result = LittleEndianConversions.toIntArray(synBytes);
+	int words = (synLen + 31) >> 5;
+	if (result.length != words) {
+	    int[] help = new int[words];
+	    System.arraycopy(result, 0, help, 0, Math.min(words,
+		    result.length));
+	    result = help;
+	}
+	int r = synLen & 0x1f;
+	if (r != 0) {
+	    result[words - 1] &= (1 << r) - 1;
+	}
+	return result;
+    }
+
+    private MessageDigest newDigest() {
+	try {
+	    return Registry.getMessageDigest(mdName);
+	} catch (NoSuchAlgorithmException nsae) {
+	    // the McElieceCCA2ParameterSpec constructor checks whether the
+	    // message digest is available. So if it is not available here, this
+	    // is an internal error.
+	    throw new RuntimeException("internal error");
+	}
+    }
+
+    /**
+     * Shared state of the decoding workers of one signing operation.
+     */
+    private static class SearchState {
+
+	// flag indicating whether the search is finished
+	volatile boolean found;
+
+	// the counter of the decodable syndrome
+	int counter;
+
+	// the sorted error positions
+	int[] positions;
+
+	// the exception thrown by a worker, if any
+	RuntimeException error;
+
+	/**
+	 * Record the result of the search (only the first call has an
+	 * effect).
+	 */
+	synchronized void finish(int counter, int[] positions,
+		RuntimeException error) {
+	    if (found) {
+		return;
+	    }
+	    this.counter = counter;
+	    this.positions = positions;
+	    this.error = error;
+	    found = true;
+	}
+
+    }
+
+    /**
+     * Worker trying to decode the syndromes <tt>s<sub>i</sub></tt> for
+     * <tt>i = first, first + step, first + 2*step, ...</tt> until a decodable
+     * syndrome is found by any worker.
+     */
+    private class DecodingWorker implements Runnable {
+
+	private byte[] mHash;
+
+	private int first, step;
+
+	private SearchState state;
+
+	DecodingWorker(byte[] mHash, int first, int step, SearchState state) {
+	    this.mHash = mHash;
+	    this.first = first;
+	    this.step = step;
+	    this.state = state;
+	}
+
+	public void run() {
+	    try {
+		search();
+	    } catch (RuntimeException re) {
+		state.finish(-1, null, re);
+	    }
+	}
+
+	private void search() {
+	    // each worker uses its own message digest
+	    MessageDigest wmd = step == 1 ? md : newDigest();
+
+	    GF2mField field = privKey.getField();
+	    PolynomialGF2mSmallM gp = privKey.getGoppaPoly();
+	    PolynomialGF2mSmallM[] qInv = privKey.getQInv();
+	    GF2Matrix h = privKey.getH();
+	    int[] pInvVec = pInv.getVector();
+	    int m = field.getDegree();
+	    PolynomialGF2mSmallM x = new PolynomialGF2mSmallM(field,
+		    new int[] { 0, 1 });
+	    int[] yArray = new int[(n + 31) >> 5];
+
+	    for (int i = first; i >= 0 && !state.found; i += step) {
+		// y = (s_i||0) satisfies H*y = s_i
+		int[] syndrome = computeSyndrome(wmd, mHash, i, synLen);
+		System.arraycopy(syndrome, 0, yArray, 0, syndrome.length);
+		GF2Vector y = new GF2Vector(n, yArray);
+
+		// compute the syndrome with respect to the secret code
+		GF2Vector yPInv = (GF2Vector) y.multiply(pInv);
+		GF2Vector secretSyndrome = (GF2Vector) h.rightMultiply(yPInv);
+		if (secretSyndrome.isZero()) {
+		    continue;
+		}
+
+		// compute the error locator polynomial
+		PolynomialGF2mSmallM elp = GoppaCode
+			.computeErrorLocatorPolynomial(secretSyndrome, field,
+				gp, qInv);
+		if (elp.getDegree() != t || !splits(elp, x, m)) {
+		    continue;
+		}
+
+		// the syndrome is decodable, find the error positions
+		GF2Vector errors = GoppaCode.findErrorPositions(elp, field);
+		if (errors.getHammingWeight() != t) {
+		    continue;
+		}
+		int[] positions = new int[t];
+		int[] e = errors.getVecArray();
+		for (int j = 0, ind = 0; j < n; j++) {
+		    if ((e[j >> 5] & (1 << (j & 0x1f))) != 0) {
+			// map the secret position to the public position
+			positions[ind++] = pInvVec[j];
+		    }
+		}
+		java.util.Arrays.sort(positions);
+		state.finish(i, positions, null);
+	    }
+	}
+
+    }
+
+    /**
+     * Check whether the given polynomial splits into distinct linear factors
+     * over <tt>GF(2<sup>m</sup>)</tt>, i.e., whether
+     * <tt>X<sup>2<sup>m</sup></sup> = X mod elp</tt>.
+     * 
+     * @param elp
+     *                the polynomial
+     * @param x
+     *                the polynomial <tt>X</tt>
+     * @param m
+     *                the extension degree of the field
+     * @return <tt>true</tt> if <tt>elp</tt> splits into distinct linear
+     *         factors
+     */
+    private static boolean splits(PolynomialGF2mSmallM elp,
+	    PolynomialGF2mSmallM x, int m) {
+	PolynomialGF2mSmallM power = x;
+	for (int i = 0; i < m; i++) {
+	    power = power.modMultiply(power, elp);
+	}
+	return power.equals(x);
+    }
+
+}
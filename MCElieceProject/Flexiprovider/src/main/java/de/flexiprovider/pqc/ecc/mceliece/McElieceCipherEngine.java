@@ -0,0 +1,245 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import java.util.LinkedList;
+
+import de.flexiprovider.api.Cipher;
+import de.flexiprovider.api.Registry;
+import de.flexiprovider.api.exceptions.BadPaddingException;
+import de.flexiprovider.api.exceptions.IllegalBlockSizeException;
+import de.flexiprovider.api.exceptions.InvalidAlgorithmParameterException;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.exceptions.NoSuchAlgorithmException;
+import de.flexiprovider.api.keys.Key;
+import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
+
+/**
+ * This class provides a thread-safe McEliece cipher bound to a single key. An
+ * instance can be shared by any number of threads, which call
+ * {@link #encrypt(byte[])} or {@link #decrypt(byte[])} without further
+ * initialization or synchronization.
+ * <p>
+ * The underlying McEliece ciphers ({@link McEliecePKCS},
+ * {@link McElieceFujisakiCipher}, {@link McEliecePointchevalCipher}, and
+ * {@link McElieceKobaraImaiCipher}) keep the message buffer, the message
+ * digest, and the source of randomness as mutable state. The engine therefore
+ * keeps a small pool of ciphers initialized with the bound key. Each call
+ * takes an idle cipher from the pool (or creates one if there is none) and
+ * returns it afterwards, so that at most as many ciphers as there are
+ * concurrent callers exist. At most one idle cipher per available processor is
+ * kept. Each cipher uses its own source of randomness obtained via
+ * {@link Registry#getSecureRandom()}.
+ * <p>
+ * The ciphers are only referenced by the engine, so they become unreachable
+ * together with it. {@link #close()} drops the idle ciphers immediately and
+ * disables the engine.
+ * <p>
+ * Usage example:
+ * 
+ * <pre>
+ * McElieceCipherEngine engine = new McElieceCipherEngine(
+ * 	&quot;McElieceKobaraImaiCipher&quot;, publicKey, null);
+ * // from any thread
+ * byte[] c = engine.encrypt(message);
+ * </pre>
+ */
+public final class McElieceCipherEngine {
+
+    private final String algName;
+
+    private final Key key;
+
+    private final AlgorithmParameterSpec params;
+
+    private final boolean encrypt;
+
+    // the maximal number of idle ciphers
+    private final int maxIdle = Runtime.getRuntime().availableProcessors();
+
+    // the idle ciphers
+    private final LinkedList idle = new LinkedList();
+
+    // whether the engine has been closed
+    private boolean closed;
+
+    /**
+     * Constructor. Public keys bind the engine to encryption, private keys to
+     * decryption.
+     * 
+     * @param algName
+     *                the name of the cipher ("McEliecePKCS",
+     *                "McElieceFujisakiCipher", "McEliecePointchevalCipher", or
+     *                "McElieceKobaraImaiCipher")
+     * @param key
+     *                the public key (for encryption) or the private key (for
+     *                decryption)
+     * @param params
+     *                the cipher parameters (may be <tt>null</tt>)
+     * @throws NoSuchAlgorithmException
+     *                 if the cipher name is unknown.
+     * @throws InvalidKeyException
+     *                 if the key is inappropriate for the cipher.
+     * @throws InvalidAlgorithmParameterException
+     *                 if the parameters are inappropriate for the cipher.
+     */
+    public McElieceCipherEngine(String algName, Key key,
+	    AlgorithmParameterSpec params) throws NoSuchAlgorithmException,
+	    InvalidKeyException, InvalidAlgorithmParameterException {
+	if (newCipher(algName) == null) {
+	    throw new NoSuchAlgorithmException("unknown McEliece cipher: "
+		    + algName);
+	}
+	if (key instanceof McEliecePublicKey
+		|| key instanceof McElieceCCA2PublicKey) {
+	    encrypt = true;
+	} else if (key instanceof McEliecePrivateKey
+		|| key instanceof McElieceCCA2PrivateKey) {
+	    encrypt = false;
+	} else {
+	    throw new InvalidKeyException("unsupported type");
+	}
+	this.algName = algName;
+	this.key = key;
+	this.params = params;
+
+	// check key and parameters and keep the cipher for the first call
+	idle.add(createCipher());
+    }
+
+    /**
+     * @return the name of the underlying cipher
+     */
+    public String getAlgorithm() {
+	return algName;
+    }
+
+    /**
+     * @return whether the engine is bound to encryption (<tt>true</tt>) or
+     *         decryption (<tt>false</tt>)
+     */
+    public boolean isEncrypting() {
+	return encrypt;
+    }
+
+    /**
+     * Encrypt a message.
+     * 
+     * @param input
+     *                the message
+     * @return the ciphertext
+     * @throws IllegalBlockSizeException
+     *                 if the message is too long.
+     * @throws IllegalStateException
+     *                 if the engine is bound to a private key or has been
+     *                 closed.
+     */
+    public byte[] encrypt(byte[] input) throws IllegalBlockSizeException {
+	if (!encrypt) {
+	    throw new IllegalStateException("engine bound to a private key");
+	}
+	Cipher cipher = takeCipher();
+	try {
+	    return cipher.doFinal(input);
+	} catch (BadPaddingException bpe) {
+	    // padding is only checked during decryption
+	    throw new RuntimeException("internal error");
+	} finally {
+	    returnCipher(cipher);
+	}
+    }
+
+    /**
+     * Decrypt a ciphertext.
+     * 
+     * @param input
+     *                the ciphertext
+     * @return the message
+     * @throws IllegalBlockSizeException
+     *                 if the ciphertext is too long.
+     * @throws BadPaddingException
+     *                 if the ciphertext is invalid.
+     * @throws IllegalStateException
+     *                 if the engine is bound to a public key or has been
+     *                 closed.
+     */
+    public byte[] decrypt(byte[] input) throws IllegalBlockSizeException,
+	    BadPaddingException {
+	if (encrypt) {
+	    throw new IllegalStateException("engine bound to a public key");
+	}
+	Cipher cipher = takeCipher();
+	try {
+	    return cipher.doFinal(input);
+	} finally {
+	    returnCipher(cipher);
+	}
+    }
+
+    /**
+     * Drop the idle ciphers and disable the engine. Calls which are in
+     * progress complete normally, later calls of {@link #encrypt(byte[])} and
+     * {@link #decrypt(byte[])} throw an {@link IllegalStateException}.
+     */
+    public void close() {
+	synchronized (idle) {
+	    closed = true;
+	    idle.clear();
+	}
+    }
+
+    private Cipher takeCipher() {
+	synchronized (idle) {
+	    if (closed) {
+		throw new IllegalStateException("engine closed");
+	    }
+	    if (!idle.isEmpty()) {
+		return (Cipher) idle.removeLast();
+	    }
+	}
+	try {
+	    return createCipher();
+	} catch (InvalidKeyException ike) {
+	    // the key has been checked by the constructor. So if it is not
+	    // accepted here, this is an internal error.
+	    throw new RuntimeException("internal error");
+	} catch (InvalidAlgorithmParameterException iape) {
+	    // the parameters have been checked by the constructor.
+	    throw new RuntimeException("internal error");
+	}
+    }
+
+    private void returnCipher(Cipher cipher) {
+	synchronized (idle) {
+	    if (!closed && idle.size() < maxIdle) {
+		idle.addLast(cipher);
+	    }
+	}
+    }
+
+    private Cipher createCipher() throws InvalidKeyException,
+	    InvalidAlgorithmParameterException {
+	Cipher cipher = newCipher(algName);
+	if (encrypt) {
+	    cipher.initEncrypt(key, params, Registry.getSecureRandom());
+	} else {
+	    cipher.initDecrypt(key, params);
+	}
+	return cipher;
+    }
+
+    private static Cipher newCipher(String algName) {
+	if ("McEliecePKCS".equals(algName)) {
+	    return new McEliecePKCS();
+	}
+	if ("McElieceFujisakiCipher".equals(algName)) {
+	    return new McElieceFujisakiCipher();
+	}
+	if ("McEliecePointchevalCipher".equals(algName)) {
+	    return new McEliecePointchevalCipher();
+	}
+	if ("McElieceKobaraImaiCipher".equals(algName)) {
+	    return new McElieceKobaraImaiCipher();
+	}
+	return null;
+    }
+
+}
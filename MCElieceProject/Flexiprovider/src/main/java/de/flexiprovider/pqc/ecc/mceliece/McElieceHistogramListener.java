@@ -0,0 +1,118 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import de.flexiprovider.common.util.LatencyHistogram;
+
+/**
+ * {@link McEliecePhaseListener} collecting one {@link LatencyHistogram} per
+ * operation and phase. The histograms can be exported in a plain text format
+ * suitable for scraping by monitoring systems:
+ * 
+ * <pre>
+ * McElieceHistogramListener histograms = new McElieceHistogramListener();
+ * McElieceInstrumentation.setListener(histograms);
+ * // ...
+ * String metrics = histograms.export();
+ * </pre>
+ * 
+ * The export contains one summary per operation and phase (the quantiles 0.5,
+ * 0.9, 0.99, 0.999 and 1, the count and the sum), for example:
+ * 
+ * <pre>
+ * mceliece_phase_nanos{operation=&quot;decrypt&quot;,phase=&quot;syndrome&quot;,quantile=&quot;0.99&quot;} 183295
+ * mceliece_phase_nanos_count{operation=&quot;decrypt&quot;,phase=&quot;syndrome&quot;} 1000
+ * mceliece_phase_nanos_sum{operation=&quot;decrypt&quot;,phase=&quot;syndrome&quot;} 151020733
+ * </pre>
+ */
+public class McElieceHistogramListener implements McEliecePhaseListener {
+
+    private static final String METRIC_NAME = "mceliece_phase_nanos";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999, 1 };
+
+    // the histograms, indexed by operation and phase
+    private LatencyHistogram[][] histograms;
+
+    /**
+     * Constructor.
+     */
+    public McElieceHistogramListener() {
+	histograms = new LatencyHistogram[McElieceInstrumentation.NUM_OPERATIONS][McElieceInstrumentation.NUM_PHASES];
+	for (int i = 0; i < histograms.length; i++) {
+	    for (int j = 0; j < histograms[i].length; j++) {
+		histograms[i][j] = new LatencyHistogram();
+	    }
+	}
+    }
+
+    /**
+     * Record the duration of a completed phase.
+     * 
+     * @param operation
+     *                the operation
+     * @param phase
+     *                the phase
+     * @param nanos
+     *                the duration of the phase in nanoseconds
+     */
+    public void phaseCompleted(int operation, int phase, long nanos) {
+	histograms[operation][phase].record(nanos);
+    }
+
+    /**
+     * Return the histogram of the given operation and phase.
+     * 
+     * @param operation
+     *                the operation
+     * @param phase
+     *                the phase
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(int operation, int phase) {
+	return histograms[operation][phase];
+    }
+
+    /**
+     * Remove all recorded values from all histograms.
+     */
+    public void reset() {
+	for (int i = 0; i < histograms.length; i++) {
+	    for (int j = 0; j < histograms[i].length; j++) {
+		histograms[i][j].reset();
+	    }
+	}
+    }
+
+    /**
+     * Export all non-empty histograms in plain text format.
+     * 
+     * @return the exported histograms
+     */
+    public String export() {
+	StringBuffer result = new StringBuffer();
+	for (int i = 0; i < histograms.length; i++) {
+	    for (int j = 0; j < histograms[i].length; j++) {
+		LatencyHistogram h = histograms[i][j];
+		if (h.getTotalCount() == 0) {
+		    continue;
+		}
+		String labels = "operation=\""
+			+ McElieceInstrumentation.getOperationName(i)
+			+ "\",phase=\"" + McElieceInstrumentation.getPhaseName(j)
+			+ "\"";
+		for (int q = 0; q < QUANTILES.length; q++) {
+		    result.append(METRIC_NAME).append('{').append(labels)
+			    .append(",quantile=\"").append(QUANTILES[q])
+			    .append("\"} ").append(
+				    h.getValueAtPercentile(QUANTILES[q] * 100))
+			    .append('\n');
+		}
+		result.append(METRIC_NAME).append("_count{").append(labels)
+			.append("} ").append(h.getTotalCount()).append('\n');
+		result.append(METRIC_NAME).append("_sum{").append(labels)
+			.append("} ").append(h.getSum()).append('\n');
+	    }
+	}
+	return result.toString();
+    }
+
+}
@@ -0,0 +1,237 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+/**
+ * Opt-in instrumentation of the McEliece key pair generators,
+ * {@link McEliecePKCS}, {@link McElieceCCA2Primitives} and
+ * {@link McElieceKobaraImaiCipher}. The instrumented code reads the registered
+ * {@link McEliecePhaseListener} once per operation and only measures phases if
+ * a listener is present:
+ * 
+ * <pre>
+ * McEliecePhaseListener l = McElieceInstrumentation.getListener();
+ * long time = McElieceInstrumentation.start(l);
+ * // ... phase 1 ...
+ * time = McElieceInstrumentation.phase(l, OP_DECRYPT, PHASE_SYNDROME, time);
+ * </pre>
+ * 
+ * Each phase is reported at most once per operation. With no listener
+ * registered, the overhead is one volatile read per operation and one null
+ * check per phase.
+ * 
+ * @see McEliecePhaseListener
+ * @see McElieceHistogramListener
+ */
+public final class McElieceInstrumentation {
+
+    /* operation constants */
+
+    /**
+     * Constant for key pair generation
+     */
+    public static final int OP_KEYGEN = 0;
+
+    /**
+     * Constant for encryption
+     */
+    public static final int OP_ENCRYPT = 1;
+
+    /**
+     * Constant for decryption
+     */
+    public static final int OP_DECRYPT = 2;
+
+    /* phase constants */
+
+    /**
+     * Generation of the field and the irreducible Goppa polynomial
+     */
+    public static final int PHASE_GOPPA_POLYNOMIAL = 0;
+
+    /**
+     * Computation of the square root matrix
+     */
+    public static final int PHASE_SQUARE_ROOT_MATRIX = 1;
+
+    /**
+     * Computation of the canonical check matrix
+     */
+    public static final int PHASE_CHECK_MATRIX = 2;
+
+    /**
+     * Computation of the systematic form of the check and generator matrix
+     */
+    public static final int PHASE_SYSTEMATIC_FORM = 3;
+
+    /**
+     * Scrambling of the generator matrix with S and P
+     */
+    public static final int PHASE_SCRAMBLE = 4;
+
+    /**
+     * Encoding of the input: padding and conversion of the byte array into a
+     * vector over GF(2)
+     */
+    public static final int PHASE_ENCODE = 5;
+
+    /**
+     * Generation of the error vector (for the CCA2-secure conversions: the
+     * constant weight encoding of the error vector)
+     */
+    public static final int PHASE_ERROR_VECTOR = 6;
+
+    /**
+     * Multiplication with the public generator matrix
+     */
+    public static final int PHASE_MULTIPLY = 7;
+
+    /**
+     * Application of the inverse permutation to the ciphertext
+     */
+    public static final int PHASE_PERMUTATION = 8;
+
+    /**
+     * Computation of the syndrome
+     */
+    public static final int PHASE_SYNDROME = 9;
+
+    /**
+     * Computation of the error locator polynomial (Patterson's algorithm)
+     */
+    public static final int PHASE_DECODE = 10;
+
+    /**
+     * Root finding of the error locator polynomial
+     */
+    public static final int PHASE_ROOT_FINDING = 11;
+
+    /**
+     * Recovery of the message vector (unpermuting and multiplication with
+     * S<sup>-1</sup>)
+     */
+    public static final int PHASE_UNSCRAMBLE = 12;
+
+    /**
+     * Hash computations of the CCA2-secure conversions
+     */
+    public static final int PHASE_HASH = 13;
+
+    /**
+     * Random value generation, PRNG seeding and output of the CCA2-secure
+     * conversions
+     */
+    public static final int PHASE_PRNG = 14;
+
+    /**
+     * Conversion of the resulting vectors over GF(2) into byte arrays (for
+     * the CCA2-secure conversions: including the constant weight decoding of
+     * the error vector)
+     */
+    public static final int PHASE_OUTPUT = 15;
+
+    /**
+     * Number of operations
+     */
+    public static final int NUM_OPERATIONS = 3;
+
+    /**
+     * Number of phases
+     */
+    public static final int NUM_PHASES = 16;
+
+    private static final String[] OPERATION_NAMES = { "keygen", "encrypt",
+	    "decrypt" };
+
+    private static final String[] PHASE_NAMES = { "goppa_polynomial",
+	    "square_root_matrix", "check_matrix", "systematic_form",
+	    "scramble", "encode", "error_vector", "multiply", "permutation",
+	    "syndrome", "decode", "root_finding", "unscramble", "hash", "prng",
+	    "output" };
+
+    // the registered listener (null if instrumentation is disabled)
+    private static volatile McEliecePhaseListener listener;
+
+    /**
+     * Default constructor (private).
+     */
+    private McElieceInstrumentation() {
+	// empty
+    }
+
+    /**
+     * Register a listener. Only one listener can be registered at a time.
+     * 
+     * @param phaseListener
+     *                the listener, or <tt>null</tt> to disable the
+     *                instrumentation
+     */
+    public static void setListener(McEliecePhaseListener phaseListener) {
+	listener = phaseListener;
+    }
+
+    /**
+     * @return the registered listener, or <tt>null</tt> if the
+     *         instrumentation is disabled
+     */
+    public static McEliecePhaseListener getListener() {
+	return listener;
+    }
+
+    /**
+     * Return the name of an operation.
+     * 
+     * @param operation
+     *                the operation
+     * @return the name of the operation
+     */
+    public static String getOperationName(int operation) {
+	return OPERATION_NAMES[operation];
+    }
+
+    /**
+     * Return the name of a phase.
+     * 
+     * @param phase
+     *                the phase
+     * @return the name of the phase
+     */
+    public static String getPhaseName(int phase) {
+	return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Start timing an operation.
+     * 
+     * @param l
+     *                the listener obtained via {@link #getListener()}
+     * @return the current time in nanoseconds, or <tt>0</tt> if
+     *         <tt>l</tt> is <tt>null</tt>
+     */
+    static long start(McEliecePhaseListener l) {
+	return l == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Report the completion of a phase which started at the given time.
+     * 
+     * @param l
+     *                the listener obtained via {@link #getListener()}
+     * @param operation
+     *                the operation
+     * @param phase
+     *                the completed phase
+     * @param startTime
+     *                the start time of the phase
+     * @return the current time in nanoseconds (the start time of the next
+     *         phase), or <tt>0</tt> if <tt>l</tt> is <tt>null</tt>
+     */
+    static long phase(McEliecePhaseListener l, int operation, int phase,
+	    long startTime) {
+	if (l == null) {
+	    return 0;
+	}
+	long now = System.nanoTime();
+	l.phaseCompleted(operation, phase, now - startTime);
+	return now;
+    }
+
+}
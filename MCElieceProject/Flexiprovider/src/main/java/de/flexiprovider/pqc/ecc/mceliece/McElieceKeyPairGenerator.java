@@ -15,6 +15,7 @@ import de.flexiprovider.common.math.codingtheory.GoppaCode.MaMaPe;
 import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
 import de.flexiprovider.common.math.linearalgebra.Permutation;
 import de.flexiprovider.pqc.ecc.ECCKeyGenParameterSpec;
+import de.flexiprovider.pqc.ecc.ECCParameterCache;
 
 /**
  * This class implements key pair generation of the McEliece Public Key
@@ -165,19 +166,31 @@ public class McElieceKeyPairGenerator extends KeyPairGenerator {
 	    initializeDefault();
 	}
 
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	// finite field GF(2^m)
-	GF2mField field = new GF2mField(m, fieldPoly);
+	GF2mField field = ECCParameterCache.getField(m, fieldPoly);
 
 	// irreducible Goppa polynomial
 	PolynomialGF2mSmallM gp = new PolynomialGF2mSmallM(field, t,
 		PolynomialGF2mSmallM.RANDOM_IRREDUCIBLE_POLYNOMIAL, random);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_GOPPA_POLYNOMIAL, time);
 	PolynomialRingGF2m ring = new PolynomialRingGF2m(field, gp);
 
 	// matrix used to compute square roots in (GF(2^m))^t
 	PolynomialGF2mSmallM[] sqRootMatrix = ring.getSquareRootMatrix();
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_SQUARE_ROOT_MATRIX, time);
 
 	// generate canonical check matrix
 	GF2Matrix h = GoppaCode.createCanonicalCheckMatrix(field, gp);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_CHECK_MATRIX, time);
 
 	// compute short systematic form of check matrix
 	MaMaPe mmp = GoppaCode.computeSystematicForm(h, random);
@@ -192,6 +205,9 @@ public class McElieceKeyPairGenerator extends KeyPairGenerator {
 
 	// obtain number of rows of G (= dimension of the code)
 	int k = shortG.getNumRows();
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_SYSTEMATIC_FORM, time);
 
 	// generate random invertible (k x k)-matrix S and its inverse S^-1
 	GF2Matrix[] matrixSandInverse = GF2Matrix
@@ -203,6 +219,8 @@ public class McElieceKeyPairGenerator extends KeyPairGenerator {
 	// compute public matrix G=S*G'*P2
 	GF2Matrix g = (GF2Matrix) matrixSandInverse[0].rightMultiply(gPrime);
 	g = (GF2Matrix) g.rightMultiply(p2);
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_KEYGEN,
+		McElieceInstrumentation.PHASE_SCRAMBLE, time);
 
 	// generate keys
 	McEliecePublicKey pubKey = new McEliecePublicKey(n, t, g);
@@ -0,0 +1,342 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import codec.asn1.ASN1Exception;
+import codec.asn1.ASN1Integer;
+import codec.asn1.ASN1ObjectIdentifier;
+import codec.asn1.ASN1Type;
+import de.flexiprovider.api.exceptions.InvalidKeyException;
+import de.flexiprovider.api.exceptions.InvalidKeySpecException;
+import de.flexiprovider.api.keys.PublicKey;
+import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
+import de.flexiprovider.common.util.ASN1Tools;
+import de.flexiprovider.pki.AlgorithmIdentifier;
+
+/**
+ * This class provides methods to write and read McEliece and McEliece CCA2
+ * public keys in their X.509 encoding (as returned by
+ * {@link PublicKey#getEncoded()}) directly to and from streams and channels.
+ * <p>
+ * {@link PublicKey#getEncoded()} first encodes the generator matrix into a
+ * byte array, which is then copied by the DER encoder into the key data and
+ * again into the SubjectPublicKeyInfo structure. For large keys, this means
+ * several transient copies of the matrix. The methods of this class compute
+ * all DER lengths in advance and write the matrix row by row behind the
+ * headers; reading fills the matrix rows straight from the stream. The
+ * encoding is identical to the one produced by {@link PublicKey#getEncoded()}
+ * and accepted by the key factories.
+ * 
+ * @see McElieceKeyFactory
+ * @see McElieceCCA2KeyFactory
+ */
+public final class McElieceKeyStreams {
+
+    // DER tags
+    private static final int TAG_INTEGER = 0x02;
+
+    private static final int TAG_BIT_STRING = 0x03;
+
+    private static final int TAG_OCTET_STRING = 0x04;
+
+    private static final int TAG_OID = 0x06;
+
+    private static final int TAG_SEQUENCE = 0x30;
+
+    /**
+     * The maximal length of the contents of an encoded AlgorithmIdentifier
+     * (the McEliece OIDs and their parameters need less than 20 bytes)
+     */
+    private static final int MAX_AID_LENGTH = 256;
+
+    /**
+     * Default constructor (private).
+     */
+    private McElieceKeyStreams() {
+	// empty
+    }
+
+    /**
+     * Write the X.509 encoding of a McEliece or McEliece CCA2 public key to
+     * the given stream.
+     * 
+     * @param key
+     *                the public key
+     * @param out
+     *                the output stream
+     * @throws InvalidKeyException
+     *                 if the key is neither a {@link McEliecePublicKey} nor a
+     *                 {@link McElieceCCA2PublicKey}.
+     * @throws IOException
+     *                 if the stream cannot be written.
+     */
+    public static void writePublicKey(PublicKey key, OutputStream out)
+	    throws InvalidKeyException, IOException {
+	ASN1ObjectIdentifier oid;
+	ASN1Type algParams;
+	int n, t;
+	GF2Matrix g;
+	if (key instanceof McEliecePublicKey) {
+	    McEliecePublicKey mcKey = (McEliecePublicKey) key;
+	    oid = mcKey.getOID();
+	    algParams = mcKey.getAlgParams();
+	    n = mcKey.getN();
+	    t = mcKey.getT();
+	    g = mcKey.getG();
+	} else if (key instanceof McElieceCCA2PublicKey) {
+	    McElieceCCA2PublicKey mcKey = (McElieceCCA2PublicKey) key;
+	    oid = mcKey.getOID();
+	    algParams = mcKey.getAlgParams();
+	    n = mcKey.getN();
+	    t = mcKey.getT();
+	    g = mcKey.getG();
+	} else {
+	    throw new InvalidKeyException("unsupported type");
+	}
+
+	byte[] encAid;
+	try {
+	    encAid = ASN1Tools.derEncode(new AlgorithmIdentifier(oid,
+		    algParams));
+	} catch (ASN1Exception asn1e) {
+	    throw new RuntimeException("ASN1Exception: " + asn1e.getMessage());
+	}
+	byte[] encN = ASN1Tools.derEncode(new ASN1Integer(n));
+	byte[] encT = ASN1Tools.derEncode(new ASN1Integer(t));
+
+	// compute the lengths of all nested structures in advance
+	int matrixLen = g.getEncodedLength();
+	int keyDataLen = encN.length + encT.length
+		+ getEncodedSize(matrixLen);
+	int bitStringLen = 1 + getEncodedSize(keyDataLen);
+	int spkiLen = encAid.length + getEncodedSize(bitStringLen);
+
+	// SubjectPublicKeyInfo ::= SEQUENCE {
+	// algorithm AlgorithmIdentifier,
+	// subjectPublicKey BIT STRING }
+	writeHeader(out, TAG_SEQUENCE, spkiLen);
+	out.write(encAid);
+	writeHeader(out, TAG_BIT_STRING, bitStringLen);
+	// number of unused bits
+	out.write(0);
+
+	// McEliecePublicKey ::= SEQUENCE { n, t, matrixG }
+	writeHeader(out, TAG_SEQUENCE, keyDataLen);
+	out.write(encN);
+	out.write(encT);
+	writeHeader(out, TAG_OCTET_STRING, matrixLen);
+	g.writeEncoded(out);
+	out.flush();
+    }
+
+    /**
+     * Write the X.509 encoding of a McEliece or McEliece CCA2 public key to
+     * the given channel.
+     * 
+     * @param key
+     *                the public key
+     * @param channel
+     *                the channel
+     * @throws InvalidKeyException
+     *                 if the key is neither a {@link McEliecePublicKey} nor a
+     *                 {@link McElieceCCA2PublicKey}.
+     * @throws IOException
+     *                 if the channel cannot be written.
+     */
+    public static void writePublicKey(PublicKey key,
+	    WritableByteChannel channel) throws InvalidKeyException,
+	    IOException {
+	writePublicKey(key, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Read the X.509 encoding of a McEliece or McEliece CCA2 public key from
+     * the given stream. Exactly the bytes of the encoded key are consumed.
+     * 
+     * @param in
+     *                the input stream
+     * @return the decoded {@link McEliecePublicKey} or
+     *         {@link McElieceCCA2PublicKey} (depending on the encoded OID)
+     * @throws InvalidKeySpecException
+     *                 if the stream does not contain a valid encoded McEliece
+     *                 or McEliece CCA2 public key.
+     * @throws IOException
+     *                 if the stream cannot be read.
+     */
+    public static PublicKey readPublicKey(InputStream in)
+	    throws InvalidKeySpecException, IOException {
+	readHeader(in, TAG_SEQUENCE);
+
+	// decode the OID from the AlgorithmIdentifier
+	int aidLen = readHeader(in, TAG_SEQUENCE);
+	if (aidLen > MAX_AID_LENGTH) {
+	    throw new InvalidKeySpecException("invalid algorithm identifier");
+	}
+	byte[] aid = new byte[aidLen];
+	readFully(in, aid);
+	boolean cca2;
+	if (startsWith(aid, McElieceKeyFactory.OID)) {
+	    cca2 = false;
+	} else if (startsWith(aid, McElieceCCA2KeyFactory.OID)) {
+	    cca2 = true;
+	} else {
+	    throw new InvalidKeySpecException("unsupported algorithm");
+	}
+
+	readHeader(in, TAG_BIT_STRING);
+	if (in.read() != 0) {
+	    throw new InvalidKeySpecException("invalid subject public key");
+	}
+	readHeader(in, TAG_SEQUENCE);
+	int n = readInteger(in);
+	int t = readInteger(in);
+	int matrixLen = readHeader(in, TAG_OCTET_STRING);
+
+	GF2Matrix g;
+	try {
+	    g = new GF2Matrix(in, matrixLen);
+	} catch (ArithmeticException ae) {
+	    throw new InvalidKeySpecException("invalid generator matrix");
+	}
+
+	if (cca2) {
+	    return new McElieceCCA2PublicKey(n, t, g);
+	}
+	return new McEliecePublicKey(n, t, g);
+    }
+
+    /**
+     * Read the X.509 encoding of a McEliece or McEliece CCA2 public key from
+     * the given channel.
+     * 
+     * @param channel
+     *                the channel
+     * @return the decoded {@link McEliecePublicKey} or
+     *         {@link McElieceCCA2PublicKey} (depending on the encoded OID)
+     * @throws InvalidKeySpecException
+     *                 if the channel does not contain a valid encoded McEliece
+     *                 or McEliece CCA2 public key.
+     * @throws IOException
+     *                 if the channel cannot be read.
+     */
+    public static PublicKey readPublicKey(ReadableByteChannel channel)
+	    throws InvalidKeySpecException, IOException {
+	return readPublicKey(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Compute the size of a DER encoding with the given content length.
+     * 
+     * @param contentLength
+     *                the length of the contents
+     * @return the length of tag, length, and contents
+     */
+    private static int getEncodedSize(int contentLength) {
+	int lengthOfLength = 1;
+	if (contentLength > 0x7f) {
+	    for (int l = contentLength; l != 0; l >>>= 8) {
+		lengthOfLength++;
+	    }
+	}
+	return 1 + lengthOfLength + contentLength;
+    }
+
+    private static void writeHeader(OutputStream out, int tag, int length)
+	    throws IOException {
+	out.write(tag);
+	if (length <= 0x7f) {
+	    out.write(length);
+	    return;
+	}
+	int numBytes = 0;
+	for (int l = length; l != 0; l >>>= 8) {
+	    numBytes++;
+	}
+	out.write(0x80 | numBytes);
+	for (int i = numBytes - 1; i >= 0; i--) {
+	    out.write(length >>> (i << 3));
+	}
+    }
+
+    private static int readHeader(InputStream in, int tag)
+	    throws InvalidKeySpecException, IOException {
+	if (readByte(in) != tag) {
+	    throw new InvalidKeySpecException("unexpected DER tag");
+	}
+	int length = readByte(in);
+	if (length <= 0x7f) {
+	    return length;
+	}
+	int numBytes = length & 0x7f;
+	if (numBytes == 0 || numBytes > 4) {
+	    throw new InvalidKeySpecException("unsupported DER length");
+	}
+	length = 0;
+	for (int i = 0; i < numBytes; i++) {
+	    length = (length << 8) | readByte(in);
+	}
+	if (length < 0) {
+	    throw new InvalidKeySpecException("unsupported DER length");
+	}
+	return length;
+    }
+
+    private static int readInteger(InputStream in)
+	    throws InvalidKeySpecException, IOException {
+	int length = readHeader(in, TAG_INTEGER);
+	if (length < 1 || length > 4) {
+	    throw new InvalidKeySpecException("invalid integer");
+	}
+	int result = 0;
+	for (int i = 0; i < length; i++) {
+	    result = (result << 8) | readByte(in);
+	}
+	if (result < 0) {
+	    throw new InvalidKeySpecException("invalid integer");
+	}
+	return result;
+    }
+
+    /**
+     * Check whether the given encoded AlgorithmIdentifier contents start with
+     * the given OID.
+     */
+    private static boolean startsWith(byte[] aid, String oid) {
+	byte[] encOid = ASN1Tools.derEncode(new ASN1ObjectIdentifier(oid));
+	if (encOid[0] != TAG_OID || aid.length < encOid.length) {
+	    return false;
+	}
+	for (int i = 0; i < encOid.length; i++) {
+	    if (aid[i] != encOid[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+	int b = in.read();
+	if (b < 0) {
+	    throw new EOFException("encoded key is truncated");
+	}
+	return b;
+    }
+
+    private static void readFully(InputStream in, byte[] buf)
+	    throws IOException {
+	for (int off = 0; off < buf.length;) {
+	    int read = in.read(buf, off, buf.length - off);
+	    if (read < 0) {
+		throw new EOFException("encoded key is truncated");
+	    }
+	    off += read;
+	}
+    }
+
+}
@@ -12,10 +12,10 @@ import de.flexiprovider.api.exceptions.InvalidKeyException;
 import de.flexiprovider.api.exceptions.NoSuchAlgorithmException;
 import de.flexiprovider.api.keys.Key;
 import de.flexiprovider.api.parameters.AlgorithmParameterSpec;
-import de.flexiprovider.common.math.IntegerFunctions;
 import de.flexiprovider.common.math.linearalgebra.GF2Vector;
 import de.flexiprovider.common.util.ByteUtils;
 import de.flexiprovider.pqc.ecc.Conversions;
+import de.flexiprovider.pqc.ecc.ECCParameterCache;
 
 /**
  * This class implements the Kobara/Imai conversion of the McEliecePKCS. This is
@@ -224,7 +224,7 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	k = pubKey.getK();
 	t = pubKey.getT();
 
-	helpLen = (IntegerFunctions.binomial(n, t).bitLength() - 1) >> 3;
+	helpLen = (ECCParameterCache.getBinomial(n, t).bitLength() - 1) >> 3;
 	helpLen += (k >> 3) - md.getDigestLength() - PUBLIC_CONSTANT.length;
 
 	buf = new ByteArrayOutputStream();
@@ -270,9 +270,12 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 
     protected byte[] messageEncrypt() {
 
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	int c2Len = md.getDigestLength();
 	int c4Len = k >> 3;
-	int c5Len = (IntegerFunctions.binomial(n, t).bitLength() - 1) >> 3;
+	int c5Len = (ECCParameterCache.getBinomial(n, t).bitLength() - 1) >> 3;
 
 	// compute message representative
 	byte[] input = pad();
@@ -290,6 +293,9 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	System.arraycopy(input, 0, mConst, 0, input.length);
 	System.arraycopy(PUBLIC_CONSTANT, 0, mConst, mLen,
 		PUBLIC_CONSTANT.length);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_ENCODE, time);
 
 	// generate random r of length c2Len bytes
 	byte[] r = new byte[c2Len];
@@ -315,9 +321,15 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	for (int i = c1Len - 1; i >= 0; i--) {
 	    c1[i] ^= mConst[i];
 	}
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_PRNG, time);
 
 	// compute H(c1) ...
 	byte[] c2 = md.digest(c1);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_HASH, time);
 
 	// ... and XOR with r
 	for (int i = c2Len - 1; i >= 0; i--) {
@@ -347,10 +359,17 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 
 	// convert c5 to error vector z
 	GF2Vector z = Conversions.encode(n, t, c5);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_ERROR_VECTOR, time);
 
 	// compute encC4 = E(c4, z)
-	byte[] encC4 = McElieceCCA2Primitives.encryptionPrimitive(pubKey,
-		c4Vec, z).getEncoded();
+	GF2Vector encC4Vec = McElieceCCA2Primitives.encryptionPrimitive(
+		pubKey, c4Vec, z);
+	time = McElieceInstrumentation.start(l);
+	byte[] encC4 = encC4Vec.getEncoded();
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_OUTPUT, time);
 
 	// if c6Len > 0
 	if (c6Len > 0) {
@@ -375,6 +394,9 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 
     protected byte[] messageDecrypt() throws BadPaddingException {
 
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time;
+
 	byte[] input = buf.toByteArray();
 	buf.reset();
 
@@ -400,11 +422,15 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	}
 
 	// convert encC4 into vector over GF(2)
+	time = McElieceInstrumentation.start(l);
 	GF2Vector encC4Vec = GF2Vector.OS2VP(n, encC4);
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_ENCODE, time);
 
 	// decrypt encC4Vec to obtain c4 and error vector z
 	GF2Vector[] c4z = McElieceCCA2Primitives.decryptionPrimitive(privKey,
 		encC4Vec);
+	time = McElieceInstrumentation.start(l);
 	byte[] c4 = c4z[0].getEncoded();
 	GF2Vector z = c4z[1];
 
@@ -428,6 +454,10 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	byte[] c2 = c2c1[0];
 	byte[] c1 = c2c1[1];
 
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_OUTPUT, time);
+
 	// compute H(c1) ...
 	byte[] rPrime = md.digest(c1);
 
@@ -435,6 +465,9 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	for (int i = c2Len - 1; i >= 0; i--) {
 	    rPrime[i] ^= c2[i];
 	}
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_HASH, time);
 
 	// get PRNG object
 	SecureRandom sr0 = null;
@@ -456,6 +489,8 @@ public class McElieceKobaraImaiCipher extends AsymmetricHybridCipher {
 	for (int i = c1Len - 1; i >= 0; i--) {
 	    mConstPrime[i] ^= c1[i];
 	}
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_PRNG, time);
 
 	if (mConstPrime.length < c1Len) {
 	    throw new BadPaddingException("invalid ciphertext");
@@ -99,6 +99,9 @@ public class McEliecePKCS extends AsymmetricBlockCipher {
     // the source of randomness
     private SecureRandom sr;
 
+    // the permutation P = P1 * P2 and its inverse (computed once per key)
+    private Permutation p, pInv;
+
     // the McEliece main parameters
     private int n, k, t;
 
@@ -187,6 +190,12 @@ public class McEliecePKCS extends AsymmetricBlockCipher {
 	n = privKey.getN();
 	k = privKey.getK();
 
+	// compute permutation P = P1 * P2
+	p = privKey.getP1().rightMultiply(privKey.getP2());
+
+	// compute P^-1
+	pInv = p.computeInverse();
+
 	maxPlainTextSize = (k >> 3);
 	cipherTextSize = n >> 3;
     }
@@ -199,14 +208,31 @@ public class McEliecePKCS extends AsymmetricBlockCipher {
      * @return the ciphertext
      */
     protected byte[] messageEncrypt(byte[] input) {
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	GF2Vector m = computeMessageRepresentative(input);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_ENCODE, time);
+
 	GF2Vector z = new GF2Vector(n, t, sr);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_ERROR_VECTOR, time);
 
 	GF2Matrix g = pubKey.getG();
 	Vector mG = g.leftMultiply(m);
 	GF2Vector mGZ = (GF2Vector) mG.add(z);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_MULTIPLY, time);
+
+	byte[] result = mGZ.getEncoded();
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_ENCRYPT,
+		McElieceInstrumentation.PHASE_OUTPUT, time);
 
-	return mGZ.getEncoded();
+	return result;
     }
 
     private GF2Vector computeMessageRepresentative(byte[] input) {
@@ -226,30 +252,48 @@ public class McEliecePKCS extends AsymmetricBlockCipher {
      *                 if the ciphertext is invalid.
      */
     protected byte[] messageDecrypt(byte[] input) throws BadPaddingException {
+	McEliecePhaseListener l = McElieceInstrumentation.getListener();
+	long time = McElieceInstrumentation.start(l);
+
 	GF2Vector vec = GF2Vector.OS2VP(n, input);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_ENCODE, time);
 
 	GF2mField field = privKey.getField();
 	PolynomialGF2mSmallM gp = privKey.getGoppaPoly();
 	GF2Matrix sInv = privKey.getSInv();
 	Permutation p1 = privKey.getP1();
-	Permutation p2 = privKey.getP2();
 	GF2Matrix h = privKey.getH();
 	PolynomialGF2mSmallM[] qInv = privKey.getQInv();
 
-	// compute permutation P = P1 * P2
-	Permutation p = p1.rightMultiply(p2);
-
-	// compute P^-1
-	Permutation pInv = p.computeInverse();
-
 	// compute c P^-1
 	GF2Vector cPInv = (GF2Vector) vec.multiply(pInv);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_PERMUTATION, time);
 
 	// compute syndrome of c P^-1
 	GF2Vector syndrome = (GF2Vector) h.rightMultiply(cPInv);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_SYNDROME, time);
 
 	// decode syndrome
-	GF2Vector z = GoppaCode.syndromeDecode(syndrome, field, gp, qInv);
+	GF2Vector z;
+	if (syndrome.isZero()) {
+	    z = new GF2Vector(1 << field.getDegree());
+	} else {
+	    PolynomialGF2mSmallM elp = GoppaCode.computeErrorLocatorPolynomial(
+		    syndrome, field, gp, qInv);
+	    time = McElieceInstrumentation.phase(l,
+		    McElieceInstrumentation.OP_DECRYPT,
+		    McElieceInstrumentation.PHASE_DECODE, time);
+	    z = GoppaCode.findErrorPositions(elp, field);
+	    time = McElieceInstrumentation.phase(l,
+		    McElieceInstrumentation.OP_DECRYPT,
+		    McElieceInstrumentation.PHASE_ROOT_FINDING, time);
+	}
 	GF2Vector mSG = (GF2Vector) cPInv.add(z);
 
 	// multiply codeword with P1 and error vector with P
@@ -261,9 +305,16 @@ public class McEliecePKCS extends AsymmetricBlockCipher {
 
 	// compute plaintext vector
 	GF2Vector mVec = (GF2Vector) sInv.leftMultiply(mS);
+	time = McElieceInstrumentation.phase(l,
+		McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_UNSCRAMBLE, time);
 
 	// compute and return plaintext
-	return computeMessage(mVec);
+	byte[] result = computeMessage(mVec);
+	McElieceInstrumentation.phase(l, McElieceInstrumentation.OP_DECRYPT,
+		McElieceInstrumentation.PHASE_OUTPUT, time);
+
+	return result;
     }
 
     private byte[] computeMessage(GF2Vector mr) throws BadPaddingException {
@@ -287,6 +338,8 @@ public class McEliecePKCS extends AsymmetricBlockCipher {
     private void reset() {
 	privKey = null;
 	pubKey = null;
+	p = null;
+	pInv = null;
 	n = 0;
 	k = 0;
 	t = 0;
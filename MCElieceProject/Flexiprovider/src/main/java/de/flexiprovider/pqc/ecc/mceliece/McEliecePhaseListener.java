@@ -0,0 +1,32 @@
+package de.flexiprovider.pqc.ecc.mceliece;
+
+/**
+ * Listener interface for per-phase timing of McEliece key pair generation,
+ * encryption and decryption. A listener is registered with
+ * {@link McElieceInstrumentation#setListener(McEliecePhaseListener)}. If no
+ * listener is registered, the instrumented code paths neither read the clock
+ * nor call this interface.
+ * <p>
+ * Implementations are called from the threads performing the operations and
+ * therefore have to be thread-safe.
+ * 
+ * @see McElieceInstrumentation
+ * @see McElieceHistogramListener
+ */
+public interface McEliecePhaseListener {
+
+    /**
+     * Called whenever a phase of an operation has been completed.
+     * 
+     * @param operation
+     *                the operation (one of the <tt>OP_*</tt> constants of
+     *                {@link McElieceInstrumentation})
+     * @param phase
+     *                the phase (one of the <tt>PHASE_*</tt> constants of
+     *                {@link McElieceInstrumentation})
+     * @param nanos
+     *                the duration of the phase in nanoseconds
+     */
+    void phaseCompleted(int operation, int phase, long nanos);
+
+}
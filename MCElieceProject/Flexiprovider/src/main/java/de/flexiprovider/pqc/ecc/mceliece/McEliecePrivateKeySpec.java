@@ -5,6 +5,7 @@ import de.flexiprovider.common.math.codingtheory.GF2mField;
 import de.flexiprovider.common.math.codingtheory.PolynomialGF2mSmallM;
 import de.flexiprovider.common.math.linearalgebra.GF2Matrix;
 import de.flexiprovider.common.math.linearalgebra.Permutation;
+import de.flexiprovider.pqc.ecc.ECCParameterCache;
 
 /**
  * This class provides a specification for a McEliece private key.
@@ -113,7 +114,7 @@ public class McEliecePrivateKeySpec implements KeySpec {
 	    byte[] encH, byte[][] encQInv) {
 	this.n = n;
 	this.k = k;
-	field = new GF2mField(encField);
+	field = ECCParameterCache.getField(encField);
 	goppaPoly = new PolynomialGF2mSmallM(field, encGoppaPoly);
 	sInv = new GF2Matrix(encSInv);
 	p1 = new Permutation(encP1);